@@ -0,0 +1,353 @@
+package com.roominspection.backend.accesscontrol;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.roominspection.backend.accesscontrol.DoorAccessEventListener.DoorAccessEvent;
+import com.roominspection.backend.accesscontrol.DoorAccessEventListener.EventType;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DoorAccessLog;
+import com.roominspection.backend.mapper.DeviceMapper;
+import com.roominspection.backend.mapper.DoorAccessLogMapper;
+import com.roominspection.backend.service.DoorAccessSyncService;
+import com.roominspection.backend.service.InspectionVerificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 门禁事件总线
+ * <p>
+ * 事件来源是门禁平台的事件订阅推送（{@link DoorAccessPushReceiver}），门禁系统适配器只上报远程开关门，
+ * 不产生人员通行事件，不接入总线。
+ * <p>
+ * 门禁系统推送的通行事件先转换为门禁日志、进入有界队列，随即更新机房在场人员索引；
+ * 单个消费线程按批（batch-size条或flush-interval-ms）以 INSERT ... ON DUPLICATE KEY UPDATE 写入，
+ * 写入后马上做巡检核验的进出匹配，不需要等下一轮轮询同步。
+ * <p>
+ * 事件不在总线内丢弃（增量同步默认关闭，不能指望它补齐）：
+ * <ul>
+ *     <li>写库失败时消费线程按指数退避重试同一批，直到写入成功；只有数据本身违反约束的记录逐条写入后跳过并记录日志</li>
+ *     <li>重试期间队列会逐渐写满，发布方最多等待offer-timeout-ms，仍无空位时拒绝本次推送，
+ *     回调接口返回503由门禁平台重新推送（事件ID与轮询同步一致，重复推送幂等）</li>
+ *     <li>停机时写完正在重试的批次和队列中剩余的事件</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class DoorAccessEventBus {
+
+    @Autowired
+    private DoorAccessLogMapper doorAccessLogMapper;
+
+    @Autowired
+    private DeviceMapper deviceMapper;
+
+    @Autowired
+    private RoomOccupancyIndex occupancyIndex;
+
+    @Lazy
+    @Autowired
+    private InspectionVerificationService inspectionVerificationService;
+
+    @Value("${access-control.push.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${access-control.push.batch-size:200}")
+    private int batchSize;
+
+    @Value("${access-control.push.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${access-control.push.offer-timeout-ms:200}")
+    private long offerTimeoutMs;
+
+    @Value("${access-control.push.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${access-control.push.max-retry-backoff-ms:30000}")
+    private long maxRetryBackoffMs;
+
+    private BlockingQueue<DoorAccessLog> queue;
+
+    /**
+     * 消费线程正在写入（含重试中）的批次，停机时补写
+     */
+    private volatile List<DoorAccessLog> inflight = Collections.emptyList();
+
+    private Thread consumer;
+
+    private volatile boolean running;
+
+    /**
+     * 门禁设备ID（accessControlDeviceId）-> 门禁设备
+     */
+    private volatile Map<String, Device> doorDevices = Collections.emptyMap();
+
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong ignoredCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong persistedCount = new AtomicLong(0);
+    private final AtomicLong persistFailedCount = new AtomicLong(0);
+    private final AtomicLong retryCount = new AtomicLong(0);
+    private final AtomicLong invalidCount = new AtomicLong(0);
+    private final AtomicLong matchedCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        refreshDoorDevices();
+        running = true;
+        consumer = new Thread(this::consume, "door-access-event-bus");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        consumer.interrupt();
+        consumer.join(5000);
+        // 停机前写完正在重试的批次和队列中剩余的事件
+        List<DoorAccessLog> remaining = new ArrayList<>(inflight);
+        queue.drainTo(remaining);
+        for (int i = 0; i < remaining.size(); i += batchSize) {
+            List<DoorAccessLog> batch = remaining.subList(i, Math.min(remaining.size(), i + batchSize));
+            if (write(batch)) {
+                match(batch);
+            } else {
+                log.error("停机时门禁事件写入失败，需由门禁平台重推或增量同步补齐: count={}", remaining.size() - i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 发布门禁事件
+     *
+     * @param systemType 门禁系统类型
+     * @param event      门禁事件
+     * @return 是否已接收（非通行事件返回false）
+     * @throws RejectedExecutionException 队列已满且等待offer-timeout-ms后仍无空位，调用方应让门禁平台重新推送
+     */
+    public boolean publish(String systemType, DoorAccessEvent event) {
+        DoorAccessLog accessLog = toAccessLog(systemType, event);
+        if (accessLog == null) {
+            ignoredCount.incrementAndGet();
+            return false;
+        }
+        publishedCount.incrementAndGet();
+
+        boolean offered;
+        try {
+            offered = queue.offer(accessLog, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            long rejected = rejectedCount.incrementAndGet();
+            if (rejected % 1000 == 1) {
+                log.warn("门禁事件队列已满，拒绝推送等待平台重推: rejected={}, capacity={}", rejected, queueCapacity);
+            }
+            throw new RejectedExecutionException("门禁事件队列已满");
+        }
+        occupancyIndex.apply(accessLog);
+        return true;
+    }
+
+    /**
+     * 获取事件总线统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueSize", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("published", publishedCount.get());
+        stats.put("ignored", ignoredCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("persisted", persistedCount.get());
+        stats.put("persistFailed", persistFailedCount.get());
+        stats.put("retries", retryCount.get());
+        stats.put("invalid", invalidCount.get());
+        stats.put("inflight", inflight.size());
+        stats.put("matched", matchedCount.get());
+        stats.put("doorDevices", doorDevices.size());
+        return stats;
+    }
+
+    /**
+     * 定时刷新门禁设备与机房的对应关系
+     */
+    @Scheduled(fixedDelay = 300000, initialDelay = 300000)
+    public void refreshDoorDevices() {
+        try {
+            Map<String, Device> devices = new HashMap<>();
+            for (Device device : deviceMapper.selectList(new LambdaQueryWrapper<Device>()
+                    .select(Device::getAccessControlDeviceId, Device::getRoomId, Device::getName)
+                    .eq(Device::getType, "DOOR_ACCESS")
+                    .isNotNull(Device::getAccessControlDeviceId))) {
+                devices.put(device.getAccessControlDeviceId(), device);
+            }
+            doorDevices = devices;
+        } catch (Exception e) {
+            log.error("刷新门禁设备失败", e);
+        }
+    }
+
+    private void consume() {
+        List<DoorAccessLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                DoorAccessLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                inflight = batch;
+                persist(batch);
+                inflight = Collections.emptyList();
+                batch = new ArrayList<>(batchSize);
+            } catch (InterruptedException e) {
+                // 未写入的批次保留在inflight中，由停机流程补写
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("门禁事件处理异常", e);
+            }
+        }
+    }
+
+    /**
+     * 写入一批事件，失败时按指数退避重试直到成功，之后做巡检核验进出匹配
+     */
+    private void persist(List<DoorAccessLog> batch) throws InterruptedException {
+        int attempts = 0;
+        while (!write(batch)) {
+            attempts++;
+            retryCount.incrementAndGet();
+            long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(attempts - 1, 20));
+            log.warn("门禁事件写入失败，{}ms后第{}次重试: batch={}, queueSize={}",
+                    backoff, attempts, batch.size(), queue.size());
+            Thread.sleep(backoff);
+        }
+        match(batch);
+    }
+
+    /**
+     * 写入一批事件
+     *
+     * @return 是否写入成功（违反约束的记录逐条写入后跳过，也视为成功）
+     */
+    private boolean write(List<DoorAccessLog> batch) {
+        try {
+            doorAccessLogMapper.upsertBatch(batch);
+            persistedCount.addAndGet(batch.size());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // 数据本身有问题，重试整批无用，逐条写入找出问题记录
+            log.error("门禁事件批量写入违反约束，改为逐条写入: batch={}, error={}", batch.size(), e.getMessage());
+            return writeOneByOne(batch);
+        } catch (Exception e) {
+            long failed = persistFailedCount.addAndGet(batch.size());
+            log.error("门禁事件写入失败: batch={}, failed={}, error={}", batch.size(), failed, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean writeOneByOne(List<DoorAccessLog> batch) {
+        for (DoorAccessLog accessLog : batch) {
+            try {
+                doorAccessLogMapper.upsertBatch(Collections.singletonList(accessLog));
+                persistedCount.incrementAndGet();
+            } catch (DataIntegrityViolationException e) {
+                invalidCount.incrementAndGet();
+                log.error("门禁事件数据无效，已跳过: eventId={}, deviceId={}, accessTime={}, error={}",
+                        accessLog.getEventId(), accessLog.getDeviceId(), accessLog.getAccessTime(), e.getMessage());
+            } catch (Exception e) {
+                // 逐条写入时数据库不可用，整批稍后重试（已写入的记录重复写入幂等）
+                persistFailedCount.addAndGet(batch.size());
+                log.error("门禁事件写入失败: batch={}, error={}", batch.size(), e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void match(List<DoorAccessLog> batch) {
+        try {
+            matchedCount.addAndGet(inspectionVerificationService.matchAccessLogs(batch));
+        } catch (Exception e) {
+            log.error("巡检核验进出匹配失败", e);
+        }
+    }
+
+    /**
+     * 将门禁事件转换为门禁日志（只处理人员通行事件）
+     */
+    private DoorAccessLog toAccessLog(String systemType, DoorAccessEvent event) {
+        EventType type = event.getEventType();
+        boolean granted = type == EventType.ACCESS_GRANTED;
+        if (!granted && type != EventType.ACCESS_DENIED && type != EventType.INVALID_CARD) {
+            return null;
+        }
+        Map<String, Object> data = event.getData() != null ? event.getData() : Collections.emptyMap();
+
+        DoorAccessLog accessLog = new DoorAccessLog();
+        accessLog.setSystemType(systemType);
+        accessLog.setDeviceId(event.getDoorId());
+        Device door = event.getDoorId() != null ? doorDevices.get(event.getDoorId()) : null;
+        if (door != null) {
+            accessLog.setDeviceName(door.getName());
+            accessLog.setRoomId(parseLong(door.getRoomId()));
+        }
+        accessLog.setStaffId(parseLong(event.getUserId()));
+        accessLog.setStaffName(event.getUserName());
+        accessLog.setStaffCode(asString(data.get("cardNo")));
+
+        accessLog.setDirection(DoorAccessSyncService.direction(asString(data.get("direction"))));
+        // 与轮询同步一致只保留到秒，两条路径写入同一事件时记录相同
+        accessLog.setAccessTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getTimestamp()),
+                ZoneId.systemDefault()).truncatedTo(ChronoUnit.SECONDS));
+        accessLog.setAccessMethod(asString(data.get("method")));
+        accessLog.setStatus(granted ? "success" : "failed");
+        accessLog.setRejectReason(granted ? null : asString(data.get("reason")));
+        accessLog.setPhotoUrl(asString(data.get("photoUrl")));
+        accessLog.setEventId(DoorAccessSyncService.eventId(asString(data.get("eventId")), accessLog));
+        accessLog.setDataSource("push");
+        accessLog.setVerified(false);
+        accessLog.setCreateTime(LocalDateTime.now());
+        return accessLog;
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
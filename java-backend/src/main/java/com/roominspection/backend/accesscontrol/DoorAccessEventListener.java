@@ -1,5 +1,7 @@
 package com.roominspection.backend.accesscontrol;
 
+import java.util.Map;
+
 /**
  * 门禁事件监听器接口
  */
@@ -0,0 +1,158 @@
+package com.roominspection.backend.accesscontrol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.roominspection.backend.accesscontrol.DoorAccessEventListener.DoorAccessEvent;
+import com.roominspection.backend.accesscontrol.DoorAccessEventListener.EventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 门禁事件推送接收
+ * <p>
+ * 作为门禁平台事件订阅的回调地址：海康按综合安防平台的事件推送格式（params.events）解析，
+ * 其他厂商以及联调用的本地模拟推送使用统一格式：
+ * <pre>
+ * {"events": [{"eventId": "...", "eventType": "ACCESS_GRANTED", "doorId": "...", "userId": "...",
+ *   "userName": "...", "cardNo": "...", "direction": "in", "time": "yyyy-MM-dd HH:mm:ss", "method": "card"}]}
+ * </pre>
+ * 解析后的事件交给 {@link DoorAccessEventBus}。
+ * <p>
+ * 推送接口不走JWT认证，只凭X-Push-Token识别门禁平台；未配置令牌时拒绝所有推送。
+ */
+@Slf4j
+@Component
+public class DoorAccessPushReceiver {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private DoorAccessEventBus eventBus;
+
+    @Value("${access-control.push.token:}")
+    private String pushToken;
+
+    @Value("#{'${access-control.push.hikvision.granted-event-types:198914,196893,197151}'.split(',')}")
+    private Set<String> hikvisionGrantedTypes;
+
+    @Value("#{'${access-control.push.hikvision.denied-event-types:197634,197633}'.split(',')}")
+    private Set<String> hikvisionDeniedTypes;
+
+    @PostConstruct
+    public void init() {
+        if (!StringUtils.hasText(pushToken)) {
+            log.warn("未配置access-control.push.token，门禁事件推送将全部被拒绝");
+        }
+    }
+
+    /**
+     * 校验推送令牌（未配置令牌时一律拒绝，按常量时间比较）
+     */
+    public boolean verifyToken(String token) {
+        if (!StringUtils.hasText(pushToken) || token == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(pushToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 接收一次推送
+     *
+     * @param systemType 门禁系统类型（hikvision/dahua/uniview）
+     * @param body       推送内容
+     * @return 进入事件总线的事件数
+     * @throws java.util.concurrent.RejectedExecutionException 事件队列已满，本次推送需由门禁平台重新推送
+     */
+    public int receive(String systemType, JsonNode body) {
+        int accepted = 0;
+        if ("hikvision".equals(systemType) && body.path("params").has("events")) {
+            for (JsonNode item : body.path("params").path("events")) {
+                DoorAccessEvent event = fromHikvision(item);
+                if (event != null && eventBus.publish(systemType, event)) {
+                    accepted++;
+                }
+            }
+            return accepted;
+        }
+
+        JsonNode events = body.has("events") ? body.path("events") : body;
+        Iterable<JsonNode> items = events.isArray() ? events : Collections.singletonList(events);
+        for (JsonNode item : items) {
+            DoorAccessEvent event = fromGeneric(item);
+            if (event != null && eventBus.publish(systemType, event)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 海康综合安防平台事件：eventType为事件码，data中ExtEventInOut为进出方向（1-进 0-出）
+     */
+    private DoorAccessEvent fromHikvision(JsonNode item) {
+        try {
+            String code = item.path("eventType").asText();
+            EventType eventType;
+            if (hikvisionGrantedTypes.contains(code)) {
+                eventType = EventType.ACCESS_GRANTED;
+            } else if (hikvisionDeniedTypes.contains(code)) {
+                eventType = EventType.ACCESS_DENIED;
+            } else {
+                return null;
+            }
+            JsonNode data = item.path("data");
+            Map<String, Object> extra = new HashMap<>();
+            extra.put("eventId", textOrNull(item, "eventId"));
+            extra.put("cardNo", textOrNull(data, "ExtEventCardNo"));
+            extra.put("direction", textOrNull(data, "ExtEventInOut"));
+            extra.put("method", code);
+            extra.put("photoUrl", textOrNull(data, "ExtEventPictureURL"));
+
+            long timestamp = OffsetDateTime.parse(item.path("happenTime").asText()).toInstant().toEpochMilli();
+            return new DoorAccessEvent(eventType, textOrNull(item, "srcIndex"),
+                    textOrNull(data, "ExtEventPersonNo"), textOrNull(data, "ExtEventPersonName"), timestamp, extra);
+        } catch (Exception e) {
+            log.warn("解析海康门禁推送事件失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 统一格式事件
+     */
+    private DoorAccessEvent fromGeneric(JsonNode item) {
+        try {
+            EventType eventType = EventType.valueOf(item.path("eventType").asText("ACCESS_GRANTED"));
+            JsonNode time = item.path("time");
+            long timestamp = time.isNumber() ? time.asLong()
+                    : LocalDateTime.parse(time.asText(), DATE_FORMATTER)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+            Map<String, Object> extra = new HashMap<>();
+            for (String field : new String[]{"eventId", "cardNo", "direction", "method", "reason", "photoUrl"}) {
+                extra.put(field, textOrNull(item, field));
+            }
+            return new DoorAccessEvent(eventType, textOrNull(item, "doorId"), textOrNull(item, "userId"),
+                    textOrNull(item, "userName"), timestamp, extra);
+        } catch (Exception e) {
+            log.warn("解析门禁推送事件失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isMissingNode() || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,194 @@
+package com.roominspection.backend.accesscontrol;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.roominspection.backend.entity.DoorAccessLog;
+import com.roominspection.backend.mapper.DoorAccessLogMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 机房在场人员索引
+ * <p>
+ * 按门禁通行事件实时维护"谁在哪个机房"：成功进入记为在场，成功离开移除；同一人员只接受比当前状态更新的事件，
+ * 推送与轮询补数乱序到达时不会回退。启动时用最近一段时间的门禁日志重建，超过最长停留时间仍未刷卡离开的记录
+ * （尾随出门等）定时清除。
+ */
+@Slf4j
+@Component
+public class RoomOccupancyIndex {
+
+    @Autowired
+    private DoorAccessLogMapper doorAccessLogMapper;
+
+    @Value("${access-control.occupancy.rebuild-hours:12}")
+    private int rebuildHours;
+
+    @Value("${access-control.occupancy.max-stay-hours:24}")
+    private int maxStayHours;
+
+    /**
+     * 人员ID -> 最近一次通行状态
+     */
+    private final ConcurrentHashMap<Long, Presence> byStaff = new ConcurrentHashMap<>();
+
+    /**
+     * 机房ID -> 在场人员ID
+     */
+    private final ConcurrentHashMap<Long, Set<Long>> byRoom = new ConcurrentHashMap<>();
+
+    /**
+     * 应用一条门禁通行记录
+     *
+     * @param accessLog 门禁记录（只处理成功通行且人员、机房已知的记录）
+     */
+    public void apply(DoorAccessLog accessLog) {
+        if (!"success".equals(accessLog.getStatus()) || accessLog.getStaffId() == null
+                || accessLog.getRoomId() == null || accessLog.getAccessTime() == null) {
+            return;
+        }
+        boolean entering = "in".equals(accessLog.getDirection());
+        byStaff.compute(accessLog.getStaffId(), (staffId, current) -> {
+            if (current != null && current.getLastEventTime().isAfter(accessLog.getAccessTime())) {
+                return current;
+            }
+            if (current != null && current.isPresent()) {
+                leaveRoom(current.getRoomId(), staffId);
+            }
+            Presence presence = new Presence();
+            presence.setStaffId(staffId);
+            presence.setStaffName(accessLog.getStaffName());
+            presence.setRoomId(accessLog.getRoomId());
+            presence.setDeviceName(accessLog.getDeviceName());
+            presence.setLastEventTime(accessLog.getAccessTime());
+            presence.setPresent(entering);
+            if (entering) {
+                presence.setEntryTime(accessLog.getAccessTime());
+                byRoom.computeIfAbsent(accessLog.getRoomId(), k -> ConcurrentHashMap.newKeySet()).add(staffId);
+            }
+            return presence;
+        });
+    }
+
+    /**
+     * 查询机房在场人员
+     */
+    public List<Presence> getOccupants(Long roomId) {
+        Set<Long> staffIds = byRoom.get(roomId);
+        if (staffIds == null) {
+            return Collections.emptyList();
+        }
+        List<Presence> occupants = new ArrayList<>(staffIds.size());
+        for (Long staffId : staffIds) {
+            Presence presence = byStaff.get(staffId);
+            if (presence != null && presence.isPresent() && roomId.equals(presence.getRoomId())) {
+                occupants.add(presence);
+            }
+        }
+        occupants.sort(Comparator.comparing(Presence::getEntryTime));
+        return occupants;
+    }
+
+    /**
+     * 查询人员当前所在机房
+     *
+     * @return 在场状态，不在任何机房时返回null
+     */
+    public Presence getPresence(Long staffId) {
+        Presence presence = byStaff.get(staffId);
+        return presence != null && presence.isPresent() ? presence : null;
+    }
+
+    /**
+     * 各机房在场人数
+     */
+    public Map<Long, Integer> getRoomCounts() {
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (Map.Entry<Long, Set<Long>> entry : byRoom.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                counts.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 启动时用最近的门禁日志重建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<DoorAccessLog> logs = doorAccessLogMapper.selectList(new LambdaQueryWrapper<DoorAccessLog>()
+                .select(DoorAccessLog::getStaffId, DoorAccessLog::getStaffName, DoorAccessLog::getRoomId,
+                        DoorAccessLog::getDeviceName, DoorAccessLog::getDirection, DoorAccessLog::getAccessTime,
+                        DoorAccessLog::getStatus)
+                .eq(DoorAccessLog::getStatus, "success")
+                .isNotNull(DoorAccessLog::getStaffId)
+                .isNotNull(DoorAccessLog::getRoomId)
+                .ge(DoorAccessLog::getAccessTime, LocalDateTime.now().minusHours(rebuildHours))
+                .orderByAsc(DoorAccessLog::getAccessTime));
+        for (DoorAccessLog accessLog : logs) {
+            apply(accessLog);
+        }
+        log.info("机房在场人员索引重建完成: logs={}, rooms={}, 耗时{}ms",
+                logs.size(), getRoomCounts().size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 清除超过最长停留时间的在场记录
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void expireStale() {
+        LocalDateTime expireTime = LocalDateTime.now().minusHours(maxStayHours);
+        for (Long staffId : byStaff.keySet()) {
+            byStaff.computeIfPresent(staffId, (id, presence) -> {
+                if (presence.getLastEventTime().isAfter(expireTime)) {
+                    return presence;
+                }
+                if (presence.isPresent()) {
+                    leaveRoom(presence.getRoomId(), id);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void leaveRoom(Long roomId, Long staffId) {
+        Set<Long> staffIds = byRoom.get(roomId);
+        if (staffIds != null) {
+            staffIds.remove(staffId);
+        }
+    }
+
+    /**
+     * 人员在场状态
+     */
+    @Data
+    public static class Presence {
+        private Long staffId;
+        private String staffName;
+        private Long roomId;
+        private String deviceName;
+        /**
+         * 进入时间
+         */
+        private LocalDateTime entryTime;
+        /**
+         * 最近一次通行时间
+         */
+        private LocalDateTime lastEventTime;
+        /**
+         * 是否在场（最近一次通行为进入）
+         */
+        private boolean present;
+    }
+}
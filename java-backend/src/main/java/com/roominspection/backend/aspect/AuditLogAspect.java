@@ -1,14 +1,8 @@
 package com.roominspection.backend.aspect;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.serializer.SerializerFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.roominspection.backend.annotation.AuditLog;
-import com.roominspection.backend.entity.AuditLog as AuditLogEntity;
-import com.roominspection.backend.mapper.AuditLogMapper;
 import com.roominspection.backend.security.CustomUserDetails;
-import com.roominspection.backend.util.EncryptionUtil;
-import eu.bitwalker.useragentutils.UserAgent;
+import com.roominspection.backend.security.JwtPrincipal;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -17,12 +11,15 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.time.LocalDateTime;
@@ -30,6 +27,7 @@ import java.time.LocalDateTime;
 /**
  * 操作日志切面
  * 拦截标记了@AuditLog注解的方法，自动记录操作日志
+ * 请求线程只采集轻量事件，序列化、加密、User-Agent解析和入库由AuditLogPipeline在后台完成
  */
 @Aspect
 @Component
@@ -38,10 +36,7 @@ public class AuditLogAspect {
     private static final Logger logger = LoggerFactory.getLogger(AuditLogAspect.class);
 
     @Autowired
-    private AuditLogMapper auditLogMapper;
-
-    @Autowired
-    private EncryptionUtil encryptionUtil;
+    private AuditLogPipeline auditLogPipeline;
 
     /**
      * 配置切入点：标记了@AuditLog注解的方法
@@ -66,103 +61,30 @@ public class AuditLogAspect {
         Method method = signature.getMethod();
         AuditLog auditLogAnnotation = method.getAnnotation(AuditLog.class);
 
-        // 获取当前用户信息
-        String userId = null;
-        String username = null;
-        String realName = null;
-        try {
-            CustomUserDetails userDetails = (CustomUserDetails) SecurityContextHolder
-                    .getContext()
-                    .getAuthentication()
-                    .getPrincipal();
-            if (userDetails != null) {
-                userId = userDetails.getUserId();
-                username = userDetails.getUsername();
-                realName = userDetails.getRealName();
-            }
-        } catch (Exception e) {
-            // 未登录或认证失败
-        }
-
-        // 获取请求参数
-        String params = null;
-        if (request != null && auditLogAnnotation.logParams()) {
-            try {
-                // 限制参数长度，避免过大
-                String paramsJson = JSON.toJSONString(joinPoint.getArgs(),
-                        SerializerFeature.IgnoreNonFieldGetter);
-                if (paramsJson.length() > 2000) {
-                    params = paramsJson.substring(0, 2000) + "...(已截断)";
-                } else {
-                    params = paramsJson;
-                }
-                // 加密参数
-                params = encryptionUtil.encryptJson(params);
-            } catch (Exception e) {
-                logger.error("记录操作日志参数失败", e);
-            }
-        }
-
         // 执行方法
         Object result = null;
-        String resultJson = null;
         String status = "SUCCESS";
         String errorMessage = null;
 
         try {
             result = joinPoint.proceed();
-            // 记录响应结果
-            if (result != null && auditLogAnnotation.logResult()) {
-                try {
-                    resultJson = JSON.toJSONString(result,
-                            SerializerFeature.IgnoreNonFieldGetter);
-                    // 限制结果长度
-                    if (resultJson.length() > 2000) {
-                        resultJson = resultJson.substring(0, 2000) + "...(已截断)";
-                    }
-                    // 加密结果
-                    resultJson = encryptionUtil.encryptJson(resultJson);
-                } catch (Exception e) {
-                    logger.error("记录操作日志结果失败", e);
-                }
-            }
         } catch (Throwable throwable) {
             status = "FAILED";
             errorMessage = throwable.getMessage();
             throw throwable;
         } finally {
-            // 计算执行时间
-            long executionTime = System.currentTimeMillis() - startTime;
-
-            // 构建操作日志对象
-            AuditLogEntity auditLogEntity = new AuditLogEntity();
-            auditLogEntity.setUserId(userId);
-            auditLogEntity.setUsername(username);
-            auditLogEntity.setRealName(realName);
-            if (request != null) {
-                auditLogEntity.setIp(getIpAddress(request));
-                auditLogEntity.setMethod(request.getMethod());
-                auditLogEntity.setUrl(request.getRequestURI());
-                UserAgent userAgent = UserAgent.parseUserAgentString(request.getHeader("User-Agent"));
-                auditLogEntity.setUserAgent(userAgent.toString());
-                auditLogEntity.setBrowser(userAgent.getBrowser().getName());
-                auditLogEntity.setOs(userAgent.getOperatingSystem().getName());
-            }
-            auditLogEntity.setOperationType(auditLogAnnotation.operationType());
-            auditLogEntity.setModule(auditLogAnnotation.module());
-            auditLogEntity.setDescription(auditLogAnnotation.description());
-            auditLogEntity.setParams(params);
-            auditLogEntity.setResult(resultJson);
-            auditLogEntity.setStatus(status);
-            auditLogEntity.setErrorMessage(errorMessage);
-            auditLogEntity.setExecutionTime(executionTime);
-            auditLogEntity.setCreateTime(LocalDateTime.now());
-
-            // 异步保存日志
-            if (auditLogAnnotation.async()) {
-                saveAuditLogAsync(auditLogEntity);
-            } else {
-                saveAuditLog(auditLogEntity);
+            try {
+                AuditLogPipeline.AuditEvent event = captureEvent(request, auditLogAnnotation,
+                        joinPoint.getArgs(), result, status, errorMessage,
+                        System.currentTimeMillis() - startTime);
+                // 异步模式只入缓冲区，同步模式在当前线程落库
+                if (auditLogAnnotation.async()) {
+                    auditLogPipeline.submit(event);
+                } else {
+                    auditLogPipeline.write(event);
+                }
+            } catch (Exception e) {
+                logger.error("记录操作日志失败", e);
             }
         }
 
@@ -170,22 +92,59 @@ public class AuditLogAspect {
     }
 
     /**
-     * 异步保存操作日志
+     * 采集操作日志事件（只读取请求头与上下文，不做序列化）
      */
-    @Async("taskExecutor")
-    public void saveAuditLogAsync(AuditLogEntity auditLogEntity) {
-        saveAuditLog(auditLogEntity);
+    private AuditLogPipeline.AuditEvent captureEvent(HttpServletRequest request, AuditLog annotation,
+                                                     Object[] args, Object result, String status,
+                                                     String errorMessage, long executionTime) {
+        // 获取当前用户信息
+        String userId = null;
+        String username = null;
+        String realName = null;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object principal = authentication != null ? authentication.getPrincipal() : null;
+        if (principal instanceof CustomUserDetails) {
+            CustomUserDetails userDetails = (CustomUserDetails) principal;
+            userId = userDetails.getUserId();
+            username = userDetails.getUsername();
+            realName = userDetails.getRealName();
+        } else if (principal instanceof JwtPrincipal) {
+            JwtPrincipal jwtPrincipal = (JwtPrincipal) principal;
+            userId = jwtPrincipal.getUserId();
+            username = jwtPrincipal.getUsername();
+        }
+
+        String ip = null;
+        String httpMethod = null;
+        String url = null;
+        String userAgent = null;
+        if (request != null) {
+            ip = getIpAddress(request);
+            httpMethod = request.getMethod();
+            url = request.getRequestURI();
+            userAgent = request.getHeader("User-Agent");
+        }
+
+        return new AuditLogPipeline.AuditEvent(userId, username, realName,
+                ip, httpMethod, url, userAgent,
+                annotation.operationType(), annotation.module(), annotation.description(),
+                request != null && annotation.logParams() ? loggableArgs(args) : null,
+                annotation.logResult() ? result : null,
+                status, errorMessage, executionTime, LocalDateTime.now());
     }
 
     /**
-     * 保存操作日志
+     * 过滤不可序列化的参数（请求/响应/上传文件在请求结束后失效）
      */
-    private void saveAuditLog(AuditLogEntity auditLogEntity) {
-        try {
-            auditLogMapper.insert(auditLogEntity);
-        } catch (Exception e) {
-            logger.error("保存操作日志失败", e);
+    private Object[] loggableArgs(Object[] args) {
+        Object[] copy = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (!(arg instanceof ServletRequest || arg instanceof ServletResponse || arg instanceof InputStreamSource)) {
+                copy[i] = arg;
+            }
         }
+        return copy;
     }
 
     /**
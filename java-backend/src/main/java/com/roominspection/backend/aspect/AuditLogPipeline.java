@@ -0,0 +1,577 @@
+package com.roominspection.backend.aspect;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.roominspection.backend.entity.AuditLog;
+import com.roominspection.backend.mapper.AuditLogMapper;
+import com.roominspection.backend.util.EncryptionUtil;
+import eu.bitwalker.useragentutils.UserAgent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 操作日志异步写入管道
+ * <p>
+ * 切面在请求线程上只采集轻量事件（过滤后的参数引用和结果引用），放入无锁环形缓冲区（多生产者单消费者），
+ * 后台写入线程负责序列化、截断、加密和User-Agent解析，并以多行INSERT批量落库。
+ * 数据库不可用时整批追加到本地溢出文件（每行一条JSON，写入后强制刷盘），
+ * 数据库恢复后由写入线程分批回放；回放采用至少一次语义，崩溃时可能产生重复记录。
+ * 缓冲区满时请求线程最多等待offer-timeout-ms，仍然满则把事件交给溢出队列，
+ * 由写入线程优先取出并直接写入溢出文件，事件不丢弃，请求线程也不做序列化和IO。
+ */
+@Slf4j
+@Component
+public class AuditLogPipeline {
+
+    private static final String TRUNCATED_SUFFIX = "...(已截断)";
+    private static final String SPILL_FILE = "audit-log.spill";
+    private static final String REPLAY_FILE = "audit-log.replay";
+    private static final int USER_AGENT_CACHE_SIZE = 1024;
+    private static final long OVERFLOW_LOG_INTERVAL = 1000;
+    private static final long OFFER_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Autowired
+    private AuditLogMapper auditLogMapper;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Value("${audit-log.ring-capacity:8192}")
+    private int ringCapacity;
+
+    @Value("${audit-log.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit-log.linger-ms:200}")
+    private long lingerMs;
+
+    @Value("${audit-log.max-field-length:2000}")
+    private int maxFieldLength;
+
+    @Value("${audit-log.offer-timeout-ms:20}")
+    private long offerTimeoutMs;
+
+    @Value("${audit-log.spill-dir:${user.dir}/data/spool/audit}")
+    private String spillDir;
+
+    @Value("${audit-log.replay-interval-ms:30000}")
+    private long replayIntervalMs;
+
+    private RingBuffer<AuditEvent> ringBuffer;
+
+    /**
+     * 缓冲区满时的溢出队列，只由写入线程取出并写入溢出文件
+     */
+    private final Queue<AuditEvent> overflowQueue = new ConcurrentLinkedQueue<>();
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    private Path spillPath;
+
+    private Path replayPath;
+
+    /**
+     * 溢出文件写入锁（写入线程与同步写入模式的请求线程共用，属于低频路径）
+     */
+    private final Object spillLock = new Object();
+
+    private final Map<String, UserAgentInfo> userAgentCache = new ConcurrentHashMap<>();
+
+    private final AtomicLong acceptedCount = new AtomicLong(0);
+    private final AtomicLong writtenCount = new AtomicLong(0);
+    private final AtomicLong spilledCount = new AtomicLong(0);
+    private final AtomicLong replayedCount = new AtomicLong(0);
+    private final AtomicLong overflowedCount = new AtomicLong(0);
+    private volatile long nextReplayTime = 0;
+
+    @PostConstruct
+    public void init() {
+        ringBuffer = new RingBuffer<>(ringCapacity);
+        spillPath = Paths.get(spillDir, SPILL_FILE);
+        replayPath = Paths.get(spillDir, REPLAY_FILE);
+        try {
+            Files.createDirectories(spillPath.getParent());
+        } catch (IOException e) {
+            log.error("创建操作日志溢出目录失败: dir={}, error={}", spillDir, e.getMessage());
+        }
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("操作日志写入管道已启动: ringCapacity={}, batchSize={}, spillDir={}", ringBuffer.capacity(), batchSize, spillDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 提交操作日志事件（请求线程调用，不做序列化和IO）
+     *
+     * @param event 操作日志事件
+     */
+    public void submit(AuditEvent event) {
+        acceptedCount.incrementAndGet();
+        if (ringBuffer.offer(event)) {
+            return;
+        }
+        // 缓冲区满说明写入线程暂时跟不上，有界等待片刻
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+        LockSupport.unpark(writerThread);
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(OFFER_RETRY_NANOS);
+            if (ringBuffer.offer(event)) {
+                return;
+            }
+        }
+        // 仍然满则交给写入线程直接写溢出文件，不丢弃也不在请求线程上刷盘
+        overflowQueue.offer(event);
+        LockSupport.unpark(writerThread);
+        long overflowed = overflowedCount.incrementAndGet();
+        if (overflowed == 1 || overflowed % OVERFLOW_LOG_INTERVAL == 0) {
+            log.warn("操作日志缓冲区已满，事件转入溢出文件: overflowed={}, url={}", overflowed, event.url);
+        }
+    }
+
+    /**
+     * 同步写入操作日志（注解指定async=false时使用）
+     *
+     * @param event 操作日志事件
+     */
+    public void write(AuditEvent event) {
+        acceptedCount.incrementAndGet();
+        persist(Collections.singletonList(toEntity(event)));
+    }
+
+    /**
+     * 获取管道统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", ringBuffer.size());
+        stats.put("accepted", acceptedCount.get());
+        stats.put("written", writtenCount.get());
+        stats.put("spilled", spilledCount.get());
+        stats.put("replayed", replayedCount.get());
+        stats.put("overflowed", overflowedCount.get());
+        stats.put("spillFileExists", Files.exists(spillPath) || Files.exists(replayPath));
+        return stats;
+    }
+
+    /**
+     * 写入线程主循环：攒批转换并落库，空闲时等待linger时间
+     */
+    private void runWriter() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (true) {
+            boolean stopping = !running;
+            spillOverflow();
+            AuditEvent event;
+            while (batch.size() < batchSize && (event = ringBuffer.poll()) != null) {
+                try {
+                    batch.add(toEntity(event));
+                } catch (Exception e) {
+                    log.error("转换操作日志失败: url={}, error={}", event.url, e.getMessage());
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                persist(batch);
+                batch = new ArrayList<>(batchSize);
+                continue;
+            }
+            if (stopping) {
+                break;
+            }
+
+            if (System.currentTimeMillis() >= nextReplayTime) {
+                replaySpill();
+            }
+            LockSupport.parkNanos(lingerNanos);
+        }
+    }
+
+    /**
+     * 把溢出队列中的事件转换后直接写入溢出文件，由回放落库
+     */
+    private void spillOverflow() {
+        if (overflowQueue.isEmpty()) {
+            return;
+        }
+        List<AuditLog> logs = new ArrayList<>(batchSize);
+        AuditEvent event;
+        while ((event = overflowQueue.poll()) != null) {
+            try {
+                logs.add(toEntity(event));
+            } catch (Exception e) {
+                log.error("转换操作日志失败: url={}, error={}", event.url, e.getMessage());
+            }
+            if (logs.size() >= batchSize) {
+                spill(logs);
+                logs = new ArrayList<>(batchSize);
+            }
+        }
+        if (!logs.isEmpty()) {
+            spill(logs);
+        }
+        nextReplayTime = System.currentTimeMillis() + replayIntervalMs;
+    }
+
+    /**
+     * 批量落库，失败时写入溢出文件
+     */
+    private void persist(List<AuditLog> logs) {
+        try {
+            auditLogMapper.insertBatch(logs);
+            writtenCount.addAndGet(logs.size());
+        } catch (Exception e) {
+            log.error("批量保存操作日志失败，写入溢出文件: count={}, error={}", logs.size(), e.getMessage());
+            spill(logs);
+            nextReplayTime = System.currentTimeMillis() + replayIntervalMs;
+        }
+    }
+
+    /**
+     * 追加到溢出文件（每行一条JSON，写完强制刷盘，保证崩溃后已确认的记录不丢）
+     */
+    private void spill(List<AuditLog> logs) {
+        StringBuilder lines = new StringBuilder();
+        for (AuditLog auditLog : logs) {
+            lines.append(JSON.toJSONString(auditLog)).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (spillLock) {
+            try (FileChannel channel = FileChannel.open(spillPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                spilledCount.addAndGet(logs.size());
+            } catch (IOException e) {
+                log.error("写入操作日志溢出文件失败，日志丢失: count={}, error={}", logs.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 回放溢出文件：先把溢出文件原子改名为回放文件，再分批落库；
+     * 回放失败时剩余记录重新追加到溢出文件，下个周期再试
+     */
+    private void replaySpill() {
+        nextReplayTime = System.currentTimeMillis() + replayIntervalMs;
+        synchronized (spillLock) {
+            if (!Files.exists(replayPath)) {
+                if (!Files.exists(spillPath)) {
+                    return;
+                }
+                try {
+                    Files.move(spillPath, replayPath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    log.error("准备回放操作日志溢出文件失败: error={}", e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AuditLog auditLog = parseSpillLine(line);
+                if (auditLog != null) {
+                    batch.add(auditLog);
+                }
+                if (batch.size() >= batchSize) {
+                    auditLogMapper.insertBatch(batch);
+                    replayed += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                auditLogMapper.insertBatch(batch);
+                replayed += batch.size();
+                batch = new ArrayList<>();
+            }
+            Files.delete(replayPath);
+            replayedCount.addAndGet(replayed);
+            log.info("操作日志溢出文件回放完成: count={}", replayed);
+        } catch (Exception e) {
+            log.warn("回放操作日志溢出文件失败，稍后重试: replayed={}, error={}", replayed, e.getMessage());
+            replayedCount.addAndGet(replayed);
+            requeueRemaining(replayed);
+        }
+    }
+
+    /**
+     * 回放中断时把回放文件中未写入的记录追加回溢出文件
+     */
+    private void requeueRemaining(long skip) {
+        List<AuditLog> remaining = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            long index = 0;
+            while ((line = reader.readLine()) != null) {
+                AuditLog auditLog = parseSpillLine(line);
+                if (auditLog != null && index++ >= skip) {
+                    remaining.add(auditLog);
+                }
+            }
+        } catch (IOException e) {
+            // 读取失败时保留回放文件，下次直接从回放文件继续
+            log.error("读取操作日志回放文件失败: error={}", e.getMessage());
+            return;
+        }
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+            spilledCount.addAndGet(-remaining.size());
+        }
+        try {
+            Files.deleteIfExists(replayPath);
+        } catch (IOException e) {
+            log.error("删除操作日志回放文件失败: error={}", e.getMessage());
+        }
+    }
+
+    /**
+     * 解析溢出文件中的一行，崩溃时写了一半的末行直接跳过
+     */
+    private AuditLog parseSpillLine(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        try {
+            return JSON.parseObject(line, AuditLog.class);
+        } catch (Exception e) {
+            log.warn("跳过无法解析的操作日志溢出记录: length={}", line.length());
+            return null;
+        }
+    }
+
+    /**
+     * 事件转换为实体：序列化、截断、加密、解析User-Agent（在写入线程执行）
+     */
+    private AuditLog toEntity(AuditEvent event) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setUserId(event.userId);
+        auditLog.setUsername(event.username);
+        auditLog.setRealName(event.realName);
+        auditLog.setIp(event.ip);
+        auditLog.setMethod(event.method);
+        auditLog.setUrl(event.url);
+        auditLog.setOperationType(event.operationType);
+        auditLog.setModule(event.module);
+        auditLog.setDescription(event.description);
+        auditLog.setStatus(event.status);
+        auditLog.setErrorMessage(event.errorMessage);
+        auditLog.setExecutionTime(event.executionTime);
+        auditLog.setCreateTime(event.createTime);
+
+        String argsJson = serialize(event.args, "参数");
+        if (argsJson != null) {
+            auditLog.setParams(truncateAndEncrypt(argsJson, "参数"));
+        }
+        String resultJson = serialize(event.result, "结果");
+        if (resultJson != null) {
+            auditLog.setResult(truncateAndEncrypt(resultJson, "结果"));
+        }
+
+        if (event.userAgent != null) {
+            UserAgentInfo info = parseUserAgent(event.userAgent);
+            auditLog.setUserAgent(info.text);
+            auditLog.setBrowser(info.browser);
+            auditLog.setOs(info.os);
+        }
+        return auditLog;
+    }
+
+    private static String serialize(Object value, String what) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return JSON.toJSONString(value, SerializerFeature.IgnoreNonFieldGetter);
+        } catch (Exception e) {
+            log.error("序列化操作日志{}失败: error={}", what, e.getMessage());
+            return null;
+        }
+    }
+
+    private String truncateAndEncrypt(String json, String what) {
+        try {
+            // 限制长度，避免过大
+            if (json.length() > maxFieldLength) {
+                json = json.substring(0, maxFieldLength) + TRUNCATED_SUFFIX;
+            }
+            return encryptionUtil.encryptJson(json);
+        } catch (Exception e) {
+            log.error("记录操作日志{}失败: error={}", what, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解析User-Agent（同一浏览器的UA字符串高度重复，缓存解析结果）
+     */
+    private UserAgentInfo parseUserAgent(String header) {
+        UserAgentInfo info = userAgentCache.get(header);
+        if (info == null) {
+            UserAgent userAgent = UserAgent.parseUserAgentString(header);
+            info = new UserAgentInfo(userAgent.toString(),
+                    userAgent.getBrowser().getName(),
+                    userAgent.getOperatingSystem().getName());
+            if (userAgentCache.size() >= USER_AGENT_CACHE_SIZE) {
+                userAgentCache.clear();
+            }
+            userAgentCache.put(header, info);
+        }
+        return info;
+    }
+
+    /**
+     * 操作日志事件（切面在请求线程上采集的轻量快照）
+     * 参数数组在构造时复制，参数与结果只保留引用，序列化在写入线程进行
+     */
+    public static final class AuditEvent {
+        private final String userId;
+        private final String username;
+        private final String realName;
+        private final String ip;
+        private final String method;
+        private final String url;
+        private final String userAgent;
+        private final String operationType;
+        private final String module;
+        private final String description;
+        private final Object[] args;
+        private final Object result;
+        private final String status;
+        private final String errorMessage;
+        private final long executionTime;
+        private final LocalDateTime createTime;
+
+        public AuditEvent(String userId, String username, String realName,
+                          String ip, String method, String url, String userAgent,
+                          String operationType, String module, String description,
+                          Object[] args, Object result, String status, String errorMessage,
+                          long executionTime, LocalDateTime createTime) {
+            this.userId = userId;
+            this.username = username;
+            this.realName = realName;
+            this.ip = ip;
+            this.method = method;
+            this.url = url;
+            this.userAgent = userAgent;
+            this.operationType = operationType;
+            this.module = module;
+            this.description = description;
+            this.args = args != null ? args.clone() : null;
+            this.result = result;
+            this.status = status;
+            this.errorMessage = errorMessage;
+            this.executionTime = executionTime;
+            this.createTime = createTime;
+        }
+    }
+
+    private static final class UserAgentInfo {
+        private final String text;
+        private final String browser;
+        private final String os;
+
+        UserAgentInfo(String text, String browser, String os) {
+            this.text = text;
+            this.browser = browser;
+            this.os = os;
+        }
+    }
+
+    /**
+     * 有界无锁环形缓冲区（多生产者CAS占位，单消费者读取）
+     */
+    static final class RingBuffer<E> {
+
+        private final AtomicReferenceArray<E> slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong(0);
+        private final AtomicLong head = new AtomicLong(0);
+
+        RingBuffer(int requestedCapacity) {
+            int capacity = 1;
+            while (capacity < requestedCapacity) {
+                capacity <<= 1;
+            }
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        boolean offer(E element) {
+            while (true) {
+                long t = tail.get();
+                if (t - head.get() >= slots.length()) {
+                    return false;
+                }
+                if (tail.compareAndSet(t, t + 1)) {
+                    slots.lazySet((int) (t & mask), element);
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 仅由单个消费者线程调用；生产者已占位但尚未发布的槽位视为暂时为空
+         */
+        E poll() {
+            long h = head.get();
+            int index = (int) (h & mask);
+            E element = slots.get(index);
+            if (element == null) {
+                return null;
+            }
+            slots.lazySet(index, null);
+            head.lazySet(h + 1);
+            return element;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+    }
+}
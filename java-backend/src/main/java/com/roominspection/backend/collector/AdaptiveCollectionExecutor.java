@@ -0,0 +1,678 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.MonitorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 自适应并发采集执行器
+ * <p>
+ * 取代固定大小的采集线程池，按以下规则控制同时进行的设备采集数：
+ * <ul>
+ *     <li>每种设备类型不超过监控配置的并发数限制（concurrencyLimit），每个机房不超过机房并发上限</li>
+ *     <li>整体并发上限按AIMD自适应：正常完成时缓慢加一，超时、失败或延迟明显高于长期均值时按比例收缩</li>
+ *     <li>连续失败、超时或持续慢响应的设备隔离到独立的舱壁（少量专用线程），不占用健康设备的线程与配额，
+ *     恢复正常响应后自动回到常规通道</li>
+ * </ul>
+ * 超时与重试取自监控配置（timeout、retries）；同一设备上一轮未结束时不重复提交。
+ * <p>
+ * 除线程通道外另有异步通道：提交的是返回Future的非阻塞采集（如共享会话上的SNMP读取），
+ * 派发时只发出请求，等待响应期间不占用线程，在途数可到数千；完成后的处理交给少量完成线程，
+ * 不占用SNMP分发线程。配额、AIMD与慢设备隔离规则与线程通道相同。
+ * <p>
+ * 超时由看门狗线程判定，但采集结果Future的完成（以及调用方挂在其上的后续处理）一律交给完成线程，
+ * 看门狗线程只做判定与中断。每次执行对应一个状态机，看门狗与执行线程以CAS争夺结束权，
+ * 中断只在看门狗赢得结束权、且执行线程确认收到中断后才清除，不会泄漏到线程池中的下一个任务。
+ */
+@Slf4j
+@Component
+public class AdaptiveCollectionExecutor {
+
+    /**
+     * 适用于所有设备类型的兜底配置
+     */
+    private static final String ALL_DEVICE_TYPE = "ALL";
+
+    @Value("${monitor.collect.max-threads:64}")
+    private int maxThreads;
+
+    @Value("${monitor.collect.isolated-threads:8}")
+    private int isolatedThreads;
+
+    @Value("${monitor.collect.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${monitor.collect.min-limit:4}")
+    private int minLimit;
+
+    @Value("${monitor.collect.room-limit:16}")
+    private int roomLimit;
+
+    @Value("${monitor.collect.default-timeout-ms:10000}")
+    private long defaultTimeoutMs;
+
+    @Value("${monitor.collect.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${monitor.collect.isolate-after-failures:3}")
+    private int isolateAfterFailures;
+
+    @Value("${monitor.collect.slow-latency-ms:5000}")
+    private long slowLatencyMs;
+
+    @Value("${monitor.collect.async-max-in-flight:2000}")
+    private int asyncMaxInFlight;
+
+    @Value("${monitor.collect.async-initial-limit:200}")
+    private int asyncInitialLimit;
+
+    @Value("${monitor.collect.async-room-limit:256}")
+    private int asyncRoomLimit;
+
+    @Value("${monitor.collect.async-completion-threads:4}")
+    private int asyncCompletionThreads;
+
+    /**
+     * 线程名前缀（压测用的独立实例使用不同前缀）
+     */
+    private String threadPrefix = "monitor-collect";
+
+    /**
+     * 设备类型 -> 监控配置
+     */
+    private volatile Map<String, MonitorConfig> configByType = Collections.emptyMap();
+
+    /**
+     * 设备ID -> 健康状态
+     */
+    private final ConcurrentHashMap<String, DeviceHealth> health = new ConcurrentHashMap<>();
+
+    /**
+     * 已提交尚未真正结束的设备（超时后仍在阻塞中的也算在内）
+     */
+    private final Set<String> activeDevices = ConcurrentHashMap.newKeySet();
+
+    private Lane normalLane;
+    private Lane isolatedLane;
+    private Lane asyncLane;
+    private Lane asyncIsolatedLane;
+    private ScheduledExecutorService watchdog;
+    private ExecutorService completionPool;
+
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+    private final AtomicLong retryCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong duplicateCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        int normalMax = Math.max(1, maxThreads);
+        normalLane = new Lane("normal", normalMax, roomLimit,
+                new AimdLimit(Math.min(initialLimit, normalMax), Math.min(minLimit, normalMax), normalMax));
+        int isolatedMax = Math.max(1, isolatedThreads);
+        isolatedLane = new Lane("isolated", isolatedMax, roomLimit, new AimdLimit(isolatedMax, 1, isolatedMax));
+
+        int asyncMax = Math.max(1, asyncMaxInFlight);
+        asyncLane = new Lane("async", 0, asyncRoomLimit,
+                new AimdLimit(Math.min(asyncInitialLimit, asyncMax), Math.min(minLimit, asyncMax), asyncMax));
+        // 隔离设备在异步通道中的在途数与线程通道的隔离舱壁一致
+        asyncIsolatedLane = new Lane("async-isolated", 0, asyncRoomLimit, new AimdLimit(isolatedMax, 1, isolatedMax));
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadPrefix + "-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        completionPool = Executors.newFixedThreadPool(Math.max(1, asyncCompletionThreads), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, threadPrefix + "-complete-" + threadNumber.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        log.info("自适应采集执行器初始化完成: maxThreads={}, isolatedThreads={}, initialLimit={}, roomLimit={}, asyncMaxInFlight={}",
+                normalMax, isolatedMax, normalLane.limit.get(), roomLimit, asyncMax);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        normalLane.pool.shutdownNow();
+        isolatedLane.pool.shutdownNow();
+        watchdog.shutdownNow();
+        completionPool.shutdownNow();
+    }
+
+    /**
+     * 创建参数与监控配置相同、但线程、配额、在途上限与设备健康状态完全独立的执行器实例
+     * 用于压测等一次性任务，不与生产采集争用；使用完毕后须调用 {@link #shutdown()}
+     *
+     * @param threadPrefix 线程名前缀
+     * @return 已初始化的独立实例
+     */
+    public AdaptiveCollectionExecutor newIsolatedInstance(String threadPrefix) {
+        AdaptiveCollectionExecutor copy = new AdaptiveCollectionExecutor();
+        copy.threadPrefix = threadPrefix;
+        copy.maxThreads = maxThreads;
+        copy.isolatedThreads = isolatedThreads;
+        copy.initialLimit = initialLimit;
+        copy.minLimit = minLimit;
+        copy.roomLimit = roomLimit;
+        copy.defaultTimeoutMs = defaultTimeoutMs;
+        copy.maxPending = maxPending;
+        copy.isolateAfterFailures = isolateAfterFailures;
+        copy.slowLatencyMs = slowLatencyMs;
+        copy.asyncMaxInFlight = asyncMaxInFlight;
+        copy.asyncInitialLimit = asyncInitialLimit;
+        copy.asyncRoomLimit = asyncRoomLimit;
+        copy.asyncCompletionThreads = asyncCompletionThreads;
+        copy.configByType = configByType;
+        copy.init();
+        return copy;
+    }
+
+    /**
+     * 刷新监控配置（并发数限制、超时、重试次数）
+     *
+     * @param configs 启用的监控配置
+     */
+    public void updateConfigs(List<MonitorConfig> configs) {
+        Map<String, MonitorConfig> map = new HashMap<>();
+        for (MonitorConfig config : configs) {
+            if (config.getDeviceType() != null) {
+                map.putIfAbsent(config.getDeviceType(), config);
+            }
+        }
+        configByType = map;
+        // 配额可能放宽，重新派发等待中的任务
+        normalLane.drain();
+        isolatedLane.drain();
+        asyncLane.drain();
+        asyncIsolatedLane.drain();
+    }
+
+    /**
+     * 提交设备采集
+     *
+     * @param device 设备
+     * @param call   采集动作（设备I/O）
+     * @return 采集结果，超时以TimeoutException结束，被拒绝时以RejectedExecutionException结束
+     */
+    public <T> CompletableFuture<T> submit(Device device, Callable<T> call) {
+        Job<T> job = new Job<>(device, new CompletableFuture<>());
+        job.call = call;
+        return submit(job);
+    }
+
+    /**
+     * 提交非阻塞设备采集
+     *
+     * @param device 设备
+     * @param call   发出请求并返回结果Future的采集动作，不得在其中阻塞等待
+     * @return 采集结果，超时以TimeoutException结束，被拒绝时以RejectedExecutionException结束
+     */
+    public <T> CompletableFuture<T> submitAsync(Device device, Supplier<CompletableFuture<T>> call) {
+        Job<T> job = new Job<>(device, new CompletableFuture<>());
+        job.asyncCall = call;
+        return submit(job);
+    }
+
+    private <T> CompletableFuture<T> submit(Job<T> job) {
+        Device device = job.device;
+        CompletableFuture<T> future = job.future;
+        String deviceId = device.getId();
+        if (!activeDevices.add(deviceId)) {
+            duplicateCount.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("设备上一轮采集尚未结束: " + deviceId));
+            return future;
+        }
+
+        MonitorConfig config = resolveConfig(device.getType());
+        job.typeKey = device.getType() != null ? device.getType() : "";
+        job.roomKey = device.getRoomId() != null ? device.getRoomId() : "";
+        job.typeLimit = config != null && config.getConcurrencyLimit() != null && config.getConcurrencyLimit() > 0
+                ? config.getConcurrencyLimit() : Integer.MAX_VALUE;
+        job.timeoutMs = config != null && config.getTimeout() != null && config.getTimeout() > 0
+                ? config.getTimeout() : defaultTimeoutMs;
+        job.retriesLeft = config != null && config.getRetries() != null ? Math.max(0, config.getRetries()) : 0;
+
+        Lane lane = laneOf(job);
+        if (!lane.enqueue(job)) {
+            activeDevices.remove(deviceId);
+            rejectedCount.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("采集等待队列已满"));
+            return future;
+        }
+        lane.drain();
+        return future;
+    }
+
+    /**
+     * 设备是否已被隔离到慢设备舱壁
+     */
+    public boolean isIsolated(String deviceId) {
+        DeviceHealth h = health.get(deviceId);
+        return h != null && h.isolated;
+    }
+
+    /**
+     * 等待中与执行中的采集数
+     */
+    public int getActiveCount() {
+        return activeDevices.size();
+    }
+
+    /**
+     * 获取执行器统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("normal", normalLane.statistics());
+        stats.put("isolated", isolatedLane.statistics());
+        stats.put("async", asyncLane.statistics());
+        stats.put("asyncIsolated", asyncIsolatedLane.statistics());
+        long isolated = health.values().stream().filter(h -> h.isolated).count();
+        stats.put("isolatedDevices", isolated);
+        stats.put("timeouts", timeoutCount.get());
+        stats.put("retries", retryCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("duplicates", duplicateCount.get());
+        return stats;
+    }
+
+    private MonitorConfig resolveConfig(String deviceType) {
+        Map<String, MonitorConfig> configs = configByType;
+        MonitorConfig config = deviceType != null ? configs.get(deviceType) : null;
+        return config != null ? config : configs.get(ALL_DEVICE_TYPE);
+    }
+
+    private Lane laneOf(Job<?> job) {
+        boolean isolated = isIsolated(job.device.getId());
+        if (job.asyncCall != null) {
+            return isolated ? asyncIsolatedLane : asyncLane;
+        }
+        return isolated ? isolatedLane : normalLane;
+    }
+
+    /**
+     * 在通道线程中执行阻塞采集
+     */
+    private <T> void run(Lane lane, Job<T> job) {
+        Attempt attempt = new Attempt(Thread.currentThread());
+        long start = System.nanoTime();
+        ScheduledFuture<?> timer = watchdog.schedule(() -> onTimeout(job, attempt), job.timeoutMs, TimeUnit.MILLISECONDS);
+
+        T value = null;
+        Throwable error = null;
+        boolean timedOut;
+        try {
+            value = job.call.call();
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            timer.cancel(false);
+            timedOut = !attempt.finish();
+            // 清除超时触发的中断标记，避免影响线程池中的下一个任务
+            Thread.interrupted();
+        }
+        complete(lane, job, value, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), timedOut);
+    }
+
+    /**
+     * 发出非阻塞采集，结果在完成线程中处理
+     */
+    private <T> void start(Lane lane, Job<T> job) {
+        Attempt attempt = new Attempt(null);
+        long start = System.nanoTime();
+        ScheduledFuture<?> timer = watchdog.schedule(() -> onTimeout(job, attempt), job.timeoutMs, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<T> call;
+        try {
+            call = job.asyncCall.get();
+        } catch (Exception e) {
+            call = new CompletableFuture<>();
+            call.completeExceptionally(e);
+        }
+        call.whenComplete((value, error) -> {
+            timer.cancel(false);
+            boolean timedOut = !attempt.finish();
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            try {
+                completionPool.execute(() -> complete(lane, job, value, cause, latencyMs, timedOut));
+            } catch (RejectedExecutionException e) {
+                lane.release(job);
+                finish(job);
+                job.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * 采集结束：归还配额、更新上限与设备健康状态，失败时按剩余次数重试
+     */
+    private <T> void complete(Lane lane, Job<T> job, T value, Throwable error, long latencyMs, boolean timedOut) {
+        lane.release(job);
+
+        String deviceId = job.device.getId();
+        DeviceHealth h = health.computeIfAbsent(deviceId, k -> new DeviceHealth());
+        if (timedOut) {
+            // 已超时结束，超时已在看门狗中计入，这里只归还配额
+            finish(job);
+        } else if (error == null) {
+            lane.limit.onSample(latencyMs, false);
+            h.onSuccess(latencyMs);
+            finish(job);
+            job.future.complete(value);
+        } else if (job.retriesLeft > 0) {
+            job.retriesLeft--;
+            retryCount.incrementAndGet();
+            lane.limit.onSample(latencyMs, true);
+            Lane next = laneOf(job);
+            if (next.enqueue(job)) {
+                next.drain();
+            } else {
+                finish(job);
+                job.future.completeExceptionally(error);
+            }
+        } else {
+            lane.limit.onSample(latencyMs, true);
+            h.onFailure();
+            finish(job);
+            job.future.completeExceptionally(error);
+        }
+        updateIsolation(deviceId, h);
+        lane.drain();
+    }
+
+    /**
+     * 看门狗判定超时：只做中断与计数，结果Future交给完成线程结束，
+     * 避免调用方的后续处理（如指标落库）占用唯一的看门狗线程
+     */
+    private <T> void onTimeout(Job<T> job, Attempt attempt) {
+        if (!attempt.timeout()) {
+            return;
+        }
+        timeoutCount.incrementAndGet();
+        String deviceId = job.device.getId();
+        DeviceHealth h = health.computeIfAbsent(deviceId, k -> new DeviceHealth());
+        h.onTimeout();
+        job.lane.limit.onSample(job.timeoutMs, true);
+        updateIsolation(deviceId, h);
+
+        TimeoutException timeout = new TimeoutException("设备采集超时: " + job.timeoutMs + "ms");
+        try {
+            completionPool.execute(() -> job.future.completeExceptionally(timeout));
+        } catch (RejectedExecutionException e) {
+            job.future.completeExceptionally(timeout);
+        }
+    }
+
+    private void finish(Job<?> job) {
+        activeDevices.remove(job.device.getId());
+    }
+
+    private void updateIsolation(String deviceId, DeviceHealth h) {
+        synchronized (h) {
+            boolean unhealthy = h.consecutiveFailures >= isolateAfterFailures || h.ewmaLatencyMs > slowLatencyMs;
+            if (!h.isolated && unhealthy) {
+                h.isolated = true;
+                log.warn("设备响应异常，隔离到慢设备通道: deviceId={}, failures={}, latency={}ms",
+                        deviceId, h.consecutiveFailures, (long) h.ewmaLatencyMs);
+            } else if (h.isolated && h.consecutiveFailures == 0 && h.ewmaLatencyMs <= slowLatencyMs / 2.0) {
+                h.isolated = false;
+                log.info("设备响应恢复，回到常规采集通道: deviceId={}", deviceId);
+            }
+        }
+    }
+
+    /**
+     * 采集通道：独立线程（异步通道没有线程）、独立并发上限与类型/机房配额
+     */
+    private final class Lane {
+        private final String name;
+        private final ThreadPoolExecutor pool;
+        private final int roomLimit;
+        private final AimdLimit limit;
+        private final ArrayDeque<Job<?>> pending = new ArrayDeque<>();
+        private final Map<String, Integer> typeInFlight = new HashMap<>();
+        private final Map<String, Integer> roomInFlight = new HashMap<>();
+        private int inFlight;
+        private int peakInFlight;
+
+        Lane(String name, int threads, int roomLimit, AimdLimit limit) {
+            this.name = name;
+            this.roomLimit = roomLimit;
+            this.limit = limit;
+            if (threads <= 0) {
+                this.pool = null;
+                return;
+            }
+            // 只有取得配额的任务才会进入线程池，队列长度不超过线程数
+            this.pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, threadPrefix + "-" + name + "-" + threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            this.pool.allowCoreThreadTimeOut(true);
+        }
+
+        synchronized boolean enqueue(Job<?> job) {
+            if (pending.size() >= maxPending) {
+                return false;
+            }
+            pending.addLast(job);
+            return true;
+        }
+
+        /**
+         * 派发等待中的任务：跳过类型或机房配额已满的任务，避免个别机房阻塞队头
+         */
+        void drain() {
+            List<Job<?>> startable = new ArrayList<>();
+            synchronized (this) {
+                int currentLimit = limit.get();
+                Iterator<Job<?>> it = pending.iterator();
+                while (inFlight < currentLimit && it.hasNext()) {
+                    Job<?> job = it.next();
+                    if (typeInFlight.getOrDefault(job.typeKey, 0) >= job.typeLimit
+                            || roomInFlight.getOrDefault(job.roomKey, 0) >= roomLimit) {
+                        continue;
+                    }
+                    it.remove();
+                    inFlight++;
+                    typeInFlight.merge(job.typeKey, 1, Integer::sum);
+                    roomInFlight.merge(job.roomKey, 1, Integer::sum);
+                    job.lane = this;
+                    startable.add(job);
+                }
+                peakInFlight = Math.max(peakInFlight, inFlight);
+            }
+            for (Job<?> job : startable) {
+                if (pool == null) {
+                    start(this, job);
+                    continue;
+                }
+                try {
+                    pool.execute(() -> run(this, job));
+                } catch (RejectedExecutionException e) {
+                    release(job);
+                    finish(job);
+                    job.future.completeExceptionally(e);
+                }
+            }
+        }
+
+        synchronized void release(Job<?> job) {
+            inFlight--;
+            typeInFlight.computeIfPresent(job.typeKey, (k, v) -> v > 1 ? v - 1 : null);
+            roomInFlight.computeIfPresent(job.roomKey, (k, v) -> v > 1 ? v - 1 : null);
+        }
+
+        synchronized Map<String, Object> statistics() {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("limit", limit.get());
+            stats.put("inFlight", inFlight);
+            stats.put("pending", pending.size());
+            stats.put("peakInFlight", peakInFlight);
+            stats.put("threads", pool != null ? pool.getPoolSize() : 0);
+            stats.put("avgLatencyMs", (long) limit.longLatencyMs);
+            stats.put("typeInFlight", new HashMap<>(typeInFlight));
+            stats.put("roomInFlight", new HashMap<>(roomInFlight));
+            return stats;
+        }
+    }
+
+    /**
+     * AIMD并发上限：正常完成时每轮（limit个样本）加一；失败、超时或延迟超过长期均值的容忍倍数时乘性收缩
+     */
+    private static final class AimdLimit {
+        private static final double BACKOFF_RATIO = 0.9;
+        private static final double LATENCY_TOLERANCE = 2.0;
+        private static final double LONG_WINDOW_ALPHA = 0.02;
+
+        private final int min;
+        private final int max;
+        private double limit;
+        private double longLatencyMs = -1;
+
+        AimdLimit(int initial, int min, int max) {
+            this.min = Math.max(1, min);
+            this.max = Math.max(this.min, max);
+            this.limit = Math.max(this.min, Math.min(this.max, initial));
+        }
+
+        synchronized int get() {
+            return (int) limit;
+        }
+
+        synchronized void onSample(long latencyMs, boolean dropped) {
+            boolean congested = dropped
+                    || (longLatencyMs > 0 && latencyMs > longLatencyMs * LATENCY_TOLERANCE);
+            if (!dropped) {
+                longLatencyMs = longLatencyMs < 0 ? latencyMs
+                        : longLatencyMs + LONG_WINDOW_ALPHA * (latencyMs - longLatencyMs);
+            }
+            if (congested) {
+                limit = Math.max(min, limit * BACKOFF_RATIO);
+            } else {
+                limit = Math.min(max, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    /**
+     * 设备健康状态
+     */
+    private static final class DeviceHealth {
+        private static final double ALPHA = 0.3;
+
+        private volatile double ewmaLatencyMs;
+        private volatile int consecutiveFailures;
+        private volatile boolean isolated;
+
+        synchronized void onSuccess(long latencyMs) {
+            consecutiveFailures = 0;
+            ewmaLatencyMs = ewmaLatencyMs == 0 ? latencyMs : ewmaLatencyMs + ALPHA * (latencyMs - ewmaLatencyMs);
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+        }
+
+        synchronized void onTimeout() {
+            // 超时直接隔离，不必等待连续失败计数
+            consecutiveFailures = Integer.MAX_VALUE / 2;
+        }
+    }
+
+    /**
+     * 单次执行的结束权：执行线程正常结束与看门狗超时二者只有一方成功
+     */
+    private static final class Attempt {
+        private static final int RUNNING = 0;
+        private static final int FINISHED = 1;
+        private static final int INTERRUPTING = 2;
+        private static final int TIMED_OUT = 3;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        /**
+         * 执行线程（异步通道为null，不需要中断）
+         */
+        private final Thread runner;
+
+        Attempt(Thread runner) {
+            this.runner = runner;
+        }
+
+        /**
+         * 看门狗争夺结束权，成功时中断执行线程
+         *
+         * @return true-判定超时
+         */
+        boolean timeout() {
+            if (!state.compareAndSet(RUNNING, INTERRUPTING)) {
+                return false;
+            }
+            if (runner != null) {
+                runner.interrupt();
+            }
+            state.set(TIMED_OUT);
+            return true;
+        }
+
+        /**
+         * 执行线程争夺结束权；已被判定超时时等待中断送达，调用方随后清除中断标记
+         *
+         * @return true-正常结束，false-已超时
+         */
+        boolean finish() {
+            if (state.compareAndSet(RUNNING, FINISHED)) {
+                return true;
+            }
+            while (state.get() == INTERRUPTING) {
+                Thread.yield();
+            }
+            return false;
+        }
+    }
+
+    private static final class Job<T> {
+        private final Device device;
+        private final CompletableFuture<T> future;
+        private Callable<T> call;
+        private Supplier<CompletableFuture<T>> asyncCall;
+        private volatile Lane lane;
+        private String typeKey;
+        private String roomKey;
+        private int typeLimit;
+        private long timeoutMs;
+        private int retriesLeft;
+
+        Job(Device device, CompletableFuture<T> future) {
+            this.device = device;
+            this.future = future;
+        }
+    }
+}
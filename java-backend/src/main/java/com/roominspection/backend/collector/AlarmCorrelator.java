@@ -0,0 +1,441 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.AlarmRecord;
+import com.roominspection.backend.mapper.AlarmRecordMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警关联器
+ * 位于告警落库之前：按指纹（设备+类型+级别）在时间窗口内去重，重复告警只累加发生次数；
+ * 去重窗口过期后先按指纹查询仍未解决的告警，存在时继续累加到该告警，不会为同一指纹产生第二条活动告警；
+ * 同一指纹短时间内反复产生/恢复视为抖动，抖动期间不再新建告警（上一条告警已解决时重新打开并通知一次）；
+ * 同一机房短时间内新告警过多时生成机房父告警，其余告警作为子告警归并且不单独通知
+ */
+@Slf4j
+@Component
+public class AlarmCorrelator {
+
+    /**
+     * 关联结果
+     */
+    public enum Outcome {
+        /**
+         * 新告警，需要落库
+         */
+        NEW,
+        /**
+         * 去重窗口内的重复告警，已累加到现有告警
+         */
+        DUPLICATE,
+        /**
+         * 抖动中的告警，已累加到上一条告警
+         */
+        FLAPPING,
+        /**
+         * 抖动中的告警，上一条告警已解决，需由调用方重新打开并通知
+         */
+        REOPENED
+    }
+
+    private static final String STORM_ALARM_TYPE = "OTHER";
+    private static final String STORM_ALARM_SOURCE = "CORRELATION";
+
+    @Autowired
+    private AlarmRecordMapper alarmRecordMapper;
+
+    @Value("${alarm-correlation.dedup-window-seconds:300}")
+    private long dedupWindowSeconds;
+
+    @Value("${alarm-correlation.flap-window-seconds:600}")
+    private long flapWindowSeconds;
+
+    @Value("${alarm-correlation.flap-threshold:4}")
+    private int flapThreshold;
+
+    @Value("${alarm-correlation.storm-window-seconds:60}")
+    private long stormWindowSeconds;
+
+    @Value("${alarm-correlation.storm-threshold:20}")
+    private int stormThreshold;
+
+    /**
+     * 指纹 -> 关联状态
+     */
+    private final Map<String, FingerprintState> fingerprints = new HashMap<>();
+
+    /**
+     * 机房ID -> 风暴状态
+     */
+    private final Map<String, RoomStorm> storms = new HashMap<>();
+
+    /**
+     * 写回失败的发生次数（告警ID -> 累加记录），下次写回时合并重试
+     */
+    private final Map<String, AlarmRecord> unflushed = new LinkedHashMap<>();
+
+    private final AtomicLong duplicateCount = new AtomicLong(0);
+    private final AtomicLong flappingCount = new AtomicLong(0);
+    private final AtomicLong stormChildCount = new AtomicLong(0);
+
+    /**
+     * 对一条待创建的告警做关联判断（告警ID需已分配）
+     *
+     * @param alarm 待创建的告警
+     * @return 关联决策
+     */
+    public synchronized Decision correlate(AlarmRecord alarm) {
+        long now = System.currentTimeMillis();
+        String fingerprint = fingerprint(alarm);
+        alarm.setFingerprint(fingerprint);
+
+        FingerprintState state = fingerprints.get(fingerprint);
+        if (state != null && state.open && now - state.lastSeenAt <= dedupWindowSeconds * 1000) {
+            state.touch(now);
+            duplicateCount.incrementAndGet();
+            return new Decision(Outcome.DUPLICATE, state.alarmId);
+        }
+
+        // 去重窗口已过期，但该指纹的告警仍未解决时继续累加，不新建第二条活动告警
+        String openAlarmId = findOpenAlarmId(fingerprint, state);
+        if (openAlarmId != null) {
+            if (state == null) {
+                state = new FingerprintState();
+                fingerprints.put(fingerprint, state);
+            }
+            state.alarmId = openAlarmId;
+            state.open = true;
+            state.resolved = false;
+            state.touch(now);
+            duplicateCount.incrementAndGet();
+            return new Decision(Outcome.DUPLICATE, openAlarmId);
+        }
+
+        // 新的告警周期
+        if (state == null) {
+            state = new FingerprintState();
+            fingerprints.put(fingerprint, state);
+        }
+        state.pruneEpisodes(now - flapWindowSeconds * 1000);
+        state.episodeStarts.addLast(now);
+        if (state.alarmId != null && state.episodeStarts.size() >= flapThreshold) {
+            if (!state.flapping) {
+                log.warn("告警抖动，暂停新建告警: fingerprint={}, episodes={}", fingerprint, state.episodeStarts.size());
+            }
+            state.flapping = true;
+            state.open = true;
+            state.touch(now);
+            flappingCount.incrementAndGet();
+            if (state.resolved) {
+                // 上一条告警已解决，问题再次出现时重新打开，保证始终有一条活动告警
+                state.resolved = false;
+                return new Decision(Outcome.REOPENED, state.alarmId);
+            }
+            return new Decision(Outcome.FLAPPING, state.alarmId);
+        }
+
+        state.flapping = false;
+        state.resolved = false;
+        state.open = true;
+        state.alarmId = alarm.getId();
+        state.lastSeenAt = now;
+
+        Decision decision = new Decision(Outcome.NEW, alarm.getId());
+        if (alarm.getRoomId() != null) {
+            correlateStorm(alarm, now, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * 新告警落库失败时撤销关联状态
+     *
+     * @param alarm 告警
+     */
+    public synchronized void discard(AlarmRecord alarm) {
+        FingerprintState state = alarm.getFingerprint() != null ? fingerprints.get(alarm.getFingerprint()) : null;
+        if (state != null && alarm.getId().equals(state.alarmId)) {
+            state.open = false;
+            state.alarmId = null;
+        }
+    }
+
+    /**
+     * 告警解决后关闭对应指纹的告警周期，之后同指纹告警将新建（抖动时重新打开该告警）
+     * 重新打开告警失败时也调用本方法恢复为已解决状态
+     *
+     * @param alarm 已解决的告警
+     */
+    public synchronized void closed(AlarmRecord alarm) {
+        if (alarm.getFingerprint() == null) {
+            return;
+        }
+        FingerprintState state = fingerprints.get(alarm.getFingerprint());
+        if (state != null && alarm.getId().equals(state.alarmId)) {
+            state.open = false;
+            state.resolved = true;
+        }
+    }
+
+    /**
+     * 定时将累加的发生次数批量写回，并清理过期的关联状态
+     */
+    @Scheduled(fixedDelayString = "${alarm-correlation.flush-interval-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        Map<String, AlarmRecord> updates;
+        synchronized (this) {
+            updates = new LinkedHashMap<>(unflushed);
+            unflushed.clear();
+            long now = System.currentTimeMillis();
+            Iterator<FingerprintState> iterator = fingerprints.values().iterator();
+            while (iterator.hasNext()) {
+                FingerprintState state = iterator.next();
+                if (state.pendingOccurrences > 0 && state.alarmId != null) {
+                    mergeOccurrence(updates, occurrence(state.alarmId, state.pendingOccurrences, state.lastOccurredAt));
+                    state.pendingOccurrences = 0;
+                }
+                if (state.open && now - state.lastSeenAt > dedupWindowSeconds * 1000) {
+                    state.open = false;
+                }
+                state.pruneEpisodes(now - flapWindowSeconds * 1000);
+                if (!state.open && state.episodeStarts.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+
+            Iterator<RoomStorm> stormIterator = storms.values().iterator();
+            while (stormIterator.hasNext()) {
+                RoomStorm storm = stormIterator.next();
+                if (storm.pendingChildren > 0 && storm.parentAlarmId != null) {
+                    mergeOccurrence(updates, occurrence(storm.parentAlarmId, storm.pendingChildren, storm.lastChildTime));
+                    storm.pendingChildren = 0;
+                }
+                storm.prune(now - stormWindowSeconds * 1000);
+                if (storm.parentAlarmId != null && now - storm.lastChildAt > stormWindowSeconds * 1000) {
+                    log.info("机房告警风暴结束: parentAlarmId={}", storm.parentAlarmId);
+                    storm.parentAlarmId = null;
+                }
+                if (storm.parentAlarmId == null && storm.newAlarmTimes.isEmpty()) {
+                    stormIterator.remove();
+                }
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            try {
+                alarmRecordMapper.incrementOccurrences(new ArrayList<>(updates.values()));
+            } catch (Exception e) {
+                // 放回待写回记录，下次写回时与新的累加合并
+                synchronized (this) {
+                    for (AlarmRecord update : updates.values()) {
+                        mergeOccurrence(unflushed, update);
+                    }
+                }
+                log.error("批量更新告警发生次数失败，下次重试: count={}, error={}", updates.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取关联统计
+     *
+     * @return 统计信息
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        long flapping = fingerprints.values().stream().filter(s -> s.flapping).count();
+        long activeStorms = storms.values().stream().filter(s -> s.parentAlarmId != null).count();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("fingerprints", fingerprints.size());
+        stats.put("flappingFingerprints", flapping);
+        stats.put("activeStorms", activeStorms);
+        stats.put("duplicates", duplicateCount.get());
+        stats.put("flappingSuppressed", flappingCount.get());
+        stats.put("stormChildren", stormChildCount.get());
+        stats.put("unflushed", unflushed.size());
+        return stats;
+    }
+
+    /**
+     * 机房风暴判断：风暴期间的新告警归并到机房父告警下
+     */
+    private void correlateStorm(AlarmRecord alarm, long now, Decision decision) {
+        RoomStorm storm = storms.computeIfAbsent(alarm.getRoomId(), k -> new RoomStorm());
+        storm.prune(now - stormWindowSeconds * 1000);
+        storm.newAlarmTimes.addLast(now);
+
+        if (storm.parentAlarmId == null && storm.newAlarmTimes.size() >= stormThreshold) {
+            AlarmRecord parent = createStormParent(alarm);
+            storm.parentAlarmId = parent.getId();
+            decision.parentAlarm = parent;
+            log.warn("机房告警风暴，后续告警归并到父告警: roomId={}, parentAlarmId={}, alarmsInWindow={}",
+                    alarm.getRoomId(), parent.getId(), storm.newAlarmTimes.size());
+        }
+
+        if (storm.parentAlarmId != null) {
+            decision.parentAlarmId = storm.parentAlarmId;
+            decision.notify = false;
+            storm.lastChildAt = now;
+            storm.lastChildTime = LocalDateTime.now();
+            storm.pendingChildren++;
+            stormChildCount.incrementAndGet();
+        }
+    }
+
+    private AlarmRecord createStormParent(AlarmRecord child) {
+        AlarmRecord parent = new AlarmRecord();
+        parent.setId(UUID.randomUUID().toString().replace("-", ""));
+        parent.setLevel(child.getLevel());
+        parent.setType(STORM_ALARM_TYPE);
+        parent.setRoomId(child.getRoomId());
+        parent.setTitle("机房告警风暴");
+        parent.setContent(String.format("机房%s在%d秒内产生%d条以上告警，后续告警已归并到本告警",
+                child.getRoomId(), stormWindowSeconds, stormThreshold));
+        parent.setSource(STORM_ALARM_SOURCE);
+        parent.setFingerprint("STORM|" + child.getRoomId());
+        return parent;
+    }
+
+    /**
+     * 按指纹查询仍未解决的告警；查询失败时以内存状态判断
+     */
+    private String findOpenAlarmId(String fingerprint, FingerprintState state) {
+        try {
+            return alarmRecordMapper.findOpenAlarmIdByFingerprint(fingerprint);
+        } catch (Exception e) {
+            log.warn("按指纹查询未解决告警失败，使用内存状态: fingerprint={}, error={}", fingerprint, e.getMessage());
+            return state != null && state.alarmId != null && !state.resolved ? state.alarmId : null;
+        }
+    }
+
+    /**
+     * 合并同一告警的累加记录：次数相加，最近发生时间取较晚者
+     */
+    private static void mergeOccurrence(Map<String, AlarmRecord> updates, AlarmRecord update) {
+        AlarmRecord existing = updates.putIfAbsent(update.getId(), update);
+        if (existing != null) {
+            existing.setOccurrenceCount(existing.getOccurrenceCount() + update.getOccurrenceCount());
+            if (existing.getLastOccurredAt() == null || update.getLastOccurredAt() != null
+                    && update.getLastOccurredAt().isAfter(existing.getLastOccurredAt())) {
+                existing.setLastOccurredAt(update.getLastOccurredAt());
+            }
+        }
+    }
+
+    private AlarmRecord occurrence(String alarmId, int count, LocalDateTime lastOccurredAt) {
+        AlarmRecord update = new AlarmRecord();
+        update.setId(alarmId);
+        update.setOccurrenceCount(count);
+        update.setLastOccurredAt(lastOccurredAt);
+        return update;
+    }
+
+    /**
+     * 告警指纹：设备+类型+级别；无设备的告警使用机房+标题
+     */
+    private String fingerprint(AlarmRecord alarm) {
+        String subject = alarm.getDeviceId() != null
+                ? alarm.getDeviceId()
+                : alarm.getRoomId() + "|" + alarm.getTitle();
+        return subject + "|" + alarm.getType() + "|" + alarm.getLevel();
+    }
+
+    /**
+     * 关联决策
+     */
+    public static class Decision {
+        private final Outcome outcome;
+        private final String alarmId;
+        private String parentAlarmId;
+        private AlarmRecord parentAlarm;
+        private boolean notify = true;
+
+        Decision(Outcome outcome, String alarmId) {
+            this.outcome = outcome;
+            this.alarmId = alarmId;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * 新告警时为本告警ID，重复/抖动时为被累加的现有告警ID
+         */
+        public String getAlarmId() {
+            return alarmId;
+        }
+
+        /**
+         * 风暴期间的父告警ID
+         */
+        public String getParentAlarmId() {
+            return parentAlarmId;
+        }
+
+        /**
+         * 本次触发新建的机房父告警（需由调用方落库并通知），否则为null
+         */
+        public AlarmRecord getParentAlarm() {
+            return parentAlarm;
+        }
+
+        /**
+         * 是否需要单独发送通知
+         */
+        public boolean isNotify() {
+            return outcome == Outcome.REOPENED || outcome == Outcome.NEW && notify;
+        }
+    }
+
+    /**
+     * 指纹关联状态
+     */
+    private static class FingerprintState {
+        private String alarmId;
+        private boolean open;
+        private boolean resolved;
+        private boolean flapping;
+        private long lastSeenAt;
+        private int pendingOccurrences;
+        private LocalDateTime lastOccurredAt;
+        private final Deque<Long> episodeStarts = new ArrayDeque<>();
+
+        void touch(long now) {
+            lastSeenAt = now;
+            lastOccurredAt = LocalDateTime.now();
+            pendingOccurrences++;
+        }
+
+        void pruneEpisodes(long before) {
+            while (!episodeStarts.isEmpty() && episodeStarts.peekFirst() < before) {
+                episodeStarts.pollFirst();
+            }
+        }
+    }
+
+    /**
+     * 机房风暴状态
+     */
+    private static class RoomStorm {
+        private final Deque<Long> newAlarmTimes = new ArrayDeque<>();
+        private String parentAlarmId;
+        private long lastChildAt;
+        private LocalDateTime lastChildTime;
+        private int pendingChildren;
+
+        void prune(long before) {
+            while (!newAlarmTimes.isEmpty() && newAlarmTimes.peekFirst() < before) {
+                newAlarmTimes.pollFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.AlarmRecord;
+import com.roominspection.backend.mapper.AlarmRecordMapper;
+import com.roominspection.backend.service.WebSocketMessageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警通知批量分发器
+ * 告警按通知渠道入队，定时把每个渠道积累的告警合并为一条通知发送，
+ * 发送成功后才批量回写通知标记，WebSocket推送同样按批次广播。
+ * 发送失败的批次进入该渠道的重试队列，按指数退避重试，超过最大次数后放弃并记录错误。
+ */
+@Slf4j
+@Component
+public class AlarmNotificationDispatcher {
+
+    /**
+     * 通知渠道
+     */
+    public enum Channel {
+        DINGTALK("ding_talk_sent"),
+        SMS("sms_sent"),
+        EMAIL("email_sent");
+
+        private final String sentColumn;
+
+        Channel(String sentColumn) {
+            this.sentColumn = sentColumn;
+        }
+    }
+
+    @Autowired
+    private AlarmRecordMapper alarmRecordMapper;
+
+    @Autowired(required = false)
+    private WebSocketMessageService webSocketMessageService;
+
+    @Value("${alarm-notification.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${alarm-notification.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${alarm-notification.retry-backoff-ms:10000}")
+    private long retryBackoffMs;
+
+    @Value("${alarm-notification.max-retry-backoff-ms:300000}")
+    private long maxRetryBackoffMs;
+
+    private final Map<Channel, Queue<AlarmRecord>> queues = new EnumMap<>(Channel.class);
+
+    /**
+     * 发送失败等待重试的批次（只由flush线程访问）
+     */
+    private final Map<Channel, List<FailedBatch>> retries = new EnumMap<>(Channel.class);
+
+    private final Queue<AlarmRecord> webSocketQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong enqueuedCount = new AtomicLong(0);
+    private final AtomicLong notificationCount = new AtomicLong(0);
+    private final AtomicLong retryCount = new AtomicLong(0);
+    private final AtomicLong abandonedCount = new AtomicLong(0);
+
+    {
+        for (Channel channel : Channel.values()) {
+            queues.put(channel, new ConcurrentLinkedQueue<>());
+            retries.put(channel, new ArrayList<>());
+        }
+    }
+
+    /**
+     * 告警通知入队（钉钉、邮件全部发送，短信仅发送紧急告警）
+     *
+     * @param alarm 告警
+     */
+    public void enqueue(AlarmRecord alarm) {
+        if (!Boolean.TRUE.equals(alarm.getDingTalkSent())) {
+            queues.get(Channel.DINGTALK).offer(alarm);
+        }
+        if (!Boolean.TRUE.equals(alarm.getSmsSent()) && "CRITICAL".equals(alarm.getLevel())) {
+            queues.get(Channel.SMS).offer(alarm);
+        }
+        if (!Boolean.TRUE.equals(alarm.getEmailSent())) {
+            queues.get(Channel.EMAIL).offer(alarm);
+        }
+        webSocketQueue.offer(alarm);
+        enqueuedCount.incrementAndGet();
+    }
+
+    /**
+     * 定时按渠道合并发送通知
+     */
+    @Scheduled(fixedDelayString = "${alarm-notification.flush-interval-ms:10000}")
+    @PreDestroy
+    public synchronized void flush() {
+        long now = System.currentTimeMillis();
+        for (Channel channel : Channel.values()) {
+            retryDue(channel, now);
+            Queue<AlarmRecord> queue = queues.get(channel);
+            List<AlarmRecord> batch;
+            while (!(batch = drain(queue)).isEmpty()) {
+                if (!dispatch(channel, batch)) {
+                    scheduleRetry(channel, new FailedBatch(batch), now);
+                }
+            }
+        }
+
+        List<AlarmRecord> pushBatch;
+        while (!(pushBatch = drain(webSocketQueue)).isEmpty()) {
+            if (webSocketMessageService != null) {
+                webSocketMessageService.pushAlarms(pushBatch);
+            }
+        }
+    }
+
+    /**
+     * 获取分发统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        queues.forEach((channel, queue) -> stats.put(channel.name().toLowerCase() + "Pending", queue.size()));
+        stats.put("enqueued", enqueuedCount.get());
+        stats.put("notifications", notificationCount.get());
+        stats.put("retries", retryCount.get());
+        stats.put("abandoned", abandonedCount.get());
+        return stats;
+    }
+
+    private List<AlarmRecord> drain(Queue<AlarmRecord> queue) {
+        List<AlarmRecord> batch = new ArrayList<>();
+        AlarmRecord alarm;
+        while (batch.size() < maxBatchSize && (alarm = queue.poll()) != null) {
+            batch.add(alarm);
+        }
+        return batch;
+    }
+
+    /**
+     * 重发到期的失败批次
+     */
+    private void retryDue(Channel channel, long now) {
+        List<FailedBatch> pending = retries.get(channel);
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<FailedBatch> due = new ArrayList<>();
+        for (Iterator<FailedBatch> it = pending.iterator(); it.hasNext(); ) {
+            FailedBatch failed = it.next();
+            if (failed.nextAttemptAt <= now) {
+                due.add(failed);
+                it.remove();
+            }
+        }
+        for (FailedBatch failed : due) {
+            retryCount.incrementAndGet();
+            if (!dispatch(channel, failed.alarms)) {
+                scheduleRetry(channel, failed, now);
+            }
+        }
+    }
+
+    /**
+     * 失败批次按指数退避安排重试，超过最大次数后放弃
+     */
+    private void scheduleRetry(Channel channel, FailedBatch failed, long now) {
+        failed.attempts++;
+        if (failed.attempts >= maxAttempts) {
+            abandonedCount.addAndGet(failed.alarms.size());
+            log.error("告警通知重试{}次仍失败，放弃发送: channel={}, count={}",
+                    failed.attempts, channel, failed.alarms.size());
+            return;
+        }
+        long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(failed.attempts - 1, 20));
+        failed.nextAttemptAt = now + backoff;
+        retries.get(channel).add(failed);
+    }
+
+    /**
+     * 发送一批通知，成功后回写通知标记
+     *
+     * @return 是否发送成功
+     */
+    private boolean dispatch(Channel channel, List<AlarmRecord> batch) {
+        try {
+            String message = buildMessage(batch);
+            switch (channel) {
+                case DINGTALK:
+                    sendDingTalkNotification(batch, message);
+                    break;
+                case SMS:
+                    sendSMSNotification(batch, message);
+                    break;
+                default:
+                    sendEmailNotification(batch, message);
+            }
+            notificationCount.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("发送告警通知失败，稍后重试: channel={}, count={}, error={}", channel, batch.size(), e.getMessage());
+            return false;
+        }
+
+        // 已送达，标记回写失败不再重发，避免重复通知
+        List<String> ids = new ArrayList<>(batch.size());
+        for (AlarmRecord alarm : batch) {
+            markSent(channel, alarm);
+            ids.add(alarm.getId());
+        }
+        try {
+            alarmRecordMapper.markNotified(channel.sentColumn, ids);
+        } catch (Exception e) {
+            log.error("回写告警通知标记失败: channel={}, count={}, error={}", channel, ids.size(), e.getMessage());
+        }
+        return true;
+    }
+
+    private static void markSent(Channel channel, AlarmRecord alarm) {
+        switch (channel) {
+            case DINGTALK:
+                alarm.setDingTalkSent(true);
+                break;
+            case SMS:
+                alarm.setSmsSent(true);
+                break;
+            default:
+                alarm.setEmailSent(true);
+        }
+    }
+
+    /**
+     * 合并通知内容：按级别统计并列出告警标题
+     */
+    private String buildMessage(List<AlarmRecord> batch) {
+        Map<String, Integer> levelCounts = new TreeMap<>();
+        StringBuilder details = new StringBuilder();
+        for (AlarmRecord alarm : batch) {
+            levelCounts.merge(String.valueOf(alarm.getLevel()), 1, Integer::sum);
+            details.append("\n[").append(alarm.getLevel()).append("] ")
+                    .append(alarm.getAlarmCode()).append(' ').append(alarm.getTitle());
+        }
+        return "共" + batch.size() + "条告警 " + levelCounts + details;
+    }
+
+    private void sendDingTalkNotification(List<AlarmRecord> alarms, String message) {
+        // 调用钉钉API发送通知
+        // 实际实现需要集成钉钉SDK
+        log.info("发送钉钉告警通知: count={}, message={}", alarms.size(), message);
+    }
+
+    private void sendSMSNotification(List<AlarmRecord> alarms, String message) {
+        // 调用短信API发送通知
+        // 实际实现需要集成短信SDK（如阿里云短信）
+        log.info("发送短信告警通知: count={}, message={}", alarms.size(), message);
+    }
+
+    private void sendEmailNotification(List<AlarmRecord> alarms, String message) {
+        // 调用邮件API发送通知
+        log.info("发送邮件告警通知: count={}, message={}", alarms.size(), message);
+    }
+
+    /**
+     * 发送失败等待重试的批次
+     */
+    private static final class FailedBatch {
+        private final List<AlarmRecord> alarms;
+        private int attempts;
+        private long nextAttemptAt;
+
+        FailedBatch(List<AlarmRecord> alarms) {
+            this.alarms = alarms;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.AlertRule;
+import com.roominspection.backend.entity.DeviceMetric;
+import com.roominspection.backend.mapper.AlertRuleMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 告警规则引擎
+ * 启用的规则加载到内存并编译为带类型的判定对象，按 指标类型 -> 设备ID/设备类型/通用 建立索引，
+ * 评估过程不访问数据库；规则变更通过版本号触发热加载，支持"连续N次采样"与"持续N秒"条件。
+ * 每条规则按 设备(+端口/磁盘等实例) 维护告警状态，只在进入告警时触发一次；之后连续N次采样不满足条件才恢复，
+ * 避免阈值附近抖动反复触发/恢复
+ */
+@Slf4j
+@Component
+public class AlertRuleEngine {
+
+    /**
+     * 规则触发回调
+     */
+    public interface TriggerHandler {
+
+        /**
+         * 规则触发
+         *
+         * @param rule   告警规则
+         * @param metric 触发规则的指标
+         */
+        void onTriggered(AlertRule rule, DeviceMetric metric);
+
+        /**
+         * 规则恢复（此前已触发的条件连续N次采样不再满足）
+         *
+         * @param rule   告警规则
+         * @param metric 恢复时的指标
+         */
+        default void onCleared(AlertRule rule, DeviceMetric metric) {
+        }
+    }
+
+    /**
+     * 状态转换
+     */
+    enum Transition {
+        NONE,
+        TRIGGERED,
+        CLEARED
+    }
+
+    /**
+     * 告警条件
+     */
+    enum Condition {
+        GT {
+            boolean test(double value, double lower, double upper) {
+                return value > upper;
+            }
+        },
+        LT {
+            boolean test(double value, double lower, double upper) {
+                return value < upper;
+            }
+        },
+        EQ {
+            boolean test(double value, double lower, double upper) {
+                return value == upper;
+            }
+        },
+        GE {
+            boolean test(double value, double lower, double upper) {
+                return value >= upper;
+            }
+        },
+        LE {
+            boolean test(double value, double lower, double upper) {
+                return value <= upper;
+            }
+        },
+        NE {
+            boolean test(double value, double lower, double upper) {
+                return value != upper;
+            }
+        },
+        BETWEEN {
+            boolean test(double value, double lower, double upper) {
+                return value >= lower && value <= upper;
+            }
+        },
+        NOT_BETWEEN {
+            boolean test(double value, double lower, double upper) {
+                return value < lower || value > upper;
+            }
+        };
+
+        abstract boolean test(double value, double lower, double upper);
+    }
+
+    private static final CompiledRule[] NO_RULES = new CompiledRule[0];
+
+    private static final long RELOAD_RETRY_BACKOFF_MILLIS = 5000L;
+
+    @Autowired
+    private AlertRuleMapper alertRuleMapper;
+
+    /**
+     * 告警状态闲置多久后清理（分钟）
+     */
+    @Value("${alert-rule.state-idle-minutes:60}")
+    private long stateIdleMinutes;
+
+    /**
+     * 规则版本号：本地修改规则或检测到规则表变化时递增
+     */
+    private final AtomicLong version = new AtomicLong(1);
+
+    private volatile long loadedVersion = 0;
+
+    private volatile Map<String, MetricRules> index = Collections.emptyMap();
+
+    private volatile int ruleCount = 0;
+
+    private volatile String lastSignature;
+
+    private volatile long nextReloadAttemptAt = 0;
+
+    /**
+     * deviceId -> 设备类型（批量评估时记录，单条评估时用于匹配设备类型规则）
+     */
+    private final ConcurrentHashMap<String, String> deviceTypes = new ConcurrentHashMap<>();
+
+    private final LongAdder evaluatedCount = new LongAdder();
+    private final LongAdder triggeredCount = new LongAdder();
+    private final LongAdder clearedCount = new LongAdder();
+    private final AtomicLong reloadCount = new AtomicLong(0);
+
+    /**
+     * 启动后加载规则
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        checkForChanges();
+    }
+
+    /**
+     * 标记规则已变更，下一次评估前重新加载
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * 定时检查规则表是否被其他实例修改，并清理闲置的告警状态
+     */
+    @Scheduled(fixedDelayString = "${alert-rule.reload-check-interval-ms:10000}")
+    public void checkForChanges() {
+        try {
+            Map<String, Object> signature = alertRuleMapper.selectChangeSignature();
+            String current = signature != null
+                    ? signature.get("ruleCount") + "@" + signature.get("lastUpdatedAt")
+                    : "";
+            if (!current.equals(lastSignature)) {
+                lastSignature = current;
+                invalidate();
+            }
+            if (version.get() != loadedVersion) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.error("检查告警规则变更失败", e);
+        }
+        evictIdleStates();
+    }
+
+    /**
+     * 重新加载并编译启用的规则，条件未变化的规则保留告警状态
+     */
+    public synchronized void reload() {
+        long targetVersion = version.get();
+        List<AlertRule> rules = alertRuleMapper.selectAllEnabled();
+
+        Map<Long, CompiledRule> previous = new HashMap<>();
+        for (MetricRules metricRules : index.values()) {
+            metricRules.forEach(rule -> previous.put(rule.rule.getId(), rule));
+        }
+
+        Map<String, List<CompiledRule>> generic = new HashMap<>();
+        Map<String, Map<String, List<CompiledRule>>> byDeviceId = new HashMap<>();
+        Map<String, Map<String, List<CompiledRule>>> byDeviceType = new HashMap<>();
+        int compiled = 0;
+        for (AlertRule rule : rules) {
+            CompiledRule compiledRule = compile(rule, previous.get(rule.getId()));
+            if (compiledRule == null) {
+                continue;
+            }
+            String metricType = rule.getAlertType();
+            if (rule.getDeviceId() != null) {
+                byDeviceId.computeIfAbsent(metricType, k -> new HashMap<>())
+                        .computeIfAbsent(rule.getDeviceId(), k -> new ArrayList<>()).add(compiledRule);
+            } else if (rule.getDeviceType() != null) {
+                byDeviceType.computeIfAbsent(metricType, k -> new HashMap<>())
+                        .computeIfAbsent(rule.getDeviceType(), k -> new ArrayList<>()).add(compiledRule);
+            } else {
+                generic.computeIfAbsent(metricType, k -> new ArrayList<>()).add(compiledRule);
+            }
+            compiled++;
+        }
+
+        Set<String> metricTypes = new HashSet<>(generic.keySet());
+        metricTypes.addAll(byDeviceId.keySet());
+        metricTypes.addAll(byDeviceType.keySet());
+        Map<String, MetricRules> next = new HashMap<>();
+        for (String metricType : metricTypes) {
+            next.put(metricType, new MetricRules(
+                    toSortedArrays(byDeviceId.get(metricType)),
+                    toSortedArrays(byDeviceType.get(metricType)),
+                    toSortedArray(generic.get(metricType))));
+        }
+
+        index = next;
+        ruleCount = compiled;
+        loadedVersion = targetVersion;
+        reloadCount.incrementAndGet();
+        log.info("告警规则已加载: version={}, rules={}, metricTypes={}", targetVersion, compiled, next.size());
+    }
+
+    /**
+     * 评估一台设备的一批指标（无锁、不访问数据库，除触发结果外不产生额外对象）
+     *
+     * @param deviceId   设备ID
+     * @param deviceType 设备类型
+     * @param metrics    指标列表
+     * @param handler    触发/恢复回调
+     * @return 触发次数
+     */
+    public int evaluate(String deviceId, String deviceType, List<DeviceMetric> metrics, TriggerHandler handler) {
+        if (metrics == null || metrics.isEmpty()) {
+            return 0;
+        }
+        ensureLoaded();
+        if (deviceId != null && deviceType != null) {
+            deviceTypes.put(deviceId, deviceType);
+        }
+
+        Map<String, MetricRules> current = index;
+        long now = System.currentTimeMillis();
+        int triggered = 0;
+        for (int i = 0, n = metrics.size(); i < n; i++) {
+            DeviceMetric metric = metrics.get(i);
+            Double value = metric.getMetricValue();
+            MetricRules rules = metric.getMetricType() != null ? current.get(metric.getMetricType()) : null;
+            if (value == null || rules == null) {
+                continue;
+            }
+            String metricDeviceId = deviceId != null ? deviceId : metric.getDeviceId();
+            double v = value;
+            if (metricDeviceId != null) {
+                triggered += evaluate(rules.byDeviceId.get(metricDeviceId), metricDeviceId, deviceType,
+                        metric, v, now, handler);
+            }
+            if (deviceType != null) {
+                triggered += evaluate(rules.byDeviceType.get(deviceType), metricDeviceId, deviceType,
+                        metric, v, now, handler);
+            }
+            triggered += evaluate(rules.generic, metricDeviceId, deviceType, metric, v, now, handler);
+        }
+        evaluatedCount.add(metrics.size());
+        triggeredCount.add(triggered);
+        return triggered;
+    }
+
+    /**
+     * 获取最近一次记录的设备类型
+     *
+     * @param deviceId 设备ID
+     * @return 设备类型，未知时返回null
+     */
+    public String getKnownDeviceType(String deviceId) {
+        return deviceId != null ? deviceTypes.get(deviceId) : null;
+    }
+
+    /**
+     * 记录设备类型
+     *
+     * @param deviceId   设备ID
+     * @param deviceType 设备类型
+     */
+    public void rememberDeviceType(String deviceId, String deviceType) {
+        if (deviceId != null && deviceType != null) {
+            deviceTypes.put(deviceId, deviceType);
+        }
+    }
+
+    /**
+     * 清除设备的告警状态（设备删除时调用）
+     *
+     * @param deviceId 设备ID
+     */
+    public void removeDevice(String deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        deviceTypes.remove(deviceId);
+        for (MetricRules metricRules : index.values()) {
+            metricRules.forEach(rule -> rule.states.remove(deviceId));
+        }
+    }
+
+    /**
+     * 获取引擎统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", version.get());
+        stats.put("loadedVersion", loadedVersion);
+        stats.put("rules", ruleCount);
+        stats.put("metricTypes", index.size());
+        stats.put("reloads", reloadCount.get());
+        stats.put("evaluated", evaluatedCount.sum());
+        stats.put("triggered", triggeredCount.sum());
+        stats.put("cleared", clearedCount.sum());
+        return stats;
+    }
+
+    private void ensureLoaded() {
+        long now = System.currentTimeMillis();
+        if (version.get() != loadedVersion && now >= nextReloadAttemptAt) {
+            try {
+                reload();
+            } catch (Exception e) {
+                // 加载失败时继续使用旧规则，退避后再重试，避免评估线程反复访问数据库
+                nextReloadAttemptAt = now + RELOAD_RETRY_BACKOFF_MILLIS;
+                log.error("重新加载告警规则失败，继续使用版本{}", loadedVersion, e);
+            }
+        }
+    }
+
+    private int evaluate(CompiledRule[] rules, String deviceId, String deviceType, DeviceMetric metric,
+                         double value, long now, TriggerHandler handler) {
+        if (rules == null) {
+            return 0;
+        }
+        int triggered = 0;
+        for (CompiledRule rule : rules) {
+            if (rule.deviceType != null && !rule.deviceType.equals(deviceType)) {
+                continue;
+            }
+            boolean matched = rule.condition.test(value, rule.lower, rule.upper);
+            Transition transition = rule.advance(deviceId, metric, matched, now);
+            if (transition == Transition.TRIGGERED) {
+                handler.onTriggered(rule.rule, metric);
+                triggered++;
+            } else if (transition == Transition.CLEARED) {
+                handler.onCleared(rule.rule, metric);
+                clearedCount.increment();
+            }
+        }
+        return triggered;
+    }
+
+    /**
+     * 编译规则，条件无法识别或缺少指标类型的规则被忽略
+     */
+    private CompiledRule compile(AlertRule rule, CompiledRule previous) {
+        if (rule.getAlertType() == null || rule.getCondition() == null) {
+            return null;
+        }
+        Condition condition;
+        try {
+            condition = Condition.valueOf(rule.getCondition().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("忽略无法识别的告警条件: ruleId={}, condition={}", rule.getId(), rule.getCondition());
+            return null;
+        }
+        CompiledRule compiled = new CompiledRule(rule, condition);
+        if (previous != null && previous.sameDefinition(compiled)) {
+            compiled.states = previous.states;
+        }
+        return compiled;
+    }
+
+    private void evictIdleStates() {
+        long idleBefore = System.currentTimeMillis() - stateIdleMinutes * 60_000L;
+        for (MetricRules metricRules : index.values()) {
+            metricRules.forEach(rule -> rule.states.values().removeIf(state -> state.evictIdle(idleBefore)));
+        }
+    }
+
+    private Map<String, CompiledRule[]> toSortedArrays(Map<String, List<CompiledRule>> grouped) {
+        if (grouped == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, CompiledRule[]> result = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((key, rules) -> result.put(key, toSortedArray(rules)));
+        return result;
+    }
+
+    private CompiledRule[] toSortedArray(List<CompiledRule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return NO_RULES;
+        }
+        rules.sort(Comparator.comparingInt((CompiledRule r) -> r.priority).reversed());
+        return rules.toArray(NO_RULES);
+    }
+
+    /**
+     * 单个指标类型下的规则索引
+     */
+    private static final class MetricRules {
+        private final Map<String, CompiledRule[]> byDeviceId;
+        private final Map<String, CompiledRule[]> byDeviceType;
+        private final CompiledRule[] generic;
+
+        MetricRules(Map<String, CompiledRule[]> byDeviceId, Map<String, CompiledRule[]> byDeviceType,
+                    CompiledRule[] generic) {
+            this.byDeviceId = byDeviceId;
+            this.byDeviceType = byDeviceType;
+            this.generic = generic;
+        }
+
+        void forEach(Consumer<CompiledRule> action) {
+            byDeviceId.values().forEach(rules -> Arrays.stream(rules).forEach(action));
+            byDeviceType.values().forEach(rules -> Arrays.stream(rules).forEach(action));
+            Arrays.stream(generic).forEach(action);
+        }
+    }
+
+    /**
+     * 编译后的规则
+     */
+    private static final class CompiledRule {
+        private final AlertRule rule;
+        private final Condition condition;
+        private final double upper;
+        private final double lower;
+        private final String deviceType;
+        private final int priority;
+        private final int requiredSamples;
+        private final long durationMillis;
+
+        /**
+         * 告警状态：deviceId -> 状态
+         */
+        private ConcurrentHashMap<String, BreachState> states = new ConcurrentHashMap<>();
+
+        CompiledRule(AlertRule rule, Condition condition) {
+            this.rule = rule;
+            this.condition = condition;
+            this.upper = rule.getThresholdUpper() != null ? rule.getThresholdUpper() : 0;
+            this.lower = rule.getThresholdLower() != null ? rule.getThresholdLower() : 0;
+            this.deviceType = rule.getDeviceType();
+            this.priority = rule.getPriority() != null ? rule.getPriority() : 0;
+            this.requiredSamples = rule.getConsecutiveSamples() != null ? Math.max(1, rule.getConsecutiveSamples()) : 1;
+            this.durationMillis = rule.getDuration() != null ? Math.max(0, rule.getDuration()) * 1000L : 0;
+        }
+
+        boolean sameDefinition(CompiledRule other) {
+            return condition == other.condition && upper == other.upper && lower == other.lower
+                    && requiredSamples == other.requiredSamples && durationMillis == other.durationMillis
+                    && Objects.equals(deviceType, other.deviceType)
+                    && Objects.equals(rule.getDeviceId(), other.rule.getDeviceId());
+        }
+
+        /**
+         * 推进告警状态
+         *
+         * @return 进入告警返回TRIGGERED，退出告警返回CLEARED
+         */
+        Transition advance(String deviceId, DeviceMetric metric, boolean matched, long now) {
+            String key = deviceId != null ? deviceId : "";
+            BreachState state = states.get(key);
+            if (state == null) {
+                if (!matched) {
+                    return Transition.NONE;
+                }
+                state = states.computeIfAbsent(key, k -> new BreachState());
+            }
+            // 端口、磁盘等多实例指标分别计数
+            String instance = metric.getPortName() != null ? metric.getPortName()
+                    : metric.getDiskName() != null ? metric.getDiskName()
+                    : metric.getMetricName();
+            if (instance != null) {
+                state = state.instance(instance);
+            }
+            return state.advance(matched, now, requiredSamples, durationMillis);
+        }
+    }
+
+    /**
+     * 告警状态
+     */
+    private static final class BreachState {
+        private int consecutive;
+        private int clearConsecutive;
+        private long firstBreachAt;
+        private boolean active;
+        private volatile long lastSeenAt;
+        private ConcurrentHashMap<String, BreachState> instances;
+
+        synchronized BreachState instance(String instance) {
+            if (instances == null) {
+                instances = new ConcurrentHashMap<>();
+            }
+            BreachState state = instances.get(instance);
+            if (state == null) {
+                state = new BreachState();
+                instances.put(instance, state);
+            }
+            lastSeenAt = System.currentTimeMillis();
+            return state;
+        }
+
+        /**
+         * 进入告警需连续requiredSamples次满足且持续durationMillis，退出告警需连续requiredSamples次不满足
+         */
+        synchronized Transition advance(boolean matched, long now, int requiredSamples, long durationMillis) {
+            lastSeenAt = now;
+            if (!matched) {
+                consecutive = 0;
+                if (active && ++clearConsecutive >= requiredSamples) {
+                    active = false;
+                    clearConsecutive = 0;
+                    return Transition.CLEARED;
+                }
+                return Transition.NONE;
+            }
+            clearConsecutive = 0;
+            if (consecutive == 0) {
+                firstBreachAt = now;
+            }
+            if (consecutive < Integer.MAX_VALUE) {
+                consecutive++;
+            }
+            if (!active && consecutive >= requiredSamples && now - firstBreachAt >= durationMillis) {
+                active = true;
+                return Transition.TRIGGERED;
+            }
+            return Transition.NONE;
+        }
+
+        /**
+         * 清理闲置的实例状态
+         *
+         * @return 自身及所有实例均已闲置时返回true
+         */
+        synchronized boolean evictIdle(long idleBefore) {
+            if (instances != null) {
+                instances.values().removeIf(state -> state.evictIdle(idleBefore));
+            }
+            return lastSeenAt < idleBefore && (instances == null || instances.isEmpty());
+        }
+    }
+}
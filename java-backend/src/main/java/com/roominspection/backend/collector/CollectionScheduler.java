@@ -0,0 +1,279 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.MonitorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 设备采集调度器
+ * 以每台设备的下次到期时间为键维护最小堆，每次只弹出已到期的设备，
+ * 调度开销与到期设备数成正比，而不是与设备总数成正比
+ */
+@Slf4j
+@Component
+public class CollectionScheduler {
+
+    /**
+     * 适用于所有设备类型的兜底配置
+     */
+    private static final String ALL_DEVICE_TYPE = "ALL";
+
+    /**
+     * 落后超过该周期数时不再补采，直接按当前时间重新排期
+     */
+    private static final int MAX_CATCH_UP_CYCLES = 2;
+
+    /**
+     * 到期时间最小堆（堆中可能残留过期条目，出堆时按版本号丢弃）
+     */
+    private final PriorityQueue<DueEntry> dueQueue = new PriorityQueue<>(
+            Comparator.comparingLong(e -> e.dueAt));
+
+    /**
+     * 设备调度状态：deviceId -> 调度条目
+     */
+    private final Map<String, ScheduledDevice> devices = new HashMap<>();
+
+    /**
+     * 设备类型 -> 采集周期（毫秒）
+     */
+    private final Map<String, Long> intervalByType = new HashMap<>();
+
+    /**
+     * 正在采集中的设备，避免上一轮未完成时重复派发
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 弹出所有已到期的设备，并按各自周期重新排期
+     *
+     * @param now 当前时间（毫秒）
+     * @return 本轮需要采集的设备
+     */
+    public synchronized List<Device> pollDue(long now) {
+        List<Device> due = new ArrayList<>();
+        DueEntry head;
+        while ((head = dueQueue.peek()) != null && head.dueAt <= now) {
+            dueQueue.poll();
+            ScheduledDevice scheduled = devices.get(head.deviceId);
+            if (scheduled == null || scheduled.version != head.version) {
+                // 设备已删除或已重新排期，丢弃过期条目
+                continue;
+            }
+
+            // 保持原有相位推进下次到期时间，落后过多时不补采
+            long nextDue = head.dueAt + scheduled.intervalMillis;
+            if (nextDue <= now - scheduled.intervalMillis * MAX_CATCH_UP_CYCLES) {
+                nextDue = now + scheduled.intervalMillis;
+            } else if (nextDue <= now) {
+                nextDue = now + 1;
+            }
+            push(scheduled, nextDue);
+
+            if (inFlight.add(head.deviceId)) {
+                due.add(scheduled.device);
+            } else {
+                log.debug("设备上一轮采集尚未完成，跳过本轮: deviceId={}", head.deviceId);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * 标记设备本轮采集结束
+     *
+     * @param deviceId 设备ID
+     */
+    public void markCompleted(String deviceId) {
+        inFlight.remove(deviceId);
+    }
+
+    /**
+     * 根据启用的监控配置刷新各设备类型的采集周期
+     * 只有周期发生变化的设备类型才会重新排期
+     *
+     * @param configs 启用的监控配置
+     */
+    public synchronized void refreshConfigs(List<MonitorConfig> configs) {
+        Map<String, Long> latest = new HashMap<>();
+        for (MonitorConfig config : configs) {
+            Integer interval = config.getCollectionInterval();
+            if (config.getDeviceType() == null || interval == null || interval <= 0) {
+                continue;
+            }
+            latest.put(config.getDeviceType(), interval * 1000L);
+        }
+
+        if (latest.equals(intervalByType)) {
+            return;
+        }
+
+        intervalByType.clear();
+        intervalByType.putAll(latest);
+
+        long now = System.currentTimeMillis();
+        int rescheduled = 0;
+        for (ScheduledDevice scheduled : new ArrayList<>(devices.values())) {
+            Long interval = resolveInterval(scheduled.device.getType());
+            if (interval == null) {
+                // 该类型已无启用的配置
+                devices.remove(scheduled.device.getId());
+            } else if (interval != scheduled.intervalMillis) {
+                scheduled.intervalMillis = interval;
+                push(scheduled, now + jitter(interval));
+                rescheduled++;
+            }
+        }
+        log.info("采集调度配置已刷新: deviceTypes={}, rescheduled={}, scheduledDevices={}",
+                intervalByType.keySet(), rescheduled, devices.size());
+    }
+
+    /**
+     * 新增或更新设备调度（设备类型或周期变化时重新排期，否则仅替换设备信息）
+     *
+     * @param device 设备
+     */
+    public synchronized void upsertDevice(Device device) {
+        Long interval = resolveInterval(device.getType());
+        if (interval == null) {
+            devices.remove(device.getId());
+            return;
+        }
+
+        ScheduledDevice scheduled = devices.get(device.getId());
+        if (scheduled == null) {
+            scheduled = new ScheduledDevice(device, interval);
+            devices.put(device.getId(), scheduled);
+            push(scheduled, System.currentTimeMillis() + jitter(interval));
+            return;
+        }
+
+        scheduled.device = device;
+        if (scheduled.intervalMillis != interval) {
+            scheduled.intervalMillis = interval;
+            push(scheduled, System.currentTimeMillis() + jitter(interval));
+        }
+    }
+
+    /**
+     * 移除设备调度
+     *
+     * @param deviceId 设备ID
+     */
+    public synchronized void removeDevice(String deviceId) {
+        // 堆中的残留条目会在出堆时因找不到设备而被丢弃
+        devices.remove(deviceId);
+    }
+
+    /**
+     * 用全量设备列表对齐调度状态：新增缺失设备、移除已不存在的设备
+     *
+     * @param allDevices 当前全部设备
+     */
+    public synchronized void reconcile(Collection<Device> allDevices) {
+        Set<String> present = new HashSet<>();
+        for (Device device : allDevices) {
+            present.add(device.getId());
+            upsertDevice(device);
+        }
+        devices.keySet().retainAll(present);
+    }
+
+    /**
+     * 当前需要调度的设备类型（含ALL兜底配置时返回null，表示全部类型）
+     *
+     * @return 设备类型集合
+     */
+    public synchronized Set<String> getScheduledDeviceTypes() {
+        if (intervalByType.containsKey(ALL_DEVICE_TYPE)) {
+            return null;
+        }
+        return new HashSet<>(intervalByType.keySet());
+    }
+
+    /**
+     * 获取调度统计
+     *
+     * @return 统计信息
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("scheduledDevices", devices.size());
+        stats.put("heapSize", dueQueue.size());
+        stats.put("inFlight", inFlight.size());
+        DueEntry head = dueQueue.peek();
+        stats.put("nextDueInMillis", head != null ? Math.max(0, head.dueAt - System.currentTimeMillis()) : -1);
+        return stats;
+    }
+
+    /**
+     * 解析设备类型对应的采集周期，没有专属配置时使用ALL兜底配置
+     */
+    private Long resolveInterval(String deviceType) {
+        Long interval = deviceType != null ? intervalByType.get(deviceType) : null;
+        return interval != null ? interval : intervalByType.get(ALL_DEVICE_TYPE);
+    }
+
+    /**
+     * 在一个周期内随机打散首次到期时间，避免同类设备同时到期
+     */
+    private long jitter(long intervalMillis) {
+        return ThreadLocalRandom.current().nextLong(intervalMillis);
+    }
+
+    private void push(ScheduledDevice scheduled, long dueAt) {
+        scheduled.version++;
+        dueQueue.offer(new DueEntry(scheduled.device.getId(), dueAt, scheduled.version));
+
+        // 残留条目过多时重建堆，避免频繁重排期导致堆膨胀
+        if (dueQueue.size() > devices.size() * 2 + 64) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        List<DueEntry> live = new ArrayList<>(devices.size());
+        for (DueEntry entry : dueQueue) {
+            ScheduledDevice scheduled = devices.get(entry.deviceId);
+            if (scheduled != null && scheduled.version == entry.version) {
+                live.add(entry);
+            }
+        }
+        dueQueue.clear();
+        dueQueue.addAll(live);
+    }
+
+    /**
+     * 设备调度状态
+     */
+    private static class ScheduledDevice {
+        private Device device;
+        private long intervalMillis;
+        private long version;
+
+        ScheduledDevice(Device device, long intervalMillis) {
+            this.device = device;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    /**
+     * 堆条目
+     */
+    private static class DueEntry {
+        private final String deviceId;
+        private final long dueAt;
+        private final long version;
+
+        DueEntry(String deviceId, long dueAt, long version) {
+            this.deviceId = deviceId;
+            this.dueAt = dueAt;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.roominspection.backend.collector;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.roominspection.backend.entity.CollectorNode;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.mapper.CollectorNodeMapper;
+import com.roominspection.backend.mapper.DeviceMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 采集节点分片管理器
+ * <p>
+ * 设备按一致性哈希（带虚拟节点）分配到在线采集节点，并限制单节点负载上限为
+ * ceil(负载系数 × 设备数 / 节点数)：顺时针查找时跳过已满的节点，节点增减只迁移少量设备，
+ * 同时不会出现个别节点承担过多设备的情况。
+ * <p>
+ * 采集节点通过租约领取自己的分片，租约过期未续约或心跳超时的节点从环上摘除并重新分配；
+ * 分配给某节点但该节点没有有效租约的设备由中心服务本地兜底采集，保证不会漏采。
+ * 每台设备记录其归属自哪个纪元起未变：重新分配后归属未变的设备，节点在旧纪元领取的租约仍然有效；
+ * 只有新迁入的设备需要节点以新纪元续约确认后才移交，迁移期间由本地兜底。
+ */
+@Slf4j
+@Component
+public class CollectorShardManager {
+
+    @Autowired
+    private DeviceMapper deviceMapper;
+
+    @Autowired
+    private CollectorNodeMapper collectorNodeMapper;
+
+    @Value("${collector-shard.enabled:false}")
+    private boolean enabled;
+
+    @Value("${collector-shard.virtual-nodes:160}")
+    private int virtualNodes;
+
+    @Value("${collector-shard.load-factor:1.25}")
+    private double loadFactor;
+
+    @Value("${collector-shard.heartbeat-timeout-ms:30000}")
+    private long heartbeatTimeoutMs;
+
+    @Value("${collector-shard.lease-ttl-ms:60000}")
+    private long leaseTtlMs;
+
+    @Value("${collector-shard.device-refresh-interval-ms:300000}")
+    private long deviceRefreshIntervalMs;
+
+    /**
+     * 节点编码 -> 节点状态
+     */
+    private final ConcurrentHashMap<String, NodeState> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * 当前分配结果（整体替换，读无锁）
+     */
+    private volatile Assignment assignment = Assignment.EMPTY;
+
+    /**
+     * 参与分片的设备ID快照
+     */
+    private volatile List<String> deviceIds = Collections.emptyList();
+    private volatile long deviceRefreshedAt = 0;
+
+    private volatile boolean membershipChanged = true;
+    private volatile boolean nodesLoaded = false;
+
+    private final AtomicLong epochSequence = new AtomicLong(0);
+    private final AtomicLong rebalanceCount = new AtomicLong(0);
+    private final AtomicLong movedDevices = new AtomicLong(0);
+
+    /**
+     * 分片是否启用
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 节点心跳（注册也视为一次心跳）
+     *
+     * @param node 采集节点
+     */
+    public void onNodeHeartbeat(CollectorNode node) {
+        if (!enabled || node == null || node.getNodeCode() == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        NodeState state = nodes.computeIfAbsent(node.getNodeCode(), NodeState::new);
+        boolean wasAlive = state.isAlive(now, heartbeatTimeoutMs);
+        state.lastHeartbeat = now;
+        if (!wasAlive) {
+            membershipChanged = true;
+            log.info("采集节点加入分片环: nodeCode={}", node.getNodeCode());
+        }
+    }
+
+    /**
+     * 节点下线或删除
+     *
+     * @param nodeCode 节点编码
+     */
+    public void onNodeRemoved(String nodeCode) {
+        if (nodeCode != null && nodes.remove(nodeCode) != null) {
+            membershipChanged = true;
+            log.info("采集节点移出分片环: nodeCode={}", nodeCode);
+        }
+    }
+
+    /**
+     * 领取（续约）分片租约
+     *
+     * @param nodeCode 节点编码
+     * @return 租约，节点不在线时返回null
+     */
+    public Lease lease(String nodeCode) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        NodeState state = nodes.get(nodeCode);
+        if (state == null || !state.isAlive(now, heartbeatTimeoutMs)) {
+            return null;
+        }
+        if (membershipChanged) {
+            rebalance();
+        }
+        Assignment current = assignment;
+        state.leaseExpiresAt = now + leaseTtlMs;
+        state.leasedEpoch = current.epoch;
+        List<String> owned = current.byNode.getOrDefault(nodeCode, Collections.emptyList());
+        return new Lease(nodeCode, current.epoch, state.leaseExpiresAt, owned);
+    }
+
+    /**
+     * 设备当前所属节点
+     *
+     * @return 节点编码，未分配时返回null
+     */
+    public String getOwner(String deviceId) {
+        return assignment.owner.get(deviceId);
+    }
+
+    /**
+     * 设备当前是否分配给指定节点
+     */
+    public boolean isAssignedTo(String deviceId, String nodeCode) {
+        return nodeCode != null && nodeCode.equals(assignment.owner.get(deviceId));
+    }
+
+    /**
+     * 设备是否应由中心服务本地采集
+     * 未启用分片、没有在线节点、设备未分配或所属节点没有有效租约时均由本地采集
+     */
+    public boolean isLocal(String deviceId) {
+        if (!enabled) {
+            return true;
+        }
+        Assignment current = assignment;
+        String owner = current.owner.get(deviceId);
+        if (owner == null) {
+            return true;
+        }
+        NodeState state = nodes.get(owner);
+        return state == null || !state.covers(System.currentTimeMillis(), current.ownerSince.get(deviceId));
+    }
+
+    /**
+     * 当前分配纪元
+     */
+    public long getEpoch() {
+        return assignment.epoch;
+    }
+
+    /**
+     * 定时检查成员变化：心跳超时的节点摘除，成员或设备集合变化时重新分配
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void checkMembership() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!nodesLoaded) {
+                loadNodes();
+            }
+            long now = System.currentTimeMillis();
+            for (NodeState state : nodes.values()) {
+                if (state.inRing && !state.isAlive(now, heartbeatTimeoutMs)) {
+                    membershipChanged = true;
+                    log.warn("采集节点心跳超时，重新分配其分片: nodeCode={}", state.nodeCode);
+                }
+            }
+            if (now - deviceRefreshedAt >= deviceRefreshIntervalMs) {
+                refreshDevices();
+            }
+            if (membershipChanged) {
+                rebalance();
+            }
+        } catch (Exception e) {
+            log.error("采集分片检查失败", e);
+        }
+    }
+
+    /**
+     * 获取当前分配概况
+     *
+     * @return 各节点设备数、租约与纪元
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        Assignment current = assignment;
+        long now = System.currentTimeMillis();
+        stats.put("enabled", enabled);
+        stats.put("epoch", current.epoch);
+        stats.put("deviceCount", current.owner.size());
+        stats.put("capacity", current.capacity);
+        stats.put("rebalances", rebalanceCount.get());
+        stats.put("movedDevices", movedDevices.get());
+
+        List<Map<String, Object>> nodeStats = new ArrayList<>();
+        for (NodeState state : nodes.values()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("nodeCode", state.nodeCode);
+            item.put("alive", state.isAlive(now, heartbeatTimeoutMs));
+            item.put("leased", state.hasLease(now));
+            item.put("leasedEpoch", state.leasedEpoch);
+            item.put("deviceCount", current.byNode.getOrDefault(state.nodeCode, Collections.emptyList()).size());
+            nodeStats.add(item);
+        }
+        stats.put("nodes", nodeStats);
+        return stats;
+    }
+
+    /**
+     * 启动时从库中恢复近期有心跳的节点，避免重启后所有设备短暂回落到本地
+     */
+    private void loadNodes() {
+        LocalDateTime since = LocalDateTime.now().minusNanos(heartbeatTimeoutMs * 1_000_000L);
+        List<CollectorNode> recent = collectorNodeMapper.selectList(new LambdaQueryWrapper<CollectorNode>()
+                .eq(CollectorNode::getStatus, "ONLINE")
+                .ge(CollectorNode::getLastHeartbeatTime, since));
+        for (CollectorNode node : recent) {
+            NodeState state = nodes.computeIfAbsent(node.getNodeCode(), NodeState::new);
+            state.lastHeartbeat = Math.max(state.lastHeartbeat,
+                    node.getLastHeartbeatTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        nodesLoaded = true;
+        membershipChanged = true;
+    }
+
+    private void refreshDevices() {
+        List<String> ids = deviceMapper.selectList(new LambdaQueryWrapper<Device>().select(Device::getId))
+                .stream()
+                .map(Device::getId)
+                .filter(Objects::nonNull)
+                .sorted()
+                .collect(Collectors.toList());
+        deviceRefreshedAt = System.currentTimeMillis();
+        if (!ids.equals(deviceIds)) {
+            deviceIds = ids;
+            membershipChanged = true;
+        }
+    }
+
+    /**
+     * 重新计算分配
+     */
+    private synchronized void rebalance() {
+        if (!membershipChanged) {
+            return;
+        }
+        membershipChanged = false;
+        if (deviceRefreshedAt == 0) {
+            refreshDevices();
+            membershipChanged = false;
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> alive = new ArrayList<>();
+        for (NodeState state : nodes.values()) {
+            state.inRing = state.isAlive(now, heartbeatTimeoutMs);
+            if (state.inRing) {
+                alive.add(state.nodeCode);
+            }
+        }
+        Collections.sort(alive);
+
+        Assignment previous = assignment;
+        Assignment next = assign(epochSequence.incrementAndGet(), alive, deviceIds);
+
+        // 归属未变的设备沿用原纪元，节点已有的租约对其继续有效
+        long moved = 0;
+        for (Map.Entry<String, String> entry : next.owner.entrySet()) {
+            String deviceId = entry.getKey();
+            if (entry.getValue().equals(previous.owner.get(deviceId))) {
+                next.ownerSince.put(deviceId, previous.ownerSince.get(deviceId));
+            } else {
+                moved++;
+            }
+        }
+        assignment = next;
+        rebalanceCount.incrementAndGet();
+        movedDevices.addAndGet(moved);
+        log.info("采集分片重新分配: epoch={}, nodes={}, devices={}, capacity={}, moved={}",
+                next.epoch, alive.size(), next.owner.size(), next.capacity, moved);
+    }
+
+    /**
+     * 有界负载一致性哈希分配
+     */
+    private Assignment assign(long epoch, List<String> nodeCodes, List<String> devices) {
+        if (nodeCodes.isEmpty() || devices.isEmpty()) {
+            return new Assignment(epoch, Collections.emptyMap(), Collections.emptyMap(), new HashMap<>(), 0);
+        }
+
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String nodeCode : nodeCodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(nodeCode + "#" + i), nodeCode);
+            }
+        }
+
+        int capacity = (int) Math.ceil(loadFactor * devices.size() / nodeCodes.size());
+        Map<String, Integer> load = new HashMap<>(nodeCodes.size() * 2);
+        Map<String, String> owner = new HashMap<>(devices.size() * 2);
+        Map<String, List<String>> byNode = new HashMap<>(nodeCodes.size() * 2);
+        Map<String, Long> ownerSince = new HashMap<>(devices.size() * 2);
+
+        for (String deviceId : devices) {
+            Map.Entry<Long, String> entry = ring.ceilingEntry(hash(deviceId));
+            if (entry == null) {
+                entry = ring.firstEntry();
+            }
+            // 顺时针跳过已满节点；容量之和不小于设备数，必然能找到
+            while (load.getOrDefault(entry.getValue(), 0) >= capacity) {
+                entry = ring.higherEntry(entry.getKey());
+                if (entry == null) {
+                    entry = ring.firstEntry();
+                }
+            }
+            String nodeCode = entry.getValue();
+            load.merge(nodeCode, 1, Integer::sum);
+            owner.put(deviceId, nodeCode);
+            ownerSince.put(deviceId, epoch);
+            byNode.computeIfAbsent(nodeCode, k -> new ArrayList<>()).add(deviceId);
+        }
+        return new Assignment(epoch, owner, byNode, ownerSince, capacity);
+    }
+
+    /**
+     * 64位FNV-1a哈希并做一次雪崩混合，使虚拟节点在环上分布均匀
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 分片租约
+     */
+    public static final class Lease {
+        private final String nodeCode;
+        private final long epoch;
+        private final long expiresAt;
+        private final List<String> deviceIds;
+
+        Lease(String nodeCode, long epoch, long expiresAt, List<String> deviceIds) {
+            this.nodeCode = nodeCode;
+            this.epoch = epoch;
+            this.expiresAt = expiresAt;
+            this.deviceIds = Collections.unmodifiableList(deviceIds);
+        }
+
+        public String getNodeCode() {
+            return nodeCode;
+        }
+
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public List<String> getDeviceIds() {
+            return deviceIds;
+        }
+    }
+
+    private static final class NodeState {
+        private final String nodeCode;
+        private volatile long lastHeartbeat;
+        private volatile long leaseExpiresAt;
+        private volatile long leasedEpoch;
+        private volatile boolean inRing;
+
+        NodeState(String nodeCode) {
+            this.nodeCode = nodeCode;
+        }
+
+        boolean isAlive(long now, long heartbeatTimeoutMs) {
+            return now - lastHeartbeat <= heartbeatTimeoutMs;
+        }
+
+        boolean hasLease(long now) {
+            return now < leaseExpiresAt;
+        }
+
+        /**
+         * 租约是否覆盖自指定纪元起归属本节点的设备
+         * 租约须未过期，且领取时的纪元不早于设备归属本节点的纪元（新迁入的设备须重新领取租约后才接管）
+         */
+        boolean covers(long now, Long ownerSince) {
+            return ownerSince != null && leasedEpoch >= ownerSince && hasLease(now);
+        }
+    }
+
+    private static final class Assignment {
+        private static final Assignment EMPTY = new Assignment(0, Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), 0);
+
+        private final long epoch;
+        private final Map<String, String> owner;
+        private final Map<String, List<String>> byNode;
+
+        /**
+         * 设备ID -> 设备归属当前节点起始的纪元（发布前在重新分配中补全，之后只读）
+         */
+        private final Map<String, Long> ownerSince;
+        private final int capacity;
+
+        Assignment(long epoch, Map<String, String> owner, Map<String, List<String>> byNode,
+                   Map<String, Long> ownerSince, int capacity) {
+            this.epoch = epoch;
+            this.owner = owner;
+            this.byNode = byNode;
+            this.ownerSince = ownerSince;
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.roominspection.backend.collector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 设备熔断器
+ * <p>
+ * 每台设备一个三态熔断器：
+ * <ul>
+ *     <li>CLOSED：正常采集，连续失败达到阈值后打开</li>
+ *     <li>OPEN：跳过定时采集，不再等待超时、不写失败任务记录；到达探测时间后转为半开</li>
+ *     <li>HALF_OPEN：只放行一次探测采集，成功则关闭，失败则重新打开并将退避时间翻倍（带随机抖动，上限可配）</li>
+ * </ul>
+ * 同时为每台设备维护0-100的健康分（成功向100回升，失败减半），调度时健康分高的设备优先派发。
+ * 维护窗口内大批设备同时离线时，它们在几个周期内全部熔断，探测时间随机错开，不会集中冲击采集通道。
+ */
+@Slf4j
+@Component
+public class DeviceCircuitBreaker {
+
+    public static final String CLOSED = "CLOSED";
+    public static final String OPEN = "OPEN";
+    public static final String HALF_OPEN = "HALF_OPEN";
+
+    private static final double FULL_HEALTH = 100.0;
+    private static final double RECOVERY_RATE = 0.2;
+    private static final double FAILURE_DECAY = 0.5;
+
+    @Value("${monitor.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitor.circuit-breaker.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${monitor.circuit-breaker.base-backoff-ms:30000}")
+    private long baseBackoffMs;
+
+    @Value("${monitor.circuit-breaker.max-backoff-ms:1800000}")
+    private long maxBackoffMs;
+
+    @Value("${monitor.circuit-breaker.half-open-timeout-ms:60000}")
+    private long halfOpenTimeoutMs;
+
+    /**
+     * 设备ID -> 熔断状态
+     */
+    private final ConcurrentHashMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private final AtomicLong tripCount = new AtomicLong(0);
+    private final AtomicLong shortCircuitCount = new AtomicLong(0);
+    private final AtomicLong probeCount = new AtomicLong(0);
+
+    /**
+     * 是否允许本轮采集（半开状态时占用唯一的探测名额）
+     *
+     * @param deviceId 设备ID
+     * @return false-熔断中，本轮跳过
+     */
+    public boolean allowRequest(String deviceId) {
+        if (!enabled) {
+            return true;
+        }
+        Breaker breaker = breakers.get(deviceId);
+        if (breaker == null) {
+            return true;
+        }
+        synchronized (breaker) {
+            long now = System.currentTimeMillis();
+            switch (breaker.state) {
+                case OPEN:
+                    if (now < breaker.nextProbeAt) {
+                        shortCircuitCount.incrementAndGet();
+                        return false;
+                    }
+                    breaker.state = HALF_OPEN;
+                    breaker.probeStartedAt = now;
+                    probeCount.incrementAndGet();
+                    return true;
+                case HALF_OPEN:
+                    // 探测结果迟迟未回（例如被跳过）时允许重新探测
+                    if (now - breaker.probeStartedAt >= halfOpenTimeoutMs) {
+                        breaker.probeStartedAt = now;
+                        probeCount.incrementAndGet();
+                        return true;
+                    }
+                    shortCircuitCount.incrementAndGet();
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * 记录采集成功
+     */
+    public void onSuccess(String deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        if (breaker == null) {
+            return;
+        }
+        synchronized (breaker) {
+            if (!CLOSED.equals(breaker.state)) {
+                log.info("设备恢复响应，关闭熔断: deviceId={}, openedFor={}ms",
+                        deviceId, System.currentTimeMillis() - breaker.openedAt);
+            }
+            breaker.state = CLOSED;
+            breaker.consecutiveFailures = 0;
+            breaker.backoffMs = 0;
+            breaker.lastError = null;
+            breaker.healthScore += (FULL_HEALTH - breaker.healthScore) * RECOVERY_RATE;
+        }
+        if (breaker.healthScore >= FULL_HEALTH - 0.5) {
+            // 完全健康的设备不再保留状态
+            breakers.remove(deviceId, breaker);
+        }
+    }
+
+    /**
+     * 记录采集失败（含超时）
+     */
+    public void onFailure(String deviceId, String error) {
+        Breaker breaker = breakers.computeIfAbsent(deviceId, k -> new Breaker());
+        synchronized (breaker) {
+            long now = System.currentTimeMillis();
+            breaker.consecutiveFailures++;
+            breaker.lastError = error;
+            breaker.lastFailureAt = now;
+            breaker.healthScore *= FAILURE_DECAY;
+
+            if (HALF_OPEN.equals(breaker.state)) {
+                // 探测失败，退避翻倍
+                breaker.backoffMs = Math.min(maxBackoffMs, Math.max(baseBackoffMs, breaker.backoffMs * 2));
+                breaker.state = OPEN;
+                breaker.nextProbeAt = now + jitter(breaker.backoffMs);
+            } else if (CLOSED.equals(breaker.state) && breaker.consecutiveFailures >= failureThreshold) {
+                breaker.backoffMs = baseBackoffMs;
+                breaker.state = OPEN;
+                breaker.openedAt = now;
+                breaker.nextProbeAt = now + jitter(breaker.backoffMs);
+                tripCount.incrementAndGet();
+                log.warn("设备连续采集失败，打开熔断: deviceId={}, failures={}, error={}",
+                        deviceId, breaker.consecutiveFailures, error);
+            }
+        }
+    }
+
+    /**
+     * 采集未实际执行（被跳过）时归还半开探测名额
+     */
+    public void onSkipped(String deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        if (breaker == null) {
+            return;
+        }
+        synchronized (breaker) {
+            if (HALF_OPEN.equals(breaker.state)) {
+                breaker.state = OPEN;
+                breaker.nextProbeAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * 设备健康分（0-100，未记录的设备为100）
+     */
+    public double getHealthScore(String deviceId) {
+        Breaker breaker = breakers.get(deviceId);
+        return breaker != null ? breaker.healthScore : FULL_HEALTH;
+    }
+
+    /**
+     * 手动复位熔断器
+     *
+     * @return 设备此前是否有熔断状态
+     */
+    public boolean reset(String deviceId) {
+        Breaker removed = breakers.remove(deviceId);
+        if (removed != null) {
+            log.info("手动复位设备熔断: deviceId={}", deviceId);
+        }
+        return removed != null;
+    }
+
+    /**
+     * 获取处于非关闭状态或健康分下降的设备
+     *
+     * @param trippedOnly 是否只返回熔断中（打开/半开）的设备
+     * @return 设备熔断状态列表，按健康分升序
+     */
+    public List<Map<String, Object>> getStates(boolean trippedOnly) {
+        List<Map<String, Object>> states = new ArrayList<>();
+        for (Map.Entry<String, Breaker> entry : breakers.entrySet()) {
+            Breaker breaker = entry.getValue();
+            synchronized (breaker) {
+                if (trippedOnly && CLOSED.equals(breaker.state)) {
+                    continue;
+                }
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("deviceId", entry.getKey());
+                item.put("state", breaker.state);
+                item.put("healthScore", Math.round(breaker.healthScore * 10) / 10.0);
+                item.put("consecutiveFailures", breaker.consecutiveFailures);
+                item.put("lastError", breaker.lastError);
+                item.put("lastFailureAt", breaker.lastFailureAt);
+                item.put("openedAt", CLOSED.equals(breaker.state) ? null : breaker.openedAt);
+                item.put("nextProbeAt", OPEN.equals(breaker.state) ? breaker.nextProbeAt : null);
+                item.put("backoffMs", breaker.backoffMs);
+                states.add(item);
+            }
+        }
+        states.sort(Comparator.comparingDouble(m -> (Double) m.get("healthScore")));
+        return states;
+    }
+
+    /**
+     * 获取熔断统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        int open = 0;
+        int halfOpen = 0;
+        for (Breaker breaker : breakers.values()) {
+            if (OPEN.equals(breaker.state)) {
+                open++;
+            } else if (HALF_OPEN.equals(breaker.state)) {
+                halfOpen++;
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("tracked", breakers.size());
+        stats.put("open", open);
+        stats.put("halfOpen", halfOpen);
+        stats.put("trips", tripCount.get());
+        stats.put("shortCircuits", shortCircuitCount.get());
+        stats.put("probes", probeCount.get());
+        return stats;
+    }
+
+    /**
+     * 退避时间加±20%随机抖动，避免同时熔断的设备在同一时刻集中探测
+     */
+    private long jitter(long backoffMs) {
+        return (long) (backoffMs * (0.8 + ThreadLocalRandom.current().nextDouble() * 0.4));
+    }
+
+    private static final class Breaker {
+        private volatile String state = CLOSED;
+        private volatile double healthScore = FULL_HEALTH;
+        private int consecutiveFailures;
+        private long backoffMs;
+        private long openedAt;
+        private long nextProbeAt;
+        private long probeStartedAt;
+        private long lastFailureAt;
+        private String lastError;
+    }
+}
@@ -0,0 +1,295 @@
+package com.roominspection.backend.collector;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DeviceMetric;
+import com.roominspection.backend.mapper.DeviceMapper;
+import com.roominspection.backend.mapper.DeviceMetricMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备最新指标内存索引
+ * 在采集入口更新，按设备维护不可变快照（写时复制），读操作无锁；
+ * 另维护机房 -> 设备的二级索引，机房最新指标查询只需遍历机房内设备。
+ * 写入时复制一次指标对象，快照里的对象和列表之后不再修改，读取直接返回快照（不可修改的列表），
+ * 读路径不做任何复制；调用方不得修改拿到的指标对象
+ */
+@Slf4j
+@Component
+public class LatestMetricStore {
+
+    @Autowired
+    private DeviceMetricMapper deviceMetricMapper;
+
+    @Autowired
+    private DeviceMapper deviceMapper;
+
+    /**
+     * 单台设备最多保留的指标序列数（端口、磁盘等多实例指标各占一个序列）
+     */
+    @Value("${monitor-task.latest-store.max-series-per-device:512}")
+    private int maxSeriesPerDevice;
+
+    /**
+     * 预热回溯天数，超过该时间未上报的设备视为离线，不预热其最新指标
+     */
+    @Value("${monitor-task.latest-store.warm-up-days:7}")
+    private int warmUpDays;
+
+    /**
+     * deviceId -> 最新指标快照（不可变，整体替换）
+     */
+    private final ConcurrentHashMap<String, DeviceSnapshot> latestByDevice = new ConcurrentHashMap<>();
+
+    /**
+     * roomId -> deviceId集合
+     */
+    private final ConcurrentHashMap<String, Set<String>> devicesByRoom = new ConcurrentHashMap<>();
+
+    /**
+     * deviceId -> roomId（用于设备迁移机房时维护二级索引）
+     */
+    private final ConcurrentHashMap<String, String> roomByDevice = new ConcurrentHashMap<>();
+
+    private volatile boolean warmed = false;
+
+    /**
+     * 启动后从数据库预热最新指标
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            List<Device> devices = deviceMapper.selectList(
+                    new LambdaQueryWrapper<Device>().select(Device::getId, Device::getRoomId));
+            for (Device device : devices) {
+                indexRoom(device.getId(), device.getRoomId());
+            }
+
+            List<DeviceMetric> latest = deviceMetricMapper.selectLatestOfAllDevices(
+                    LocalDateTime.now().minusDays(warmUpDays));
+            Map<String, List<DeviceMetric>> byDevice = new HashMap<>();
+            for (DeviceMetric metric : latest) {
+                byDevice.computeIfAbsent(metric.getDeviceId(), k -> new ArrayList<>()).add(metric);
+            }
+            byDevice.forEach(this::merge);
+
+            warmed = true;
+            log.info("最新指标索引预热完成: devices={}, metrics={}, duration={}ms",
+                    byDevice.size(), latest.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 预热失败时查询回落到数据库
+            log.error("最新指标索引预热失败，查询将回落到数据库", e);
+        }
+    }
+
+    /**
+     * 采集入口更新设备最新指标
+     *
+     * @param device  设备
+     * @param metrics 本次采集的指标
+     */
+    public void update(Device device, List<DeviceMetric> metrics) {
+        indexRoom(device.getId(), device.getRoomId());
+        if (metrics != null && !metrics.isEmpty()) {
+            merge(device.getId(), metrics);
+        }
+    }
+
+    /**
+     * 获取设备最新指标
+     *
+     * @param deviceId 设备ID
+     * @return 指标列表（只读快照）
+     */
+    public List<DeviceMetric> getLatestByDeviceId(String deviceId) {
+        DeviceSnapshot snapshot = latestByDevice.get(deviceId);
+        return snapshot != null ? snapshot.metrics : Collections.emptyList();
+    }
+
+    /**
+     * 获取机房所有设备的最新指标
+     *
+     * @param roomId 机房ID
+     * @return 指标列表（只读，元素为各设备快照中的对象）
+     */
+    public List<DeviceMetric> getLatestByRoomId(String roomId) {
+        Set<String> deviceIds = devicesByRoom.get(roomId);
+        if (deviceIds == null) {
+            return Collections.emptyList();
+        }
+        List<DeviceMetric> result = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            DeviceSnapshot snapshot = latestByDevice.get(deviceId);
+            if (snapshot != null) {
+                result.addAll(snapshot.metrics);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 索引中的设备ID
+     *
+     * @return 设备ID集合（副本）
+     */
+    public Set<String> getDeviceIds() {
+        Set<String> deviceIds = new HashSet<>(latestByDevice.keySet());
+        deviceIds.addAll(roomByDevice.keySet());
+        return deviceIds;
+    }
+
+    /**
+     * 移除设备（设备删除时调用）
+     *
+     * @param deviceId 设备ID
+     */
+    public void removeDevice(String deviceId) {
+        latestByDevice.remove(deviceId);
+        String roomId = roomByDevice.remove(deviceId);
+        if (roomId != null) {
+            Set<String> deviceIds = devicesByRoom.get(roomId);
+            if (deviceIds != null) {
+                deviceIds.remove(deviceId);
+            }
+        }
+    }
+
+    /**
+     * 是否已完成预热（未预热时查询应回落到数据库）
+     *
+     * @return 是否已预热
+     */
+    public boolean isWarmed() {
+        return warmed;
+    }
+
+    /**
+     * 获取索引统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long series = 0;
+        for (DeviceSnapshot snapshot : latestByDevice.values()) {
+            series += snapshot.metrics.size();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("warmed", warmed);
+        stats.put("devices", latestByDevice.size());
+        stats.put("rooms", devicesByRoom.size());
+        stats.put("series", series);
+        return stats;
+    }
+
+    /**
+     * 以写时复制方式合并设备指标，较旧的采集结果不会覆盖较新的值
+     */
+    private void merge(String deviceId, List<DeviceMetric> metrics) {
+        latestByDevice.compute(deviceId, (id, current) -> {
+            Map<String, DeviceMetric> next = current != null ? new HashMap<>(current.bySeries) : new HashMap<>();
+            for (DeviceMetric metric : metrics) {
+                String key = seriesKey(metric);
+                DeviceMetric existing = next.get(key);
+                if (existing != null && existing.getCollectionTime() != null && metric.getCollectionTime() != null
+                        && existing.getCollectionTime().isAfter(metric.getCollectionTime())) {
+                    continue;
+                }
+                if (existing == null && next.size() >= maxSeriesPerDevice) {
+                    continue;
+                }
+                next.put(key, copyOf(metric));
+            }
+            return new DeviceSnapshot(next);
+        });
+    }
+
+    /**
+     * 写入时的一次性复制（逐字段赋值，不走反射），调用方之后修改原对象不会影响快照
+     */
+    private static DeviceMetric copyOf(DeviceMetric metric) {
+        DeviceMetric copy = new DeviceMetric();
+        copy.setId(metric.getId());
+        copy.setDeviceId(metric.getDeviceId());
+        copy.setDeviceCode(metric.getDeviceCode());
+        copy.setDeviceName(metric.getDeviceName());
+        copy.setMetricType(metric.getMetricType());
+        copy.setMetricName(metric.getMetricName());
+        copy.setMetricValue(metric.getMetricValue());
+        copy.setUnit(metric.getUnit());
+        copy.setStatus(metric.getStatus());
+        copy.setExceededThreshold(metric.getExceededThreshold());
+        copy.setPortName(metric.getPortName());
+        copy.setPortIndex(metric.getPortIndex());
+        copy.setPortStatus(metric.getPortStatus());
+        copy.setDiskName(metric.getDiskName());
+        copy.setDiskPath(metric.getDiskPath());
+        copy.setDiskTotal(metric.getDiskTotal());
+        copy.setDiskUsed(metric.getDiskUsed());
+        copy.setDiskFree(metric.getDiskFree());
+        copy.setThresholdUpper(metric.getThresholdUpper());
+        copy.setThresholdLower(metric.getThresholdLower());
+        copy.setCustomKey(metric.getCustomKey());
+        copy.setCustomValue(metric.getCustomValue());
+        copy.setCollectionMethod(metric.getCollectionMethod());
+        copy.setCollectionTime(metric.getCollectionTime());
+        copy.setCreatedAt(metric.getCreatedAt());
+        return copy;
+    }
+
+    /**
+     * 维护机房 -> 设备二级索引
+     */
+    private void indexRoom(String deviceId, String roomId) {
+        if (deviceId == null) {
+            return;
+        }
+        String previous = roomId != null ? roomByDevice.put(deviceId, roomId) : roomByDevice.remove(deviceId);
+        if (previous != null && !previous.equals(roomId)) {
+            Set<String> deviceIds = devicesByRoom.get(previous);
+            if (deviceIds != null) {
+                deviceIds.remove(deviceId);
+            }
+        }
+        if (roomId != null) {
+            devicesByRoom.computeIfAbsent(roomId, k -> ConcurrentHashMap.newKeySet()).add(deviceId);
+        }
+    }
+
+    /**
+     * 设备最新指标快照：按序列索引的指标（合并用）和预先生成的只读列表（读取用），创建后不再修改
+     */
+    private static final class DeviceSnapshot {
+        private final Map<String, DeviceMetric> bySeries;
+        private final List<DeviceMetric> metrics;
+
+        DeviceSnapshot(Map<String, DeviceMetric> bySeries) {
+            this.bySeries = bySeries;
+            this.metrics = Collections.unmodifiableList(new ArrayList<>(bySeries.values()));
+        }
+    }
+
+    /**
+     * 指标序列键：指标类型 + 实例标识（端口索引、磁盘名或指标名）
+     */
+    private String seriesKey(DeviceMetric metric) {
+        StringBuilder key = new StringBuilder(metric.getMetricType() != null ? metric.getMetricType() : "");
+        if (metric.getPortIndex() != null) {
+            key.append("#port:").append(metric.getPortIndex());
+        } else if (metric.getDiskName() != null) {
+            key.append("#disk:").append(metric.getDiskName());
+        } else if (metric.getMetricName() != null) {
+            key.append("#name:").append(metric.getMetricName());
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,242 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.mapper.PartitionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 时序数据分区管理器
+ * device_metric、environment_data、power_metric、monitor_task按时间做RANGE COLUMNS分区，
+ * 定时预建未来分区，过期数据通过DROP PARTITION整体删除，不再逐行DELETE
+ */
+@Slf4j
+@Component
+public class MetricPartitionManager {
+
+    private static final String MAX_PARTITION = "p_max";
+    private static final DateTimeFormatter BOUND_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DAY_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * 单次维护最多新建的分区数，防止长时间停机后一次性建出大量空分区
+     */
+    private static final int MAX_PARTITIONS_PER_RUN = 400;
+
+    /**
+     * 分区粒度
+     */
+    public enum Granularity {
+        DAY, MONTH
+    }
+
+    @Autowired
+    private PartitionMapper partitionMapper;
+
+    @Value("${metric-partition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${metric-partition.pre-create-days:7}")
+    private int preCreateDays;
+
+    @Value("${metric-partition.pre-create-months:2}")
+    private int preCreateMonths;
+
+    @Value("${metric-partition.retain-days.device-metric:30}")
+    private int deviceMetricRetainDays;
+
+    @Value("${metric-partition.retain-days.environment-data:90}")
+    private int environmentDataRetainDays;
+
+    @Value("${metric-partition.retain-days.power-metric:365}")
+    private int powerMetricRetainDays;
+
+    @Value("${metric-partition.retain-days.monitor-task:30}")
+    private int monitorTaskRetainDays;
+
+    /**
+     * 受管表：表名 -> 分区粒度
+     */
+    private final Map<String, Granularity> managedTables = new LinkedHashMap<>();
+
+    {
+        managedTables.put("device_metric", Granularity.DAY);
+        managedTables.put("environment_data", Granularity.DAY);
+        managedTables.put("power_metric", Granularity.MONTH);
+        managedTables.put("monitor_task", Granularity.DAY);
+    }
+
+    /**
+     * 启动后立即执行一次维护，确保当天及未来分区存在
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    /**
+     * 每天凌晨预建未来分区并删除过期分区
+     */
+    @Scheduled(cron = "0 10 0 * * ?")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, Granularity> entry : managedTables.entrySet()) {
+            String tableName = entry.getKey();
+            try {
+                createFuturePartitions(tableName, entry.getValue(), now);
+                dropPartitionsBefore(tableName, now.minusDays(getRetainDays(tableName)));
+            } catch (Exception e) {
+                log.error("分区维护失败: table={}, error={}", tableName, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 删除上界不晚于指定时间的所有分区
+     *
+     * @param tableName  表名（必须为受管表）
+     * @param beforeTime 时间点
+     * @return 被删除分区的估算行数；表未分区时返回-1，调用方应回落到分批DELETE
+     */
+    public long dropPartitionsBefore(String tableName, LocalDateTime beforeTime) {
+        checkManaged(tableName);
+        List<Map<String, Object>> partitions = partitionMapper.selectPartitions(tableName);
+        if (partitions.isEmpty()) {
+            return -1;
+        }
+
+        long droppedRows = 0;
+        int droppedPartitions = 0;
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("partitionName");
+            LocalDateTime upperBound = parseBound(partition.get("description"));
+            if (upperBound == null || MAX_PARTITION.equals(name) || upperBound.isAfter(beforeTime)) {
+                continue;
+            }
+            partitionMapper.dropPartition(tableName, name);
+            Object rows = partition.get("tableRows");
+            droppedRows += rows instanceof Number ? ((Number) rows).longValue() : 0;
+            droppedPartitions++;
+        }
+
+        if (droppedPartitions > 0) {
+            log.info("删除过期分区: table={}, before={}, partitions={}, estimatedRows={}",
+                    tableName, beforeTime, droppedPartitions, droppedRows);
+        }
+        return droppedRows;
+    }
+
+    /**
+     * 预建未来分区（从p_max中拆分，p_max保持为空，拆分为纯元数据操作）
+     */
+    private void createFuturePartitions(String tableName, Granularity granularity, LocalDateTime now) {
+        List<Map<String, Object>> partitions = partitionMapper.selectPartitions(tableName);
+        if (partitions.isEmpty()) {
+            log.warn("表未分区，跳过分区维护（请先执行sql/metric_partition.sql）: table={}", tableName);
+            return;
+        }
+
+        LocalDateTime lastBound = null;
+        for (Map<String, Object> partition : partitions) {
+            LocalDateTime bound = parseBound(partition.get("description"));
+            if (bound != null && (lastBound == null || bound.isAfter(lastBound))) {
+                lastBound = bound;
+            }
+        }
+
+        LocalDateTime currentStart = truncate(now, granularity);
+        LocalDateTime target = granularity == Granularity.DAY
+                ? currentStart.plusDays(preCreateDays + 1L)
+                : currentStart.plusMonths(preCreateMonths + 1L);
+        LocalDateTime bound = lastBound != null ? lastBound : currentStart;
+
+        int created = 0;
+        while (bound.isBefore(target) && created < MAX_PARTITIONS_PER_RUN) {
+            // 落后于当前周期时，用一个分区补齐到当前周期末，避免补建大量空分区
+            LocalDateTime next = bound.isBefore(currentStart)
+                    ? next(currentStart, granularity)
+                    : next(bound, granularity);
+            String partitionName = partitionName(previous(next, granularity), granularity);
+            partitionMapper.addPartition(tableName, partitionName, next.format(BOUND_FORMATTER));
+            bound = next;
+            created++;
+        }
+
+        if (created > 0) {
+            log.info("预建分区完成: table={}, created={}, upTo={}", tableName, created, bound);
+        }
+    }
+
+    /**
+     * 获取受管表的保留天数
+     */
+    private int getRetainDays(String tableName) {
+        switch (tableName) {
+            case "device_metric":
+                return deviceMetricRetainDays;
+            case "environment_data":
+                return environmentDataRetainDays;
+            case "power_metric":
+                return powerMetricRetainDays;
+            case "monitor_task":
+                return monitorTaskRetainDays;
+            default:
+                throw new IllegalArgumentException("非受管分区表: " + tableName);
+        }
+    }
+
+    private void checkManaged(String tableName) {
+        if (!managedTables.containsKey(tableName)) {
+            throw new IllegalArgumentException("非受管分区表: " + tableName);
+        }
+    }
+
+    /**
+     * 解析RANGE COLUMNS分区上界，MAXVALUE返回null
+     */
+    private LocalDateTime parseBound(Object description) {
+        if (description == null) {
+            return null;
+        }
+        String value = description.toString().replace("'", "").trim();
+        if (value.isEmpty() || "MAXVALUE".equalsIgnoreCase(value)) {
+            return null;
+        }
+        if (value.length() == 10) {
+            value = value + " 00:00:00";
+        }
+        return LocalDateTime.parse(value, BOUND_FORMATTER);
+    }
+
+    private LocalDateTime truncate(LocalDateTime time, Granularity granularity) {
+        LocalDateTime day = time.toLocalDate().atStartOfDay();
+        return granularity == Granularity.DAY ? day : day.withDayOfMonth(1);
+    }
+
+    private LocalDateTime next(LocalDateTime time, Granularity granularity) {
+        return granularity == Granularity.DAY ? time.plusDays(1) : time.plusMonths(1);
+    }
+
+    private LocalDateTime previous(LocalDateTime time, Granularity granularity) {
+        return granularity == Granularity.DAY ? time.minusDays(1) : time.minusMonths(1);
+    }
+
+    /**
+     * 分区名取分区覆盖的最后一个周期，如p20261018表示2026-10-18当天
+     */
+    private String partitionName(LocalDateTime periodStart, Granularity granularity) {
+        return "p" + periodStart.format(granularity == Granularity.DAY ? DAY_NAME_FORMATTER : MONTH_NAME_FORMATTER);
+    }
+}
@@ -0,0 +1,396 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.MetricRollup;
+import com.roominspection.backend.mapper.MetricRollupMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 指标降采样汇总引擎
+ * 数据写入时在内存中按 1分钟/5分钟/1小时 三档时间桶累计 min/max/sum/count/last，
+ * 定时将增量合并到metric_rollup表（落库失败的增量合并回内存，下次再写）；趋势查询根据时间范围和点数预算选择合适的档位，
+ * 汇总未覆盖的头部（汇总开始之前）和尾部（最后一个汇总桶及之后，含尚未落库的当前桶）用原始数据补齐
+ */
+@Slf4j
+@Component
+public class MetricRollupEngine {
+
+    /**
+     * 汇总档位
+     */
+    public enum Tier {
+        MINUTE(60),
+        FIVE_MINUTES(300),
+        HOUR(3600);
+
+        private final int seconds;
+
+        Tier(int seconds) {
+            this.seconds = seconds;
+        }
+
+        public int getSeconds() {
+            return seconds;
+        }
+    }
+
+    private static final int FLUSH_BATCH_SIZE = 1000;
+    private static final int CLEAN_BATCH_SIZE = 5000;
+
+    @Autowired
+    private MetricRollupMapper metricRollupMapper;
+
+    @Value("${metric-rollup.max-points:720}")
+    private int defaultMaxPoints;
+
+    @Value("${metric-rollup.retain-days.minute:2}")
+    private int minuteRetainDays;
+
+    @Value("${metric-rollup.retain-days.five-minutes:14}")
+    private int fiveMinutesRetainDays;
+
+    @Value("${metric-rollup.retain-days.hour:400}")
+    private int hourRetainDays;
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    /**
+     * 尚未落库的汇总增量
+     */
+    private final ConcurrentHashMap<BucketKey, Aggregate> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 机房环境数据序列键（机房内同类型传感器合并为一个序列）
+     */
+    public static String environmentSeries(Long roomId, String dataType) {
+        return "ENV:" + roomId + ":" + dataType;
+    }
+
+    /**
+     * 空调运行数据序列键
+     */
+    public static String airConditionerSeries(Long acId, String field) {
+        return "AC:" + acId + ":" + field;
+    }
+
+    /**
+     * 系统监控指标序列键
+     */
+    public static String systemSeries(String serviceName, String field) {
+        return "SYS:" + serviceName + ":" + field;
+    }
+
+    /**
+     * 记录一个样本
+     *
+     * @param seriesKey 序列键
+     * @param time      采集时间
+     * @param value     样本值（null忽略）
+     */
+    public void record(String seriesKey, LocalDateTime time, Double value) {
+        if (seriesKey == null || time == null || value == null || value.isNaN()) {
+            return;
+        }
+        long epochSecond = time.atZone(zoneId).toEpochSecond();
+        for (Tier tier : Tier.values()) {
+            long bucketStart = epochSecond - Math.floorMod(epochSecond, tier.seconds);
+            pending.compute(new BucketKey(seriesKey, tier.seconds, bucketStart), (key, aggregate) -> {
+                Aggregate next = aggregate != null ? aggregate : new Aggregate();
+                next.add(value, epochSecond);
+                return next;
+            });
+        }
+    }
+
+    /**
+     * 定时将汇总增量合并到数据库
+     */
+    @Scheduled(fixedDelayString = "${metric-rollup.flush-interval-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<BucketKey, Aggregate> batch = new LinkedHashMap<>(FLUSH_BATCH_SIZE * 2);
+        for (BucketKey key : pending.keySet()) {
+            // 原子取出增量，之后到达的样本会累计到新的增量中
+            Aggregate aggregate = pending.remove(key);
+            if (aggregate == null) {
+                continue;
+            }
+            batch.put(key, aggregate);
+            if (batch.size() >= FLUSH_BATCH_SIZE) {
+                upsert(batch);
+                batch = new LinkedHashMap<>(FLUSH_BATCH_SIZE * 2);
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsert(batch);
+        }
+    }
+
+    /**
+     * 原始数据查询
+     *
+     * @param <T> 原始数据类型
+     */
+    public interface RawQuery<T> {
+
+        /**
+         * 查询时间范围内的原始数据
+         *
+         * @param startTime 开始时间
+         * @param endTime   结束时间
+         * @return 原始数据
+         */
+        List<T> fetch(LocalDateTime startTime, LocalDateTime endTime);
+    }
+
+    /**
+     * 查询多个序列合并后的趋势，汇总未覆盖的头尾区间用原始数据按同一档位聚合补齐
+     *
+     * @param seriesKeys 序列键
+     * @param startTime  开始时间
+     * @param endTime    结束时间
+     * @param maxPoints  点数预算（<=0时使用默认值）
+     * @param rawQuery   原始数据查询
+     * @param timeOf     原始数据的采集时间
+     * @param valueOf    原始数据的样本值
+     * @return 时间桶汇总列表（按时间升序）
+     */
+    public <T> List<MetricRollup> queryTrend(Collection<String> seriesKeys, LocalDateTime startTime,
+                                             LocalDateTime endTime, int maxPoints, RawQuery<T> rawQuery,
+                                             Function<T, LocalDateTime> timeOf, Function<T, Double> valueOf) {
+        int resolution = selectTier(startTime, endTime, maxPoints).seconds;
+        List<MetricRollup> rollups = seriesKeys == null || seriesKeys.isEmpty() ? new ArrayList<>()
+                : metricRollupMapper.selectMerged(seriesKeys, resolution, truncate(startTime, resolution), endTime);
+
+        TreeMap<LocalDateTime, MetricRollup> byBucket = new TreeMap<>();
+        if (rollups.isEmpty()) {
+            aggregateRaw(rawQuery.fetch(startTime, endTime), startTime, endTime, resolution, timeOf, valueOf, byBucket);
+        } else {
+            LocalDateTime firstBucket = rollups.get(0).getBucketTime();
+            LocalDateTime lastBucket = rollups.get(rollups.size() - 1).getBucketTime();
+            if (startTime.isBefore(firstBucket)) {
+                aggregateRaw(rawQuery.fetch(startTime, firstBucket), startTime, firstBucket,
+                        resolution, timeOf, valueOf, byBucket);
+            }
+            for (MetricRollup rollup : rollups) {
+                rollup.setResolution(resolution);
+                byBucket.put(rollup.getBucketTime(), rollup);
+            }
+            // 最后一个汇总桶可能只落库了部分增量，和之后的区间一起按原始数据重算（原始数据已过期时保留汇总值）
+            aggregateRaw(rawQuery.fetch(lastBucket, endTime), lastBucket, endTime,
+                    resolution, timeOf, valueOf, byBucket);
+        }
+        return new ArrayList<>(byBucket.values());
+    }
+
+    /**
+     * 将[from, to)内的原始数据按档位聚合为时间桶
+     */
+    private <T> void aggregateRaw(List<T> rawData, LocalDateTime from, LocalDateTime to, int resolution,
+                                  Function<T, LocalDateTime> timeOf, Function<T, Double> valueOf,
+                                  Map<LocalDateTime, MetricRollup> target) {
+        Map<Long, Aggregate> aggregates = new HashMap<>();
+        for (T data : rawData) {
+            LocalDateTime time = timeOf.apply(data);
+            Double value = valueOf.apply(data);
+            if (time == null || value == null || value.isNaN() || time.isBefore(from) || !time.isBefore(to)) {
+                continue;
+            }
+            long epochSecond = time.atZone(zoneId).toEpochSecond();
+            long bucketStart = epochSecond - Math.floorMod(epochSecond, resolution);
+            aggregates.computeIfAbsent(bucketStart, k -> new Aggregate()).add(value, epochSecond);
+        }
+        aggregates.forEach((bucketStart, aggregate) -> {
+            MetricRollup rollup = toRollup(new BucketKey(null, resolution, bucketStart), aggregate);
+            target.put(rollup.getBucketTime(), rollup);
+        });
+    }
+
+    /**
+     * 选择满足时间范围（档位保留期覆盖起点）与点数预算的最细档位
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param maxPoints 点数预算（<=0时使用默认值）
+     * @return 档位
+     */
+    public Tier selectTier(LocalDateTime startTime, LocalDateTime endTime, int maxPoints) {
+        int budget = maxPoints > 0 ? maxPoints : defaultMaxPoints;
+        long rangeSeconds = Math.max(1, Duration.between(startTime, endTime).getSeconds());
+        LocalDateTime now = LocalDateTime.now();
+        for (Tier tier : Tier.values()) {
+            boolean retained = !startTime.isBefore(now.minusDays(getRetainDays(tier)));
+            if (retained && rangeSeconds / tier.seconds <= budget) {
+                return tier;
+            }
+        }
+        return Tier.HOUR;
+    }
+
+    /**
+     * 将时间截断到时间桶起点
+     *
+     * @param time              时间
+     * @param resolutionSeconds 汇总粒度（秒）
+     * @return 时间桶起点
+     */
+    public LocalDateTime truncate(LocalDateTime time, int resolutionSeconds) {
+        long epochSecond = time.atZone(zoneId).toEpochSecond();
+        long bucketStart = epochSecond - Math.floorMod(epochSecond, resolutionSeconds);
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(bucketStart), zoneId);
+    }
+
+    /**
+     * 每天清理超过各档位保留期的汇总数据
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void cleanExpiredRollups() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Tier tier : Tier.values()) {
+            LocalDateTime beforeTime = now.minusDays(getRetainDays(tier));
+            int count = 0;
+            int deleted;
+            do {
+                deleted = metricRollupMapper.deleteBeforeTime(tier.seconds, beforeTime, CLEAN_BATCH_SIZE);
+                count += deleted;
+            } while (deleted >= CLEAN_BATCH_SIZE);
+            log.info("清理过期指标汇总: tier={}, count={}", tier, count);
+        }
+    }
+
+    /**
+     * 获取待落库增量数
+     *
+     * @return 增量数
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private int getRetainDays(Tier tier) {
+        switch (tier) {
+            case MINUTE:
+                return minuteRetainDays;
+            case FIVE_MINUTES:
+                return fiveMinutesRetainDays;
+            default:
+                return hourRetainDays;
+        }
+    }
+
+    private void upsert(Map<BucketKey, Aggregate> batch) {
+        List<MetricRollup> rollups = new ArrayList<>(batch.size());
+        batch.forEach((key, aggregate) -> rollups.add(toRollup(key, aggregate)));
+        try {
+            metricRollupMapper.upsertBatch(rollups);
+        } catch (Exception e) {
+            // 增量合并回内存，与期间新到达的样本一起在下次刷新时重新落库
+            batch.forEach((key, aggregate) -> pending.merge(key, aggregate, (current, failed) -> {
+                current.merge(failed);
+                return current;
+            }));
+            log.error("指标汇总落库失败，增量已保留待下次刷新: count={}, error={}", batch.size(), e.getMessage());
+        }
+    }
+
+    private MetricRollup toRollup(BucketKey key, Aggregate aggregate) {
+        MetricRollup rollup = new MetricRollup();
+        rollup.setSeriesKey(key.seriesKey);
+        rollup.setResolution(key.resolution);
+        rollup.setBucketTime(LocalDateTime.ofInstant(Instant.ofEpochSecond(key.bucketStart), zoneId));
+        synchronized (aggregate) {
+            rollup.setMinValue(aggregate.min);
+            rollup.setMaxValue(aggregate.max);
+            rollup.setSumValue(aggregate.sum);
+            rollup.setSampleCount(aggregate.count);
+            rollup.setLastValue(aggregate.last);
+            rollup.setLastTime(LocalDateTime.ofInstant(Instant.ofEpochSecond(aggregate.lastEpochSecond), zoneId));
+        }
+        return rollup;
+    }
+
+    /**
+     * 时间桶键
+     */
+    private static final class BucketKey {
+        private final String seriesKey;
+        private final int resolution;
+        private final long bucketStart;
+
+        BucketKey(String seriesKey, int resolution, long bucketStart) {
+            this.seriesKey = seriesKey;
+            this.resolution = resolution;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return resolution == other.resolution && bucketStart == other.bucketStart
+                    && seriesKey.equals(other.seriesKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return (seriesKey.hashCode() * 31 + resolution) * 31 + Long.hashCode(bucketStart);
+        }
+    }
+
+    /**
+     * 时间桶累计值（在ConcurrentHashMap.compute内修改，读取时加锁）
+     */
+    private static final class Aggregate {
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private double sum;
+        private long count;
+        private double last;
+        private long lastEpochSecond = Long.MIN_VALUE;
+
+        synchronized void add(double value, long epochSecond) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+            if (epochSecond >= lastEpochSecond) {
+                last = value;
+                lastEpochSecond = epochSecond;
+            }
+        }
+
+        synchronized void merge(Aggregate other) {
+            synchronized (other) {
+                min = Math.min(min, other.min);
+                max = Math.max(max, other.max);
+                sum += other.sum;
+                count += other.count;
+                if (other.lastEpochSecond > lastEpochSecond) {
+                    last = other.last;
+                    lastEpochSecond = other.lastEpochSecond;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.roominspection.backend.collector;
+
+import com.alibaba.fastjson.JSON;
+import com.roominspection.backend.entity.DeviceMetric;
+import com.roominspection.backend.entity.EnvironmentData;
+import com.roominspection.backend.entity.MonitorTask;
+import com.roominspection.backend.mapper.DeviceMetricMapper;
+import com.roominspection.backend.mapper.MonitorTaskMapper;
+import com.roominspection.backend.service.EnvironmentDataService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 采集结果异步批量落库管道（write-behind）
+ * 设备指标、监控任务和传感器环境数据都经由本管道落库。采集线程只负责入队，由少量写线程按批量大小或时间间隔合并为多行INSERT落库，
+ * 队列满时在限定时间内阻塞等待（背压），超时后丢弃并计数。
+ * 落库失败的批次写入本地预写缓冲，数据库恢复后按限速回放；回放失败期间新批次直接进入缓冲，
+ * 不再逐批等待数据库连接超时。
+ */
+@Slf4j
+@Component
+public class MetricWriteBehindPipeline {
+
+    @Autowired
+    private DeviceMetricMapper deviceMetricMapper;
+
+    @Autowired
+    private MonitorTaskMapper monitorTaskMapper;
+
+    @Autowired
+    private EnvironmentDataService environmentDataService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${monitor-task.write-behind.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${monitor-task.write-behind.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${monitor-task.write-behind.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${monitor-task.write-behind.flush-interval-ms:500}")
+    private long flushIntervalMillis;
+
+    @Value("${monitor-task.write-behind.offer-timeout-ms:100}")
+    private long offerTimeoutMillis;
+
+    @Value("${monitor-task.write-behind.spool-dir:${user.dir}/data/spool/metric}")
+    private String spoolDir;
+
+    @Value("${monitor-task.write-behind.spool-max-size-mb:4096}")
+    private long spoolMaxSizeMb;
+
+    @Value("${monitor-task.write-behind.replay-rate:50000}")
+    private int replayRate;
+
+    @Value("${monitor-task.write-behind.spool-max-attempts:5}")
+    private int spoolMaxAttempts;
+
+    private static final byte TYPE_METRICS = 'M';
+    private static final byte TYPE_TASKS = 'T';
+    private static final byte TYPE_ENVIRONMENT = 'E';
+    private static final int SPOOL_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private BlockingQueue<CollectionResult> queue;
+
+    private WriteAheadSpool spool;
+
+    private final List<Thread> writers = new ArrayList<>();
+
+    private volatile boolean running = false;
+
+    // 管道统计
+    private final AtomicLong submittedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong flushedMetricCount = new AtomicLong(0);
+    private final AtomicLong flushedTaskCount = new AtomicLong(0);
+    private final AtomicLong flushedEnvironmentCount = new AtomicLong(0);
+    private final AtomicLong failedMetricCount = new AtomicLong(0);
+    private final AtomicLong spooledMetricCount = new AtomicLong(0);
+    private final AtomicLong spooledTaskCount = new AtomicLong(0);
+    private final AtomicLong spooledEnvironmentCount = new AtomicLong(0);
+    private final AtomicLong flushCount = new AtomicLong(0);
+    private final AtomicLong totalFlushMillis = new AtomicLong(0);
+    private final AtomicLong maxFlushMillis = new AtomicLong(0);
+    private volatile long lastFlushMillis = 0;
+
+    /**
+     * 启动写线程
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        spool = WriteAheadSpool.open("metric", Paths.get(spoolDir), SPOOL_SEGMENT_SIZE, spoolMaxSizeMb * 1024 * 1024,
+                spoolMaxAttempts);
+        // 每条缓冲记录是一个完整的批次，逐条回放，失败重试时不会重复写入已成功的批次；
+        // 单个批次反复失败而数据库连接正常时，该批次转入死信，不再阻塞后续回放
+        spool.startReplay(new WriteAheadSpool.BatchHandler() {
+            @Override
+            public int handle(List<byte[]> records) throws Exception {
+                return replay(records);
+            }
+
+            @Override
+            public boolean isHealthy() {
+                return isDatabaseAvailable();
+            }
+        }, 1, replayRate, flushIntervalMillis);
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::writeLoop, "metric-writer-" + (i + 1));
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        log.info("采集结果落库管道启动: queueCapacity={}, writerThreads={}, batchSize={}, flushInterval={}ms",
+                queueCapacity, writerThreads, batchSize, flushIntervalMillis);
+    }
+
+    /**
+     * 停止写线程，并将队列中剩余数据全部落库
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        spool.close();
+        log.info("采集结果落库管道已停止: remaining={}", queue.size());
+    }
+
+    /**
+     * 提交一次采集结果（多生产者，线程安全）
+     *
+     * @param task    采集任务（最终状态）
+     * @param metrics 采集到的指标
+     * @return 是否入队成功，false表示过载被丢弃
+     */
+    public boolean submit(MonitorTask task, List<DeviceMetric> metrics) {
+        return enqueue(new CollectionResult(task, metrics != null ? metrics : Collections.<DeviceMetric>emptyList(),
+                Collections.<EnvironmentData>emptyList()), task != null ? task.getDeviceId() : null);
+    }
+
+    /**
+     * 提交传感器采集的环境数据（多生产者，线程安全）
+     *
+     * @param deviceId        采集设备ID（仅用于日志）
+     * @param environmentData 环境数据（创建时间需已设置）
+     * @return 是否入队成功，false表示过载被丢弃
+     */
+    public boolean submitEnvironmentData(String deviceId, List<EnvironmentData> environmentData) {
+        return enqueue(new CollectionResult(null, Collections.<DeviceMetric>emptyList(), environmentData), deviceId);
+    }
+
+    private boolean enqueue(CollectionResult result, String deviceId) {
+        try {
+            if (queue.offer(result, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                submittedCount.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long dropped = droppedCount.incrementAndGet();
+        if (dropped % 1000 == 1) {
+            log.warn("采集结果落库队列已满，丢弃采集结果: deviceId={}, totalDropped={}", deviceId, dropped);
+        }
+        return false;
+    }
+
+    /**
+     * 写线程主循环：按条数或时间间隔触发刷盘
+     */
+    private void writeLoop() {
+        List<CollectionResult> buffer = new ArrayList<>(batchSize);
+        List<CollectionResult> drained = new ArrayList<>(batchSize);
+        int bufferedMetrics = 0;
+        long deadline = System.currentTimeMillis() + flushIntervalMillis;
+
+        while (running || !queue.isEmpty() || !buffer.isEmpty()) {
+            try {
+                long wait = Math.max(1, deadline - System.currentTimeMillis());
+                CollectionResult first = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    buffer.add(first);
+                    bufferedMetrics += first.size();
+
+                    queue.drainTo(drained, Math.max(0, batchSize - buffer.size()));
+                    for (CollectionResult result : drained) {
+                        buffer.add(result);
+                        bufferedMetrics += result.size();
+                    }
+                    drained.clear();
+                }
+
+                boolean full = bufferedMetrics >= batchSize || buffer.size() >= batchSize;
+                boolean expired = System.currentTimeMillis() >= deadline;
+                if (!buffer.isEmpty() && (full || expired || !running)) {
+                    flush(buffer);
+                    buffer.clear();
+                    bufferedMetrics = 0;
+                }
+                if (full || expired) {
+                    deadline = System.currentTimeMillis() + flushIntervalMillis;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                log.error("采集结果落库线程异常", e);
+            }
+        }
+    }
+
+    /**
+     * 将一批采集结果合并为多行INSERT落库
+     */
+    private void flush(List<CollectionResult> buffer) {
+        long start = System.currentTimeMillis();
+
+        List<DeviceMetric> metrics = new ArrayList<>();
+        List<MonitorTask> tasks = new ArrayList<>(buffer.size());
+        List<EnvironmentData> environmentData = new ArrayList<>();
+        for (CollectionResult result : buffer) {
+            metrics.addAll(result.metrics);
+            environmentData.addAll(result.environmentData);
+            if (result.task != null) {
+                tasks.add(result.task);
+            }
+        }
+
+        // 按批量大小分片，避免单条SQL超过max_allowed_packet
+        for (int from = 0; from < metrics.size(); from += batchSize) {
+            List<DeviceMetric> chunk = metrics.subList(from, Math.min(from + batchSize, metrics.size()));
+            if (spool.isDownstreamFailing()) {
+                spoolChunk(TYPE_METRICS, chunk);
+                continue;
+            }
+            try {
+                deviceMetricMapper.insertBatch(chunk);
+                flushedMetricCount.addAndGet(chunk.size());
+            } catch (Exception e) {
+                log.error("批量写入设备指标失败，转入本地缓冲: count={}, error={}", chunk.size(), e.getMessage());
+                spoolChunk(TYPE_METRICS, chunk);
+            }
+        }
+
+        for (int from = 0; from < tasks.size(); from += batchSize) {
+            List<MonitorTask> chunk = tasks.subList(from, Math.min(from + batchSize, tasks.size()));
+            if (spool.isDownstreamFailing()) {
+                spoolChunk(TYPE_TASKS, chunk);
+                continue;
+            }
+            try {
+                monitorTaskMapper.upsertBatch(chunk);
+                flushedTaskCount.addAndGet(chunk.size());
+            } catch (Exception e) {
+                log.error("批量写入监控任务失败，转入本地缓冲: count={}, error={}", chunk.size(), e.getMessage());
+                spoolChunk(TYPE_TASKS, chunk);
+            }
+        }
+
+        for (int from = 0; from < environmentData.size(); from += batchSize) {
+            List<EnvironmentData> chunk = environmentData.subList(from, Math.min(from + batchSize, environmentData.size()));
+            if (spool.isDownstreamFailing()) {
+                spoolChunk(TYPE_ENVIRONMENT, chunk);
+                continue;
+            }
+            try {
+                // 经环境数据服务批量写入，同时记录降采样汇总
+                environmentDataService.saveBatch(chunk);
+                flushedEnvironmentCount.addAndGet(chunk.size());
+            } catch (Exception e) {
+                log.error("批量写入环境数据失败，转入本地缓冲: count={}, error={}", chunk.size(), e.getMessage());
+                spoolChunk(TYPE_ENVIRONMENT, chunk);
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        lastFlushMillis = elapsed;
+        flushCount.incrementAndGet();
+        totalFlushMillis.addAndGet(elapsed);
+        maxFlushMillis.accumulateAndGet(elapsed, Math::max);
+
+        log.debug("采集结果批量落库完成: tasks={}, metrics={}, environmentData={}, duration={}ms",
+                tasks.size(), metrics.size(), environmentData.size(), elapsed);
+    }
+
+    /**
+     * 将落库失败的批次写入本地缓冲（[类型字节][JSON数组]）
+     */
+    private void spoolChunk(byte type, List<?> chunk) {
+        byte[] json = JSON.toJSONBytes(chunk);
+        byte[] payload = new byte[json.length + 1];
+        payload[0] = type;
+        System.arraycopy(json, 0, payload, 1, json.length);
+
+        if (spool.append(payload)) {
+            spooledCounter(type).addAndGet(chunk.size());
+        } else if (type == TYPE_METRICS) {
+            failedMetricCount.addAndGet(chunk.size());
+        }
+    }
+
+    private AtomicLong spooledCounter(byte type) {
+        switch (type) {
+            case TYPE_METRICS:
+                return spooledMetricCount;
+            case TYPE_TASKS:
+                return spooledTaskCount;
+            default:
+                return spooledEnvironmentCount;
+        }
+    }
+
+    /**
+     * 回放一个缓冲批次
+     *
+     * @return 写入行数
+     */
+    private int replay(List<byte[]> payloads) throws WriteAheadSpool.RejectedRecordException {
+        int rows = 0;
+        for (byte[] payload : payloads) {
+            String json = new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+            if (payload[0] == TYPE_METRICS) {
+                List<DeviceMetric> metrics = parse(json, DeviceMetric.class);
+                deviceMetricMapper.insertBatch(metrics);
+                flushedMetricCount.addAndGet(metrics.size());
+                rows += metrics.size();
+            } else if (payload[0] == TYPE_TASKS) {
+                List<MonitorTask> tasks = parse(json, MonitorTask.class);
+                monitorTaskMapper.upsertBatch(tasks);
+                flushedTaskCount.addAndGet(tasks.size());
+                rows += tasks.size();
+            } else if (payload[0] == TYPE_ENVIRONMENT) {
+                List<EnvironmentData> environmentData = parse(json, EnvironmentData.class);
+                environmentDataService.saveBatch(environmentData);
+                flushedEnvironmentCount.addAndGet(environmentData.size());
+                rows += environmentData.size();
+            }
+        }
+        return rows;
+    }
+
+    private <T> List<T> parse(String json, Class<T> type) throws WriteAheadSpool.RejectedRecordException {
+        try {
+            return JSON.parseArray(json, type);
+        } catch (Exception e) {
+            throw new WriteAheadSpool.RejectedRecordException("缓冲记录无法解析: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 数据库连接是否可用（回放反复失败时据此区分坏数据与数据库故障）
+     */
+    private boolean isDatabaseAvailable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(2);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取管道统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long flushes = flushCount.get();
+        stats.put("queueDepth", queue != null ? queue.size() : 0);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("submitted", submittedCount.get());
+        stats.put("dropped", droppedCount.get());
+        stats.put("flushedMetrics", flushedMetricCount.get());
+        stats.put("flushedTasks", flushedTaskCount.get());
+        stats.put("flushedEnvironmentData", flushedEnvironmentCount.get());
+        stats.put("failedMetrics", failedMetricCount.get());
+        stats.put("spooledMetrics", spooledMetricCount.get());
+        stats.put("spooledTasks", spooledTaskCount.get());
+        stats.put("spooledEnvironmentData", spooledEnvironmentCount.get());
+        stats.put("spool", spool != null ? spool.getStatistics() : null);
+        stats.put("flushCount", flushes);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("avgFlushMillis", flushes > 0 ? totalFlushMillis.get() / flushes : 0);
+        stats.put("maxFlushMillis", maxFlushMillis.get());
+        return stats;
+    }
+
+    /**
+     * 单次采集结果
+     */
+    private static class CollectionResult {
+        private final MonitorTask task;
+        private final List<DeviceMetric> metrics;
+        private final List<EnvironmentData> environmentData;
+
+        CollectionResult(MonitorTask task, List<DeviceMetric> metrics, List<EnvironmentData> environmentData) {
+            this.task = task;
+            this.metrics = metrics;
+            this.environmentData = environmentData;
+        }
+
+        int size() {
+            return metrics.size() + environmentData.size();
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package com.roominspection.backend.collector;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.EnvironmentData;
+import com.roominspection.backend.entity.EnvironmentSensor;
+import com.roominspection.backend.service.EnvironmentSensorService;
+import com.serotonin.modbus4j.ModbusFactory;
+import com.serotonin.modbus4j.ModbusMaster;
+import com.serotonin.modbus4j.ip.IpParameters;
+import com.serotonin.modbus4j.msg.ModbusRequest;
+import com.serotonin.modbus4j.msg.ReadHoldingRegistersRequest;
+import com.serotonin.modbus4j.msg.ReadInputRegistersRequest;
+import com.serotonin.modbus4j.msg.ReadResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Modbus TCP采集引擎
+ * <p>
+ * 每个网关（串口转TCP网关或Modbus TCP设备）保持持久的主站连接，网关允许时可开多条连接并行发起事务
+ * （modbus4j的TCP主站每条连接同一时刻只有一个事务，多连接即事务流水线）。
+ * 同一从站、同一寄存器区的相邻读点合并为最少的范围读（单次最多125个寄存器，间隙不超过max-gap），
+ * 结果直接在响应字节上解码。合并范围因地址非法失败时，该网关改为不跨间隙合并并重新规划。
+ * <p>
+ * 环境传感器：SENSOR类型设备视为网关，挂在其下的MODBUS传感器按类型映射为寄存器读点，输出EnvironmentData。
+ */
+@Slf4j
+@Component
+public class ModbusCollectionEngine {
+
+    /**
+     * Modbus单次读寄存器数上限
+     */
+    private static final int MAX_REGISTERS_PER_READ = 125;
+
+    private static final int DEFAULT_PORT = 502;
+
+    @Autowired
+    private EnvironmentSensorService environmentSensorService;
+
+    @Value("${monitor.modbus.timeout:5000}")
+    private int timeout;
+
+    @Value("${monitor.modbus.retries:3}")
+    private int retries;
+
+    @Value("${monitor.modbus.engine.max-gap:8}")
+    private int maxGap;
+
+    @Value("${monitor.modbus.engine.connections-per-gateway:1}")
+    private int connectionsPerGateway;
+
+    @Value("${monitor.modbus.engine.sensor-refresh-interval-ms:60000}")
+    private long sensorRefreshIntervalMs;
+
+    private final ModbusFactory modbusFactory = new ModbusFactory();
+
+    /**
+     * 网关（host:port）-> 网关连接
+     */
+    private final ConcurrentHashMap<String, Gateway> gateways = new ConcurrentHashMap<>();
+
+    /**
+     * 读点集合签名 -> 合并后的读取规划
+     */
+    private final ConcurrentHashMap<String, List<Range>> planCache = new ConcurrentHashMap<>();
+
+    /**
+     * SENSOR设备ID -> 挂载的Modbus传感器（定时刷新）
+     */
+    private final ConcurrentHashMap<String, SensorBinding> sensorBindings = new ConcurrentHashMap<>();
+
+    /**
+     * 并行事务执行线程（仅在每网关连接数大于1时使用）
+     */
+    private final ExecutorService transactionExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "modbus-transaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requestCount = new AtomicLong(0);
+    private final AtomicLong pointCount = new AtomicLong(0);
+    private final AtomicLong failureCount = new AtomicLong(0);
+
+    @PreDestroy
+    public void shutdown() {
+        transactionExecutor.shutdownNow();
+        gateways.values().forEach(Gateway::close);
+    }
+
+    /**
+     * 读取一个网关上的一组读点
+     *
+     * @param host   网关地址
+     * @param port   网关端口
+     * @param points 读点
+     * @return 成功读取的读点及数值
+     * @throws Exception 网关不可达
+     */
+    public List<Reading> read(String host, int port, List<Point> points) throws Exception {
+        if (points.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Gateway gateway = gateways.computeIfAbsent(host + ":" + port, k -> new Gateway(host, port));
+        List<Range> plan = plan(gateway, points);
+        pointCount.addAndGet(points.size());
+
+        List<Reading> readings = new ArrayList<>(points.size());
+        if (connectionsPerGateway <= 1 || plan.size() == 1) {
+            for (Range range : plan) {
+                readRange(gateway, range, readings);
+            }
+            return readings;
+        }
+
+        // 多连接：各范围并行发起
+        List<Future<List<Reading>>> futures = new ArrayList<>(plan.size());
+        for (Range range : plan) {
+            futures.add(transactionExecutor.submit(() -> {
+                List<Reading> partial = new ArrayList<>(range.points.size());
+                readRange(gateway, range, partial);
+                return partial;
+            }));
+        }
+        for (Future<List<Reading>> future : futures) {
+            try {
+                readings.addAll(future.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        return readings;
+    }
+
+    /**
+     * 采集SENSOR设备下挂载的Modbus环境传感器
+     *
+     * @param device SENSOR设备（网关）
+     * @return 环境数据
+     * @throws Exception 网关不可达
+     */
+    public List<EnvironmentData> collectSensors(Device device) throws Exception {
+        List<EnvironmentSensor> sensors = sensorsOf(device);
+        if (sensors.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 传感器自带地址时按传感器地址分组，否则使用设备地址
+        int devicePort = resolvePort(device);
+        Map<String, List<Point>> pointsByGateway = new LinkedHashMap<>();
+        for (EnvironmentSensor sensor : sensors) {
+            String host = sensor.getIpAddress() != null && !sensor.getIpAddress().isEmpty()
+                    ? sensor.getIpAddress() : device.getIpAddress();
+            int port = sensor.getPort() != null ? sensor.getPort() : devicePort;
+            if (host == null || sensor.getRegisterAddress() == null) {
+                continue;
+            }
+            pointsByGateway.computeIfAbsent(host + ":" + port, k -> new ArrayList<>()).addAll(sensorPoints(sensor));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<EnvironmentData> dataList = new ArrayList<>();
+        for (Map.Entry<String, List<Point>> entry : pointsByGateway.entrySet()) {
+            int split = entry.getKey().lastIndexOf(':');
+            List<Reading> readings = read(entry.getKey().substring(0, split),
+                    Integer.parseInt(entry.getKey().substring(split + 1)), entry.getValue());
+            for (Reading reading : readings) {
+                dataList.add(toEnvironmentData((EnvironmentSensor) reading.point.tag, reading.point.name,
+                        reading.point.unit, reading.value, now));
+            }
+        }
+        return dataList;
+    }
+
+    /**
+     * 获取引擎统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("gateways", gateways.size());
+        stats.put("cachedPlans", planCache.size());
+        stats.put("requests", requestCount.get());
+        stats.put("points", pointCount.get());
+        stats.put("failures", failureCount.get());
+        return stats;
+    }
+
+    /**
+     * 读取一个合并范围并解码其中的读点
+     */
+    private void readRange(Gateway gateway, Range range, List<Reading> readings) throws Exception {
+        ModbusMaster master = gateway.borrow();
+        boolean healthy = false;
+        try {
+            ModbusRequest request = range.inputRegisters
+                    ? new ReadInputRegistersRequest(range.slaveId, range.start, range.length)
+                    : new ReadHoldingRegistersRequest(range.slaveId, range.start, range.length);
+            requestCount.incrementAndGet();
+            ReadResponse response = (ReadResponse) master.send(request);
+            healthy = true;
+
+            if (response.isException()) {
+                failureCount.incrementAndGet();
+                if (range.points.size() > 1 && !gateway.noGapMerge) {
+                    // 合并范围跨越了设备不存在的寄存器，该网关改为不跨间隙合并
+                    log.info("Modbus合并读取失败，改为不跨间隙合并: gateway={}, slave={}, start={}, length={}, error={}",
+                            gateway.key, range.slaveId, range.start, range.length, response.getExceptionMessage());
+                    gateway.noGapMerge = true;
+                    planCache.keySet().removeIf(key -> key.startsWith(gateway.key + "|"));
+                } else {
+                    log.debug("Modbus读取异常响应: gateway={}, slave={}, start={}, error={}",
+                            gateway.key, range.slaveId, range.start, response.getExceptionMessage());
+                }
+                return;
+            }
+
+            byte[] data = response.getData();
+            for (Point point : range.points) {
+                int offset = point.address - range.start;
+                if (ModbusRegisterCodec.covers(data, offset, point.dataType)) {
+                    double raw = ModbusRegisterCodec.decode(data, offset, point.dataType, point.wordSwap);
+                    readings.add(new Reading(point, raw * point.scale));
+                }
+            }
+        } finally {
+            gateway.giveBack(master, healthy);
+        }
+    }
+
+    /**
+     * 生成（或复用）读取规划：按从站、寄存器区、地址排序后合并相邻读点
+     */
+    private List<Range> plan(Gateway gateway, List<Point> points) {
+        StringBuilder signature = new StringBuilder(gateway.key).append('|').append(gateway.noGapMerge);
+        for (Point point : points) {
+            signature.append('|').append(point.slaveId).append(point.inputRegisters ? 'I' : 'H')
+                    .append(point.address).append(point.dataType.ordinal());
+        }
+        return planCache.computeIfAbsent(signature.toString(), k -> buildPlan(points, gateway.noGapMerge ? 0 : maxGap));
+    }
+
+    private List<Range> buildPlan(List<Point> points, int gap) {
+        List<Point> sorted = new ArrayList<>(points);
+        sorted.sort(Comparator.comparingInt((Point p) -> p.slaveId)
+                .thenComparing(p -> p.inputRegisters)
+                .thenComparingInt(p -> p.address));
+
+        List<Range> ranges = new ArrayList<>();
+        Range current = null;
+        for (Point point : sorted) {
+            int end = point.address + point.dataType.getRegisters();
+            if (current != null && current.slaveId == point.slaveId && current.inputRegisters == point.inputRegisters
+                    && point.address - (current.start + current.length) <= gap
+                    && end - current.start <= MAX_REGISTERS_PER_READ) {
+                current.length = Math.max(current.length, end - current.start);
+                current.points.add(point);
+            } else {
+                current = new Range(point.slaveId, point.inputRegisters, point.address, point.dataType.getRegisters());
+                current.points.add(point);
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 传感器类型到寄存器读点的映射
+     * 温湿度探头：起始寄存器为温度（有符号，0.1℃），下一个寄存器为湿度（0.1%）；漏水、烟感为单个状态寄存器
+     */
+    private List<Point> sensorPoints(EnvironmentSensor sensor) {
+        int slaveId = sensor.getSlaveId() != null ? sensor.getSlaveId() : 1;
+        boolean input = "INPUT".equalsIgnoreCase(sensor.getRegisterArea());
+        int address = sensor.getRegisterAddress();
+        List<Point> points = new ArrayList<>(2);
+        switch (sensor.getSensorType() == null ? "" : sensor.getSensorType()) {
+            case "TEMPERATURE":
+                points.add(new Point(sensor, "TEMPERATURE", "℃", slaveId, input, address,
+                        ModbusRegisterCodec.DataType.INT16, 0.1, false));
+                points.add(new Point(sensor, "HUMIDITY", "%", slaveId, input, address + 1,
+                        ModbusRegisterCodec.DataType.UINT16, 0.1, false));
+                break;
+            case "WATER":
+                points.add(new Point(sensor, "WATER_LEAK", "", slaveId, input, address,
+                        ModbusRegisterCodec.DataType.UINT16, 1, false));
+                break;
+            case "SMOKE":
+                points.add(new Point(sensor, "SMOKE", "", slaveId, input, address,
+                        ModbusRegisterCodec.DataType.UINT16, 1, false));
+                break;
+            default:
+                points.add(new Point(sensor, sensor.getSensorType(), "", slaveId, input, address,
+                        ModbusRegisterCodec.DataType.INT16, 1, false));
+        }
+        return points;
+    }
+
+    private EnvironmentData toEnvironmentData(EnvironmentSensor sensor, String dataType, String unit,
+                                              double value, LocalDateTime collectTime) {
+        EnvironmentData data = new EnvironmentData();
+        data.setSensorId(sensor.getId());
+        data.setRoomId(sensor.getRoomId());
+        data.setDataType(dataType);
+        data.setValue(value);
+        data.setUnit(unit);
+        data.setCollectTime(collectTime);
+
+        String alarmMessage = null;
+        if ("TEMPERATURE".equals(dataType)) {
+            alarmMessage = checkThreshold("温度", value, sensor.getTempThresholdLow(), sensor.getTempThresholdHigh());
+        } else if ("HUMIDITY".equals(dataType)) {
+            alarmMessage = checkThreshold("湿度", value, sensor.getHumidityThresholdLow(), sensor.getHumidityThresholdHigh());
+        } else if (("WATER_LEAK".equals(dataType) || "SMOKE".equals(dataType)) && value != 0) {
+            alarmMessage = sensor.getSensorName() + "检测到" + ("SMOKE".equals(dataType) ? "烟雾" : "漏水");
+        }
+        data.setIsAlarm(alarmMessage != null ? 1 : 0);
+        if (alarmMessage != null) {
+            data.setAlarmLevel("WARNING");
+            data.setAlarmMessage(alarmMessage);
+        }
+        return data;
+    }
+
+    private String checkThreshold(String label, double value, Double low, Double high) {
+        if (high != null && value > high) {
+            return label + "过高: " + value;
+        }
+        if (low != null && value < low) {
+            return label + "过低: " + value;
+        }
+        return null;
+    }
+
+    /**
+     * 获取设备挂载的Modbus传感器（按刷新间隔缓存，避免每个采集周期查库）
+     */
+    private List<EnvironmentSensor> sensorsOf(Device device) {
+        long now = System.currentTimeMillis();
+        SensorBinding binding = sensorBindings.get(device.getId());
+        if (binding != null && now - binding.loadedAt < sensorRefreshIntervalMs) {
+            return binding.sensors;
+        }
+
+        List<EnvironmentSensor> sensors;
+        try {
+            sensors = environmentSensorService.list(new LambdaQueryWrapper<EnvironmentSensor>()
+                    .eq(EnvironmentSensor::getDeviceId, Long.valueOf(device.getId()))
+                    .eq(EnvironmentSensor::getProtocolType, "MODBUS"));
+        } catch (NumberFormatException e) {
+            sensors = Collections.emptyList();
+        }
+        sensorBindings.put(device.getId(), new SensorBinding(sensors, now));
+        return sensors;
+    }
+
+    /**
+     * 设备Modbus端口：监控参数中的modbusPort，缺省502
+     */
+    private int resolvePort(Device device) {
+        if (device.getMonitorParams() != null && !device.getMonitorParams().isEmpty()) {
+            try {
+                JSONObject params = JSON.parseObject(device.getMonitorParams());
+                Integer port = params.getInteger("modbusPort");
+                if (port != null) {
+                    return port;
+                }
+            } catch (Exception e) {
+                log.debug("解析设备监控参数失败: deviceId={}", device.getId());
+            }
+        }
+        return DEFAULT_PORT;
+    }
+
+    /**
+     * 寄存器读点
+     */
+    public static final class Point {
+        private final Object tag;
+        private final String name;
+        private final String unit;
+        private final int slaveId;
+        private final boolean inputRegisters;
+        private final int address;
+        private final ModbusRegisterCodec.DataType dataType;
+        private final double scale;
+        private final boolean wordSwap;
+
+        public Point(Object tag, String name, String unit, int slaveId, boolean inputRegisters, int address,
+                     ModbusRegisterCodec.DataType dataType, double scale, boolean wordSwap) {
+            this.tag = tag;
+            this.name = name;
+            this.unit = unit;
+            this.slaveId = slaveId;
+            this.inputRegisters = inputRegisters;
+            this.address = address;
+            this.dataType = dataType;
+            this.scale = scale;
+            this.wordSwap = wordSwap;
+        }
+
+        public Object getTag() {
+            return tag;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * 读取结果
+     */
+    public static final class Reading {
+        private final Point point;
+        private final double value;
+
+        Reading(Point point, double value) {
+            this.point = point;
+            this.value = value;
+        }
+
+        public Point getPoint() {
+            return point;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * 合并后的一次范围读
+     */
+    private static final class Range {
+        private final int slaveId;
+        private final boolean inputRegisters;
+        private final int start;
+        private int length;
+        private final List<Point> points = new ArrayList<>();
+
+        Range(int slaveId, boolean inputRegisters, int start, int length) {
+            this.slaveId = slaveId;
+            this.inputRegisters = inputRegisters;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private static final class SensorBinding {
+        private final List<EnvironmentSensor> sensors;
+        private final long loadedAt;
+
+        SensorBinding(List<EnvironmentSensor> sensors, long loadedAt) {
+            this.sensors = sensors;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * 网关连接池：最多connections-per-gateway条持久连接，异常连接销毁后按需重建
+     */
+    private final class Gateway {
+        private final String key;
+        private final String host;
+        private final int port;
+        private final BlockingQueue<ModbusMaster> idle = new LinkedBlockingQueue<>();
+        private final Semaphore permits;
+        private volatile boolean noGapMerge = false;
+
+        Gateway(String host, int port) {
+            this.key = host + ":" + port;
+            this.host = host;
+            this.port = port;
+            this.permits = new Semaphore(Math.max(1, connectionsPerGateway));
+        }
+
+        ModbusMaster borrow() throws Exception {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("等待Modbus网关连接超时: " + key);
+            }
+            ModbusMaster master = idle.poll();
+            if (master != null) {
+                return master;
+            }
+            try {
+                IpParameters params = new IpParameters();
+                params.setHost(host);
+                params.setPort(port);
+                master = modbusFactory.createTcpMaster(params, true);
+                master.setTimeout(timeout);
+                master.setRetries(retries);
+                master.init();
+                log.info("Modbus网关连接已建立: gateway={}", key);
+                return master;
+            } catch (Exception e) {
+                permits.release();
+                failureCount.incrementAndGet();
+                throw e;
+            }
+        }
+
+        void giveBack(ModbusMaster master, boolean healthy) {
+            if (healthy) {
+                idle.offer(master);
+            } else {
+                failureCount.incrementAndGet();
+                master.destroy();
+            }
+            permits.release();
+        }
+
+        void close() {
+            ModbusMaster master;
+            while ((master = idle.poll()) != null) {
+                master.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.roominspection.backend.collector;
+
+/**
+ * Modbus寄存器解码器
+ * 直接在读响应的原始字节数组上按寄存器偏移解码（大端，每寄存器2字节），
+ * 合并读取的一段寄存器无需先拆成逐个寄存器的数组
+ */
+public final class ModbusRegisterCodec {
+
+    /**
+     * 寄存器数据类型
+     */
+    public enum DataType {
+        INT16(1),
+        UINT16(1),
+        INT32(2),
+        UINT32(2),
+        FLOAT32(2);
+
+        private final int registers;
+
+        DataType(int registers) {
+            this.registers = registers;
+        }
+
+        /**
+         * 占用的寄存器数
+         */
+        public int getRegisters() {
+            return registers;
+        }
+
+        /**
+         * 解析数据类型名称，无法识别时按INT16处理
+         */
+        public static DataType of(String name) {
+            if (name != null) {
+                for (DataType type : values()) {
+                    if (type.name().equalsIgnoreCase(name)) {
+                        return type;
+                    }
+                }
+            }
+            return INT16;
+        }
+    }
+
+    private ModbusRegisterCodec() {
+    }
+
+    /**
+     * 解码
+     *
+     * @param data           读响应原始字节（大端）
+     * @param registerOffset 相对于读取起始地址的寄存器偏移
+     * @param type           数据类型
+     * @param wordSwap       32位值是否低字在前
+     * @return 原始数值（未乘比例系数）
+     */
+    public static double decode(byte[] data, int registerOffset, DataType type, boolean wordSwap) {
+        int offset = registerOffset * 2;
+        switch (type) {
+            case UINT16:
+                return word(data, offset);
+            case INT32:
+                return (int) dword(data, offset, wordSwap);
+            case UINT32:
+                return dword(data, offset, wordSwap) & 0xffffffffL;
+            case FLOAT32:
+                return Float.intBitsToFloat((int) dword(data, offset, wordSwap));
+            case INT16:
+            default:
+                return (short) word(data, offset);
+        }
+    }
+
+    /**
+     * 响应是否包含指定偏移处的完整数值
+     */
+    public static boolean covers(byte[] data, int registerOffset, DataType type) {
+        return data != null && (registerOffset + type.getRegisters()) * 2 <= data.length;
+    }
+
+    private static int word(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private static long dword(byte[] data, int offset, boolean wordSwap) {
+        long high = word(data, wordSwap ? offset + 2 : offset);
+        long low = word(data, wordSwap ? offset : offset + 2);
+        return (high << 16) | low;
+    }
+}
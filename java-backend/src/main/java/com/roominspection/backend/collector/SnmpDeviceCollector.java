@@ -0,0 +1,200 @@
+package com.roominspection.backend.collector;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DeviceMetric;
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.mp.SnmpConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SNMP设备指标采集器
+ * <p>
+ * 根据设备的SNMP参数与监控参数确定要读取的OID，经请求规划器在共享会话上异步读取并转换为设备指标。
+ * 整个读取过程不占用线程：返回的Future在响应到达（或超时）时由SNMP分发线程完成，
+ * 同步采集只是在其上等待。
+ * <p>
+ * 默认读取UCD-SNMP-MIB的CPU空闲率与内存总量/可用量；设备监控参数中的snmpOids（指标类型 -> OID）
+ * 可追加任意指标，例如UPS负载、PDU电流等厂商私有OID。
+ */
+@Slf4j
+@Component
+public class SnmpDeviceCollector {
+
+    /**
+     * ssCpuIdle
+     */
+    private static final String OID_CPU_IDLE = "1.3.6.1.4.1.2021.11.11.0";
+
+    /**
+     * memTotalReal
+     */
+    private static final String OID_MEM_TOTAL = "1.3.6.1.4.1.2021.4.5.0";
+
+    /**
+     * memAvailReal
+     */
+    private static final String OID_MEM_AVAIL = "1.3.6.1.4.1.2021.4.6.0";
+
+    private static final int DEFAULT_PORT = 161;
+    private static final String DEFAULT_COMMUNITY = "public";
+
+    @Autowired
+    private SnmpSessionManager sessionManager;
+
+    @Autowired
+    private SnmpRequestPlanner requestPlanner;
+
+    /**
+     * 设备ID -> 当前占用的SNMP目标引用（设备删除或地址变更时释放）
+     */
+    private final Map<String, SnmpSessionManager.Endpoint> deviceEndpoints = new ConcurrentHashMap<>();
+
+    /**
+     * 异步采集设备指标
+     *
+     * @param device 设备
+     * @return 指标列表，设备无响应时异常结束
+     */
+    public CompletableFuture<List<DeviceMetric>> collect(Device device) {
+        if (device.getIpAddress() == null || device.getIpAddress().isEmpty()) {
+            CompletableFuture<List<DeviceMetric>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalArgumentException("设备未配置IP地址: " + device.getId()));
+            return failed;
+        }
+
+        String host = device.getIpAddress();
+        int port = device.getSnmpPort() != null ? device.getSnmpPort() : DEFAULT_PORT;
+        String community = device.getSnmpCommunity() != null && !device.getSnmpCommunity().isEmpty()
+                ? device.getSnmpCommunity() : DEFAULT_COMMUNITY;
+        int version = "1".equals(device.getSnmpVersion()) || "v1".equalsIgnoreCase(device.getSnmpVersion())
+                ? SnmpConstants.version1 : SnmpConstants.version2c;
+        // 每台设备只占用一个目标引用，地址变更时换用新目标并释放旧引用
+        SnmpSessionManager.Endpoint endpoint = deviceEndpoints.compute(device.getId(), (id, current) -> {
+            if (current != null && current.getKey().equals(SnmpSessionManager.key(host, port, community, version))) {
+                return current;
+            }
+            sessionManager.release(current);
+            return sessionManager.endpoint(host, port, community, version);
+        });
+
+        Map<String, String> customOids = customOids(device);
+        Set<String> oids = new LinkedHashSet<>();
+        oids.add(OID_CPU_IDLE);
+        oids.add(OID_MEM_TOTAL);
+        oids.add(OID_MEM_AVAIL);
+        oids.addAll(customOids.values());
+
+        String model = "SNMP/" + (device.getModel() != null ? device.getModel() : device.getType());
+        return requestPlanner.readAsync(endpoint, model, oids)
+                .thenApply(values -> toMetrics(device, values, customOids));
+    }
+
+    /**
+     * 设备删除时释放其SNMP目标引用（其他设备或适配器仍在使用同一目标时保留）
+     *
+     * @param deviceId 设备ID
+     */
+    public void removeDevice(String deviceId) {
+        sessionManager.release(deviceEndpoints.remove(deviceId));
+    }
+
+    /**
+     * 已分配SNMP目标的设备ID
+     *
+     * @return 设备ID集合
+     */
+    public Set<String> getDeviceIds() {
+        return new HashSet<>(deviceEndpoints.keySet());
+    }
+
+    private List<DeviceMetric> toMetrics(Device device, Map<String, String> values, Map<String, String> customOids) {
+        List<DeviceMetric> metrics = new ArrayList<>();
+
+        Double idle = parse(values.get(OID_CPU_IDLE));
+        if (idle != null) {
+            metrics.add(metric(device, "CPU_USAGE", "CPU使用率", 100.0 - idle, "%", device.getCpuThreshold()));
+        }
+
+        Double total = parse(values.get(OID_MEM_TOTAL));
+        Double avail = parse(values.get(OID_MEM_AVAIL));
+        if (total != null && avail != null && total > 0) {
+            metrics.add(metric(device, "MEMORY_USAGE", "内存使用率", (total - avail) / total * 100, "%",
+                    device.getMemoryThreshold()));
+        }
+
+        for (Map.Entry<String, String> entry : customOids.entrySet()) {
+            String raw = values.get(entry.getValue());
+            if (raw == null) {
+                continue;
+            }
+            Double value = parse(raw);
+            DeviceMetric metric = metric(device, entry.getKey(), entry.getKey(), value, null, null);
+            if (value == null) {
+                // 非数值（如状态字符串）放入自定义值
+                metric.setCustomKey(entry.getValue());
+                metric.setCustomValue(raw);
+            }
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+
+    private DeviceMetric metric(Device device, String type, String name, Double value, String unit, Double threshold) {
+        DeviceMetric metric = new DeviceMetric();
+        metric.setDeviceId(device.getId());
+        metric.setDeviceCode(device.getCode());
+        metric.setDeviceName(device.getName());
+        metric.setMetricType(type);
+        metric.setMetricName(name);
+        metric.setMetricValue(value != null ? Math.round(value * 100) / 100.0 : null);
+        metric.setUnit(unit);
+        metric.setThresholdUpper(threshold);
+        metric.setExceededThreshold(threshold != null && value != null && value > threshold ? 1 : 0);
+        metric.setStatus(threshold != null && value != null && value > threshold ? "WARNING" : "NORMAL");
+        metric.setCollectionMethod("SNMP");
+        return metric;
+    }
+
+    /**
+     * 解析监控参数中的自定义OID（{"snmpOids": {"UPS_LOAD": "1.3.6.1..."}}）
+     */
+    private Map<String, String> customOids(Device device) {
+        Map<String, String> oids = new LinkedHashMap<>();
+        if (device.getMonitorParams() == null || device.getMonitorParams().isEmpty()) {
+            return oids;
+        }
+        try {
+            JSONObject params = JSON.parseObject(device.getMonitorParams());
+            JSONObject custom = params != null ? params.getJSONObject("snmpOids") : null;
+            if (custom != null) {
+                for (String key : custom.keySet()) {
+                    String oid = custom.getString(key);
+                    if (oid != null && !oid.isEmpty()) {
+                        oids.put(key, oid.startsWith(".") ? oid.substring(1) : oid);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("设备监控参数解析失败: deviceId={}, error={}", device.getId(), e.getMessage());
+        }
+        return oids;
+    }
+
+    private Double parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.roominspection.backend.collector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SNMP批量读取请求规划器
+ * <p>
+ * 把一台设备本次要读取的全部OID规划为尽量少的PDU：
+ * 同一父节点下索引连续（或较密集）的OID视为表列，相同索引范围的列合并为一个GETBULK；
+ * 其余标量OID按单PDU变量绑定数上限打包为GET。所有PDU经共享会话并发发出，一次往返完成读取。
+ * <p>
+ * 单PDU变量绑定数上限按设备学习：收到tooBig时减半并重新规划，学到的值记在设备目标上，
+ * 同时作为同型号新设备的初始值。规划结果缓存在型号档案下，以（上限，调用方给出的OID列表）为键：
+ * 同型号设备每个周期读取的OID列表相同，命中缓存时不再解析、排序OID，直接复用规划和响应匹配表。
+ */
+@Slf4j
+@Component
+public class SnmpRequestPlanner {
+
+    @Autowired
+    private SnmpSessionManager sessionManager;
+
+    @Value("${monitor.snmp.planner.max-varbinds:60}")
+    private int defaultMaxVarbinds;
+
+    @Value("${monitor.snmp.planner.min-column-run:4}")
+    private int minColumnRun;
+
+    @Value("${monitor.snmp.planner.max-cached-plans:1000}")
+    private int maxCachedPlans;
+
+    /**
+     * 型号 -> 型号规划档案
+     */
+    private final ConcurrentHashMap<String, ModelProfile> profiles = new ConcurrentHashMap<>();
+
+    private final AtomicLong planBuildCount = new AtomicLong(0);
+    private final AtomicLong planHitCount = new AtomicLong(0);
+    private final AtomicLong tooBigCount = new AtomicLong(0);
+
+    /**
+     * 批量读取（同步等待）
+     *
+     * @param endpoint 设备目标
+     * @param model    设备型号（规划缓存键，未知时可用厂商名）
+     * @param oids     OID列表
+     * @return OID -> 值（不存在的OID不返回）
+     * @throws Exception 读取失败或超时
+     */
+    public Map<String, String> read(SnmpSessionManager.Endpoint endpoint, String model, Collection<String> oids) throws Exception {
+        try {
+            return readAsync(endpoint, model, oids).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 批量读取（异步，等待期间不占用线程）
+     *
+     * @param endpoint 设备目标
+     * @param model    设备型号（规划缓存键，未知时可用厂商名）
+     * @param oids     OID列表
+     * @return OID -> 值（不存在的OID不返回），读取失败或超时时异常结束
+     */
+    public CompletableFuture<Map<String, String>> readAsync(SnmpSessionManager.Endpoint endpoint, String model,
+                                                            Collection<String> oids) {
+        if (oids.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        ModelProfile profile = profiles.computeIfAbsent(model == null ? "" : model, k -> new ModelProfile(defaultMaxVarbinds));
+        return readAsync(endpoint, model, profile, new ArrayList<>(oids), 0);
+    }
+
+    /**
+     * 最多两次：首次tooBig时缩小上限重新规划
+     */
+    private CompletableFuture<Map<String, String>> readAsync(SnmpSessionManager.Endpoint endpoint, String model,
+                                                             ModelProfile profile, List<String> oids, int attempt) {
+        int maxVarbinds = endpoint.getMaxVarbinds() > 0 ? endpoint.getMaxVarbinds() : profile.maxVarbinds;
+        Plan plan = plan(profile, oids, maxVarbinds, endpoint.isBulkSupported());
+        List<CompletableFuture<PDU>> futures = execute(endpoint, plan);
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenCompose(ignored -> {
+            Map<String, String> values = new HashMap<>(plan.requested.size() * 2);
+            boolean complete = collect(endpoint, futures, plan.requested, values);
+            if (complete || attempt >= 1 || maxVarbinds <= 1) {
+                return CompletableFuture.completedFuture(values);
+            }
+            int learned = Math.max(1, maxVarbinds / 2);
+            tooBigCount.incrementAndGet();
+            endpoint.setMaxVarbinds(learned);
+            profile.maxVarbinds = learned;
+            log.info("SNMP响应过大，缩小单PDU变量绑定数: endpoint={}, model={}, maxVarbinds={}", endpoint.getKey(), model, learned);
+            return readAsync(endpoint, model, profile, oids, attempt + 1);
+        });
+    }
+
+    /**
+     * 获取规划统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("models", profiles.size());
+        stats.put("planBuilds", planBuildCount.get());
+        stats.put("planHits", planHitCount.get());
+        stats.put("tooBig", tooBigCount.get());
+        return stats;
+    }
+
+    /**
+     * 并发发出规划中的全部PDU
+     */
+    private List<CompletableFuture<PDU>> execute(SnmpSessionManager.Endpoint endpoint, Plan plan) {
+        List<CompletableFuture<PDU>> futures = new ArrayList<>(plan.requests.size());
+        for (PlannedRequest request : plan.requests) {
+            futures.add(request.bulk
+                    ? sessionManager.getBulk(endpoint, 0, request.maxRepetitions, request.oids)
+                    : sessionManager.get(endpoint, request.oids));
+        }
+        return futures;
+    }
+
+    /**
+     * 收集已全部完成的响应
+     *
+     * @return false-有响应为tooBig，需要缩小上限重新规划
+     */
+    private boolean collect(SnmpSessionManager.Endpoint endpoint, List<CompletableFuture<PDU>> futures,
+                            Map<OID, String> requested, Map<String, String> values) {
+        boolean complete = true;
+        for (CompletableFuture<PDU> future : futures) {
+            PDU response = future.join();
+            if (response.getErrorStatus() == PDU.tooBig) {
+                complete = false;
+                continue;
+            }
+            if (response.getErrorStatus() != PDU.noError) {
+                log.debug("SNMP请求返回错误: endpoint={}, error={}", endpoint.getKey(), response.getErrorStatusText());
+                continue;
+            }
+            for (VariableBinding vb : response.getVariableBindings()) {
+                // GETBULK会返回范围内不需要的行，只保留请求的OID
+                String oid = requested.get(vb.getOid());
+                if (oid != null && !vb.isException()) {
+                    values.put(oid, vb.getVariable().toString());
+                }
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * 取缓存的规划，未命中时解析OID并生成（只有首次读取或OID列表变化时才会排序）
+     */
+    private Plan plan(ModelProfile profile, List<String> oids, int maxVarbinds, boolean bulkSupported) {
+        PlanKey key = new PlanKey(maxVarbinds, bulkSupported, oids);
+        Plan plan = profile.plans.get(key);
+        if (plan != null) {
+            planHitCount.incrementAndGet();
+            return plan;
+        }
+
+        Map<OID, String> requested = new HashMap<>(oids.size() * 2);
+        for (String oid : oids) {
+            requested.put(new OID(oid), oid);
+        }
+        List<OID> sorted = new ArrayList<>(requested.keySet());
+        Collections.sort(sorted);
+        plan = build(sorted, maxVarbinds, bulkSupported).withRequested(requested);
+        planBuildCount.incrementAndGet();
+        if (profile.plans.size() >= maxCachedPlans) {
+            profile.plans.clear();
+        }
+        profile.plans.put(key, plan);
+        return plan;
+    }
+
+    /**
+     * 生成请求规划
+     *
+     * @param sorted        有序OID列表
+     * @param maxVarbinds   单PDU变量绑定数上限
+     * @param bulkSupported 是否可用GETBULK
+     */
+    Plan build(List<OID> sorted, int maxVarbinds, boolean bulkSupported) {
+        // 按父节点分组，组内记录末位索引
+        Map<OID, List<Integer>> groups = new LinkedHashMap<>();
+        for (OID oid : sorted) {
+            OID parent = new OID(oid.getValue(), 0, oid.size() - 1);
+            groups.computeIfAbsent(parent, k -> new ArrayList<>()).add(oid.last());
+        }
+
+        List<PlannedRequest> requests = new ArrayList<>();
+        List<OID> scalars = new ArrayList<>();
+        // 索引范围 -> 该范围内的表列
+        Map<Long, List<OID>> columnsByRange = new LinkedHashMap<>();
+
+        for (Map.Entry<OID, List<Integer>> group : groups.entrySet()) {
+            List<Integer> indexes = group.getValue();
+            int first = indexes.get(0);
+            int last = indexes.get(indexes.size() - 1);
+            int span = last - first + 1;
+            boolean column = bulkSupported && first > 0 && indexes.size() >= minColumnRun && indexes.size() * 2 >= span;
+            if (column) {
+                columnsByRange.computeIfAbsent(((long) first << 32) | (last & 0xffffffffL), k -> new ArrayList<>())
+                        .add(group.getKey());
+            } else {
+                for (int index : indexes) {
+                    scalars.add(new OID(group.getKey().getValue(), index));
+                }
+            }
+        }
+
+        // 表列：相同索引范围的列合并，列数 × 行数不超过上限
+        for (Map.Entry<Long, List<OID>> entry : columnsByRange.entrySet()) {
+            int first = (int) (entry.getKey() >>> 32);
+            int last = (int) (long) entry.getKey();
+            List<OID> columns = entry.getValue();
+            int rowsPerRequest = Math.max(1, Math.min(last - first + 1, maxVarbinds));
+            int columnsPerRequest = Math.max(1, maxVarbinds / rowsPerRequest);
+            for (int start = first; start <= last; start += rowsPerRequest) {
+                int rows = Math.min(rowsPerRequest, last - start + 1);
+                for (int c = 0; c < columns.size(); c += columnsPerRequest) {
+                    List<OID> starts = new ArrayList<>();
+                    for (OID columnOid : columns.subList(c, Math.min(columns.size(), c + columnsPerRequest))) {
+                        // GETBULK返回起始OID的后继，从 start-1 开始即可取到 start 行
+                        starts.add(start > 1 ? new OID(columnOid.getValue(), start - 1) : new OID(columnOid.getValue()));
+                    }
+                    requests.add(new PlannedRequest(true, starts, rows));
+                }
+            }
+        }
+
+        // 标量：按上限打包为GET
+        for (int i = 0; i < scalars.size(); i += maxVarbinds) {
+            requests.add(new PlannedRequest(false, new ArrayList<>(scalars.subList(i, Math.min(scalars.size(), i + maxVarbinds))), 0));
+        }
+        return new Plan(requests);
+    }
+
+    /**
+     * 型号规划档案：学习到的上限与缓存的规划
+     */
+    private static final class ModelProfile {
+        private volatile int maxVarbinds;
+        private final ConcurrentHashMap<PlanKey, Plan> plans = new ConcurrentHashMap<>();
+
+        ModelProfile(int maxVarbinds) {
+            this.maxVarbinds = maxVarbinds;
+        }
+    }
+
+    /**
+     * 规划缓存键：单PDU上限、是否可用GETBULK、调用方给出的OID列表
+     */
+    private static final class PlanKey {
+        private final int maxVarbinds;
+        private final boolean bulkSupported;
+        private final List<String> oids;
+        private final int hash;
+
+        PlanKey(int maxVarbinds, boolean bulkSupported, List<String> oids) {
+            this.maxVarbinds = maxVarbinds;
+            this.bulkSupported = bulkSupported;
+            this.oids = oids;
+            this.hash = Objects.hash(maxVarbinds, bulkSupported, oids);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return maxVarbinds == other.maxVarbinds && bulkSupported == other.bulkSupported && oids.equals(other.oids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 请求规划（不可变，可在同型号设备间共享）
+     */
+    static final class Plan {
+        private final List<PlannedRequest> requests;
+
+        /**
+         * 响应匹配表：OID -> 调用方给出的OID字符串
+         */
+        private final Map<OID, String> requested;
+
+        Plan(List<PlannedRequest> requests) {
+            this(requests, Collections.emptyMap());
+        }
+
+        private Plan(List<PlannedRequest> requests, Map<OID, String> requested) {
+            this.requests = Collections.unmodifiableList(requests);
+            this.requested = Collections.unmodifiableMap(requested);
+        }
+
+        Plan withRequested(Map<OID, String> requested) {
+            return new Plan(requests, requested);
+        }
+
+        int size() {
+            return requests.size();
+        }
+    }
+
+    private static final class PlannedRequest {
+        private final boolean bulk;
+        private final List<OID> oids;
+        private final int maxRepetitions;
+
+        PlannedRequest(boolean bulk, List<OID> oids, int maxRepetitions) {
+            this.bulk = bulk;
+            this.oids = Collections.unmodifiableList(oids);
+            this.maxRepetitions = maxRepetitions;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.roominspection.backend.collector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.*;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.util.MultiThreadedMessageDispatcher;
+import org.snmp4j.util.ThreadPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 共享SNMP会话管理器
+ * <p>
+ * 全局只有一个UDP传输（一个socket）和一个多线程消息分发器，所有设备的请求在同一socket上复用，
+ * 按请求ID匹配响应，同一时刻可有大量请求在途（总量受max-in-flight限制）。
+ * 每个目标缓存一个CommunityTarget，并按Jacobson/Karels算法根据实测往返时间自适应调整超时；
+ * 连续超时的目标减少重试次数，避免离线设备占满在途名额。
+ * 对外提供异步GET/GETBULK/SET（CompletableFuture回调），同步调用只是在其上等待。
+ */
+@Slf4j
+@Component
+public class SnmpSessionManager {
+
+    @Value("${monitor.snmp.timeout:5000}")
+    private long defaultTimeout;
+
+    @Value("${monitor.snmp.retries:3}")
+    private int defaultRetries;
+
+    @Value("${monitor.snmp.session.dispatcher-threads:4}")
+    private int dispatcherThreads;
+
+    @Value("${monitor.snmp.session.max-in-flight:2000}")
+    private int maxInFlight;
+
+    @Value("${monitor.snmp.session.min-timeout:200}")
+    private long minTimeout;
+
+    @Value("${monitor.snmp.session.receive-buffer-size:4194304}")
+    private int receiveBufferSize;
+
+    private Snmp snmp;
+
+    private ThreadPool dispatcherPool;
+
+    private Semaphore inFlight;
+
+    /**
+     * 目标键（host/port/community/version）-> 目标
+     */
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final AtomicLong requestCount = new AtomicLong(0);
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() throws IOException {
+        dispatcherPool = ThreadPool.create("snmp-dispatcher", dispatcherThreads);
+        MessageDispatcher dispatcher = new MultiThreadedMessageDispatcher(dispatcherPool, new MessageDispatcherImpl());
+        dispatcher.addMessageProcessingModel(new MPv1());
+        dispatcher.addMessageProcessingModel(new MPv2c());
+
+        DefaultUdpTransportMapping transport = new DefaultUdpTransportMapping();
+        transport.setReceiveBufferSize(receiveBufferSize);
+        snmp = new Snmp(dispatcher, transport);
+        snmp.listen();
+        inFlight = new Semaphore(maxInFlight);
+        log.info("SNMP共享会话已启动: dispatcherThreads={}, maxInFlight={}", dispatcherThreads, maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            if (snmp != null) {
+                snmp.close();
+            }
+        } catch (IOException e) {
+            log.error("关闭SNMP共享会话失败", e);
+        }
+        if (dispatcherPool != null) {
+            dispatcherPool.stop();
+        }
+    }
+
+    /**
+     * 获取（或创建）SNMP v2c目标并占用一个引用，用完后须调用 {@link #release(Endpoint)}
+     *
+     * @param host      设备地址
+     * @param port      端口
+     * @param community 团体名
+     * @return 目标
+     */
+    public Endpoint endpoint(String host, int port, String community) {
+        return endpoint(host, port, community, SnmpConstants.version2c);
+    }
+
+    /**
+     * 获取（或创建）SNMP目标并占用一个引用，同一设备的多个适配器共享一个目标及其往返时间统计，
+     * 最后一个引用释放后目标才被移除
+     *
+     * @param host      设备地址
+     * @param port      端口
+     * @param community 团体名
+     * @param version   SNMP版本（SnmpConstants.version1/version2c）
+     * @return 目标
+     */
+    public Endpoint endpoint(String host, int port, String community, int version) {
+        return endpoints.compute(key(host, port, community, version), (key, existing) -> {
+            Endpoint endpoint = existing;
+            if (endpoint == null) {
+                CommunityTarget<UdpAddress> target =
+                        new CommunityTarget<>(new UdpAddress(host + "/" + port), new OctetString(community));
+                target.setVersion(version);
+                target.setRetries(defaultRetries);
+                target.setTimeout(defaultTimeout);
+                endpoint = new Endpoint(key, target, defaultTimeout, minTimeout, defaultRetries);
+            }
+            endpoint.references++;
+            return endpoint;
+        });
+    }
+
+    /**
+     * 释放一个目标引用（适配器断开、设备删除或地址变更时调用），没有引用后移除目标
+     *
+     * @param endpoint 目标
+     */
+    public void release(Endpoint endpoint) {
+        if (endpoint != null) {
+            endpoints.computeIfPresent(endpoint.key, (key, existing) ->
+                    existing != endpoint || --existing.references > 0 ? existing : null);
+        }
+    }
+
+    /**
+     * 目标键
+     *
+     * @param host      设备地址
+     * @param port      端口
+     * @param community 团体名
+     * @param version   SNMP版本
+     * @return host/port/community/version
+     */
+    public static String key(String host, int port, String community, int version) {
+        return host + "/" + port + "/" + community + "/" + version;
+    }
+
+    public boolean isRunning() {
+        return snmp != null;
+    }
+
+    /**
+     * 异步GET
+     *
+     * @param endpoint 目标
+     * @param oids     OID列表
+     * @return 响应PDU（超时时以TimeoutException结束）
+     */
+    public CompletableFuture<PDU> get(Endpoint endpoint, List<OID> oids) {
+        PDU pdu = new PDU();
+        for (OID oid : oids) {
+            pdu.add(new VariableBinding(oid));
+        }
+        pdu.setType(PDU.GET);
+        return send(endpoint, pdu);
+    }
+
+    /**
+     * 异步GETBULK
+     *
+     * @param endpoint       目标
+     * @param nonRepeaters   前N个OID只取一次
+     * @param maxRepetitions 其余OID每个最多返回的后继数
+     * @param oids           OID列表
+     * @return 响应PDU
+     */
+    public CompletableFuture<PDU> getBulk(Endpoint endpoint, int nonRepeaters, int maxRepetitions, List<OID> oids) {
+        PDU pdu = new PDU();
+        for (OID oid : oids) {
+            pdu.add(new VariableBinding(oid));
+        }
+        pdu.setType(PDU.GETBULK);
+        pdu.setNonRepeaters(nonRepeaters);
+        pdu.setMaxRepetitions(maxRepetitions);
+        return send(endpoint, pdu);
+    }
+
+    /**
+     * 异步发送任意PDU
+     *
+     * @param endpoint 目标
+     * @param pdu      请求PDU
+     * @return 响应PDU
+     */
+    public CompletableFuture<PDU> send(Endpoint endpoint, PDU pdu) {
+        CompletableFuture<PDU> future = new CompletableFuture<>();
+        if (!inFlight.tryAcquire()) {
+            rejectedCount.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("SNMP在途请求数已达上限: " + maxInFlight));
+            return future;
+        }
+
+        requestCount.incrementAndGet();
+        Target<UdpAddress> target = endpoint.prepareTarget();
+        long sendTime = System.nanoTime();
+        ResponseListener listener = new ResponseListener() {
+            @Override
+            public <A extends Address> void onResponse(ResponseEvent<A> event) {
+                // 异步请求收到响应后必须取消，否则SNMP4J会继续重试
+                ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                inFlight.release();
+                PDU response = event.getResponse();
+                if (event.getError() != null) {
+                    endpoint.onTimeout();
+                    future.completeExceptionally(event.getError());
+                } else if (response == null) {
+                    timeoutCount.incrementAndGet();
+                    endpoint.onTimeout();
+                    future.completeExceptionally(new TimeoutException("SNMP请求超时: " + endpoint.key));
+                } else {
+                    endpoint.onResponse(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendTime));
+                    future.complete(response);
+                }
+            }
+        };
+
+        try {
+            snmp.send(pdu, target, null, listener);
+        } catch (IOException e) {
+            inFlight.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 同步发送（在异步请求上等待），超时返回null，与Snmp.send同步调用的语义一致
+     *
+     * @param endpoint 目标
+     * @param pdu      请求PDU
+     * @return 响应PDU，超时返回null
+     * @throws Exception 发送失败
+     */
+    public PDU sendSync(Endpoint endpoint, PDU pdu) throws Exception {
+        try {
+            return send(endpoint, pdu).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return null;
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 获取会话统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("endpoints", endpoints.size());
+        stats.put("inFlight", maxInFlight - (inFlight != null ? inFlight.availablePermits() : maxInFlight));
+        stats.put("requests", requestCount.get());
+        stats.put("timeouts", timeoutCount.get());
+        stats.put("rejected", rejectedCount.get());
+        return stats;
+    }
+
+    /**
+     * SNMP目标：缓存的CommunityTarget与自适应超时状态
+     */
+    public static final class Endpoint {
+
+        /**
+         * 连续超时达到该次数后不再重试
+         */
+        private static final int UNREACHABLE_THRESHOLD = 3;
+
+        private final String key;
+        private final CommunityTarget<UdpAddress> target;
+        private final long maxTimeout;
+        private final long minTimeout;
+        private final int maxRetries;
+
+        /**
+         * 平滑往返时间与偏差（毫秒），未测量前为-1
+         */
+        private double srtt = -1;
+        private double rttvar = 0;
+        private int consecutiveTimeouts = 0;
+        private int maxVarbinds = 0;
+
+        /**
+         * 引用计数，只在目标表的compute中修改
+         */
+        private int references = 0;
+
+        Endpoint(String key, CommunityTarget<UdpAddress> target, long maxTimeout, long minTimeout, int maxRetries) {
+            this.key = key;
+            this.target = target;
+            this.maxTimeout = maxTimeout;
+            this.minTimeout = minTimeout;
+            this.maxRetries = maxRetries;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 当前自适应超时（毫秒）：SRTT + 4 * RTTVAR，限制在[min, max]之间
+         */
+        public synchronized long getTimeout() {
+            if (srtt < 0) {
+                return maxTimeout;
+            }
+            long timeout = (long) (srtt + 4 * rttvar);
+            return Math.max(minTimeout, Math.min(maxTimeout, timeout));
+        }
+
+        /**
+         * 是否支持GETBULK（SNMP v2c及以上）
+         */
+        public boolean isBulkSupported() {
+            return target.getVersion() != SnmpConstants.version1;
+        }
+
+        /**
+         * 设置该设备单个PDU可容纳的变量绑定数（由请求规划器在收到tooBig后学习）
+         */
+        public synchronized void setMaxVarbinds(int maxVarbinds) {
+            this.maxVarbinds = maxVarbinds;
+        }
+
+        /**
+         * 已学习的单PDU变量绑定数上限，未学习时返回0
+         */
+        public synchronized int getMaxVarbinds() {
+            return maxVarbinds;
+        }
+
+        public synchronized boolean isUnreachable() {
+            return consecutiveTimeouts >= UNREACHABLE_THRESHOLD;
+        }
+
+        /**
+         * 按当前统计生成本次请求使用的目标副本（并发请求互不影响）
+         */
+        @SuppressWarnings("unchecked")
+        synchronized Target<UdpAddress> prepareTarget() {
+            Target<UdpAddress> copy = (Target<UdpAddress>) target.duplicate();
+            copy.setTimeout(getTimeout());
+            copy.setRetries(consecutiveTimeouts >= UNREACHABLE_THRESHOLD ? 0 : maxRetries);
+            return copy;
+        }
+
+        synchronized void onResponse(long rttMillis) {
+            consecutiveTimeouts = 0;
+            if (srtt < 0) {
+                srtt = rttMillis;
+                rttvar = rttMillis / 2.0;
+            } else {
+                rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttMillis);
+                srtt = 0.875 * srtt + 0.125 * rttMillis;
+            }
+        }
+
+        synchronized void onTimeout() {
+            consecutiveTimeouts++;
+            // 超时后放宽超时，避免慢设备被反复判超时
+            if (srtt >= 0) {
+                rttvar = Math.min(rttvar * 2 + 1, maxTimeout);
+            }
+        }
+    }
+}
@@ -0,0 +1,685 @@
+package com.roominspection.backend.collector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 本地预写缓冲文件（spool）
+ * <p>
+ * 下游（MySQL/Redis）不可用时的离线缓冲，只依赖本地磁盘：
+ * <ul>
+ *     <li>追加写、按固定大小分段滚动，每段以内存映射方式读写，追加只是一次内存拷贝</li>
+ *     <li>记录帧为 [长度int][CRC32 int][内容]，长度0表示段内尚未写入，-1表示该段已封口</li>
+ *     <li>游标文件记录已确认回放到的段号与偏移，每批回放成功后原子替换，完全消费的段随即删除</li>
+ *     <li>重启时从最后一段逐帧校验恢复写位置，半截或CRC不符的记录被截断</li>
+ * </ul>
+ * 回放线程按批读取、交给处理器写入下游，处理成功才推进游标；失败时指数退避，不丢数据。
+ * 回放速率按处理器返回的处理量限流，避免下游刚恢复就被积压数据压垮。
+ * <p>
+ * 同一批连续失败达到上限（或处理器判定为数据错误）后拆批逐条回放：单条仍失败的记录，
+ * 若被处理器判定为数据错误，或同批有其他记录写入成功、或处理器确认下游可用，则视为坏记录，
+ * 转入死信文件（dead-letter.dat，帧格式与段文件相同）并跳过；否则视为下游故障，整批保留继续退避。
+ * 这样个别永久被拒绝的记录不会卡住整个缓冲。
+ */
+@Slf4j
+public class WriteAheadSpool implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int SEALED = -1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String CURSOR_FILE = "cursor";
+    private static final String DEAD_LETTER_FILE = "dead-letter.dat";
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    /**
+     * 拆批回放时连续这么多条失败且没有任何成功，即按下游故障处理，不再逐条尝试
+     */
+    private static final int MAX_PROBE_FAILURES = 3;
+    private static final long MAX_BACKOFF_MS = 60000;
+
+    private final String name;
+    private final Path dir;
+    private final int segmentSize;
+    private final long maxSegments;
+    private final int maxAttempts;
+
+    // 写位置
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private long firstSegment;
+    private boolean dirty = false;
+
+    // 已确认的回放位置
+    private long readSegment;
+    private int readOffset;
+    private long cachedReadSegment = -1;
+    private MappedByteBuffer cachedReadBuffer;
+
+    // 回放线程
+    private final Object replaySignal = new Object();
+    private Thread replayThread;
+    private volatile boolean running = false;
+    private volatile long consecutiveFailures = 0;
+    private volatile long backoffMillis = 0;
+    private volatile String lastReplayError;
+
+    // 队头批次的连续失败次数（按批次起始位置识别）
+    private long failingSegment = -1;
+    private int failingOffset = -1;
+    private int failingAttempts = 0;
+
+    // 统计
+    private final AtomicLong pendingRecords = new AtomicLong(0);
+    private final AtomicLong appendedCount = new AtomicLong(0);
+    private final AtomicLong replayedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong corruptedCount = new AtomicLong(0);
+    private final AtomicLong replayFailureCount = new AtomicLong(0);
+    private final AtomicLong deadLetterCount = new AtomicLong(0);
+
+    /**
+     * 回放处理器
+     */
+    public interface BatchHandler {
+
+        /**
+         * 将一批记录写入下游，抛出异常表示本批失败（游标不推进，稍后重试）
+         *
+         * @param records 记录内容
+         * @return 本批处理量（用于限流，例如实际写入的行数）
+         */
+        int handle(List<byte[]> records) throws Exception;
+
+        /**
+         * 下游当前是否可用（拆批后单条记录仍失败时，据此区分坏记录与下游故障）
+         * 默认无法判断，此时只有同批其他记录写入成功才认定失败记录为坏记录
+         */
+        default boolean isHealthy() {
+            return false;
+        }
+    }
+
+    /**
+     * 处理器判定记录本身无法写入（格式错误、违反约束等），重试不会成功，记录直接转入死信
+     */
+    public static class RejectedRecordException extends Exception {
+
+        public RejectedRecordException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private WriteAheadSpool(String name, Path dir, int segmentSize, long maxSegments, int maxAttempts) {
+        this.name = name;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * 打开（或恢复）缓冲目录
+     *
+     * @param name        名称（用于日志与线程名）
+     * @param dir         缓冲目录
+     * @param segmentSize 单段大小（字节）
+     * @param maxBytes    缓冲总大小上限（字节），超出后拒绝追加
+     * @return 缓冲文件
+     */
+    public static WriteAheadSpool open(String name, Path dir, int segmentSize, long maxBytes) throws IOException {
+        return open(name, dir, segmentSize, maxBytes, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * 打开（或恢复）缓冲目录
+     *
+     * @param name        名称（用于日志与线程名）
+     * @param dir         缓冲目录
+     * @param segmentSize 单段大小（字节）
+     * @param maxBytes    缓冲总大小上限（字节），超出后拒绝追加
+     * @param maxAttempts 同一批连续失败多少次后拆批逐条回放
+     * @return 缓冲文件
+     */
+    public static WriteAheadSpool open(String name, Path dir, int segmentSize, long maxBytes, int maxAttempts)
+            throws IOException {
+        WriteAheadSpool spool = new WriteAheadSpool(name, dir, segmentSize, Math.max(2, maxBytes / segmentSize),
+                maxAttempts);
+        spool.recover();
+        return spool;
+    }
+
+    /**
+     * 追加一条记录（线程安全）
+     *
+     * @param payload 记录内容
+     * @return false表示记录过大或缓冲已满被拒绝
+     */
+    public synchronized boolean append(byte[] payload) {
+        int frameSize = HEADER_SIZE + payload.length;
+        if (payload.length == 0 || frameSize > segmentSize - 4) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        try {
+            if (writeBuffer.remaining() < frameSize + 4) {
+                if (writeSegment - firstSegment + 1 >= maxSegments) {
+                    long rejected = rejectedCount.incrementAndGet();
+                    if (rejected % 1000 == 1) {
+                        log.error("本地缓冲已满，拒绝写入: spool={}, segments={}, rejected={}",
+                                name, writeSegment - firstSegment + 1, rejected);
+                    }
+                    return false;
+                }
+                roll();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            writeBuffer.putInt(payload.length);
+            writeBuffer.putInt((int) crc.getValue());
+            writeBuffer.put(payload);
+            dirty = true;
+            appendedCount.incrementAndGet();
+            pendingRecords.incrementAndGet();
+        } catch (IOException e) {
+            rejectedCount.incrementAndGet();
+            log.error("本地缓冲滚动失败: spool={}, error={}", name, e.getMessage());
+            return false;
+        }
+        if (consecutiveFailures == 0) {
+            // 下游失败退避期间不唤醒回放线程
+            signal();
+        }
+        return true;
+    }
+
+    /**
+     * 将当前段的修改刷到磁盘
+     */
+    public synchronized void force() {
+        if (dirty) {
+            writeBuffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * 启动回放线程
+     *
+     * @param handler      回放处理器
+     * @param batchSize    单批最多记录数
+     * @param ratePerSecond 每秒最大处理量（处理器返回值累计），0表示不限
+     * @param idleMillis   无积压时的轮询间隔（同时是刷盘间隔）
+     */
+    public void startReplay(BatchHandler handler, int batchSize, int ratePerSecond, long idleMillis) {
+        running = true;
+        replayThread = new Thread(() -> replayLoop(handler, batchSize, ratePerSecond, idleMillis), "spool-replay-" + name);
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    /**
+     * 立即唤醒回放线程（清除退避）
+     */
+    public void triggerReplay() {
+        backoffMillis = 0;
+        signal();
+    }
+
+    /**
+     * 下游是否处于失败状态（最近一次回放失败）
+     */
+    public boolean isDownstreamFailing() {
+        return consecutiveFailures > 0;
+    }
+
+    /**
+     * 待回放记录数
+     */
+    public long getPendingRecords() {
+        return pendingRecords.get();
+    }
+
+    /**
+     * 缓冲中已无法回放的记录数（被拒绝或校验失败；转入死信的记录仍保存在死信文件中，不计入）
+     */
+    public long getLostRecords() {
+        return rejectedCount.get() + corruptedCount.get();
+    }
+
+    /**
+     * 已转入死信文件的记录数
+     */
+    public long getDeadLetterRecords() {
+        return deadLetterCount.get();
+    }
+
+    /**
+     * 获取缓冲统计
+     *
+     * @return 统计信息
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long segments = writeSegment - firstSegment + 1;
+        stats.put("name", name);
+        stats.put("dir", dir.toString());
+        stats.put("segments", segments);
+        stats.put("diskBytes", segments * segmentSize);
+        stats.put("pendingBytes", (writeSegment - readSegment) * segmentSize + writeBuffer.position() - readOffset);
+        stats.put("pendingRecords", pendingRecords.get());
+        stats.put("appended", appendedCount.get());
+        stats.put("replayed", replayedCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("corrupted", corruptedCount.get());
+        stats.put("replayFailures", replayFailureCount.get());
+        stats.put("deadLetters", deadLetterCount.get());
+        stats.put("consecutiveFailures", consecutiveFailures);
+        stats.put("backoffMillis", backoffMillis);
+        stats.put("lastReplayError", lastReplayError);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        signal();
+        if (replayThread != null) {
+            try {
+                replayThread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        force();
+        log.info("本地缓冲已关闭: spool={}, pending={}", name, pendingRecords.get());
+    }
+
+    /**
+     * 回放主循环：读一批 -> 处理 -> 推进游标 -> 按速率等待
+     */
+    private void replayLoop(BatchHandler handler, int batchSize, int ratePerSecond, long idleMillis) {
+        while (running) {
+            try {
+                force();
+                Batch batch = poll(batchSize);
+                if (batch.count == 0) {
+                    if (batch.segment != readSegment || batch.offset != readOffset) {
+                        // 跳过了损坏数据或封口段
+                        commit(batch);
+                        continue;
+                    }
+                    await(idleMillis);
+                    continue;
+                }
+
+                long start = System.currentTimeMillis();
+                int processed = replay(handler, batch);
+                commit(batch);
+                replayedCount.addAndGet(batch.count);
+                if (consecutiveFailures > 0) {
+                    log.info("下游已恢复，继续回放本地缓冲: spool={}, pending={}", name, pendingRecords.get());
+                }
+                consecutiveFailures = 0;
+                backoffMillis = 0;
+                lastReplayError = null;
+
+                if (ratePerSecond > 0) {
+                    long minMillis = processed * 1000L / ratePerSecond;
+                    long elapsed = System.currentTimeMillis() - start;
+                    if (elapsed < minMillis) {
+                        Thread.sleep(minMillis - elapsed);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                replayFailureCount.incrementAndGet();
+                consecutiveFailures++;
+                lastReplayError = e.getMessage();
+                backoffMillis = Math.min(MAX_BACKOFF_MS, backoffMillis == 0 ? 1000 : backoffMillis * 2);
+                if (consecutiveFailures == 1 || backoffMillis == MAX_BACKOFF_MS) {
+                    log.warn("本地缓冲回放失败，{}ms后重试: spool={}, pending={}, error={}",
+                            backoffMillis, name, pendingRecords.get(), e.getMessage());
+                }
+                try {
+                    await(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 回放一批：整批失败时累计队头失败次数，达到上限或处理器判定为数据错误时拆批逐条回放
+     *
+     * @return 处理量
+     * @throws Exception 下游故障，本批保留
+     */
+    private int replay(BatchHandler handler, Batch batch) throws Exception {
+        try {
+            int processed = handler.handle(batch.records);
+            failingAttempts = 0;
+            return processed;
+        } catch (RejectedRecordException e) {
+            return isolate(handler, batch, e);
+        } catch (Exception e) {
+            if (failingSegment != readSegment || failingOffset != readOffset) {
+                failingSegment = readSegment;
+                failingOffset = readOffset;
+                failingAttempts = 0;
+            }
+            if (++failingAttempts < maxAttempts) {
+                throw e;
+            }
+            return isolate(handler, batch, e);
+        }
+    }
+
+    /**
+     * 拆批逐条回放，坏记录转入死信；无法确认下游可用时抛出异常，整批保留
+     */
+    private int isolate(BatchHandler handler, Batch batch, Exception cause) throws Exception {
+        List<byte[]> poisoned = new ArrayList<>();
+        List<byte[]> failed = new ArrayList<>();
+        Exception lastError = cause;
+        boolean anySucceeded = false;
+        boolean outage = false;
+        int processed = 0;
+
+        if (batch.count == 1) {
+            // 单条批次无需重试，整批失败即为该条失败
+            (cause instanceof RejectedRecordException ? poisoned : failed).add(batch.records.get(0));
+        } else {
+            for (byte[] record : batch.records) {
+                try {
+                    processed += handler.handle(Collections.singletonList(record));
+                    anySucceeded = true;
+                } catch (RejectedRecordException e) {
+                    poisoned.add(record);
+                    lastError = e;
+                } catch (Exception e) {
+                    failed.add(record);
+                    lastError = e;
+                    if (!anySucceeded && failed.size() >= MAX_PROBE_FAILURES && !handler.isHealthy()) {
+                        outage = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            if (outage || (!anySucceeded && !handler.isHealthy())) {
+                // 没有任何记录写入成功且下游状态未知：按下游故障处理，再失败maxAttempts次后才重新拆批
+                failingAttempts = 0;
+                throw lastError;
+            }
+            poisoned.addAll(failed);
+        }
+        for (byte[] record : poisoned) {
+            deadLetter(record);
+        }
+        failingAttempts = 0;
+        if (!poisoned.isEmpty()) {
+            log.error("本地缓冲存在无法写入下游的记录，已转入死信: spool={}, count={}, batch={}, error={}",
+                    name, poisoned.size(), batch.count, lastError != null ? lastError.getMessage() : null);
+        }
+        return processed;
+    }
+
+    /**
+     * 追加到死信文件并刷盘（帧格式与段文件相同，便于排查后人工回放）
+     */
+    private void deadLetter(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        frame.put(payload);
+        frame.flip();
+        try (FileChannel channel = FileChannel.open(dir.resolve(DEAD_LETTER_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            channel.force(false);
+        }
+        deadLetterCount.incrementAndGet();
+    }
+
+    /**
+     * 从已确认位置读取一批记录（不推进游标）
+     */
+    private synchronized Batch poll(int maxRecords) throws IOException {
+        return scan(maxRecords, true);
+    }
+
+    /**
+     * 从已确认位置逐帧扫描
+     *
+     * @param maxRecords 最多记录数
+     * @param copy       是否拷贝记录内容（false时只计数）
+     */
+    private Batch scan(int maxRecords, boolean copy) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        int count = 0;
+        long segment = readSegment;
+        int offset = readOffset;
+        ByteBuffer buffer = bufferFor(segment);
+
+        while (count < maxRecords && buffer != null) {
+            int limit = segment == writeSegment ? writeBuffer.position() : segmentSize;
+            if (offset + HEADER_SIZE <= limit) {
+                int length = buffer.getInt(offset);
+                if (length > 0 && offset + HEADER_SIZE + length <= limit && verify(buffer, offset, length)) {
+                    if (copy) {
+                        records.add(read(buffer, offset, length));
+                    }
+                    count++;
+                    offset += HEADER_SIZE + length;
+                    continue;
+                }
+                if (copy && length != 0 && length != SEALED) {
+                    corruptedCount.incrementAndGet();
+                    log.error("本地缓冲记录校验失败，跳过该段剩余数据: spool={}, segment={}, offset={}",
+                            name, segment, offset);
+                }
+            }
+            if (segment >= writeSegment) {
+                break;
+            }
+            segment++;
+            offset = 0;
+            buffer = bufferFor(segment);
+        }
+        return new Batch(records, count, segment, offset);
+    }
+
+    /**
+     * 推进并持久化游标，删除已完全消费的段
+     */
+    private synchronized void commit(Batch batch) throws IOException {
+        long previous = readSegment;
+        readSegment = batch.segment;
+        readOffset = batch.offset;
+        pendingRecords.addAndGet(-batch.count);
+        writeCursor();
+        for (long segment = previous; segment < readSegment; segment++) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+        firstSegment = readSegment;
+    }
+
+    /**
+     * 启动恢复：定位游标与写位置，统计待回放记录
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(file -> file.startsWith(SEGMENT_PREFIX) && file.endsWith(SEGMENT_SUFFIX))
+                    .forEach(file -> segments.add(Long.parseLong(
+                            file.substring(SEGMENT_PREFIX.length(), file.length() - SEGMENT_SUFFIX.length()))));
+        }
+        Collections.sort(segments);
+
+        firstSegment = segments.isEmpty() ? 0 : segments.get(0);
+        writeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        readSegment = firstSegment;
+        readOffset = 0;
+
+        Path cursor = dir.resolve(CURSOR_FILE);
+        if (Files.exists(cursor)) {
+            String[] parts = new String(Files.readAllBytes(cursor), StandardCharsets.UTF_8).trim().split(":");
+            long segment = Long.parseLong(parts[0]);
+            if (segment >= firstSegment && segment <= writeSegment) {
+                readSegment = segment;
+                readOffset = Integer.parseInt(parts[1]);
+            }
+        }
+        for (Long segment : segments) {
+            if (segment < readSegment) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+        firstSegment = readSegment;
+
+        writeBuffer = map(writeSegment, FileChannel.MapMode.READ_WRITE);
+        writeBuffer.position(scanEnd(writeBuffer));
+        if (readSegment == writeSegment && readOffset > writeBuffer.position()) {
+            readOffset = writeBuffer.position();
+        }
+
+        long pending = scan(Integer.MAX_VALUE, false).count;
+        pendingRecords.set(pending);
+
+        log.info("本地缓冲已打开: spool={}, dir={}, segments={}, pending={}",
+                name, dir, writeSegment - firstSegment + 1, pending);
+    }
+
+    /**
+     * 逐帧校验定位段内有效数据末尾，清除其后的残留
+     */
+    private int scanEnd(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (offset + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > segmentSize || !verify(buffer, offset, length)) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        if (offset + HEADER_SIZE <= segmentSize && buffer.getInt(offset) != 0) {
+            log.warn("本地缓冲存在未完整写入的记录，已截断: spool={}, segment={}, offset={}",
+                    name, writeSegment, offset);
+            for (int i = offset; i < segmentSize; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return offset;
+    }
+
+    private boolean verify(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + HEADER_SIZE + length);
+        view.position(offset + HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue() == buffer.getInt(offset + 4);
+    }
+
+    private byte[] read(ByteBuffer buffer, int offset, int length) {
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + HEADER_SIZE);
+        view.get(payload);
+        return payload;
+    }
+
+    private void roll() throws IOException {
+        if (writeBuffer.remaining() >= 4) {
+            writeBuffer.putInt(SEALED);
+        }
+        writeBuffer.force();
+        writeSegment++;
+        writeBuffer = map(writeSegment, FileChannel.MapMode.READ_WRITE);
+        dirty = false;
+        log.debug("本地缓冲滚动到新段: spool={}, segment={}", name, writeSegment);
+    }
+
+    private ByteBuffer bufferFor(long segment) throws IOException {
+        if (segment == writeSegment) {
+            return writeBuffer;
+        }
+        if (segment != cachedReadSegment) {
+            if (!Files.exists(segmentPath(segment))) {
+                return null;
+            }
+            cachedReadBuffer = map(segment, FileChannel.MapMode.READ_ONLY);
+            cachedReadSegment = segment;
+        }
+        return cachedReadBuffer;
+    }
+
+    private MappedByteBuffer map(long segment, FileChannel.MapMode mode) throws IOException {
+        Set<StandardOpenOption> options = mode == FileChannel.MapMode.READ_ONLY
+                ? EnumSet.of(StandardOpenOption.READ)
+                : EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), options)) {
+            return channel.map(mode, 0, mode == FileChannel.MapMode.READ_ONLY ? channel.size() : segmentSize);
+        }
+    }
+
+    private void writeCursor() throws IOException {
+        Path cursor = dir.resolve(CURSOR_FILE);
+        Path temp = dir.resolve(CURSOR_FILE + ".tmp");
+        Files.write(temp, (readSegment + ":" + readOffset).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, cursor, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private void signal() {
+        synchronized (replaySignal) {
+            replaySignal.notifyAll();
+        }
+    }
+
+    private void await(long millis) throws InterruptedException {
+        synchronized (replaySignal) {
+            replaySignal.wait(Math.max(1, millis));
+        }
+    }
+
+    private static final class Batch {
+        private final List<byte[]> records;
+        private final int count;
+        private final long segment;
+        private final int offset;
+
+        Batch(List<byte[]> records, int count, long segment, int offset) {
+            this.records = records;
+            this.count = count;
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+}
@@ -1,35 +1,61 @@
 package com.roominspection.backend.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roominspection.backend.entity.AlarmRecord;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 告警WebSocket处理器
  * 用于实时推送告警信息
+ * 客户端可按机房、设备、告警级别订阅，同一告警未发出的旧状态被新状态替换
  */
 @Slf4j
-@Component
 public class AlarmsWebSocketHandler extends TextWebSocketHandler {
 
-    // 存储所有会话
-    private static final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    @Autowired
+    private ObjectMapper objectMapper;
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    @Value("${websocket.outbound.max-pending-per-session:256}")
+    private int maxPendingPerSession;
+
+    @Value("${websocket.outbound.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${websocket.outbound.publish-queue-capacity:10000}")
+    private int publishQueueCapacity;
+
+    @Value("${websocket.outbound.slow-send-ms:2000}")
+    private long slowSendMillis;
+
+    private WebSocketFanout fanout;
+
+    @PostConstruct
+    public void init() {
+        fanout = new WebSocketFanout("ws-alarm", objectMapper, maxPendingPerSession,
+                senderThreads, publishQueueCapacity, slowSendMillis);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fanout.shutdown();
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String sessionId = session.getId();
-        sessions.put(sessionId, session);
-        log.info("告警WebSocket连接建立: sessionId={}, currentSessions={}", sessionId, sessions.size());
+        fanout.register(session);
+        log.info("告警WebSocket连接建立: sessionId={}, currentSessions={}", sessionId, fanout.size());
 
         // 发送欢迎消息
         Map<String, Object> welcomeMessage = Map.of(
@@ -37,7 +63,7 @@ public class AlarmsWebSocketHandler extends TextWebSocketHandler {
                 "message", "告警WebSocket连接成功",
                 "timestamp", System.currentTimeMillis()
         );
-        sendMessage(session, welcomeMessage);
+        fanout.sendTo(session, welcomeMessage);
     }
 
     @Override
@@ -45,21 +71,22 @@ public class AlarmsWebSocketHandler extends TextWebSocketHandler {
         String payload = message.getPayload();
         log.debug("收到WebSocket消息: sessionId={}, payload={}", session.getId(), payload);
 
-        // 可以处理客户端发送的消息，比如订阅特定类型的告警
+        // 订阅特定机房、设备或级别的告警
+        fanout.handleClientMessage(session, payload);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         String sessionId = session.getId();
-        sessions.remove(sessionId);
+        fanout.unregister(sessionId);
         log.info("告警WebSocket连接关闭: sessionId={}, status={}, currentSessions={}",
-                sessionId, status, sessions.size());
+                sessionId, status, fanout.size());
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         log.error("告警WebSocket传输错误: sessionId={}", session.getId(), exception);
-        sessions.remove(session.getId());
+        fanout.unregister(session.getId());
     }
 
     @Override
@@ -68,62 +95,44 @@ public class AlarmsWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 发送消息到指定会话
+     * 广播告警消息（不带订阅维度，仅推送给未限定订阅的会话）
      */
-    private void sendMessage(WebSocketSession session, Object message) {
-        try {
-            String jsonMessage = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(jsonMessage));
-        } catch (IOException e) {
-            log.error("发送WebSocket消息失败: sessionId={}", session.getId(), e);
-        }
+    public void broadcastAlarm(Object alarmData) {
+        log.debug("广播告警消息: alarmType={}, sessions={}",
+                alarmData.getClass().getSimpleName(), fanout.size());
+        fanout.publish("alarm", alarmData, null, null, null, null);
     }
 
     /**
-     * 广播告警消息到所有会话
+     * 按订阅推送告警，每条告警单独过滤，同一告警只保留最新状态
+     *
+     * @param alarms 告警列表
      */
-    public void broadcastAlarm(Object alarmData) {
-        Map<String, Object> message = Map.of(
-                "type", "alarm",
-                "data", alarmData,
-                "timestamp", System.currentTimeMillis()
-        );
-
-        log.info("广播告警消息: alarmType={}, sessions={}",
-                alarmData.getClass().getSimpleName(), sessions.size());
-
-        sessions.forEach((sessionId, session) -> {
-            if (session.isOpen()) {
-                sendMessage(session, message);
-            } else {
-                sessions.remove(sessionId);
-            }
-        });
+    public void broadcastAlarms(List<AlarmRecord> alarms) {
+        for (AlarmRecord alarm : alarms) {
+            fanout.publish("alarm", alarm, "alarm:" + alarm.getId(),
+                    alarm.getRoomId(), alarm.getDeviceId(), alarm.getLevel());
+        }
     }
 
     /**
-     * 广播告警统计
+     * 广播告警统计（只保留最新一帧）
      */
     public void broadcastAlarmStatistics(Map<String, Object> statistics) {
-        Map<String, Object> message = Map.of(
-                "type", "alarmStatistics",
-                "data", statistics,
-                "timestamp", System.currentTimeMillis()
-        );
-
-        sessions.forEach((sessionId, session) -> {
-            if (session.isOpen()) {
-                sendMessage(session, message);
-            } else {
-                sessions.remove(sessionId);
-            }
-        });
+        fanout.publish("alarmStatistics", statistics, "alarmStatistics", null, null, null);
     }
 
     /**
      * 获取当前连接数
      */
     public int getConnectionCount() {
-        return sessions.size();
+        return fanout.size();
+    }
+
+    /**
+     * 获取推送统计
+     */
+    public Map<String, Object> getStatistics() {
+        return fanout.getStatistics();
     }
 }
@@ -2,34 +2,58 @@ package com.roominspection.backend.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Component;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 监控数据WebSocket处理器
  * 用于实时推送监控数据（设备指标、采集状态等）
+ * 客户端可按机房、设备、指标类型订阅，设备指标按 设备+指标类型 只保留最新一帧
  */
 @Slf4j
-@Component
 public class MonitorDataWebSocketHandler extends TextWebSocketHandler {
 
-    // 存储所有会话
-    private static final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    @Autowired
+    private ObjectMapper objectMapper;
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    @Value("${websocket.outbound.max-pending-per-session:256}")
+    private int maxPendingPerSession;
+
+    @Value("${websocket.outbound.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${websocket.outbound.publish-queue-capacity:10000}")
+    private int publishQueueCapacity;
+
+    @Value("${websocket.outbound.slow-send-ms:2000}")
+    private long slowSendMillis;
+
+    private WebSocketFanout fanout;
+
+    @PostConstruct
+    public void init() {
+        fanout = new WebSocketFanout("ws-monitor", objectMapper, maxPendingPerSession,
+                senderThreads, publishQueueCapacity, slowSendMillis);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fanout.shutdown();
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         String sessionId = session.getId();
-        sessions.put(sessionId, session);
-        log.info("监控数据WebSocket连接建立: sessionId={}, currentSessions={}", sessionId, sessions.size());
+        fanout.register(session);
+        log.info("监控数据WebSocket连接建立: sessionId={}, currentSessions={}", sessionId, fanout.size());
 
         // 发送欢迎消息
         Map<String, Object> welcomeMessage = Map.of(
@@ -37,7 +61,7 @@ public class MonitorDataWebSocketHandler extends TextWebSocketHandler {
                 "message", "监控数据WebSocket连接成功",
                 "timestamp", System.currentTimeMillis()
         );
-        sendMessage(session, welcomeMessage);
+        fanout.sendTo(session, welcomeMessage);
     }
 
     @Override
@@ -45,21 +69,22 @@ public class MonitorDataWebSocketHandler extends TextWebSocketHandler {
         String payload = message.getPayload();
         log.debug("收到WebSocket消息: sessionId={}, payload={}", session.getId(), payload);
 
-        // 可以处理客户端发送的消息，比如订阅特定设备或机房的数据
+        // 订阅特定机房、设备或指标类型的数据
+        fanout.handleClientMessage(session, payload);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         String sessionId = session.getId();
-        sessions.remove(sessionId);
+        fanout.unregister(sessionId);
         log.info("监控数据WebSocket连接关闭: sessionId={}, status={}, currentSessions={}",
-                sessionId, status, sessions.size());
+                sessionId, status, fanout.size());
     }
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         log.error("监控数据WebSocket传输错误: sessionId={}", session.getId(), exception);
-        sessions.remove(session.getId());
+        fanout.unregister(session.getId());
     }
 
     @Override
@@ -68,78 +93,50 @@ public class MonitorDataWebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * 发送消息到指定会话
+     * 广播设备指标数据（不带订阅维度，仅推送给未限定订阅的会话）
      */
-    private void sendMessage(WebSocketSession session, Object message) {
-        try {
-            String jsonMessage = objectMapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(jsonMessage));
-        } catch (IOException e) {
-            log.error("发送WebSocket消息失败: sessionId={}", session.getId(), e);
-        }
+    public void broadcastDeviceMetrics(Object metricsData) {
+        fanout.publish("deviceMetrics", metricsData, null, null, null, null);
     }
 
     /**
-     * 广播设备指标数据
+     * 按订阅推送单台设备某一指标类型的数据，未发出的旧帧被新帧替换
+     *
+     * @param roomId      机房ID
+     * @param deviceId    设备ID
+     * @param metricType  指标类型
+     * @param metricsData 指标数据
      */
-    public void broadcastDeviceMetrics(Object metricsData) {
-        Map<String, Object> message = Map.of(
-                "type", "deviceMetrics",
-                "data", metricsData,
-                "timestamp", System.currentTimeMillis()
-        );
-
-        sessions.forEach((sessionId, session) -> {
-            if (session.isOpen()) {
-                sendMessage(session, message);
-            } else {
-                sessions.remove(sessionId);
-            }
-        });
+    public void broadcastDeviceMetrics(String roomId, String deviceId, String metricType, Object metricsData) {
+        fanout.publish("deviceMetrics", metricsData, "deviceMetrics:" + deviceId + ":" + metricType,
+                roomId, deviceId, metricType);
     }
 
     /**
      * 广播采集任务状态
      */
     public void broadcastTaskStatus(Object taskData) {
-        Map<String, Object> message = Map.of(
-                "type", "taskStatus",
-                "data", taskData,
-                "timestamp", System.currentTimeMillis()
-        );
-
-        sessions.forEach((sessionId, session) -> {
-            if (session.isOpen()) {
-                sendMessage(session, message);
-            } else {
-                sessions.remove(sessionId);
-            }
-        });
+        fanout.publish("taskStatus", taskData, null, null, null, null);
     }
 
     /**
-     * 广播性能统计
+     * 广播性能统计（只保留最新一帧）
      */
     public void broadcastPerformanceStatistics(Map<String, Object> statistics) {
-        Map<String, Object> message = Map.of(
-                "type", "performanceStatistics",
-                "data", statistics,
-                "timestamp", System.currentTimeMillis()
-        );
-
-        sessions.forEach((sessionId, session) -> {
-            if (session.isOpen()) {
-                sendMessage(session, message);
-            } else {
-                sessions.remove(sessionId);
-            }
-        });
+        fanout.publish("performanceStatistics", statistics, "performanceStatistics", null, null, null);
     }
 
     /**
      * 获取当前连接数
      */
     public int getConnectionCount() {
-        return sessions.size();
+        return fanout.size();
+    }
+
+    /**
+     * 获取推送统计
+     */
+    public Map<String, Object> getStatistics() {
+        return fanout.getStatistics();
     }
 }
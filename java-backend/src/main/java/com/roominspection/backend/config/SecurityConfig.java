@@ -82,6 +82,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                         "/api/public/**",                  // 公开接口
                         "/api/monitor/**/ws/**",           // WebSocket端点
                         "/api/websocket/**",               // WebSocket端点
+                        "/api/door/events/push/**",        // 门禁平台事件推送回调（X-Push-Token校验）
                         "/druid/**",                       // Druid监控
                         "/swagger-ui/**",                  // Swagger UI
                         "/swagger-resources/**",           // Swagger资源
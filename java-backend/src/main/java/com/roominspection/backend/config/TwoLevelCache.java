@@ -0,0 +1,350 @@
+package com.roominspection.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 二级缓存：本地Caffeine（L1）+ Redis（L2）
+ * <p>
+ * 读：L1命中直接返回；未命中查L2并回填L1；都未命中时由调用方加载。
+ * 写/删：同时写L1与L2，并通过缓存管理器广播失效消息，其他节点只丢弃本地L1。
+ * Redis异常时降级为只用L1，不影响业务读取。
+ * 清空整个缓存时用SCAN分批删除L2的Key，不使用会阻塞Redis的KEYS。
+ * <p>
+ * 提前刷新：通过 {@code @Cacheable(sync = true)} 访问的缓存，条目超过刷新时间后仍返回旧值，
+ * 同时在后台线程重新加载，热点Key不会因到期而集中回源。
+ * <p>
+ * 失效版本：写入、删除、清空（含其他节点的失效消息）都会推进Key所在分段的版本号。加载（未命中回源、
+ * 提前刷新、L2回填L1）开始前记录版本，加载完成时版本已变化说明期间发生过失效，结果只返回给本次调用方，
+ * 不写入L1/L2，避免旧值覆盖失效。
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private static final String KEY_PREFIX = "cache:";
+
+    /**
+     * 清空时每次SCAN/DEL的Key数量
+     */
+    private static final int CLEAR_BATCH_SIZE = 500;
+
+    /**
+     * 失效版本分段数（2的幂）
+     */
+    private static final int VERSION_STRIPES = 64;
+
+    private final String name;
+    private final Cache<String, Entry> local;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TwoLevelCacheManager manager;
+    private final Executor refreshExecutor;
+    private final long refreshAfterNanos;
+    private final Duration redisTtl;
+
+    /**
+     * 正在后台刷新的Key
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 按Key哈希分段的失效版本，以及清空整个缓存的版本
+     */
+    private final AtomicLongArray keyVersions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong clearVersion = new AtomicLong(0);
+
+    private final AtomicLong redisHits = new AtomicLong(0);
+    private final AtomicLong redisMisses = new AtomicLong(0);
+    private final AtomicLong redisErrors = new AtomicLong(0);
+    private final AtomicLong refreshCount = new AtomicLong(0);
+    private final AtomicLong invalidationCount = new AtomicLong(0);
+
+    TwoLevelCache(String name, TwoLevelCacheManager.CacheSpec spec, RedisTemplate<String, Object> redisTemplate,
+                  TwoLevelCacheManager manager, Executor refreshExecutor) {
+        super(true);
+        this.name = name;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getTtl())
+                .recordStats()
+                .build();
+        this.redisTemplate = redisTemplate;
+        this.manager = manager;
+        this.refreshExecutor = refreshExecutor;
+        this.refreshAfterNanos = spec.getRefreshAfter() != null ? spec.getRefreshAfter().toNanos() : 0;
+        this.redisTtl = spec.getRedisTtl();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String cacheKey = String.valueOf(key);
+        Entry entry = local.getIfPresent(cacheKey);
+        if (entry != null) {
+            return entry.value;
+        }
+        long version = version(cacheKey);
+        Object value = getRemote(cacheKey);
+        if (value != null && version == version(cacheKey)) {
+            local.put(cacheKey, new Entry(value));
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String cacheKey = String.valueOf(key);
+        // 命中与未命中都只经过一次L1访问，统计只记一次；同一Key并发未命中时只加载一次
+        Object[] uncached = new Object[1];
+        Entry entry = local.get(cacheKey, k -> {
+            long version = version(k);
+            Object value = getRemote(k);
+            boolean remoteHit = value != null;
+            if (!remoteHit) {
+                value = load(key, valueLoader);
+            }
+            if (version != version(k)) {
+                // 加载期间发生过失效，本次结果不缓存
+                uncached[0] = value;
+                return null;
+            }
+            if (!remoteHit) {
+                putRemote(k, value);
+            }
+            return new Entry(value);
+        });
+        if (entry == null) {
+            return (T) fromStoreValue(uncached[0]);
+        }
+        if (refreshAfterNanos > 0 && System.nanoTime() - entry.writtenAt > refreshAfterNanos) {
+            refreshAhead(cacheKey, valueLoader);
+        }
+        return (T) fromStoreValue(entry.value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String cacheKey = String.valueOf(key);
+        Object storeValue = toStoreValue(value);
+        bumpVersion(cacheKey);
+        local.put(cacheKey, new Entry(storeValue));
+        putRemote(cacheKey, storeValue);
+        manager.publishEvict(name, cacheKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String cacheKey = String.valueOf(key);
+        bumpVersion(cacheKey);
+        local.invalidate(cacheKey);
+        try {
+            redisTemplate.delete(redisKey(cacheKey));
+        } catch (Exception e) {
+            onRedisError("delete", e);
+        }
+        manager.publishEvict(name, cacheKey);
+    }
+
+    @Override
+    public void clear() {
+        clearVersion.incrementAndGet();
+        local.invalidateAll();
+        try {
+            Long deleted = redisTemplate.execute((RedisCallback<Long>) connection -> {
+                long count = 0;
+                List<byte[]> batch = new ArrayList<>(CLEAR_BATCH_SIZE);
+                ScanOptions options = ScanOptions.scanOptions()
+                        .match(KEY_PREFIX + name + ":*").count(CLEAR_BATCH_SIZE).build();
+                try (Cursor<byte[]> cursor = connection.scan(options)) {
+                    while (cursor.hasNext()) {
+                        batch.add(cursor.next());
+                        if (batch.size() >= CLEAR_BATCH_SIZE) {
+                            count += deleteKeys(connection, batch);
+                        }
+                    }
+                }
+                return count + deleteKeys(connection, batch);
+            });
+            log.debug("二级缓存已清空: cache={}, redisKeys={}", name, deleted);
+        } catch (Exception e) {
+            onRedisError("clear", e);
+        }
+        manager.publishClear(name);
+    }
+
+    /**
+     * 处理其他节点的失效消息（只清本地）
+     *
+     * @param cacheKey 缓存Key，null表示整个缓存
+     */
+    void invalidateLocal(String cacheKey) {
+        invalidationCount.incrementAndGet();
+        if (cacheKey == null) {
+            clearVersion.incrementAndGet();
+            local.invalidateAll();
+        } else {
+            bumpVersion(cacheKey);
+            local.invalidate(cacheKey);
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     *
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics() {
+        CacheStats stats = local.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", local.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", Math.round(stats.hitRate() * 10000) / 100.0);
+        result.put("evictions", stats.evictionCount());
+        result.put("loads", stats.loadCount());
+        result.put("avgLoadMillis", Math.round(stats.averageLoadPenalty() / 1000) / 1000.0);
+        result.put("redisHits", redisHits.get());
+        result.put("redisMisses", redisMisses.get());
+        result.put("redisErrors", redisErrors.get());
+        result.put("refreshes", refreshCount.get());
+        result.put("invalidationsReceived", invalidationCount.get());
+        return result;
+    }
+
+    private void refreshAhead(String cacheKey, Callable<?> valueLoader) {
+        if (!refreshing.add(cacheKey)) {
+            return;
+        }
+        long version = version(cacheKey);
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    Object value = toStoreValue(valueLoader.call());
+                    if (version != version(cacheKey)) {
+                        // 刷新期间Key被写入或删除，丢弃本次刷新结果
+                        return;
+                    }
+                    local.put(cacheKey, new Entry(value));
+                    putRemote(cacheKey, value);
+                    refreshCount.incrementAndGet();
+                } catch (Exception e) {
+                    log.warn("缓存提前刷新失败: cache={}, key={}, error={}", name, cacheKey, e.getMessage());
+                } finally {
+                    refreshing.remove(cacheKey);
+                }
+            });
+        } catch (Exception e) {
+            // 刷新队列已满，下次访问再试
+            refreshing.remove(cacheKey);
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        try {
+            return toStoreValue(valueLoader.call());
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private Object getRemote(String cacheKey) {
+        try {
+            Object value = redisTemplate.opsForValue().get(redisKey(cacheKey));
+            (value != null ? redisHits : redisMisses).incrementAndGet();
+            return value;
+        } catch (Exception e) {
+            onRedisError("get", e);
+            return null;
+        }
+    }
+
+    private void putRemote(String cacheKey, Object storeValue) {
+        if (storeValue == NullValue.INSTANCE) {
+            // 空值只缓存在本地
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey(cacheKey), storeValue,
+                    redisTtl.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            onRedisError("set", e);
+        }
+    }
+
+    private void onRedisError(String operation, Exception e) {
+        long errors = redisErrors.incrementAndGet();
+        if (errors % 100 == 1) {
+            log.warn("二级缓存Redis操作失败，降级为本地缓存: cache={}, op={}, errors={}, error={}",
+                    name, operation, errors, e.getMessage());
+        }
+    }
+
+    private static long deleteKeys(RedisConnection connection, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long deleted = connection.del(keys.toArray(new byte[0][]));
+        keys.clear();
+        return deleted != null ? deleted : 0;
+    }
+
+    /**
+     * Key当前的失效版本：所在分段版本与清空版本之和，两者只增不减，任一变化都会使结果变化
+     */
+    private long version(String cacheKey) {
+        return keyVersions.get(stripe(cacheKey)) + clearVersion.get();
+    }
+
+    private void bumpVersion(String cacheKey) {
+        keyVersions.incrementAndGet(stripe(cacheKey));
+    }
+
+    private static int stripe(String cacheKey) {
+        int hash = cacheKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+    }
+
+    private String redisKey(String cacheKey) {
+        return KEY_PREFIX + name + ":" + cacheKey;
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long writtenAt;
+
+        Entry(Object value) {
+            this.value = value;
+            this.writtenAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.roominspection.backend.config;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二级缓存管理器
+ * <p>
+ * 按缓存名称懒创建 {@link TwoLevelCache}，每个缓存的本地容量、本地过期时间、提前刷新时间和Redis过期时间
+ * 可在 two-level-cache.caches.{缓存名} 下单独配置，未配置的取 two-level-cache.default。
+ * <p>
+ * 写入/删除后通过Redis发布订阅广播失效消息（节点ID|缓存名|Key），其他节点收到后只清除本地L1，
+ * 下次读取从L2获取新值。
+ * <p>
+ * 对外返回的缓存经 {@link TransactionAwareCacheDecorator} 包装：事务内的写入/删除（@CacheEvict等）
+ * 推迟到事务提交后执行，避免提交前被并发读取回填旧值。
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private static final String SEPARATOR = "|";
+    private static final String CLEAR_ALL = "*";
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentHashMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Cache> decoratedCaches = new ConcurrentHashMap<>();
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Environment environment;
+    private final String channel;
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong publishErrorCount = new AtomicLong(0);
+
+    public TwoLevelCacheManager(RedisTemplate<String, Object> redisTemplate, StringRedisTemplate stringRedisTemplate,
+                                Environment environment, String channel, int refreshThreads) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.environment = environment;
+        this.channel = channel;
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000), r -> {
+            Thread thread = new Thread(r, "cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = decoratedCaches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        return decoratedCaches.computeIfAbsent(name, n -> new TransactionAwareCacheDecorator(
+                caches.computeIfAbsent(n, this::createCache)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 接收其他节点的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(CLEAR_ALL.equals(parts[2]) ? null : parts[2]);
+        }
+    }
+
+    /**
+     * 获取所有缓存的统计
+     *
+     * @return 缓存名 -> 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new TreeMap<>();
+        for (Map.Entry<String, TwoLevelCache> entry : caches.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("nodeId", nodeId);
+        result.put("caches", stats);
+        result.put("invalidationsPublished", publishedCount.get());
+        result.put("publishErrors", publishErrorCount.get());
+        result.put("refreshQueue", refreshExecutor.getQueue().size());
+        return result;
+    }
+
+    void publishEvict(String cacheName, String cacheKey) {
+        publish(cacheName, cacheKey);
+    }
+
+    void publishClear(String cacheName) {
+        publish(cacheName, CLEAR_ALL);
+    }
+
+    private void publish(String cacheName, String cacheKey) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, nodeId + SEPARATOR + cacheName + SEPARATOR + cacheKey);
+            publishedCount.incrementAndGet();
+        } catch (Exception e) {
+            long errors = publishErrorCount.incrementAndGet();
+            if (errors % 100 == 1) {
+                log.warn("缓存失效消息发布失败: cache={}, key={}, errors={}, error={}",
+                        cacheName, cacheKey, errors, e.getMessage());
+            }
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        CacheSpec spec = specFor(name);
+        log.info("创建二级缓存: name={}, maximumSize={}, ttl={}, refreshAfter={}, redisTtl={}",
+                name, spec.getMaximumSize(), spec.getTtl(), spec.getRefreshAfter(), spec.getRedisTtl());
+        return new TwoLevelCache(name, spec, redisTemplate, this, refreshExecutor);
+    }
+
+    private CacheSpec specFor(String name) {
+        String prefix = "two-level-cache.caches." + name + ".";
+        CacheSpec spec = new CacheSpec();
+        spec.setMaximumSize(environment.getProperty(prefix + "maximum-size", Long.class,
+                environment.getProperty("two-level-cache.default.maximum-size", Long.class, 10000L)));
+        spec.setTtl(Duration.ofSeconds(environment.getProperty(prefix + "ttl-seconds", Long.class,
+                environment.getProperty("two-level-cache.default.ttl-seconds", Long.class, 300L))));
+        long refreshAfter = environment.getProperty(prefix + "refresh-after-seconds", Long.class,
+                environment.getProperty("two-level-cache.default.refresh-after-seconds", Long.class, 0L));
+        spec.setRefreshAfter(refreshAfter > 0 ? Duration.ofSeconds(refreshAfter) : null);
+        spec.setRedisTtl(Duration.ofSeconds(environment.getProperty(prefix + "redis-ttl-seconds", Long.class,
+                environment.getProperty("two-level-cache.default.redis-ttl-seconds", Long.class, 3600L))));
+        return spec;
+    }
+
+    /**
+     * 单个缓存的配置
+     */
+    @Data
+    static class CacheSpec {
+        private long maximumSize;
+        private Duration ttl;
+        private Duration refreshAfter;
+        private Duration redisTtl;
+    }
+}
@@ -0,0 +1,382 @@
+package com.roominspection.backend.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket订阅过滤广播器
+ * 每条消息只序列化一次，按会话订阅（机房/设备/类型）过滤后放入会话的有界发送队列；
+ * 同一合并键尚未发出的旧消息被新消息替换，队列满时丢弃最旧的消息；
+ * 序列化与发送都在独立线程中进行，调用方只负责入队，慢客户端不会拖慢其他会话
+ *
+ * 客户端订阅消息格式：
+ * {"action":"subscribe","roomIds":[...],"deviceIds":[...],"types":[...]}
+ * {"action":"unsubscribe"} 恢复接收全部消息
+ */
+@Slf4j
+public class WebSocketFanout {
+
+    private static final int MAX_SEND_PER_DRAIN = 32;
+    private static final int MAX_SLOW_STRIKES = 3;
+
+    private final String name;
+    private final ObjectMapper objectMapper;
+    private final int maxPendingPerSession;
+    private final long slowSendMillis;
+
+    /**
+     * 序列化与分发线程（单线程保证同一合并键的消息按发布顺序入队）
+     */
+    private final ThreadPoolExecutor publisher;
+
+    /**
+     * 会话发送线程池
+     */
+    private final ExecutorService sender;
+
+    private final Map<String, OutboundSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong serializedCount = new AtomicLong(0);
+    private final AtomicLong sentCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final AtomicLong slowClosedCount = new AtomicLong(0);
+
+    public WebSocketFanout(String name, ObjectMapper objectMapper, int maxPendingPerSession,
+                           int senderThreads, int publishQueueCapacity, long slowSendMillis) {
+        this.name = name;
+        this.objectMapper = objectMapper;
+        this.maxPendingPerSession = maxPendingPerSession;
+        this.slowSendMillis = slowSendMillis;
+        this.publisher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(publishQueueCapacity), namedThreadFactory(name + "-publisher"),
+                new ThreadPoolExecutor.DiscardOldestPolicy());
+        this.sender = Executors.newFixedThreadPool(senderThreads, namedThreadFactory(name + "-sender"));
+    }
+
+    /**
+     * 注册会话（默认接收全部消息）
+     */
+    public void register(WebSocketSession session) {
+        sessions.put(session.getId(), new OutboundSession(session));
+    }
+
+    /**
+     * 注销会话
+     */
+    public void unregister(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * 处理客户端订阅消息
+     *
+     * @param session 会话
+     * @param payload 消息内容
+     */
+    public void handleClientMessage(WebSocketSession session, String payload) {
+        OutboundSession outbound = sessions.get(session.getId());
+        if (outbound == null) {
+            return;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            String action = node.path("action").asText("");
+            if ("subscribe".equals(action)) {
+                outbound.subscription = new Subscription(
+                        readSet(node, "roomIds"), readSet(node, "deviceIds"), readSet(node, "types"));
+            } else if ("unsubscribe".equals(action)) {
+                outbound.subscription = Subscription.ALL;
+            } else {
+                return;
+            }
+            Map<String, Object> ack = new HashMap<>();
+            ack.put("type", "subscribed");
+            ack.put("subscription", outbound.subscription.toMap());
+            ack.put("timestamp", System.currentTimeMillis());
+            outbound.offer(null, new TextMessage(objectMapper.writeValueAsString(ack)));
+        } catch (IOException e) {
+            log.warn("忽略无法解析的WebSocket订阅消息: endpoint={}, sessionId={}", name, session.getId());
+        }
+    }
+
+    /**
+     * 发送消息到单个会话（经发送队列）
+     */
+    public void sendTo(WebSocketSession session, Object message) {
+        OutboundSession outbound = sessions.get(session.getId());
+        if (outbound == null) {
+            return;
+        }
+        try {
+            outbound.offer(null, new TextMessage(objectMapper.writeValueAsString(message)));
+        } catch (IOException e) {
+            log.error("序列化WebSocket消息失败: endpoint={}, sessionId={}", name, session.getId(), e);
+        }
+    }
+
+    /**
+     * 发布消息（异步），只序列化一次并分发给订阅匹配的会话
+     *
+     * @param type        消息类型
+     * @param data        消息数据
+     * @param coalesceKey 合并键（null表示不合并）
+     * @param roomId      机房ID（用于订阅过滤，可为null）
+     * @param deviceId    设备ID（用于订阅过滤，可为null）
+     * @param category    类型（指标类型、告警级别等，用于订阅过滤，可为null）
+     */
+    public void publish(String type, Object data, String coalesceKey,
+                        String roomId, String deviceId, String category) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        publishedCount.incrementAndGet();
+        publisher.execute(() -> fanOut(type, data, timestamp, coalesceKey, roomId, deviceId, category));
+    }
+
+    /**
+     * 当前连接数
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 获取广播统计
+     */
+    public Map<String, Object> getStatistics() {
+        int pending = 0;
+        for (OutboundSession outbound : sessions.values()) {
+            pending += outbound.pendingSize();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("pending", pending);
+        stats.put("publishQueue", publisher.getQueue().size());
+        stats.put("published", publishedCount.get());
+        stats.put("serialized", serializedCount.get());
+        stats.put("sent", sentCount.get());
+        stats.put("coalesced", coalescedCount.get());
+        stats.put("dropped", droppedCount.get());
+        stats.put("slowClosed", slowClosedCount.get());
+        return stats;
+    }
+
+    /**
+     * 停止发送线程
+     */
+    public void shutdown() {
+        publisher.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    private void fanOut(String type, Object data, long timestamp, String coalesceKey,
+                        String roomId, String deviceId, String category) {
+        TextMessage message = null;
+        for (OutboundSession outbound : sessions.values()) {
+            if (!outbound.session.isOpen()) {
+                sessions.remove(outbound.session.getId());
+                continue;
+            }
+            if (!outbound.subscription.matches(roomId, deviceId, category)) {
+                continue;
+            }
+            if (message == null) {
+                // 有匹配会话时才序列化，且只序列化一次
+                try {
+                    Map<String, Object> payload = new HashMap<>();
+                    payload.put("type", type);
+                    payload.put("data", data);
+                    payload.put("timestamp", timestamp);
+                    message = new TextMessage(objectMapper.writeValueAsString(payload));
+                    serializedCount.incrementAndGet();
+                } catch (IOException e) {
+                    log.error("序列化WebSocket消息失败: endpoint={}, type={}", name, type, e);
+                    return;
+                }
+            }
+            outbound.offer(coalesceKey, message);
+        }
+    }
+
+    private Set<String> readSet(JsonNode node, String field) {
+        JsonNode array = node.path(field);
+        if (!array.isArray() || array.size() == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> values = new HashSet<>();
+        array.forEach(item -> values.add(item.asText()));
+        return Collections.unmodifiableSet(values);
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 会话订阅条件（各维度为空表示不限）
+     */
+    private static final class Subscription {
+        private static final Subscription ALL = new Subscription(
+                Collections.<String>emptySet(), Collections.<String>emptySet(), Collections.<String>emptySet());
+
+        private final Set<String> roomIds;
+        private final Set<String> deviceIds;
+        private final Set<String> types;
+
+        Subscription(Set<String> roomIds, Set<String> deviceIds, Set<String> types) {
+            this.roomIds = roomIds;
+            this.deviceIds = deviceIds;
+            this.types = types;
+        }
+
+        boolean matches(String roomId, String deviceId, String category) {
+            return matches(roomIds, roomId) && matches(deviceIds, deviceId) && matches(types, category);
+        }
+
+        private static boolean matches(Set<String> accepted, String value) {
+            return accepted.isEmpty() || (value != null && accepted.contains(value));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("roomIds", roomIds);
+            map.put("deviceIds", deviceIds);
+            map.put("types", types);
+            return map;
+        }
+    }
+
+    /**
+     * 会话发送队列
+     */
+    private final class OutboundSession {
+        private final WebSocketSession session;
+        private volatile Subscription subscription = Subscription.ALL;
+
+        /**
+         * 合并键 -> 待发送消息（按入队顺序，guarded by this）
+         */
+        private final LinkedHashMap<String, TextMessage> pending = new LinkedHashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private int slowStrikes;
+
+        OutboundSession(WebSocketSession session) {
+            this.session = session;
+        }
+
+        void offer(String coalesceKey, TextMessage message) {
+            synchronized (this) {
+                String key = coalesceKey != null ? coalesceKey : "#" + sequence.incrementAndGet();
+                if (pending.remove(key) != null) {
+                    coalescedCount.incrementAndGet();
+                } else if (pending.size() >= maxPendingPerSession) {
+                    // 队列已满，丢弃最旧的消息
+                    Iterator<String> eldest = pending.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    droppedCount.incrementAndGet();
+                }
+                pending.put(key, message);
+            }
+            scheduleDrain();
+        }
+
+        synchronized int pendingSize() {
+            return pending.size();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private synchronized TextMessage poll() {
+            Iterator<TextMessage> iterator = pending.values().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            TextMessage message = iterator.next();
+            iterator.remove();
+            return message;
+        }
+
+        private void drain() {
+            try {
+                TextMessage message;
+                int sent = 0;
+                while (sent < MAX_SEND_PER_DRAIN && (message = poll()) != null) {
+                    if (!session.isOpen()) {
+                        sessions.remove(session.getId());
+                        return;
+                    }
+                    long start = System.currentTimeMillis();
+                    session.sendMessage(message);
+                    sentCount.incrementAndGet();
+                    sent++;
+                    if (!checkSlow(System.currentTimeMillis() - start)) {
+                        return;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.warn("发送WebSocket消息失败，移除会话: endpoint={}, sessionId={}, error={}",
+                        name, session.getId(), e.getMessage());
+                sessions.remove(session.getId());
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // 单次最多发送固定条数后让出线程，保证各会话公平
+            if (pendingSize() > 0) {
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * 连续多次发送过慢的会话被关闭，避免长期占用发送线程
+         */
+        private boolean checkSlow(long elapsedMillis) {
+            if (elapsedMillis < slowSendMillis) {
+                slowStrikes = 0;
+                return true;
+            }
+            if (++slowStrikes < MAX_SLOW_STRIKES) {
+                return true;
+            }
+            log.warn("WebSocket客户端发送过慢，关闭会话: endpoint={}, sessionId={}, lastSend={}ms",
+                    name, session.getId(), elapsedMillis);
+            sessions.remove(session.getId());
+            slowClosedCount.incrementAndGet();
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("关闭WebSocket会话失败: sessionId={}", session.getId());
+            }
+            return false;
+        }
+    }
+}
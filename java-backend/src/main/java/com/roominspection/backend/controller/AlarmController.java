@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +53,21 @@ public class AlarmController {
         return Result.success(alarms);
     }
 
+    /**
+     * 导出告警记录（流式写出xlsx/csv/csv.gz）
+     */
+    @GetMapping("/export")
+    public void export(
+            @RequestParam(required = false) String roomId,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime,
+            @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) throws IOException {
+        alarmRecordService.exportAlarms(roomId, level, status, startTime, endTime, format, response);
+    }
+
     /**
      * 获取未处理告警列表
      */
@@ -3,6 +3,7 @@ package com.roominspection.backend.controller;
 import com.roominspection.backend.common.Result;
 import com.roominspection.backend.dto.LoginRequest;
 import com.roominspection.backend.dto.LoginResponse;
+import com.roominspection.backend.security.JwtAuthenticationCache;
 import com.roominspection.backend.service.AuthService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final JwtAuthenticationCache jwtAuthenticationCache;
 
     /**
      * 用户登录（支持OAuth2.0 SSO）
@@ -52,6 +54,7 @@ public class AuthController {
      */
     @PostMapping("/logout")
     public Result<Void> logout(@RequestHeader("Authorization") String token) {
+        jwtAuthenticationCache.revoke(token);
         authService.logout(token);
         return Result.success();
     }
@@ -1,6 +1,7 @@
 package com.roominspection.backend.controller;
 
 import com.roominspection.backend.common.Result;
+import com.roominspection.backend.config.TwoLevelCacheManager;
 import com.roominspection.backend.entity.DatabaseBackup;
 import com.roominspection.backend.entity.HealthCheck;
 import com.roominspection.backend.entity.ServiceInstance;
@@ -36,6 +37,9 @@ public class AvailabilityController {
     @Autowired
     private LocalCacheService localCacheService;
 
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
     // ==================== 健康检查相关接口 ====================
 
     /**
@@ -227,6 +231,19 @@ public class AvailabilityController {
         }
     }
 
+    /**
+     * 获取二级缓存（本地+Redis）各缓存的命中、未命中、淘汰统计
+     */
+    @GetMapping("/cache/levels")
+    public Result<Map<String, Object>> getCacheLevelStats() {
+        try {
+            return Result.success(cacheManager.getStatistics());
+        } catch (Exception e) {
+            log.error("获取二级缓存统计失败", e);
+            return Result.error("获取二级缓存统计失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 手动触发缓存同步
      */
@@ -5,6 +5,7 @@ import com.roominspection.backend.common.ApiVersion;
 import com.roominspection.backend.common.Result;
 import com.roominspection.backend.entity.CollectorNode;
 import com.roominspection.backend.entity.CollectionTask;
+import com.roominspection.backend.entity.DeviceMetric;
 import com.roominspection.backend.service.CollectionTaskService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -184,4 +185,39 @@ public class CollectionTaskController {
         boolean success = collectionTaskService.deleteScheduledTask(id);
         return success ? Result.success("删除成功") : Result.error("删除失败");
     }
+
+    /**
+     * 领取分片租约
+     */
+    @PostMapping("/nodes/{nodeId}/shard")
+    @ApiOperation(value = "领取分片租约", notes = "采集节点领取（续约）自己负责的设备分片，纪元变化时需重新领取")
+    @ApiVersion("v1")
+    public Result<Map<String, Object>> leaseShard(
+            @ApiParam(value = "节点ID", required = true) @PathVariable String nodeId) {
+        Map<String, Object> lease = collectionTaskService.leaseShard(nodeId);
+        return lease != null ? Result.success(lease) : Result.error("节点不在线或未启用分片");
+    }
+
+    /**
+     * 批量回传采集结果
+     */
+    @PostMapping("/nodes/{nodeId}/results")
+    @ApiOperation(value = "批量回传采集结果", notes = "采集节点批量回传所负责设备的指标")
+    @ApiVersion("v1")
+    public Result<Map<String, Object>> reportResults(
+            @ApiParam(value = "节点ID", required = true) @PathVariable String nodeId,
+            @ApiParam(value = "节点持有的分配纪元") @RequestParam(required = false) Long epoch,
+            @ApiParam(value = "指标列表", required = true) @RequestBody List<DeviceMetric> metrics) {
+        return Result.success(collectionTaskService.reportResults(nodeId, epoch, metrics));
+    }
+
+    /**
+     * 获取分片分配概况
+     */
+    @GetMapping("/shards")
+    @ApiOperation(value = "获取分片分配概况", notes = "查询各采集节点负责的设备数与租约状态")
+    @ApiVersion("v1")
+    public Result<Map<String, Object>> getShardAssignment() {
+        return Result.success(collectionTaskService.getShardAssignment());
+    }
 }
@@ -14,6 +14,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -88,20 +91,16 @@ public class DeviceInspectionController {
     }
 
     /**
-     * 导出设备
+     * 导出设备（流式写出xlsx/csv/csv.gz）
      */
     @ApiOperation("导出设备")
     @GetMapping("/devices/export")
-    public Result<List<Map<String, Object>>> exportDevices(
+    public void exportDevices(
             @ApiParam("设备类型") @RequestParam(required = false) String deviceType,
-            @ApiParam("机房ID") @RequestParam(required = false) String roomId) {
-        try {
-            List<Map<String, Object>> result = deviceAssetService.exportDevices(deviceType, roomId);
-            return Result.success(result);
-        } catch (Exception e) {
-            log.error("导出设备失败", e);
-            return Result.error("导出失败: " + e.getMessage());
-        }
+            @ApiParam("机房ID") @RequestParam(required = false) String roomId,
+            @ApiParam("导出格式：xlsx/csv/csv.gz") @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) throws IOException {
+        deviceAssetService.exportDevices(deviceType, roomId, format, response);
     }
 
     /**
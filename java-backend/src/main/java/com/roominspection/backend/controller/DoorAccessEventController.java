@@ -0,0 +1,89 @@
+package com.roominspection.backend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.roominspection.backend.accesscontrol.DoorAccessEventBus;
+import com.roominspection.backend.accesscontrol.DoorAccessPushReceiver;
+import com.roominspection.backend.accesscontrol.RoomOccupancyIndex;
+import com.roominspection.backend.accesscontrol.RoomOccupancyIndex.Presence;
+import com.roominspection.backend.common.Result;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 门禁实时事件Controller
+ */
+@Tag(name = "门禁实时事件")
+@RestController
+@RequestMapping("/api/door/events")
+@RequiredArgsConstructor
+public class DoorAccessEventController {
+
+    private final DoorAccessPushReceiver pushReceiver;
+
+    private final DoorAccessEventBus eventBus;
+
+    private final RoomOccupancyIndex occupancyIndex;
+
+    /**
+     * 接收门禁系统事件推送（门禁平台事件订阅回调地址）
+     * 事件队列已满时返回HTTP 503，由门禁平台重新推送
+     */
+    @Operation(summary = "接收门禁系统事件推送")
+    @PostMapping("/push/{systemType}")
+    public Result<Integer> push(@PathVariable String systemType,
+                                @RequestHeader(value = "X-Push-Token", required = false) String token,
+                                @RequestBody JsonNode body) {
+        if (!pushReceiver.verifyToken(token)) {
+            return Result.error(401, "推送令牌无效");
+        }
+        try {
+            return Result.success(pushReceiver.receive(systemType, body));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * 各机房在场人数
+     */
+    @Operation(summary = "各机房在场人数")
+    @GetMapping("/occupancy")
+    public Result<Map<Long, Integer>> getRoomCounts() {
+        return Result.success(occupancyIndex.getRoomCounts());
+    }
+
+    /**
+     * 机房在场人员
+     */
+    @Operation(summary = "机房在场人员")
+    @GetMapping("/occupancy/room/{roomId}")
+    public Result<List<Presence>> getOccupants(@PathVariable Long roomId) {
+        return Result.success(occupancyIndex.getOccupants(roomId));
+    }
+
+    /**
+     * 人员当前所在机房
+     */
+    @Operation(summary = "人员当前所在机房")
+    @GetMapping("/occupancy/staff/{staffId}")
+    public Result<Presence> getPresence(@PathVariable Long staffId) {
+        return Result.success(occupancyIndex.getPresence(staffId));
+    }
+
+    /**
+     * 事件总线统计
+     */
+    @Operation(summary = "事件总线统计")
+    @GetMapping("/bus/stats")
+    public Result<Map<String, Object>> getBusStatistics() {
+        return Result.success(eventBus.getStatistics());
+    }
+}
@@ -0,0 +1,52 @@
+package com.roominspection.backend.controller;
+
+import com.roominspection.backend.common.Result;
+import com.roominspection.backend.service.ImportJobService;
+import com.roominspection.backend.service.ImportJobService.ImportJob;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 批量导入任务Controller
+ */
+@Tag(name = "批量导入任务")
+@RestController
+@RequestMapping("/api/import/jobs")
+@RequiredArgsConstructor
+public class ImportJobController {
+
+    private final ImportJobService importJobService;
+
+    /**
+     * 查询导入任务进度
+     */
+    @Operation(summary = "查询导入任务进度")
+    @GetMapping("/{jobId}")
+    public Result<ImportJob> getJob(@PathVariable String jobId) {
+        ImportJob job = importJobService.getJob(jobId);
+        return job != null ? Result.success(job) : Result.error("导入任务不存在或已过期");
+    }
+
+    /**
+     * 查询导入任务列表
+     */
+    @Operation(summary = "查询导入任务列表")
+    @GetMapping("/list")
+    public Result<List<ImportJob>> listJobs(@RequestParam(required = false) String type) {
+        return Result.success(importJobService.listJobs(type));
+    }
+
+    /**
+     * 取消导入任务
+     */
+    @Operation(summary = "取消导入任务")
+    @PostMapping("/{jobId}/cancel")
+    public Result<Boolean> cancel(@PathVariable String jobId) {
+        boolean cancelled = importJobService.cancel(jobId);
+        return cancelled ? Result.success(true) : Result.error("导入任务不存在或已结束");
+    }
+}
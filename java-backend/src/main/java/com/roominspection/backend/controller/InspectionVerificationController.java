@@ -3,9 +3,11 @@ package com.roominspection.backend.controller;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.roominspection.backend.common.Result;
 import com.roominspection.backend.entity.DoorAccessLog;
+import com.roominspection.backend.entity.DoorAccessSyncState;
 import com.roominspection.backend.entity.InspectionVerification;
 import com.roominspection.backend.entity.PhotoVerification;
 import com.roominspection.backend.service.DoorAccessLogService;
+import com.roominspection.backend.service.DoorAccessSyncService;
 import com.roominspection.backend.service.InspectionVerificationService;
 import com.roominspection.backend.service.PhotoVerificationService;
 import io.swagger.annotations.Api;
@@ -15,7 +17,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,6 +35,9 @@ public class InspectionVerificationController {
     @Autowired
     private DoorAccessLogService doorAccessLogService;
 
+    @Autowired
+    private DoorAccessSyncService doorAccessSyncService;
+
     @Autowired
     private PhotoVerificationService photoVerificationService;
 
@@ -52,6 +60,19 @@ public class InspectionVerificationController {
         return Result.success(page);
     }
 
+    @ApiOperation("导出门禁日志（流式写出xlsx/csv/csv.gz）")
+    @GetMapping("/door-access/export")
+    public void exportDoorAccessLogs(
+            @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) Long staffId,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime,
+            @RequestParam(defaultValue = "xlsx") String format,
+            HttpServletResponse response) throws IOException {
+        doorAccessLogService.exportLogs(roomId, staffId, direction, startTime, endTime, format, response);
+    }
+
     @ApiOperation("同步海康门禁日志")
     @PostMapping("/door-access/sync/hikvision")
     public Result<Integer> syncHikvision(
@@ -70,6 +91,22 @@ public class InspectionVerificationController {
         return Result.success(count, "成功同步" + count + "条记录");
     }
 
+    @ApiOperation("按同步水位增量同步门禁日志")
+    @PostMapping("/door-access/sync/incremental/{systemType}")
+    public Result<Integer> syncIncremental(@PathVariable String systemType) {
+        int count = doorAccessSyncService.syncIncremental(systemType);
+        if (count < 0) {
+            return Result.error("该门禁系统正在同步中");
+        }
+        return Result.success("成功同步" + count + "条记录", count);
+    }
+
+    @ApiOperation("查询门禁日志同步水位")
+    @GetMapping("/door-access/sync/status")
+    public Result<List<DoorAccessSyncState>> getSyncStatus() {
+        return Result.success(doorAccessSyncService.getSyncStates());
+    }
+
     @ApiOperation("核验巡检人员进出记录")
     @GetMapping("/door-access/verify/{inspectionTaskId}")
     public Result<Map<String, Object>> verifyInspectionAccess(@PathVariable Long inspectionTaskId) {
@@ -200,6 +200,51 @@ public class MonitorConfigController {
         }
     }
 
+    /**
+     * 获取设备熔断状态
+     */
+    @GetMapping("/circuit-breakers")
+    @PreAuthorize("hasAuthority('monitor:config:view')")
+    public Result<List<Map<String, Object>>> getCircuitBreakerStates(
+            @RequestParam(defaultValue = "true") Boolean trippedOnly) {
+        try {
+            return Result.success(concurrentMonitorService.getCircuitBreakerStates(trippedOnly));
+        } catch (Exception e) {
+            log.error("获取设备熔断状态失败", e);
+            return Result.error("获取设备熔断状态失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 复位设备熔断器
+     */
+    @PostMapping("/circuit-breakers/{deviceId}/reset")
+    @PreAuthorize("hasAuthority('monitor:task:control')")
+    public Result<Boolean> resetCircuitBreaker(@PathVariable String deviceId) {
+        try {
+            return Result.success(concurrentMonitorService.resetCircuitBreaker(deviceId));
+        } catch (Exception e) {
+            log.error("复位设备熔断器失败", e);
+            return Result.error("复位设备熔断器失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 采集模式压测对比
+     */
+    @PostMapping("/benchmark")
+    @PreAuthorize("hasAuthority('monitor:task:control')")
+    public Result<Map<String, Object>> benchmarkCollection(
+            @RequestParam(defaultValue = "pooled") String mode,
+            @RequestParam(defaultValue = "1000") Integer deviceLimit) {
+        try {
+            return Result.success(concurrentMonitorService.benchmarkCollection(mode, deviceLimit));
+        } catch (Exception e) {
+            log.error("采集模式压测失败", e);
+            return Result.error("采集模式压测失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取当前运行任务数
      */
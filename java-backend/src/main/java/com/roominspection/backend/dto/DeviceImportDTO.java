@@ -0,0 +1,96 @@
+package com.roominspection.backend.dto;
+
+import com.alibaba.excel.annotation.ExcelProperty;
+import lombok.Data;
+
+/**
+ * 设备导入DTO
+ * 用于Excel批量导入设备台账
+ */
+@Data
+public class DeviceImportDTO {
+
+    /**
+     * 设备编码（唯一）
+     */
+    @ExcelProperty(value = "设备编码", index = 0)
+    private String code;
+
+    /**
+     * 设备名称
+     */
+    @ExcelProperty(value = "设备名称", index = 1)
+    private String name;
+
+    /**
+     * 设备类型
+     */
+    @ExcelProperty(value = "设备类型", index = 2)
+    private String type;
+
+    /**
+     * 设备子类型
+     */
+    @ExcelProperty(value = "设备子类型", index = 3)
+    private String subType;
+
+    /**
+     * 品牌
+     */
+    @ExcelProperty(value = "品牌", index = 4)
+    private String brand;
+
+    /**
+     * 型号
+     */
+    @ExcelProperty(value = "型号", index = 5)
+    private String model;
+
+    /**
+     * 序列号
+     */
+    @ExcelProperty(value = "序列号", index = 6)
+    private String serialNumber;
+
+    /**
+     * 机房名称
+     */
+    @ExcelProperty(value = "机房名称", index = 7)
+    private String roomName;
+
+    /**
+     * 机柜编号
+     */
+    @ExcelProperty(value = "机柜编号", index = 8)
+    private String rackCode;
+
+    /**
+     * U位
+     */
+    @ExcelProperty(value = "U位", index = 9)
+    private Integer uPosition;
+
+    /**
+     * IP地址
+     */
+    @ExcelProperty(value = "IP地址", index = 10)
+    private String ipAddress;
+
+    /**
+     * SNMP版本（v1/v2c）
+     */
+    @ExcelProperty(value = "SNMP版本", index = 11)
+    private String snmpVersion;
+
+    /**
+     * SNMP团体名
+     */
+    @ExcelProperty(value = "SNMP团体名", index = 12)
+    private String snmpCommunity;
+
+    /**
+     * 是否关键设备（是/否）
+     */
+    @ExcelProperty(value = "是否关键设备", index = 13)
+    private String keyDevice;
+}
@@ -139,6 +139,26 @@ public class AlarmRecord {
      */
     private String remark;
 
+    /**
+     * 告警指纹（设备+类型+级别），用于去重与抖动识别
+     */
+    private String fingerprint;
+
+    /**
+     * 发生次数（去重窗口内重复上报的告警合并计数）
+     */
+    private Integer occurrenceCount;
+
+    /**
+     * 最近一次发生时间
+     */
+    private LocalDateTime lastOccurredAt;
+
+    /**
+     * 父告警ID（机房告警风暴期间的子告警归并到机房父告警下）
+     */
+    private String parentAlarmId;
+
     /**
      * 创建时间
      */
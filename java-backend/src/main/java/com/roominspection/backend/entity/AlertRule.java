@@ -88,6 +88,11 @@ public class AlertRule {
      */
     private Integer duration;
 
+    /**
+     * 连续满足条件的采样次数，达到该次数才触发告警（null或1表示单次满足即触发）
+     */
+    private Integer consecutiveSamples;
+
     /**
      * 告警消息模板
      */
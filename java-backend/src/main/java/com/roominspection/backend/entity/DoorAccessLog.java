@@ -20,6 +20,11 @@ public class DoorAccessLog {
      */
     private String systemType;
 
+    /**
+     * 门禁系统事件ID（与门禁系统类型联合唯一，用于重复同步去重）
+     */
+    private String eventId;
+
     /**
      * 门禁设备ID
      */
@@ -101,7 +106,7 @@ public class DoorAccessLog {
     private String extraData;
 
     /**
-     * 数据来源（sync-同步对接、manual-手动录入）
+     * 数据来源（sync-同步对接、push-实时推送、manual-手动录入）
      */
     private String dataSource;
 
@@ -0,0 +1,57 @@
+package com.roominspection.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 门禁日志同步水位
+ * 每个门禁系统一行，记录已完整同步到的时间点，增量同步从这里继续
+ */
+@Data
+@TableName("door_access_sync_state")
+public class DoorAccessSyncState {
+
+    /**
+     * 门禁系统类型（hikvision/dahua）
+     */
+    @TableId(type = IdType.INPUT)
+    private String systemType;
+
+    /**
+     * 已完整同步到的时间点（该时间之前的事件均已入库）
+     */
+    private LocalDateTime highWaterMark;
+
+    /**
+     * 最近一条事件的通行时间
+     */
+    private LocalDateTime lastEventTime;
+
+    /**
+     * 最近一次同步时间
+     */
+    private LocalDateTime lastSyncTime;
+
+    /**
+     * 最近一次同步的事件数
+     */
+    private Integer lastSyncCount;
+
+    /**
+     * 最近一次同步结果（SUCCESS/FAILED）
+     */
+    private String lastStatus;
+
+    /**
+     * 最近一次失败原因（成功后清空）
+     */
+    @TableField(updateStrategy = FieldStrategy.IGNORED)
+    private String lastError;
+
+    private LocalDateTime updateTime;
+}
@@ -75,6 +75,16 @@ public class EnvironmentSensor {
      */
     private Integer registerAddress;
 
+    /**
+     * Modbus从站地址（缺省为1）
+     */
+    private Integer slaveId;
+
+    /**
+     * Modbus寄存器区（HOLDING-保持寄存器、INPUT-输入寄存器，缺省为HOLDING）
+     */
+    private String registerArea;
+
     /**
      * SNMP OID
      */
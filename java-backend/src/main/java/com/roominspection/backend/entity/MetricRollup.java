@@ -0,0 +1,73 @@
+package com.roominspection.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 指标降采样汇总实体（1分钟/5分钟/1小时）
+ */
+@Data
+@TableName("metric_rollup")
+public class MetricRollup {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 序列键（如 ENV:{roomId}:TEMPERATURE、AC:{acId}:POWER）
+     */
+    private String seriesKey;
+
+    /**
+     * 汇总粒度（秒）：60、300、3600
+     */
+    private Integer resolution;
+
+    /**
+     * 时间桶起始时间
+     */
+    private LocalDateTime bucketTime;
+
+    /**
+     * 最小值
+     */
+    private Double minValue;
+
+    /**
+     * 最大值
+     */
+    private Double maxValue;
+
+    /**
+     * 累计值（用于计算平均值）
+     */
+    private Double sumValue;
+
+    /**
+     * 样本数
+     */
+    private Long sampleCount;
+
+    /**
+     * 最后一个样本值
+     */
+    private Double lastValue;
+
+    /**
+     * 最后一个样本时间
+     */
+    private LocalDateTime lastTime;
+
+    /**
+     * 平均值
+     */
+    public Double getAvgValue() {
+        return sampleCount != null && sampleCount > 0 && sumValue != null ? sumValue / sampleCount : null;
+    }
+}
@@ -0,0 +1,311 @@
+package com.roominspection.backend.interceptor;
+
+import com.roominspection.backend.common.ApiConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地令牌桶 + Redis配额同步的混合限流器
+ * <p>
+ * 普通接口：每个节点为每个限流维度（IP/用户）维护一个无锁令牌桶（GCRA实现，单个CAS完成取令牌），
+ * 请求路径上不访问Redis；后台定时把各桶的消耗量批量（管道）累加到Redis的分钟计数，
+ * 并把其他节点在同一窗口内的消耗折算为本地令牌扣减，使集群总量逼近配置的配额。
+ * <p>
+ * 敏感接口：使用Redis有序集合滑动窗口精确计数（Lua脚本一次往返），避免固定窗口边界处的双倍突发。
+ * <p>
+ * 降级：Redis同步失败或耗时超过阈值时进入降级期，降级期内只按本地令牌桶限流，冷却后自动恢复。
+ */
+@Slf4j
+@Component
+public class HybridRateLimiter {
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 滑动窗口脚本：清理窗口外记录，未超限则记录本次请求
+     * KEYS[1] 计数键；ARGV[1] 当前毫秒；ARGV[2] 窗口毫秒；ARGV[3] 限额；ARGV[4] 成员
+     */
+    private static final DefaultRedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, tonumber(ARGV[1]) - tonumber(ARGV[2])) " +
+            "if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then return 0 end " +
+            "redis.call('ZADD', KEYS[1], ARGV[1], ARGV[4]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "return 1", Long.class);
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${rate-limit.max-buckets:100000}")
+    private int maxBuckets;
+
+    @Value("${rate-limit.slow-threshold-ms:200}")
+    private long slowThresholdMs;
+
+    @Value("${rate-limit.degrade-cooldown-ms:30000}")
+    private long degradeCooldownMs;
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 降级截止时间（毫秒），之前只使用本地令牌桶
+     */
+    private volatile long degradedUntil = 0;
+
+    private final AtomicLong memberSequence = new AtomicLong(0);
+    private final AtomicLong allowedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong syncFailureCount = new AtomicLong(0);
+    private final AtomicLong degradeCount = new AtomicLong(0);
+    private volatile long lastSyncMillis = 0;
+
+    /**
+     * 令牌桶限流（请求路径上无网络往返）
+     *
+     * @param key   限流维度键，如 ip:1.2.3.4
+     * @param limit 每分钟配额
+     * @return true-放行，false-超过限流
+     */
+    public boolean tryAcquire(String key, int limit) {
+        boolean allowed = bucket(key, limit).tryAcquire(System.nanoTime());
+        (allowed ? allowedCount : rejectedCount).incrementAndGet();
+        return allowed;
+    }
+
+    /**
+     * 滑动窗口限流（敏感接口），Redis不可用或降级期内回退到本地令牌桶
+     *
+     * @param key   限流维度键
+     * @param limit 每分钟配额
+     * @return true-放行，false-超过限流
+     */
+    public boolean tryAcquireSliding(String key, int limit) {
+        if (stringRedisTemplate == null || isDegraded()) {
+            return tryAcquire("sw:" + key, limit);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Long result = stringRedisTemplate.execute(SLIDING_WINDOW_SCRIPT,
+                    Collections.singletonList(ApiConstants.REDIS_PREFIX_RATE_LIMIT + "sw:" + key),
+                    String.valueOf(start), String.valueOf(WINDOW_MILLIS), String.valueOf(limit),
+                    start + ":" + memberSequence.incrementAndGet());
+            checkLatency(start, "sliding-window");
+            boolean allowed = result == null || result == 1L;
+            (allowed ? allowedCount : rejectedCount).incrementAndGet();
+            return allowed;
+        } catch (Exception e) {
+            degrade("sliding-window", e);
+            return tryAcquire("sw:" + key, limit);
+        }
+    }
+
+    /**
+     * 定时把本地消耗批量同步到Redis，并扣减其他节点的消耗
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sync-interval-ms:1000}")
+    public void synchronize() {
+        if (buckets.size() > maxBuckets) {
+            cleanIdleBuckets();
+        }
+        if (stringRedisTemplate == null || isDegraded()) {
+            // 降级期内的本地消耗不再补记，避免恢复后集中扣减
+            buckets.values().forEach(bucket -> bucket.pending.set(0));
+            return;
+        }
+
+        long window = System.currentTimeMillis() / WINDOW_MILLIS;
+        List<String> keys = new ArrayList<>();
+        List<TokenBucket> flushed = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+        for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+            long consumed = entry.getValue().pending.getAndSet(0);
+            if (consumed > 0) {
+                keys.add(ApiConstants.REDIS_PREFIX_RATE_LIMIT + entry.getKey() + ":" + window);
+                flushed.add(entry.getValue());
+                amounts.add(consumed);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (int i = 0; i < keys.size(); i++) {
+                    conn.incrBy(keys.get(i), amounts.get(i));
+                    conn.pExpire(keys.get(i), WINDOW_MILLIS * 2);
+                }
+                return null;
+            });
+            checkLatency(start, "sync");
+            lastSyncMillis = System.currentTimeMillis() - start;
+        } catch (Exception e) {
+            degrade("sync", e);
+            return;
+        }
+
+        // 结果按 INCRBY, PEXPIRE 交替排列
+        for (int i = 0; i < flushed.size(); i++) {
+            Object total = results.get(i * 2);
+            if (total instanceof Long) {
+                flushed.get(i).reconcile(window, (Long) total, amounts.get(i));
+            }
+        }
+    }
+
+    /**
+     * 获取限流统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("buckets", buckets.size());
+        stats.put("allowed", allowedCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("degraded", isDegraded());
+        stats.put("degradeCount", degradeCount.get());
+        stats.put("syncFailures", syncFailureCount.get());
+        stats.put("lastSyncMillis", lastSyncMillis);
+        return stats;
+    }
+
+    private TokenBucket bucket(String key, int limit) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(limit));
+        }
+        return bucket;
+    }
+
+    private boolean isDegraded() {
+        return System.currentTimeMillis() < degradedUntil;
+    }
+
+    private void checkLatency(long start, String operation) {
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed > slowThresholdMs) {
+            log.warn("Redis限流操作过慢，进入本地限流降级: operation={}, elapsed={}ms", operation, elapsed);
+            degradedUntil = System.currentTimeMillis() + degradeCooldownMs;
+            degradeCount.incrementAndGet();
+        }
+    }
+
+    private void degrade(String operation, Exception e) {
+        syncFailureCount.incrementAndGet();
+        if (!isDegraded()) {
+            log.warn("Redis限流操作失败，进入本地限流降级: operation={}, error={}", operation, e.getMessage());
+            degradeCount.incrementAndGet();
+        }
+        degradedUntil = System.currentTimeMillis() + degradeCooldownMs;
+    }
+
+    /**
+     * 定时清理已回满且无待同步消耗的桶（回满的桶与新建的桶等价），桶数超过上限时同步任务会提前清理
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void cleanIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    /**
+     * 无锁令牌桶（GCRA：理论到达时间TAT单变量表示桶状态）
+     * 容量为每分钟配额，匀速回填；其他节点的消耗通过推后TAT扣减
+     */
+    private static final class TokenBucket {
+
+        /**
+         * 每个令牌的回填间隔（纳秒）
+         */
+        private final long interval;
+
+        /**
+         * 允许的最大突发（纳秒），即整桶
+         */
+        private final long burst;
+
+        private final AtomicLong tat;
+
+        /**
+         * 尚未同步到Redis的本地消耗
+         */
+        private final AtomicLong pending = new AtomicLong(0);
+
+        /**
+         * 上次同步时所在窗口及该窗口集群累计值
+         */
+        private long syncedWindow = -1;
+        private long syncedTotal = 0;
+
+        TokenBucket(int limit) {
+            this.interval = WINDOW_NANOS / Math.max(1, limit);
+            this.burst = WINDOW_NANOS - interval;
+            this.tat = new AtomicLong(System.nanoTime());
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long current = tat.get();
+                long base = current - now > 0 ? current : now;
+                if (base - now > burst) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, base + interval)) {
+                    pending.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 根据Redis返回的集群累计值扣减其他节点的消耗（仅同步线程调用）
+         *
+         * @param window   当前分钟窗口
+         * @param total    集群在该窗口内的累计消耗
+         * @param flushed  本次同步的本地消耗
+         */
+        void reconcile(long window, long total, long flushed) {
+            long previous = window == syncedWindow ? syncedTotal : 0;
+            long others = total - previous - flushed;
+            syncedWindow = window;
+            syncedTotal = total;
+            if (others <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long ceiling = now + burst + interval;
+            while (true) {
+                long current = tat.get();
+                long base = current - now > 0 ? current : now;
+                long debited = base + others * interval;
+                // 最多扣空整桶
+                if (debited - ceiling > 0 || debited < base) {
+                    debited = ceiling;
+                }
+                if (tat.compareAndSet(current, debited)) {
+                    return;
+                }
+            }
+        }
+
+        boolean isIdle(long now) {
+            return pending.get() == 0 && now - tat.get() >= 0;
+        }
+    }
+}
@@ -2,41 +2,55 @@ package com.roominspection.backend.interceptor;
 
 import com.roominspection.backend.common.ApiConstants;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.time.Duration;
 
 /**
  * API限流拦截器
- * 支持IP限流和用户限流
+ * 支持IP限流和用户限流：普通接口走本地令牌桶（定时与Redis同步配额），
+ * 敏感接口走Redis滑动窗口精确限流
  */
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private HybridRateLimiter hybridRateLimiter;
+
+    @Value("${rate-limit.ip-per-minute:1000}")
+    private int ipPerMinute;
+
+    @Value("${rate-limit.user-per-minute:500}")
+    private int userPerMinute;
+
+    @Value("${rate-limit.sensitive-per-minute:200}")
+    private int sensitivePerMinute;
+
+    @Value("${rate-limit.sensitive-paths:/api/security/**,/api/sso/**,/api/v1/permissions/**,/api/door/access/**}")
+    private String[] sensitivePaths;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         String clientIp = getClientIp(request);
         String userId = request.getHeader(ApiConstants.HEADER_TENANT_ID);
+        boolean sensitive = isSensitive(request.getRequestURI().substring(request.getContextPath().length()));
 
         // IP限流检查
-        if (!checkRateLimit(ApiConstants.REDIS_PREFIX_RATE_LIMIT + "ip:" + clientIp,
-                           ApiConstants.RATE_LIMIT_IP_PER_MINUTE, Duration.ofMinutes(1))) {
+        if (!checkRateLimit("ip:" + clientIp, ipPerMinute, sensitive)) {
             sendRateLimitExceededResponse(response, "IP限流，请稍后再试");
             return false;
         }
 
         // 用户限流检查
         if (userId != null && !userId.isEmpty()) {
-            if (!checkRateLimit(ApiConstants.REDIS_PREFIX_RATE_LIMIT + "user:" + userId,
-                               ApiConstants.RATE_LIMIT_USER_PER_MINUTE, Duration.ofMinutes(1))) {
+            if (!checkRateLimit("user:" + userId, userPerMinute, sensitive)) {
                 sendRateLimitExceededResponse(response, "用户限流，请稍后再试");
                 return false;
             }
@@ -47,29 +61,28 @@ public class RateLimitInterceptor implements HandlerInterceptor {
 
     /**
      * 检查限流
-     * @param key Redis键
-     * @param limit 限流次数
-     * @param duration 时间窗口
+     * @param key 限流维度键
+     * @param limit 每分钟限流次数
+     * @param sensitive 是否敏感接口（使用滑动窗口，配额取两者较小值）
      * @return true-未超过限流，false-超过限流
      */
-    private boolean checkRateLimit(String key, int limit, Duration duration) {
-        try {
-            Long currentCount = redisTemplate.opsForValue().increment(key, 1);
-
-            if (currentCount != null && currentCount == 1) {
-                // 第一次访问，设置过期时间
-                redisTemplate.expire(key, duration);
-            }
+    private boolean checkRateLimit(String key, int limit, boolean sensitive) {
+        if (sensitive) {
+            return hybridRateLimiter.tryAcquireSliding(key, Math.min(limit, sensitivePerMinute));
+        }
+        return hybridRateLimiter.tryAcquire(key, limit);
+    }
 
-            if (currentCount != null && currentCount > limit) {
-                return false;
+    /**
+     * 是否敏感接口（按应用内路径匹配，与拦截器注册路径一致）
+     */
+    private boolean isSensitive(String uri) {
+        for (String pattern : sensitivePaths) {
+            if (pathMatcher.match(pattern.trim(), uri)) {
+                return true;
             }
-
-            return true;
-        } catch (Exception e) {
-            // Redis异常，放行请求
-            return true;
         }
+        return false;
     }
 
     /**
@@ -5,8 +5,10 @@ import com.roominspection.backend.entity.AlarmRecord;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -69,6 +71,15 @@ public interface AlarmRecordMapper extends BaseMapper<AlarmRecord> {
     @Select("SELECT * FROM alarm_records WHERE status IN ('ACTIVE', 'ACKNOWLEDGED') AND level = 'CRITICAL' AND deleted = 0 ORDER BY alarm_time DESC")
     List<AlarmRecord> findCriticalUnresolved();
 
+    /**
+     * 查询指定指纹最近一条未解决的告警ID
+     *
+     * @param fingerprint 告警指纹
+     * @return 告警ID，不存在时为null
+     */
+    @Select("SELECT id FROM alarm_records WHERE fingerprint = #{fingerprint} AND status IN ('ACTIVE', 'ACKNOWLEDGED') AND deleted = 0 ORDER BY alarm_time DESC LIMIT 1")
+    String findOpenAlarmIdByFingerprint(@Param("fingerprint") String fingerprint);
+
     /**
      * 统计告警数量（按级别）
      *
@@ -101,4 +112,33 @@ public interface AlarmRecordMapper extends BaseMapper<AlarmRecord> {
     @Select("SELECT status, COUNT(*) as count FROM alarm_records WHERE alarm_time BETWEEN #{startTime} AND #{endTime} AND deleted = 0 GROUP BY status")
     List<Map<String, Object>> countByStatus(@Param("startTime") LocalDateTime startTime,
                                                @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 批量累加告警发生次数并更新最近发生时间
+     *
+     * @param alarms 告警（occurrenceCount为本次累加的次数）
+     * @return 影响行数
+     */
+    @Update("<script>" +
+            "UPDATE alarm_records SET occurrence_count = occurrence_count + CASE id " +
+            "<foreach collection='alarms' item='a'>WHEN #{a.id} THEN #{a.occurrenceCount} </foreach>" +
+            "ELSE 0 END, last_occurred_at = CASE id " +
+            "<foreach collection='alarms' item='a'>WHEN #{a.id} THEN #{a.lastOccurredAt} </foreach>" +
+            "ELSE last_occurred_at END WHERE id IN " +
+            "<foreach collection='alarms' item='a' open='(' separator=',' close=')'>#{a.id}</foreach>" +
+            "</script>")
+    int incrementOccurrences(@Param("alarms") List<AlarmRecord> alarms);
+
+    /**
+     * 批量标记通知已发送
+     *
+     * @param column 通知标记列（sms_sent、ding_talk_sent、email_sent）
+     * @param ids    告警ID
+     * @return 影响行数
+     */
+    @Update("<script>" +
+            "UPDATE alarm_records SET ${column} = 1 WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markNotified(@Param("column") String column, @Param("ids") Collection<String> ids);
 }
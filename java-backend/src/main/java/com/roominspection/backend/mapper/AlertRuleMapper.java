@@ -0,0 +1,32 @@
+package com.roominspection.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.roominspection.backend.entity.AlertRule;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 告警规则Mapper接口
+ */
+@Mapper
+public interface AlertRuleMapper extends BaseMapper<AlertRule> {
+
+    /**
+     * 查询所有启用的告警规则
+     *
+     * @return 告警规则列表
+     */
+    @Select("SELECT * FROM alert_rule WHERE status = 1")
+    List<AlertRule> selectAllEnabled();
+
+    /**
+     * 查询规则表变更签名（规则数与最后更新时间），用于判断是否需要重新加载
+     *
+     * @return ruleCount、lastUpdatedAt
+     */
+    @Select("SELECT COUNT(*) AS ruleCount, MAX(updated_at) AS lastUpdatedAt FROM alert_rule")
+    Map<String, Object> selectChangeSignature();
+}
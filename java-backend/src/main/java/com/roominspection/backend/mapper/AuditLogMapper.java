@@ -2,11 +2,33 @@ package com.roominspection.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.roominspection.backend.entity.AuditLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 操作日志Mapper
  */
 @Mapper
 public interface AuditLogMapper extends BaseMapper<AuditLog> {
+
+    /**
+     * 批量插入操作日志（单条多行INSERT）
+     *
+     * @param logs 操作日志列表
+     * @return 插入数量
+     */
+    @Insert("<script>" +
+            "INSERT INTO audit_log (user_id, username, real_name, ip, operation_type, module, description, " +
+            "method, url, params, result, status, error_message, execution_time, user_agent, browser, os, " +
+            "create_time, remark, deleted) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.userId}, #{l.username}, #{l.realName}, #{l.ip}, #{l.operationType}, #{l.module}, " +
+            "#{l.description}, #{l.method}, #{l.url}, #{l.params}, #{l.result}, #{l.status}, #{l.errorMessage}, " +
+            "#{l.executionTime}, #{l.userAgent}, #{l.browser}, #{l.os}, #{l.createTime}, #{l.remark}, 0)" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("logs") List<AuditLog> logs);
 }
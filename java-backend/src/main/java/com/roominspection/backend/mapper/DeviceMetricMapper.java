@@ -2,6 +2,8 @@ package com.roominspection.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.roominspection.backend.entity.DeviceMetric;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -16,11 +18,24 @@ import java.util.List;
 public interface DeviceMetricMapper extends BaseMapper<DeviceMetric> {
 
     /**
-     * 批量插入设备指标
+     * 批量插入设备指标（单条多行INSERT）
      *
      * @param metrics 指标列表
      * @return 插入数量
      */
+    @Insert("<script>" +
+            "INSERT INTO device_metric (device_id, device_code, device_name, metric_type, metric_name, metric_value, " +
+            "unit, status, exceeded_threshold, port_name, port_index, port_status, disk_name, disk_path, " +
+            "disk_total, disk_used, disk_free, threshold_upper, threshold_lower, custom_key, custom_value, " +
+            "collection_method, collection_time, created_at) VALUES " +
+            "<foreach collection='metrics' item='m' separator=','>" +
+            "(#{m.deviceId}, #{m.deviceCode}, #{m.deviceName}, #{m.metricType}, #{m.metricName}, #{m.metricValue}, " +
+            "#{m.unit}, #{m.status}, #{m.exceededThreshold}, #{m.portName}, #{m.portIndex}, #{m.portStatus}, " +
+            "#{m.diskName}, #{m.diskPath}, #{m.diskTotal}, #{m.diskUsed}, #{m.diskFree}, #{m.thresholdUpper}, " +
+            "#{m.thresholdLower}, #{m.customKey}, #{m.customValue}, #{m.collectionMethod}, #{m.collectionTime}, " +
+            "#{m.createdAt})" +
+            "</foreach>" +
+            "</script>")
     int insertBatch(@Param("metrics") List<DeviceMetric> metrics);
 
     /**
@@ -47,6 +62,20 @@ public interface DeviceMetricMapper extends BaseMapper<DeviceMetric> {
             "ON dm.device_id = latest.device_id AND dm.collection_time = latest.max_time")
     List<DeviceMetric> selectLatestByRoomId(@Param("roomId") String roomId);
 
+    /**
+     * 查询所有设备的最新指标（仅用于启动时预热内存索引）
+     * 内外两层都按采集时间下界过滤，分区表只扫描下界之后的分区
+     *
+     * @param since 采集时间下界，之前未上报过的设备不返回
+     * @return 指标列表
+     */
+    @Select("SELECT dm.* FROM device_metric dm " +
+            "INNER JOIN (SELECT device_id, MAX(collection_time) as max_time " +
+            "            FROM device_metric WHERE collection_time >= #{since} GROUP BY device_id) latest " +
+            "ON dm.device_id = latest.device_id AND dm.collection_time = latest.max_time " +
+            "WHERE dm.collection_time >= #{since}")
+    List<DeviceMetric> selectLatestOfAllDevices(@Param("since") LocalDateTime since);
+
     /**
      * 查询告警指标
      *
@@ -64,8 +93,9 @@ public interface DeviceMetricMapper extends BaseMapper<DeviceMetric> {
      * 清理历史指标数据
      *
      * @param beforeTime 清理时间点之前的数据
+     * @param limit      单批最多删除行数（仅用于未分区表的分批清理）
      * @return 删除数量
      */
-    @Select("DELETE FROM device_metric WHERE collection_time < #{beforeTime}")
-    int deleteBeforeTime(@Param("beforeTime") LocalDateTime beforeTime);
+    @Delete("DELETE FROM device_metric WHERE collection_time < #{beforeTime} LIMIT #{limit}")
+    int deleteBeforeTime(@Param("beforeTime") LocalDateTime beforeTime, @Param("limit") int limit);
 }
@@ -2,6 +2,7 @@ package com.roominspection.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.roominspection.backend.entity.DoorAccessLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -91,4 +92,27 @@ public interface DoorAccessLogMapper extends BaseMapper<DoorAccessLog> {
             "ORDER BY access_count DESC")
     List<Map<String, Object>> getRoomAccessStatistics(@Param("startTime") LocalDateTime startTime,
                                                         @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 批量写入门禁日志（单条多行INSERT），按门禁系统+事件ID去重：
+     * 已存在的事件只刷新门禁系统侧字段，保留本地核验结果
+     */
+    @Insert("<script>" +
+            "INSERT INTO door_access_log (system_type, event_id, device_id, device_name, room_id, staff_id, " +
+            "staff_name, staff_code, direction, access_time, access_method, status, reject_reason, photo_url, " +
+            "data_source, verified, create_time, update_time, deleted) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.systemType}, #{l.eventId}, #{l.deviceId}, #{l.deviceName}, #{l.roomId}, #{l.staffId}, " +
+            "#{l.staffName}, #{l.staffCode}, #{l.direction}, #{l.accessTime}, #{l.accessMethod}, #{l.status}, " +
+            "#{l.rejectReason}, #{l.photoUrl}, #{l.dataSource}, #{l.verified}, #{l.createTime}, #{l.createTime}, 0)" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE device_id = VALUES(device_id), " +
+            "device_name = IFNULL(VALUES(device_name), device_name), room_id = IFNULL(VALUES(room_id), room_id), " +
+            "staff_id = VALUES(staff_id), staff_name = VALUES(staff_name), staff_code = VALUES(staff_code), " +
+            "direction = VALUES(direction), access_time = VALUES(access_time), " +
+            "access_method = VALUES(access_method), status = VALUES(status), reject_reason = VALUES(reject_reason), " +
+            "photo_url = VALUES(photo_url), " +
+            "update_time = VALUES(update_time)" +
+            "</script>")
+    int upsertBatch(@Param("logs") List<DoorAccessLog> logs);
 }
@@ -0,0 +1,12 @@
+package com.roominspection.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.roominspection.backend.entity.DoorAccessSyncState;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 门禁日志同步水位Mapper
+ */
+@Mapper
+public interface DoorAccessSyncStateMapper extends BaseMapper<DoorAccessSyncState> {
+}
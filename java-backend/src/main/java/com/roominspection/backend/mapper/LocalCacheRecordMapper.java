@@ -2,6 +2,7 @@ package com.roominspection.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.roominspection.backend.entity.LocalCacheRecord;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -24,6 +25,19 @@ public interface LocalCacheRecordMapper extends BaseMapper<LocalCacheRecord> {
      */
     List<LocalCacheRecord> selectFailedSync(@Param("maxFailCount") Integer maxFailCount);
 
+    /**
+     * 批量插入缓存记录（单条多行INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO local_cache_record (cache_type, data_source_type, data_source_id, data_content, " +
+            "data_timestamp, status, sync_fail_count, last_sync_time, create_time, update_time) VALUES " +
+            "<foreach collection='records' item='r' separator=','>" +
+            "(#{r.cacheType}, #{r.dataSourceType}, #{r.dataSourceId}, #{r.dataContent}, #{r.dataTimestamp}, " +
+            "#{r.status}, #{r.syncFailCount}, #{r.lastSyncTime}, #{r.createTime}, #{r.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("records") List<LocalCacheRecord> records);
+
     /**
      * 清理过期的缓存记录
      */
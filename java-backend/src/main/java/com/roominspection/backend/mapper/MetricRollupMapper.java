@@ -0,0 +1,77 @@
+package com.roominspection.backend.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.roominspection.backend.entity.MetricRollup;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 指标降采样汇总Mapper接口
+ */
+@Mapper
+public interface MetricRollupMapper extends BaseMapper<MetricRollup> {
+
+    /**
+     * 批量合并汇总增量（同一序列、粒度、时间桶已存在时合并最小/最大/累计/计数/最后值）
+     *
+     * @param rollups 汇总增量
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO metric_rollup (series_key, resolution, bucket_time, min_value, max_value, sum_value, " +
+            "sample_count, last_value, last_time) VALUES " +
+            "<foreach collection='rollups' item='r' separator=','>" +
+            "(#{r.seriesKey}, #{r.resolution}, #{r.bucketTime}, #{r.minValue}, #{r.maxValue}, #{r.sumValue}, " +
+            "#{r.sampleCount}, #{r.lastValue}, #{r.lastTime})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE min_value = LEAST(min_value, VALUES(min_value)), " +
+            "max_value = GREATEST(max_value, VALUES(max_value)), " +
+            "sum_value = sum_value + VALUES(sum_value), " +
+            "sample_count = sample_count + VALUES(sample_count), " +
+            "last_value = IF(VALUES(last_time) >= last_time, VALUES(last_value), last_value), " +
+            "last_time = GREATEST(last_time, VALUES(last_time))" +
+            "</script>")
+    int upsertBatch(@Param("rollups") List<MetricRollup> rollups);
+
+    /**
+     * 按时间桶查询多个序列合并后的汇总
+     *
+     * @param seriesKeys 序列键
+     * @param resolution 汇总粒度（秒）
+     * @param startTime  开始时间（含）
+     * @param endTime    结束时间（不含）
+     * @return 汇总列表（按时间桶升序）
+     */
+    @Select("<script>" +
+            "SELECT bucket_time, MIN(min_value) AS min_value, MAX(max_value) AS max_value, " +
+            "SUM(sum_value) AS sum_value, SUM(sample_count) AS sample_count " +
+            "FROM metric_rollup WHERE resolution = #{resolution} AND series_key IN " +
+            "<foreach collection='seriesKeys' item='k' open='(' separator=',' close=')'>#{k}</foreach>" +
+            " AND bucket_time &gt;= #{startTime} AND bucket_time &lt; #{endTime} " +
+            "GROUP BY bucket_time ORDER BY bucket_time" +
+            "</script>")
+    List<MetricRollup> selectMerged(@Param("seriesKeys") Collection<String> seriesKeys,
+                                    @Param("resolution") int resolution,
+                                    @Param("startTime") LocalDateTime startTime,
+                                    @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 分批清理过期汇总
+     *
+     * @param resolution 汇总粒度（秒）
+     * @param beforeTime 清理时间点之前的数据
+     * @param limit      单批最多删除行数
+     * @return 删除数量
+     */
+    @Delete("DELETE FROM metric_rollup WHERE resolution = #{resolution} AND bucket_time < #{beforeTime} LIMIT #{limit}")
+    int deleteBeforeTime(@Param("resolution") int resolution,
+                         @Param("beforeTime") LocalDateTime beforeTime,
+                         @Param("limit") int limit);
+}
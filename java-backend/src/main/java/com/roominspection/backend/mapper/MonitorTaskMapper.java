@@ -2,6 +2,8 @@ package com.roominspection.backend.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.roominspection.backend.entity.MonitorTask;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -16,6 +18,26 @@ import java.util.Map;
 @Mapper
 public interface MonitorTaskMapper extends BaseMapper<MonitorTask> {
 
+    /**
+     * 批量写入任务（按task_id幂等，已存在时更新状态与结果）
+     *
+     * @param tasks 任务列表
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO monitor_task (task_id, device_id, device_name, device_type, room_id, room_name, task_type, " +
+            "task_status, start_time, end_time, duration, data_count, error_message, retry_count, created_at, updated_at) VALUES " +
+            "<foreach collection='tasks' item='t' separator=','>" +
+            "(#{t.taskId}, #{t.deviceId}, #{t.deviceName}, #{t.deviceType}, #{t.roomId}, #{t.roomName}, #{t.taskType}, " +
+            "#{t.taskStatus}, #{t.startTime}, #{t.endTime}, #{t.duration}, #{t.dataCount}, #{t.errorMessage}, " +
+            "#{t.retryCount}, #{t.createdAt}, #{t.updatedAt})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE task_status = VALUES(task_status), start_time = VALUES(start_time), " +
+            "end_time = VALUES(end_time), duration = VALUES(duration), data_count = VALUES(data_count), " +
+            "error_message = VALUES(error_message), retry_count = VALUES(retry_count), updated_at = VALUES(updated_at)" +
+            "</script>")
+    int upsertBatch(@Param("tasks") List<MonitorTask> tasks);
+
     /**
      * 根据设备ID查询最新的任务
      *
@@ -55,8 +77,9 @@ public interface MonitorTaskMapper extends BaseMapper<MonitorTask> {
      * 清理历史任务记录
      *
      * @param beforeTime 清理时间点之前的数据
+     * @param limit      单批最多删除行数（仅用于未分区表的分批清理）
      * @return 删除数量
      */
-    @Select("DELETE FROM monitor_task WHERE created_at < #{beforeTime}")
-    int deleteBeforeTime(@Param("beforeTime") LocalDateTime beforeTime);
+    @Delete("DELETE FROM monitor_task WHERE created_at < #{beforeTime} LIMIT #{limit}")
+    int deleteBeforeTime(@Param("beforeTime") LocalDateTime beforeTime, @Param("limit") int limit);
 }
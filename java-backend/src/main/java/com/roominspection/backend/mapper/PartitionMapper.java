@@ -0,0 +1,55 @@
+package com.roominspection.backend.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分区管理Mapper接口
+ * 表名、分区名与边界值均由分区管理器内部生成，不接受外部输入
+ */
+@Mapper
+public interface PartitionMapper {
+
+    /**
+     * 查询表的分区信息（按分区顺序）
+     *
+     * @param tableName 表名
+     * @return 分区列表（partitionName、description、tableRows）
+     */
+    @Select("SELECT PARTITION_NAME AS partitionName, PARTITION_DESCRIPTION AS description, TABLE_ROWS AS tableRows " +
+            "FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{tableName} AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION")
+    List<Map<String, Object>> selectPartitions(@Param("tableName") String tableName);
+
+    /**
+     * 从MAXVALUE分区中拆出一个新分区
+     *
+     * @param tableName     表名
+     * @param partitionName 新分区名
+     * @param lessThan      新分区上界（yyyy-MM-dd HH:mm:ss）
+     * @return 影响行数
+     */
+    @Update("ALTER TABLE ${tableName} REORGANIZE PARTITION p_max INTO (" +
+            "PARTITION ${partitionName} VALUES LESS THAN ('${lessThan}'), " +
+            "PARTITION p_max VALUES LESS THAN (MAXVALUE))")
+    int addPartition(@Param("tableName") String tableName,
+                     @Param("partitionName") String partitionName,
+                     @Param("lessThan") String lessThan);
+
+    /**
+     * 删除分区（元数据操作，不逐行删除）
+     *
+     * @param tableName     表名
+     * @param partitionName 分区名
+     * @return 影响行数
+     */
+    @Update("ALTER TABLE ${tableName} DROP PARTITION ${partitionName}")
+    int dropPartition(@Param("tableName") String tableName,
+                      @Param("partitionName") String partitionName);
+}
@@ -1,9 +1,18 @@
 package com.roominspection.backend.protocol;
 
+import com.roominspection.backend.collector.SnmpRequestPlanner;
+import com.roominspection.backend.collector.SnmpSessionManager;
+import com.roominspection.backend.entity.Device;
 import lombok.extern.slf4j.Slf4j;
+import org.snmp4j.mp.SnmpConstants;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 设备协议工厂类
@@ -13,8 +22,21 @@ import java.util.Map;
 @Component
 public class DeviceProtocolFactory {
 
+    @Autowired
+    private SnmpSessionManager snmpSessionManager;
+
+    @Autowired
+    private SnmpRequestPlanner snmpRequestPlanner;
+
+    /**
+     * 设备ID -> 工厂为该设备保留的SNMP目标引用
+     * 适配器每次采集后即断开，保留一个引用使目标的往返时间统计跨采集周期延续；设备删除或地址变更时释放
+     */
+    private final Map<String, SnmpSessionManager.Endpoint> deviceEndpoints = new ConcurrentHashMap<>();
+
     /**
      * 创建设备协议适配器
+     * SNMP适配器只持有共享会话中的目标，创建成本很低
      *
      * @param manufacturer 设备厂商
      * @return 设备协议适配器
@@ -26,11 +48,11 @@ public class DeviceProtocolFactory {
 
         switch (manufacturer.toUpperCase()) {
             case "APC":
-                return new APCProtocolAdapter();
+                return new APCProtocolAdapter(snmpSessionManager, snmpRequestPlanner);
             case "SCHNEIDER":
                 return new SchneiderProtocolAdapter();
             case "EMERSON":
-                return new EmersonProtocolAdapter();
+                return new EmersonProtocolAdapter(snmpSessionManager, snmpRequestPlanner);
             case "HUAWEI":
                 return new HuaweiProtocolAdapter();
             case "VERTIV":
@@ -42,6 +64,80 @@ public class DeviceProtocolFactory {
         }
     }
 
+    /**
+     * 为设备创建并连接协议适配器
+     * 连接参数取自设备档案，设备型号作为批量读取规划的缓存键传入，同型号设备共享规划。
+     * 适配器用完后须调用 {@link DeviceProtocol#disconnect()} 释放其占用的共享目标
+     *
+     * @param device 设备
+     * @return 已连接的设备协议适配器
+     * @throws Exception 连接失败
+     */
+    public DeviceProtocol createProtocol(Device device) throws Exception {
+        DeviceProtocol protocol = createProtocol(device.getBrand());
+        String community = device.getSnmpCommunity() != null && !device.getSnmpCommunity().isEmpty()
+                ? device.getSnmpCommunity() : "public";
+        int port = device.getSnmpPort() != null ? device.getSnmpPort() : 161;
+        if (isSharedSnmp(device.getBrand())) {
+            retainEndpoint(device.getId(), device.getIpAddress(), port, community);
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("community", community);
+        if (device.getModel() != null && !device.getModel().isEmpty()) {
+            params.put("model", device.getModel());
+        }
+        protocol.connect(device.getIpAddress(), port, params);
+        return protocol;
+    }
+
+    /**
+     * 设备删除时释放工厂为其保留的SNMP目标引用
+     *
+     * @param deviceId 设备ID
+     */
+    public void removeDevice(String deviceId) {
+        snmpSessionManager.release(deviceEndpoints.remove(deviceId));
+    }
+
+    /**
+     * 保留了SNMP目标引用的设备ID
+     *
+     * @return 设备ID集合
+     */
+    public Set<String> getDeviceIds() {
+        return new HashSet<>(deviceEndpoints.keySet());
+    }
+
+    /**
+     * 为设备保留一个SNMP v2c目标引用（与厂商适配器使用的目标相同），地址变更时换用新目标并释放旧引用
+     */
+    private void retainEndpoint(String deviceId, String host, int port, String community) {
+        String key = SnmpSessionManager.key(host, port, community, SnmpConstants.version2c);
+        deviceEndpoints.compute(deviceId, (id, current) -> {
+            if (current != null && current.getKey().equals(key)) {
+                return current;
+            }
+            snmpSessionManager.release(current);
+            return snmpSessionManager.endpoint(host, port, community);
+        });
+    }
+
+    /**
+     * 是否为经共享SNMP会话通信的厂商适配器（采集时可直接复用共享会话与批量读取规划）
+     */
+    public boolean isSharedSnmp(String manufacturer) {
+        if (manufacturer == null) {
+            return false;
+        }
+        switch (manufacturer.toUpperCase()) {
+            case "APC":
+            case "EMERSON":
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /**
      * 检查是否支持指定厂商
      */
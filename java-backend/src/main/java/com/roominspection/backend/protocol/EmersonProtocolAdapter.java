@@ -1,16 +1,19 @@
 package com.roominspection.backend.protocol;
 
+import com.roominspection.backend.collector.SnmpRequestPlanner;
+import com.roominspection.backend.collector.SnmpSessionManager;
 import lombok.extern.slf4j.Slf4j;
-import org.snmp4j.*;
-import org.snmp4j.mp.SnmpConstants;
-import org.snmp4j.smi.*;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.VariableBinding;
 
 import java.util.*;
 
 /**
  * 艾默生设备协议适配器
  * 支持艾默生Liebert UPS、Liebert PDU、NetSure电源等设备
- * 使用SNMP协议进行通信
+ * 使用SNMP协议进行通信，请求经共享SNMP会话发送，不再单独创建socket
  */
 @Slf4j
 public class EmersonProtocolAdapter implements DeviceProtocol {
@@ -18,10 +21,10 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
     private static final String PROTOCOL_NAME = "Emerson SNMP";
     private static final String PROTOCOL_VERSION = "1.0";
 
-    private Snmp snmp;
-    private TransportMapping<UdpAddress> transport;
-    private Target target;
-    private int timeout = 5000; // 默认超时5秒
+    private final SnmpSessionManager sessionManager;
+    private final SnmpRequestPlanner requestPlanner;
+    private SnmpSessionManager.Endpoint endpoint;
+    private String model = PROTOCOL_NAME;
     private String lastError;
 
     // 艾默生SNMP OID定义
@@ -46,6 +49,11 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
     private static final String EMERSON_TEMP_SENSOR_PREFIX = "1.3.6.1.4.1.476.1.42.3.8.10.1.1"; // 温度传感器
     private static final String EMERSON_HUMIDITY_SENSOR_PREFIX = "1.3.6.1.4.1.476.1.42.3.8.10.1.2"; // 湿度传感器
 
+    public EmersonProtocolAdapter(SnmpSessionManager sessionManager, SnmpRequestPlanner requestPlanner) {
+        this.sessionManager = sessionManager;
+        this.requestPlanner = requestPlanner;
+    }
+
     @Override
     public String getProtocolName() {
         return PROTOCOL_NAME;
@@ -59,22 +67,18 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
     @Override
     public void connect(String host, int port, Map<String, Object> params) throws Exception {
         try {
-            // 创建SNMP传输映射
-            transport = new DefaultUdpTransportMapping();
-            snmp = new Snmp(transport);
-            transport.listen();
-
-            // 创建SNMP目标
+            // 获取共享会话中的SNMP目标
             String community = params.get("community") != null ?
                     params.get("community").toString() : "public";
-            target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setAddress(new UdpAddress(host + "/" + port));
-            target.setRetries(3);
-            target.setTimeout(timeout);
-            target.setVersion(SnmpConstants.version2c);
-
-            log.info("艾默生设备连接成功: {}:{}", host, port);
+            SnmpSessionManager.Endpoint previous = endpoint;
+            endpoint = sessionManager.endpoint(host, port, community);
+            sessionManager.release(previous);
+            // 同型号设备共享批量读取规划
+            if (params.get("model") != null) {
+                model = PROTOCOL_NAME + "/" + params.get("model");
+            }
+
+            log.debug("艾默生设备连接成功: {}:{}", host, port);
         } catch (Exception e) {
             lastError = e.getMessage();
             log.error("艾默生设备连接失败", e);
@@ -85,13 +89,10 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
     @Override
     public void disconnect() {
         try {
-            if (snmp != null) {
-                snmp.close();
-            }
-            if (transport != null) {
-                transport.close();
-            }
-            log.info("艾默生设备已断开连接");
+            // 共享传输由会话管理器统一关闭，这里只释放对目标的引用
+            sessionManager.release(endpoint);
+            endpoint = null;
+            log.debug("艾默生设备已断开连接");
         } catch (Exception e) {
             log.error("断开艾默生设备连接失败", e);
         }
@@ -99,7 +100,7 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
 
     @Override
     public boolean isConnected() {
-        return snmp != null && transport != null && transport.isListening();
+        return endpoint != null && sessionManager.isRunning();
     }
 
     @Override
@@ -113,9 +114,8 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
             pdu.add(new VariableBinding(new OID(address)));
             pdu.setType(PDU.GET);
 
-            ResponseEvent responseEvent = snmp.send(pdu, target);
-            if (responseEvent != null && responseEvent.getResponse() != null) {
-                PDU response = responseEvent.getResponse();
+            PDU response = sessionManager.sendSync(endpoint, pdu);
+            if (response != null) {
                 VariableBinding vb = response.get(0);
                 Map<String, Object> result = new HashMap<>();
                 result.put("address", address);
@@ -144,8 +144,8 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
             pdu.add(new VariableBinding(new OID(address), new OctetString(value.toString())));
             pdu.setType(PDU.SET);
 
-            ResponseEvent responseEvent = snmp.send(pdu, target);
-            if (responseEvent != null && responseEvent.getResponse() != null) {
+            PDU response = sessionManager.sendSync(endpoint, pdu);
+            if (response != null) {
                 log.info("写入艾默生设备数据成功: {} = {}", address, value);
             } else {
                 throw new Exception("写入数据失败：无响应");
@@ -174,9 +174,8 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
             pdu.add(new VariableBinding(new OID(EMERSON_CONTACT)));
             pdu.setType(PDU.GET);
 
-            ResponseEvent responseEvent = snmp.send(pdu, target);
-            if (responseEvent != null && responseEvent.getResponse() != null) {
-                PDU response = responseEvent.getResponse();
+            PDU response = sessionManager.sendSync(endpoint, pdu);
+            if (response != null) {
                 for (VariableBinding vb : response.getVariableBindings()) {
                     String oid = vb.getOid().toString();
                     String value = vb.getVariable().toString();
@@ -213,27 +212,9 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
         }
 
         try {
+            // 规划为最少的GET/GETBULK请求并发发出
             Map<String, Object> result = new HashMap<>();
-            PDU pdu = new PDU();
-
-            // 添加所有要读取的OID
-            for (Map.Entry<String, String> entry : addressMap.entrySet()) {
-                pdu.add(new VariableBinding(new OID(entry.getKey())));
-            }
-            pdu.setType(PDU.GET);
-
-            ResponseEvent responseEvent = snmp.send(pdu, target);
-            if (responseEvent != null && responseEvent.getResponse() != null) {
-                PDU response = responseEvent.getResponse();
-                for (VariableBinding vb : response.getVariableBindings()) {
-                    String oid = vb.getOid().toString();
-                    String dataType = addressMap.get(oid);
-                    if (dataType != null) {
-                        result.put(oid, vb.getVariable().toString());
-                    }
-                }
-            }
-
+            result.putAll(requestPlanner.read(endpoint, model, addressMap.keySet()));
             result.put("timestamp", System.currentTimeMillis());
             return result;
         } catch (Exception e) {
@@ -261,15 +242,14 @@ public class EmersonProtocolAdapter implements DeviceProtocol {
 
     @Override
     public int getTimeout() {
-        return timeout;
+        // 返回共享会话为该目标计算的当前自适应超时
+        return endpoint != null ? (int) endpoint.getTimeout() : 0;
     }
 
     @Override
     public void setTimeout(int timeout) {
-        this.timeout = timeout;
-        if (target != null) {
-            target.setTimeout(timeout);
-        }
+        // 请求超时由共享会话按往返时间自适应调整（上限为monitor.snmp.timeout），不支持单独设置
+        log.debug("{}适配器忽略超时设置: {}", PROTOCOL_NAME, timeout);
     }
 
     /**
@@ -0,0 +1,225 @@
+package com.roominspection.backend.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JWT验证结果缓存
+ * 以Token的SHA-256摘要为键缓存验证后的不可变认证主体，缓存时间不超过配置的TTL且不晚于Token过期时间；
+ * 登出时吊销：移除本地缓存并在Redis中记录吊销标记（保留到Token过期），
+ * 其他实例在缓存未命中时检查吊销标记，本地缓存TTL即跨实例吊销的最大延迟
+ */
+@Slf4j
+@Component
+public class JwtAuthenticationCache {
+
+    private static final String REVOKED_KEY_PREFIX = "auth:revoked:";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil;
+
+    @Autowired(required = false)
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${jwt.cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    /**
+     * Token摘要 -> 缓存条目
+     */
+    private final ConcurrentHashMap<String, CachedPrincipal> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 本实例吊销的Token摘要 -> Token过期时间（Redis不可用时兜底）
+     */
+    private final ConcurrentHashMap<String, Long> revokedLocal = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong revokedRejectCount = new AtomicLong(0);
+
+    /**
+     * 验证Token并返回认证主体（优先命中缓存）
+     *
+     * @param token Token
+     * @return 认证主体，Token已吊销时返回null
+     * @throws io.jsonwebtoken.JwtException Token无效或已过期
+     */
+    public JwtPrincipal authenticate(String token) {
+        String digest = digest(token);
+        long now = System.currentTimeMillis();
+
+        CachedPrincipal cached = cache.get(digest);
+        if (cached != null) {
+            if (now < cached.cacheExpiresAt) {
+                hitCount.incrementAndGet();
+                return cached.principal;
+            }
+            cache.remove(digest, cached);
+        }
+        missCount.incrementAndGet();
+
+        // 一次解析完成签名与过期校验
+        Claims claims = jwtTokenUtil.parseClaims(token);
+        if (isRevoked(digest)) {
+            revokedRejectCount.incrementAndGet();
+            return null;
+        }
+
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        JwtPrincipal principal = new JwtPrincipal(
+                claims.get("userId", String.class),
+                claims.getSubject(),
+                claims.get("roles", String.class),
+                expiresAt);
+
+        if (cache.size() >= maxSize) {
+            evict(now);
+        }
+        cache.put(digest, new CachedPrincipal(principal, Math.min(now + ttlSeconds * 1000, expiresAt)));
+        return principal;
+    }
+
+    /**
+     * 吊销Token（登出时调用）
+     *
+     * @param token Token（可带Bearer前缀）
+     */
+    public void revoke(String token) {
+        if (token == null) {
+            return;
+        }
+        String actualToken = token.startsWith("Bearer ") ? token.substring(7) : token;
+        String digest = digest(actualToken);
+        cache.remove(digest);
+
+        long expiresAt;
+        try {
+            Claims claims = jwtTokenUtil.parseClaims(actualToken);
+            expiresAt = claims.getExpiration() != null
+                    ? claims.getExpiration().getTime()
+                    : System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        } catch (Exception e) {
+            // 已无效的Token无需吊销
+            return;
+        }
+
+        revokedLocal.put(digest, expiresAt);
+        long ttlMillis = expiresAt - System.currentTimeMillis();
+        if (stringRedisTemplate != null && ttlMillis > 0) {
+            try {
+                stringRedisTemplate.opsForValue().set(REVOKED_KEY_PREFIX + digest, "1", ttlMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("写入Token吊销标记失败，仅本实例生效: error={}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定时清理过期的缓存条目与本地吊销记录
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void cleanExpired() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(entry -> entry.cacheExpiresAt <= now);
+        revokedLocal.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    /**
+     * 获取缓存统计
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", cache.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount.get());
+        stats.put("misses", missCount.get());
+        stats.put("revokedLocal", revokedLocal.size());
+        stats.put("revokedRejected", revokedRejectCount.get());
+        return stats;
+    }
+
+    private boolean isRevoked(String digest) {
+        Long expiresAt = revokedLocal.get(digest);
+        if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+            return true;
+        }
+        if (stringRedisTemplate == null) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(REVOKED_KEY_PREFIX + digest));
+        } catch (Exception e) {
+            // Redis不可用时不阻断认证
+            log.debug("检查Token吊销标记失败: error={}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 缓存达到上限时先清理过期条目，仍超限则淘汰最早到期的一部分
+     */
+    private void evict(long now) {
+        cache.values().removeIf(entry -> entry.cacheExpiresAt <= now);
+        int excess = cache.size() - maxSize + Math.max(1, maxSize / 10);
+        if (excess <= 0) {
+            return;
+        }
+        Iterator<Map.Entry<String, CachedPrincipal>> iterator = cache.entrySet().stream()
+                .sorted((a, b) -> Long.compare(a.getValue().cacheExpiresAt, b.getValue().cacheExpiresAt))
+                .limit(excess)
+                .iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedPrincipal> entry = iterator.next();
+            cache.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            char[] chars = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                chars[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+                chars[i * 2 + 1] = HEX[hash[i] & 0x0f];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static final class CachedPrincipal {
+        private final JwtPrincipal principal;
+        private final long cacheExpiresAt;
+
+        CachedPrincipal(JwtPrincipal principal, long cacheExpiresAt) {
+            this.principal = principal;
+            this.cacheExpiresAt = cacheExpiresAt;
+        }
+    }
+}
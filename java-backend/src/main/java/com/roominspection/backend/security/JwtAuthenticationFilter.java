@@ -2,7 +2,6 @@ package com.roominspection.backend.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -14,8 +13,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * JWT认证过滤器
@@ -25,7 +22,7 @@ import java.util.List;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
-    private JwtTokenUtil jwtTokenUtil;
+    private JwtAuthenticationCache jwtAuthenticationCache;
 
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER_PREFIX = "Bearer ";
@@ -39,27 +36,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // 从请求头中获取Token
             String jwt = extractJwtFromRequest(request);
 
-            // 验证Token并设置认证信息
-            if (StringUtils.hasText(jwt) && !jwtTokenUtil.isTokenExpired(jwt)) {
-                String username = jwtTokenUtil.getUsernameFromToken(jwt);
-                String userId = jwtTokenUtil.getUserIdFromToken(jwt);
-                String roles = jwtTokenUtil.getRolesFromToken(jwt);
+            // 验证Token并设置认证信息（同一Token只完整校验一次，之后复用缓存的认证主体）
+            if (StringUtils.hasText(jwt)) {
+                JwtPrincipal principal = jwtAuthenticationCache.authenticate(jwt);
+                if (principal != null) {
+                    // 创建认证对象
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                // 构建用户权限列表
-                List<SimpleGrantedAuthority> authorities = new ArrayList<>();
-                if (StringUtils.hasText(roles)) {
-                    for (String role : roles.split(",")) {
-                        authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
-                    }
+                    // 设置认证信息到Spring Security上下文
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
                 }
-
-                // 创建认证对象
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userId, null, authorities);
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                // 设置认证信息到Spring Security上下文
-                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         } catch (Exception ex) {
             logger.error("无法设置用户认证: " + ex.getMessage());
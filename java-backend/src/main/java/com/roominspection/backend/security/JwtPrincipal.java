@@ -0,0 +1,77 @@
+package com.roominspection.backend.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.Serializable;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JWT认证主体（不可变）
+ * Token验证一次后生成，权限列表在构造时一次性建好，可在请求间安全共享
+ */
+public final class JwtPrincipal implements Principal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String userId;
+    private final String username;
+    private final String roles;
+    private final List<GrantedAuthority> authorities;
+    private final long expiresAt;
+
+    public JwtPrincipal(String userId, String username, String roles, long expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.roles = roles;
+        this.expiresAt = expiresAt;
+
+        // 构建用户权限列表
+        List<GrantedAuthority> list = new ArrayList<>();
+        if (roles != null && !roles.trim().isEmpty()) {
+            for (String role : roles.split(",")) {
+                list.add(new SimpleGrantedAuthority("ROLE_" + role.trim()));
+            }
+        }
+        this.authorities = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 返回用户ID，与之前以用户ID作为认证主体时的行为保持一致
+     */
+    @Override
+    public String getName() {
+        return userId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getRoles() {
+        return roles;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * Token过期时间（毫秒时间戳）
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "JwtPrincipal{userId='" + userId + "', username='" + username + "', roles='" + roles + "'}";
+    }
+}
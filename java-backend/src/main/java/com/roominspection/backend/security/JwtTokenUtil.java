@@ -27,12 +27,45 @@ public class JwtTokenUtil {
     @Value("${jwt.refresh-expiration}")
     private Long refreshExpiration;
 
+    /**
+     * 签名密钥与解析器（线程安全，只构建一次）
+     */
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+
     /**
      * 生成密钥
      */
     private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        SecretKey key = signingKey;
+        if (key == null) {
+            byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+            key = Keys.hmacShaKeyFor(keyBytes);
+            signingKey = key;
+        }
+        return key;
+    }
+
+    private JwtParser getParser() {
+        JwtParser current = parser;
+        if (current == null) {
+            current = Jwts.parserBuilder()
+                    .setSigningKey(getSigningKey())
+                    .build();
+            parser = current;
+        }
+        return current;
+    }
+
+    /**
+     * 验证签名与过期时间并返回全部声明（一次解析）
+     *
+     * @param token Token
+     * @return 声明
+     * @throws JwtException Token无效或已过期
+     */
+    public Claims parseClaims(String token) {
+        return getParser().parseClaimsJws(token).getBody();
     }
 
     /**
@@ -75,11 +108,7 @@ public class JwtTokenUtil {
      * 解析Token获取所有声明
      */
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parseClaims(token);
     }
 
     /**
@@ -3,6 +3,8 @@ package com.roominspection.backend.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.roominspection.backend.entity.AlarmRecord;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -136,4 +138,18 @@ public interface AlarmRecordService extends IService<AlarmRecord> {
      * @return 关联结果
      */
     boolean linkWorkOrder(String alarmId, String workOrderId);
+
+    /**
+     * 流式导出告警记录
+     *
+     * @param roomId 机房ID
+     * @param level 级别
+     * @param status 状态
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param format 导出格式（xlsx/csv/csv.gz）
+     * @param response HTTP响应
+     */
+    void exportAlarms(String roomId, String level, String status, LocalDateTime startTime, LocalDateTime endTime,
+                      String format, HttpServletResponse response) throws IOException;
 }
@@ -2,9 +2,11 @@ package com.roominspection.backend.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.roominspection.backend.entity.AlertRule;
+import com.roominspection.backend.entity.Device;
 import com.roominspection.backend.entity.DeviceMetric;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 告警规则服务接口
@@ -19,6 +21,15 @@ public interface AlertRuleService extends IService<AlertRule> {
      */
     List<AlertRule> checkAlert(DeviceMetric metric);
 
+    /**
+     * 批量检查一台设备的指标是否触发告警（采集入口调用）
+     *
+     * @param device  设备
+     * @param metrics 本次采集的指标
+     * @return 触发次数
+     */
+    int checkAlerts(Device device, List<DeviceMetric> metrics);
+
     /**
      * 检查设备所有指标是否触发告警
      *
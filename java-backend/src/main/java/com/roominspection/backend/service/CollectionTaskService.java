@@ -3,6 +3,7 @@ package com.roominspection.backend.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.roominspection.backend.entity.CollectorNode;
 import com.roominspection.backend.entity.CollectionTask;
+import com.roominspection.backend.entity.DeviceMetric;
 
 import java.util.List;
 import java.util.Map;
@@ -110,4 +111,26 @@ public interface CollectionTaskService {
      * @return 删除是否成功
      */
     boolean deleteScheduledTask(Long taskId);
+
+    /**
+     * 采集节点领取（续约）分片租约
+     * @param nodeId 节点ID
+     * @return 租约信息（纪元、过期时间、负责的设备ID），节点不在线时返回null
+     */
+    Map<String, Object> leaseShard(String nodeId);
+
+    /**
+     * 采集节点批量回传采集结果
+     * @param nodeId 节点ID
+     * @param epoch 节点持有的分配纪元
+     * @param metrics 指标列表
+     * @return 处理结果（接收数、拒收数、是否需要重新领取租约）
+     */
+    Map<String, Object> reportResults(String nodeId, Long epoch, List<DeviceMetric> metrics);
+
+    /**
+     * 获取当前分片分配概况
+     * @return 分配概况
+     */
+    Map<String, Object> getShardAssignment();
 }
@@ -67,4 +67,38 @@ public interface ConcurrentMonitorService {
      * @return 指标列表
      */
     List<DeviceMetric> collectSingleDevice(Device device);
+
+    /**
+     * 接收采集节点回传的设备指标（走与本地采集相同的告警、推送与落库流程）
+     *
+     * @param device  设备
+     * @param metrics 指标列表
+     * @return 监控任务记录
+     */
+    MonitorTask ingestMetrics(Device device, List<DeviceMetric> metrics);
+
+    /**
+     * 采集模式压测对比（只执行设备I/O，不做后续处理）
+     *
+     * @param mode        采集模式：pooled-线程通道，async-非阻塞
+     * @param deviceLimit 参与压测的设备数上限
+     * @return 吞吐、延迟分位、线程与在途峰值
+     */
+    Map<String, Object> benchmarkCollection(String mode, int deviceLimit);
+
+    /**
+     * 获取设备熔断状态
+     *
+     * @param trippedOnly 是否只返回熔断中（打开/半开）的设备
+     * @return 设备熔断状态列表（状态、健康分、连续失败次数、下次探测时间等）
+     */
+    List<Map<String, Object>> getCircuitBreakerStates(boolean trippedOnly);
+
+    /**
+     * 复位设备熔断器
+     *
+     * @param deviceId 设备ID
+     * @return 设备此前是否有熔断状态
+     */
+    boolean resetCircuitBreaker(String deviceId);
 }
@@ -5,6 +5,9 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.roominspection.backend.entity.Device;
 import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -38,13 +41,14 @@ public interface DeviceAssetService extends IService<Device> {
     Map<String, Object> importDevices(MultipartFile file, Long operatorId, String operatorName);
 
     /**
-     * 导出设备
+     * 流式导出设备
      *
      * @param deviceType 设备类型
      * @param roomId     机房ID
-     * @return 设备数据
+     * @param format     导出格式（xlsx/csv/csv.gz）
+     * @param response   HTTP响应
      */
-    List<Map<String, Object>> exportDevices(String deviceType, String roomId);
+    void exportDevices(String deviceType, String roomId, String format, HttpServletResponse response) throws IOException;
 
     /**
      * 获取设备统计信息
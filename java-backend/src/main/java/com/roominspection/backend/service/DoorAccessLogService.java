@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.roominspection.backend.entity.DoorAccessLog;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -69,4 +71,10 @@ public interface DoorAccessLogService extends IService<DoorAccessLog> {
      * 手动录入门禁记录
      */
     boolean manualAdd(DoorAccessLog doorAccessLog);
+
+    /**
+     * 流式导出门禁日志
+     */
+    void exportLogs(Long roomId, Long staffId, String direction, LocalDateTime startTime, LocalDateTime endTime,
+                    String format, HttpServletResponse response) throws IOException;
 }
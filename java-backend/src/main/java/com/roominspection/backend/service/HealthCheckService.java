@@ -3,6 +3,7 @@ package com.roominspection.backend.service;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roominspection.backend.collector.MetricRollupEngine;
 import com.roominspection.backend.entity.HealthCheck;
 import com.roominspection.backend.entity.ServiceInstance;
 import com.roominspection.backend.entity.SystemMetrics;
@@ -43,6 +44,9 @@ public class HealthCheckService extends ServiceImpl<HealthCheckMapper, HealthChe
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MetricRollupEngine metricRollupEngine;
+
     private static final String SERVICE_NAME = "room-inspection-backend";
     private static final String INSTANCE_ID = UUID.randomUUID().toString();
 
@@ -320,6 +324,14 @@ public class HealthCheckService extends ServiceImpl<HealthCheckMapper, HealthChe
 
             systemMetricsMapper.insert(metrics);
 
+            // 记录降采样汇总，供趋势查询使用
+            metricRollupEngine.record(MetricRollupEngine.systemSeries(SERVICE_NAME, "CPU_USAGE"),
+                    metrics.getMetricsTime(), metrics.getCpuUsage());
+            metricRollupEngine.record(MetricRollupEngine.systemSeries(SERVICE_NAME, "MEMORY_USAGE"),
+                    metrics.getMetricsTime(), metrics.getMemoryUsage());
+            metricRollupEngine.record(MetricRollupEngine.systemSeries(SERVICE_NAME, "JVM_HEAP_USAGE"),
+                    metrics.getMetricsTime(), metrics.getJvmHeapUsage());
+
         } catch (Exception e) {
             log.error("收集系统指标失败", e);
         }
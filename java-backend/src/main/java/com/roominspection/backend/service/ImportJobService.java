@@ -0,0 +1,390 @@
+package com.roominspection.backend.service;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.context.AnalysisContext;
+import com.alibaba.excel.event.AnalysisEventListener;
+import com.alibaba.excel.exception.ExcelAnalysisStopException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * 批量导入任务服务
+ * <p>
+ * 上传文件先落到临时目录，接口立即返回任务ID，由后台线程流式解析：
+ * EasyExcel基于POI的SAX事件模型逐行回调，不把整个工作簿读进内存；行数据按块交给导入处理器，
+ * 处理器用预加载的字典校验并批量写入，每块单独提交事务。某块因数据错误（违反约束、字段超长等）
+ * 写入失败时对半拆分重试，定位到具体失败行，其余行照常提交；数据库连接失败、超时等与数据无关的错误
+ * 拆分也无济于事，直接中止任务，已提交的块保留。进度、错误明细通过任务查询接口获取。
+ */
+@Slf4j
+@Service
+public class ImportJobService {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private static final int MAX_ERRORS = 1000;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${file.upload-path:/tmp/uploads}/import")
+    private String tempDir;
+
+    @Value("${import-job.threads:2}")
+    private int threads;
+
+    @Value("${import-job.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${import-job.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${import-job.retain-hours:24}")
+    private int retainHours;
+
+    private final ConcurrentHashMap<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 导入处理器：校验并写入一块数据
+     */
+    public interface ChunkProcessor<T> {
+
+        /**
+         * 处理一块数据（在独立事务中执行，抛出异常则本块回滚）
+         *
+         * @param rows 行数据
+         * @return 处理结果
+         */
+        ChunkResult process(List<ImportRow<T>> rows);
+    }
+
+    /**
+     * 导入准备：在解析前预加载字典，返回本次导入使用的处理器
+     */
+    public interface ImportPreparer<T> {
+
+        ChunkProcessor<T> prepare(ImportJob job);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(tempDir));
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "import-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (ImportJob job : jobs.values()) {
+            job.cancelled = true;
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * 提交导入任务
+     *
+     * @param type     导入类型（DEVICE/SHIFT_SCHEDULE）
+     * @param file     上传文件
+     * @param operator 操作人
+     * @param rowType  行数据类型
+     * @param preparer 导入准备
+     * @return 导入任务
+     */
+    public <T> ImportJob submit(String type, MultipartFile file, String operator,
+                                Class<T> rowType, ImportPreparer<T> preparer) throws IOException {
+        ImportJob job = new ImportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setFileName(file.getOriginalFilename());
+        job.setOperator(operator);
+        job.setStatus(PENDING);
+        job.setCreateTime(LocalDateTime.now());
+
+        Path path = Paths.get(tempDir, job.getJobId());
+        file.transferTo(path.toFile());
+        jobs.put(job.getJobId(), job);
+
+        try {
+            executor.execute(() -> run(job, path, rowType, preparer));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            Files.deleteIfExists(path);
+            throw new IllegalStateException("导入任务过多，请稍后重试");
+        }
+        log.info("导入任务已提交: jobId={}, type={}, file={}", job.getJobId(), type, job.getFileName());
+        return job;
+    }
+
+    /**
+     * 查询导入任务
+     */
+    public ImportJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 查询导入任务列表（按创建时间倒序）
+     *
+     * @param type 导入类型（可选）
+     */
+    public List<ImportJob> listJobs(String type) {
+        return jobs.values().stream()
+                .filter(job -> type == null || type.equals(job.getType()))
+                .sorted(Comparator.comparing(ImportJob::getCreateTime).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 取消导入任务（已提交的块不回滚）
+     */
+    public boolean cancel(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null || COMPLETED.equals(job.getStatus()) || FAILED.equals(job.getStatus())) {
+            return false;
+        }
+        job.cancelled = true;
+        return true;
+    }
+
+    /**
+     * 清理过期的导入任务记录
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void cleanupJobs() {
+        LocalDateTime expireTime = LocalDateTime.now().minusHours(retainHours);
+        jobs.values().removeIf(job -> job.getFinishTime() != null && job.getFinishTime().isBefore(expireTime));
+    }
+
+    private <T> void run(ImportJob job, Path path, Class<T> rowType, ImportPreparer<T> preparer) {
+        job.setStatus(RUNNING);
+        job.setStartTime(LocalDateTime.now());
+        try (InputStream input = Files.newInputStream(path)) {
+            ChunkProcessor<T> processor = preparer.prepare(job);
+            EasyExcel.read(input, rowType, new ChunkListener<>(job, processor)).sheet().doRead();
+            job.setStatus(job.cancelled ? CANCELLED : COMPLETED);
+        } catch (ExcelAnalysisStopException e) {
+            job.setStatus(CANCELLED);
+        } catch (Exception e) {
+            log.error("导入任务失败: jobId={}", job.getJobId(), e);
+            job.setStatus(FAILED);
+            if (job.getMessage() == null) {
+                job.setMessage(e.getMessage());
+            }
+        } finally {
+            job.setFinishTime(LocalDateTime.now());
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除导入临时文件失败: {}", path);
+            }
+            log.info("导入任务结束: jobId={}, status={}, total={}, success={}, fail={}",
+                    job.getJobId(), job.getStatus(), job.getProcessedRows(), job.getSuccessCount(), job.getFailCount());
+        }
+    }
+
+    /**
+     * 提交一块数据；数据错误时对半拆分重试，直到定位到单行，其他错误中止任务
+     */
+    private <T> void commitChunk(ImportJob job, ChunkProcessor<T> processor, List<ImportRow<T>> rows) {
+        ChunkResult result;
+        try {
+            result = transactionTemplate.execute(status -> processor.process(rows));
+        } catch (Exception e) {
+            if (!isDataError(e)) {
+                job.setMessage(String.format("第%d行起的数据写入失败，导入中止: %s",
+                        rows.get(0).getRowNumber(), e.getMessage()));
+                throw new ImportAbortedException(job.getMessage(), e);
+            }
+            if (rows.size() == 1) {
+                job.addError(rows.get(0).getRowNumber(), e.getMessage());
+                job.failCount++;
+                return;
+            }
+            int middle = rows.size() / 2;
+            commitChunk(job, processor, rows.subList(0, middle));
+            commitChunk(job, processor, rows.subList(middle, rows.size()));
+            return;
+        }
+        if (result != null) {
+            job.successCount += result.getSuccessCount();
+            job.failCount += result.getErrors().size();
+            for (Map.Entry<Integer, String> error : result.getErrors().entrySet()) {
+                job.addError(error.getKey(), error.getValue());
+            }
+        }
+    }
+
+    /**
+     * 是否为数据本身导致的错误（拆分后可定位到具体行）
+     * 数据库访问异常中只有违反完整性约束（唯一键、非空、字段超长等）算数据错误；
+     * 连接失败、超时、SQL错误和事务异常与具体行无关
+     */
+    private static boolean isDataError(Exception e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return true;
+        }
+        return !(e instanceof DataAccessException) && !(e instanceof TransactionException);
+    }
+
+    /**
+     * 与数据无关的写入失败，中止导入任务
+     */
+    private static class ImportAbortedException extends RuntimeException {
+
+        ImportAbortedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * 流式解析监听器：按块缓冲行数据
+     */
+    private final class ChunkListener<T> extends AnalysisEventListener<T> {
+        private final ImportJob job;
+        private final ChunkProcessor<T> processor;
+        private List<ImportRow<T>> buffer = new ArrayList<>(chunkSize);
+
+        ChunkListener(ImportJob job, ChunkProcessor<T> processor) {
+            this.job = job;
+            this.processor = processor;
+        }
+
+        @Override
+        public void invoke(T data, AnalysisContext context) {
+            if (job.cancelled) {
+                throw new ExcelAnalysisStopException("导入任务已取消");
+            }
+            if (job.getTotalRows() == 0) {
+                Integer total = context.readSheetHolder().getApproximateTotalRowNumber();
+                if (total != null) {
+                    // 扣除表头行
+                    job.setTotalRows(Math.max(0, total - 1));
+                }
+            }
+            buffer.add(new ImportRow<>(context.readRowHolder().getRowIndex() + 1, data));
+            if (buffer.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        @Override
+        public void doAfterAllAnalysed(AnalysisContext context) {
+            flush();
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            List<ImportRow<T>> rows = buffer;
+            buffer = new ArrayList<>(chunkSize);
+            commitChunk(job, processor, rows);
+            job.processedRows += rows.size();
+        }
+    }
+
+    /**
+     * 带行号的行数据
+     */
+    @Data
+    public static class ImportRow<T> {
+        /**
+         * Excel行号（从1开始，含表头）
+         */
+        private final int rowNumber;
+        private final T data;
+    }
+
+    /**
+     * 块处理结果
+     */
+    @Data
+    public static class ChunkResult {
+        private int successCount;
+        /**
+         * 行号 -> 错误原因
+         */
+        private Map<Integer, String> errors = new LinkedHashMap<>();
+
+        public void addError(int rowNumber, String error) {
+            errors.put(rowNumber, error);
+        }
+    }
+
+    /**
+     * 导入任务
+     */
+    @Data
+    public static class ImportJob {
+        private String jobId;
+        private String type;
+        private String fileName;
+        private String operator;
+        private volatile String status;
+        private String message;
+        /**
+         * 预估总行数（解析开始后可用）
+         */
+        private volatile int totalRows;
+        private volatile int processedRows;
+        private volatile int successCount;
+        private volatile int failCount;
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        /**
+         * 任务上下文（如导入批次号）
+         */
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private LocalDateTime createTime;
+        private volatile LocalDateTime startTime;
+        private volatile LocalDateTime finishTime;
+        private volatile boolean cancelled;
+
+        /**
+         * 进度百分比
+         */
+        public int getProgress() {
+            if (COMPLETED.equals(status)) {
+                return 100;
+            }
+            return totalRows > 0 ? Math.min(99, processedRows * 100 / totalRows) : 0;
+        }
+
+        void addError(int rowNumber, String error) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(String.format("第%d行: %s", rowNumber, error));
+            }
+        }
+    }
+}
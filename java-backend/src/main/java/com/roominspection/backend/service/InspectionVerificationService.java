@@ -2,8 +2,12 @@ package com.roominspection.backend.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.roominspection.backend.entity.DoorAccessLog;
 import com.roominspection.backend.entity.InspectionVerification;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * 巡检核验服务接口
  * 支持巡检完整性分析、质量评分、报告生成
@@ -42,4 +46,12 @@ public interface InspectionVerificationService extends IService<InspectionVerifi
      * 获取巡检核验统计
      */
     java.util.Map<String, Object> getStatistics(LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 用新到的门禁记录匹配进行中巡检的进入/离开
+     *
+     * @param logs 门禁记录（已入库）
+     * @return 匹配成功的进出记录数
+     */
+    int matchAccessLogs(List<DoorAccessLog> logs);
 }
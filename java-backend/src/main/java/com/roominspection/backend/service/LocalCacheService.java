@@ -2,21 +2,33 @@ package com.roominspection.backend.service;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roominspection.backend.collector.WriteAheadSpool;
 import com.roominspection.backend.entity.LocalCacheRecord;
 import com.roominspection.backend.mapper.LocalCacheRecordMapper;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 本地缓存服务（监控服务故障时的本地缓存与断点续传）
+ * <p>
+ * 故障期间的数据只追加到本地预写缓冲文件（不依赖此时很可能同样不可用的MySQL/Redis），
+ * 回放线程在下游恢复后按批次同步：同一批内每个Key只写最新值，Redis管道批量写入后再批量归档到数据库。
  */
 @Slf4j
 @Service
@@ -31,8 +43,51 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Value("${local-cache.spool.dir:${user.dir}/data/spool/local-cache}")
+    private String spoolDir;
+
+    @Value("${local-cache.spool.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${local-cache.spool.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    @Value("${local-cache.spool.replay-batch-size:1000}")
+    private int replayBatchSize;
+
+    @Value("${local-cache.spool.replay-rate:20000}")
+    private int replayRate;
+
+    @Value("${local-cache.spool.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${local-cache.spool.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
     private static final String CACHE_PREFIX = "local_cache:";
-    private static final int MAX_RETRY_COUNT = 5;
+    private static final long CACHE_TTL_DAYS = 7;
+
+    private WriteAheadSpool spool;
+
+    /**
+     * 打开本地缓冲并启动回放
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        spool = WriteAheadSpool.open("local-cache", Paths.get(spoolDir),
+                segmentSizeMb * 1024 * 1024, maxSizeMb * 1024 * 1024, maxAttempts);
+        spool.startReplay(this::replay, replayBatchSize, replayRate, flushIntervalMillis);
+    }
+
+    /**
+     * 停止回放并刷盘
+     */
+    @PreDestroy
+    public void destroy() {
+        if (spool != null) {
+            spool.close();
+        }
+    }
 
     /**
      * 缓存监控数据（监控服务故障时）
@@ -40,23 +95,18 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
     public void cacheMonitorData(String cacheType, String dataSourceType,
                                    Long dataSourceId, Object data) {
         try {
-            // 1. 保存到数据库
-            LocalCacheRecord record = new LocalCacheRecord();
-            record.setCacheType(cacheType);
-            record.setDataSourceType(dataSourceType);
-            record.setDataSourceId(dataSourceId);
-            record.setDataContent(objectMapper.writeValueAsString(data));
-            record.setDataTimestamp(System.currentTimeMillis());
-            record.setStatus("PENDING");
-            record.setSyncFailCount(0);
-            record.setCreateTime(LocalDateTime.now());
-            record.setUpdateTime(LocalDateTime.now());
-
-            localCacheRecordMapper.insert(record);
-
-            // 2. 保存到Redis（临时缓存）
-            String redisKey = CACHE_PREFIX + cacheType + ":" + dataSourceType + ":" + dataSourceId;
-            redisTemplate.opsForValue().set(redisKey, data, 7, TimeUnit.DAYS);
+            SpoolEntry entry = new SpoolEntry();
+            entry.setCacheType(cacheType);
+            entry.setDataSourceType(dataSourceType);
+            entry.setDataSourceId(dataSourceId);
+            entry.setDataTimestamp(System.currentTimeMillis());
+            entry.setDataContent(objectMapper.writeValueAsString(data));
+
+            if (!spool.append(objectMapper.writeValueAsBytes(entry))) {
+                log.warn("本地缓冲拒绝写入监控数据: type={}, source={}, id={}",
+                        cacheType, dataSourceType, dataSourceId);
+                return;
+            }
 
             log.debug("缓存监控数据成功: type={}, source={}, id={}",
                     cacheType, dataSourceType, dataSourceId);
@@ -66,66 +116,69 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
     }
 
     /**
-     * 同步缓存数据到Redis（服务恢复后）
+     * 回放一批缓冲数据：先管道写Redis（幂等），再批量归档到数据库，全部成功才推进游标
+     *
+     * @param payloads 缓冲记录
+     * @return 处理条数
      */
-    @Scheduled(fixedRate = 60000) // 每分钟执行一次
-    public void syncCachedData() {
-        try {
-            // 1. 查询待同步的记录
-            List<LocalCacheRecord> pendingRecords = localCacheRecordMapper.selectPendingSync(100);
-
-            if (pendingRecords.isEmpty()) {
-                return;
+    private int replay(List<byte[]> payloads) throws Exception {
+        List<LocalCacheRecord> records = new ArrayList<>(payloads.size());
+        Map<String, SpoolEntry> latest = new LinkedHashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (byte[] payload : payloads) {
+            SpoolEntry entry;
+            try {
+                entry = objectMapper.readValue(payload, SpoolEntry.class);
+            } catch (IOException e) {
+                log.error("本地缓冲记录解析失败，已跳过: error={}", e.getMessage());
+                continue;
             }
-
-            log.info("开始同步缓存数据，待同步记录数: {}", pendingRecords.size());
-
-            // 2. 逐条同步到Redis
-            for (LocalCacheRecord record : pendingRecords) {
-                try {
-                    syncToRedis(record);
-                } catch (Exception e) {
-                    log.error("同步单条缓存数据失败: id={}", record.getId(), e);
-                    // 更新失败次数
-                    record.setSyncFailCount(record.getSyncFailCount() + 1);
-                    record.setUpdateTime(LocalDateTime.now());
-                    localCacheRecordMapper.updateById(record);
-
-                    // 如果失败次数超过阈值，标记为同步失败
-                    if (record.getSyncFailCount() >= MAX_RETRY_COUNT) {
-                        record.setStatus("FAILED");
-                        localCacheRecordMapper.updateById(record);
-                    }
-                }
+            String redisKey = CACHE_PREFIX + entry.getCacheType() + ":"
+                    + entry.getDataSourceType() + ":" + entry.getDataSourceId();
+            SpoolEntry previous = latest.get(redisKey);
+            if (previous == null || previous.getDataTimestamp() <= entry.getDataTimestamp()) {
+                latest.put(redisKey, entry);
             }
 
-            log.info("缓存数据同步完成");
-        } catch (Exception e) {
-            log.error("同步缓存数据失败", e);
+            LocalCacheRecord record = new LocalCacheRecord();
+            record.setCacheType(entry.getCacheType());
+            record.setDataSourceType(entry.getDataSourceType());
+            record.setDataSourceId(entry.getDataSourceId());
+            record.setDataContent(entry.getDataContent());
+            record.setDataTimestamp(entry.getDataTimestamp());
+            record.setStatus("SYNCED");
+            record.setSyncFailCount(0);
+            record.setLastSyncTime(now);
+            record.setCreateTime(now);
+            record.setUpdateTime(now);
+            records.add(record);
         }
-    }
-
-    /**
-     * 同步单条记录到Redis
-     */
-    private void syncToRedis(LocalCacheRecord record) throws Exception {
-        // 解析数据内容
-        Object data = objectMapper.readValue(record.getDataContent(), Object.class);
 
-        // 生成Redis Key
-        String redisKey = CACHE_PREFIX + record.getCacheType() + ":"
-                + record.getDataSourceType() + ":" + record.getDataSourceId();
+        if (records.isEmpty()) {
+            return 0;
+        }
 
-        // 保存到Redis
-        redisTemplate.opsForValue().set(redisKey, data, 7, TimeUnit.DAYS);
+        Map<String, Object> values = new LinkedHashMap<>(latest.size());
+        for (Map.Entry<String, SpoolEntry> entry : latest.entrySet()) {
+            values.put(entry.getKey(), objectMapper.readValue(entry.getValue().getDataContent(), Object.class));
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (Map.Entry<String, Object> value : values.entrySet()) {
+                    ops.opsForValue().set(value.getKey(), value.getValue(), CACHE_TTL_DAYS, TimeUnit.DAYS);
+                }
+                return null;
+            }
+        });
 
-        // 更新记录状态
-        record.setStatus("SYNCED");
-        record.setLastSyncTime(LocalDateTime.now());
-        record.setUpdateTime(LocalDateTime.now());
-        localCacheRecordMapper.updateById(record);
+        localCacheRecordMapper.insertBatch(records);
 
-        log.debug("同步缓存数据成功: id={}, key={}", record.getId(), redisKey);
+        log.debug("本地缓冲回放完成: records={}, keys={}", records.size(), values.size());
+        return records.size();
     }
 
     /**
@@ -154,7 +207,7 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
             if (record != null && "SYNCED".equals(record.getStatus())) {
                 // 解析数据并缓存到Redis
                 data = objectMapper.readValue(record.getDataContent(), Object.class);
-                redisTemplate.opsForValue().set(redisKey, data, 7, TimeUnit.DAYS);
+                redisTemplate.opsForValue().set(redisKey, data, CACHE_TTL_DAYS, TimeUnit.DAYS);
                 return data;
             }
 
@@ -165,38 +218,6 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
         }
     }
 
-    /**
-     * 重试失败的同步记录
-     */
-    @Scheduled(cron = "0 */10 * * * ?") // 每10分钟执行一次
-    public void retryFailedSync() {
-        try {
-            // 查询失败次数未超过阈值的记录
-            List<LocalCacheRecord> failedRecords = localCacheRecordMapper.selectFailedSync(MAX_RETRY_COUNT);
-
-            if (failedRecords.isEmpty()) {
-                return;
-            }
-
-            log.info("开始重试失败的同步记录，数量: {}", failedRecords.size());
-
-            for (LocalCacheRecord record : failedRecords) {
-                try {
-                    // 重置状态为PENDING，重新同步
-                    record.setStatus("PENDING");
-                    record.setSyncFailCount(0);
-                    record.setUpdateTime(LocalDateTime.now());
-                    localCacheRecordMapper.updateById(record);
-                } catch (Exception e) {
-                    log.error("重置同步记录失败: id={}", record.getId(), e);
-                }
-            }
-
-        } catch (Exception e) {
-            log.error("重试失败的同步记录失败", e);
-        }
-    }
-
     /**
      * 清理过期的缓存记录
      */
@@ -217,26 +238,18 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
      * 获取待同步记录统计
      */
     public Map<String, Object> getCacheStats() {
-        try {
-            List<LocalCacheRecord> pendingRecords = localCacheRecordMapper.selectPendingSync(1000);
-            List<LocalCacheRecord> failedRecords = localCacheRecordMapper.selectFailedSync(MAX_RETRY_COUNT);
-
-            Map<String, Object> stats = new java.util.HashMap<>();
-            stats.put("pendingCount", pendingRecords.size());
-            stats.put("failedCount", failedRecords.size());
-
-            return stats;
-        } catch (Exception e) {
-            log.error("获取缓存统计失败", e);
-            return null;
-        }
+        Map<String, Object> stats = new java.util.HashMap<>();
+        stats.put("pendingCount", spool.getPendingRecords());
+        stats.put("failedCount", spool.getLostRecords());
+        stats.put("spool", spool.getStatistics());
+        return stats;
     }
 
     /**
-     * 手动触发同步
+     * 手动触发同步（清除回放退避，立即重试）
      */
     public void triggerSync() {
-        syncCachedData();
+        spool.triggerReplay();
     }
 
     /**
@@ -253,4 +266,16 @@ public class LocalCacheService extends ServiceImpl<LocalCacheRecordMapper, Local
             log.error("清除缓存失败", e);
         }
     }
+
+    /**
+     * 缓冲记录
+     */
+    @Data
+    public static class SpoolEntry {
+        private String cacheType;
+        private String dataSourceType;
+        private Long dataSourceId;
+        private long dataTimestamp;
+        private String dataContent;
+    }
 }
@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.roominspection.backend.entity.Permission;
 import com.roominspection.backend.mapper.PermissionMapper;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,6 +21,7 @@ public class PermissionService extends ServiceImpl<PermissionMapper, Permission>
     /**
      * 创建权限
      */
+    @CacheEvict(value = "permissionTree", allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean createPermission(Permission permission, String createdBy) {
         permission.setCreatedBy(createdBy);
@@ -28,6 +31,7 @@ public class PermissionService extends ServiceImpl<PermissionMapper, Permission>
     /**
      * 更新权限
      */
+    @CacheEvict(value = "permissionTree", allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean updatePermission(Permission permission, String updatedBy) {
         permission.setUpdatedBy(updatedBy);
@@ -37,6 +41,7 @@ public class PermissionService extends ServiceImpl<PermissionMapper, Permission>
     /**
      * 删除权限
      */
+    @CacheEvict(value = "permissionTree", allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean deletePermission(Long permissionId) {
         // 递归删除子权限
@@ -64,6 +69,7 @@ public class PermissionService extends ServiceImpl<PermissionMapper, Permission>
     /**
      * 获取权限树
      */
+    @Cacheable(value = "permissionTree", key = "'all'", sync = true)
     public List<Permission> getPermissionTree() {
         // 查询所有权限
         List<Permission> allPermissions = list(new LambdaQueryWrapper<Permission>()
@@ -1,20 +1,29 @@
 package com.roominspection.backend.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.roominspection.backend.dto.ShiftScheduleImportDTO;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DoorAccessPermission;
 import com.roominspection.backend.entity.Room;
 import com.roominspection.backend.entity.ShiftSchedule;
 import com.roominspection.backend.entity.Staff;
+import com.roominspection.backend.mapper.DeviceMapper;
 import com.roominspection.backend.mapper.RoomMapper;
 import com.roominspection.backend.mapper.ShiftScheduleMapper;
 import com.roominspection.backend.mapper.StaffMapper;
+import com.roominspection.backend.service.ImportJobService.ChunkProcessor;
+import com.roominspection.backend.service.ImportJobService.ChunkResult;
+import com.roominspection.backend.service.ImportJobService.ImportJob;
+import com.roominspection.backend.service.ImportJobService.ImportRow;
 import com.roominspection.backend.util.DingTalkSyncUtil;
-import com.roominspection.backend.util.ExcelImportUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDate;
@@ -34,8 +43,9 @@ public class ShiftScheduleService extends ServiceImpl<ShiftScheduleMapper, Shift
     private final ShiftScheduleMapper shiftScheduleMapper;
     private final StaffMapper staffMapper;
     private final RoomMapper roomMapper;
-    private final ExcelImportUtil excelImportUtil;
     private final DingTalkSyncUtil dingTalkSyncUtil;
+    private final DeviceMapper deviceMapper;
+    private final ImportJobService importJobService;
 
     /**
      * 查询排班列表
@@ -187,90 +197,217 @@ public class ShiftScheduleService extends ServiceImpl<ShiftScheduleMapper, Shift
 
     /**
      * Excel导入排班
+     * 提交为后台导入任务，按块校验与批量写入，进度通过导入任务接口查询
      *
      * @param file Excel文件
-     * @return 导入结果
+     * @return 导入任务信息
      */
-    @Transactional(rollbackFor = Exception.class)
     public Map<String, Object> importFromExcel(MultipartFile file) {
         Map<String, Object> result = new HashMap<>();
-        List<String> errors = new ArrayList<>();
-        int successCount = 0;
-        int failCount = 0;
 
         try {
             String importBatch = UUID.randomUUID().toString();
-            List<ShiftScheduleImportDTO> dataList = excelImportUtil.parseShiftScheduleExcel(file);
+            ImportJob job = importJobService.submit("SHIFT_SCHEDULE", file, null, ShiftScheduleImportDTO.class,
+                    importJob -> {
+                        importJob.getAttributes().put("importBatch", importBatch);
+                        return prepareScheduleImport(importBatch);
+                    });
 
-            for (ShiftScheduleImportDTO dto : dataList) {
-                try {
-                    // 查找值班人员
-                    Staff staff = staffMapper.selectOne(
-                            new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<Staff>()
-                                    .eq(Staff::getEmployeeId, dto.getStaffNo())
-                    );
-
-                    if (staff == null) {
-                        errors.add(String.format("值班人员工号%s不存在", dto.getStaffNo()));
-                        failCount++;
-                        continue;
-                    }
+            result.put("success", true);
+            result.put("jobId", job.getJobId());
+            result.put("status", job.getStatus());
+            result.put("importBatch", importBatch);
 
-                    // 查找机房
-                    Room room = roomMapper.selectOne(
-                            new com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper<Room>()
-                                    .eq(Room::getName, dto.getRoomName())
-                    );
+        } catch (Exception e) {
+            log.error("Excel导入失败", e);
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
 
-                    if (room == null) {
-                        errors.add(String.format("机房%s不存在", dto.getRoomName()));
-                        failCount++;
-                        continue;
-                    }
+        return result;
+    }
 
-                    // 创建排班记录
-                    ShiftSchedule schedule = new ShiftSchedule();
-                    schedule.setId(UUID.randomUUID().toString());
-                    schedule.setScheduleDate(dto.getScheduleDate());
-                    schedule.setShift(dto.getShift());
-                    schedule.setStaffId(staff.getId());
-                    schedule.setStaffName(staff.getName());
-                    schedule.setRoomId(room.getId());
-                    schedule.setRoomName(room.getName());
-                    schedule.setStatus("SCHEDULED");
-                    schedule.setDataSource(2); // Excel导入
-                    schedule.setImportBatch(importBatch);
-                    schedule.setSyncDingtalkStatus(0);
-                    schedule.setCreateTime(LocalDateTime.now());
-                    schedule.setUpdateTime(LocalDateTime.now());
+    /**
+     * 预加载值班人员、机房和门禁设备，返回分块导入处理器
+     */
+    private ChunkProcessor<ShiftScheduleImportDTO> prepareScheduleImport(String importBatch) {
+        Map<String, Staff> staffByNo = new HashMap<>();
+        for (Staff staff : staffMapper.selectList(new LambdaQueryWrapper<Staff>()
+                .select(Staff::getId, Staff::getName, Staff::getEmployeeId))) {
+            staffByNo.put(staff.getEmployeeId(), staff);
+        }
+        Map<String, Room> roomByName = new HashMap<>();
+        for (Room room : roomMapper.selectList(new LambdaQueryWrapper<Room>().select(Room::getId, Room::getName))) {
+            roomByName.put(room.getName(), room);
+        }
+        Map<String, Device> doorDeviceByRoom = new HashMap<>();
+        for (Device device : deviceMapper.selectList(new LambdaQueryWrapper<Device>()
+                .select(Device::getRoomId, Device::getAccessControlDeviceId, Device::getBrand)
+                .eq(Device::getType, "DOOR_ACCESS"))) {
+            doorDeviceByRoom.putIfAbsent(device.getRoomId(), device);
+        }
+        log.info("排班导入字典加载完成: staff={}, rooms={}, doorDevices={}",
+                staffByNo.size(), roomByName.size(), doorDeviceByRoom.size());
+
+        DoorAccessPermissionService doorAccessPermissionService =
+                SpringContextHolder.getBean(DoorAccessPermissionService.class);
+
+        return rows -> {
+            ChunkResult result = new ChunkResult();
+            List<ShiftSchedule> schedules = new ArrayList<>(rows.size());
+            List<DoorAccessPermission> permissions = new ArrayList<>(rows.size());
+            int skippedPermissions = 0;
+            LocalDateTime now = LocalDateTime.now();
+
+            for (ImportRow<ShiftScheduleImportDTO> row : rows) {
+                ShiftScheduleImportDTO dto = row.getData();
+                String error = validateImportRow(dto);
+                if (error != null) {
+                    result.addError(row.getRowNumber(), error);
+                    continue;
+                }
 
-                    shiftScheduleMapper.insert(schedule);
+                // 查找值班人员
+                Staff staff = staffByNo.get(dto.getStaffNo().trim());
+                if (staff == null) {
+                    result.addError(row.getRowNumber(), String.format("值班人员工号%s不存在", dto.getStaffNo()));
+                    continue;
+                }
 
-                    // 自动创建门禁权限
-                    createDoorAccessPermission(schedule);
+                // 查找机房
+                Room room = roomByName.get(dto.getRoomName().trim());
+                if (room == null) {
+                    result.addError(row.getRowNumber(), String.format("机房%s不存在", dto.getRoomName()));
+                    continue;
+                }
 
-                    successCount++;
+                // 创建排班记录
+                ShiftSchedule schedule = new ShiftSchedule();
+                schedule.setId(UUID.randomUUID().toString());
+                schedule.setScheduleDate(dto.getScheduleDate());
+                schedule.setShift(dto.getShift());
+                schedule.setStaffId(staff.getId());
+                schedule.setStaffName(staff.getName());
+                schedule.setRoomId(room.getId());
+                schedule.setRoomName(room.getName());
+                schedule.setStatus("SCHEDULED");
+                schedule.setDataSource(2); // Excel导入
+                schedule.setImportBatch(importBatch);
+                schedule.setSyncDingtalkStatus(0);
+                schedule.setCreateTime(now);
+                schedule.setUpdateTime(now);
+                schedules.add(schedule);
 
+                // 自动创建门禁权限（失败不影响排班导入）
+                Device doorDevice = doorDeviceByRoom.get(String.valueOf(schedule.getRoomId()));
+                if (doorDevice == null) {
+                    log.warn("机房{}未配置门禁设备", room.getName());
+                    continue;
+                }
+                try {
+                    DoorAccessPermission permission = buildDoorAccessPermission(schedule, staff, doorDevice, now);
+                    if (permission != null) {
+                        permissions.add(permission);
+                    } else {
+                        skippedPermissions++;
+                    }
                 } catch (Exception e) {
-                    errors.add(String.format("导入第%d条数据失败: %s", successCount + failCount + 1, e.getMessage()));
-                    failCount++;
+                    skippedPermissions++;
+                    log.warn("构建门禁权限失败: row={}, staffNo={}, error={}",
+                            row.getRowNumber(), staff.getEmployeeId(), e.getMessage());
                 }
             }
+            if (skippedPermissions > 0) {
+                log.warn("排班导入未创建门禁权限: batch={}, count={}（值班人员ID无法作为门禁人员ID）",
+                        importBatch, skippedPermissions);
+            }
 
-            result.put("success", true);
-            result.put("total", dataList.size());
-            result.put("successCount", successCount);
-            result.put("failCount", failCount);
-            result.put("errors", errors);
-            result.put("importBatch", importBatch);
+            if (!schedules.isEmpty()) {
+                saveBatch(schedules, schedules.size());
+            }
+            if (!permissions.isEmpty()) {
+                doorAccessPermissionService.saveBatch(permissions, permissions.size());
+                // 提交后再异步下发到门禁系统
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        for (DoorAccessPermission permission : permissions) {
+                            doorAccessPermissionService.syncPermissionToDoorSystem(permission.getId());
+                        }
+                    }
+                });
+            }
+            result.setSuccessCount(schedules.size());
+            return result;
+        };
+    }
 
-        } catch (Exception e) {
-            log.error("Excel导入失败", e);
-            result.put("success", false);
-            result.put("error", e.getMessage());
+    /**
+     * 导入行校验，返回错误原因（校验通过返回null）
+     */
+    private String validateImportRow(ShiftScheduleImportDTO data) {
+        if (data.getScheduleDate() == null) {
+            return "值班日期为空";
         }
+        if (!"DAY".equals(data.getShift()) && !"NIGHT".equals(data.getShift())) {
+            return "班次无效：" + data.getShift();
+        }
+        if (data.getStaffNo() == null || data.getStaffNo().trim().isEmpty()) {
+            return "值班人员工号为空";
+        }
+        if (data.getStaffName() == null || data.getStaffName().trim().isEmpty()) {
+            return "值班人员姓名为空";
+        }
+        if (data.getRoomName() == null || data.getRoomName().trim().isEmpty()) {
+            return "机房名称为空";
+        }
+        return null;
+    }
 
-        return result;
+    /**
+     * 构建值班门禁权限（与DoorAccessPermissionService.createPermission一致）
+     * 门禁权限的人员ID为数值，值班人员ID不是数值（如UUID）时无法创建，返回null
+     */
+    private DoorAccessPermission buildDoorAccessPermission(ShiftSchedule schedule, Staff staff,
+                                                           Device doorDevice, LocalDateTime now) {
+        Long staffId = parseStaffId(staff.getId());
+        if (staffId == null) {
+            return null;
+        }
+        DoorAccessPermission permission = new DoorAccessPermission();
+        permission.setStaffId(staffId);
+        permission.setStaffName(schedule.getStaffName());
+        permission.setStaffNo(staff.getEmployeeId());
+        permission.setRoomId(schedule.getRoomId());
+        permission.setRoomName(schedule.getRoomName());
+        permission.setDeviceId(doorDevice.getAccessControlDeviceId());
+        permission.setCardNo(staff.getEmployeeId()); // 使用工号作为卡号
+        permission.setPermissionType(1); // 值班权限
+        if ("DAY".equals(schedule.getShift())) {
+            permission.setEffectiveStartTime(schedule.getScheduleDate().atTime(8, 0));
+            permission.setEffectiveEndTime(schedule.getScheduleDate().atTime(17, 0));
+        } else {
+            // 夜班（跨天）
+            permission.setEffectiveStartTime(schedule.getScheduleDate().atTime(18, 0));
+            permission.setEffectiveEndTime(schedule.getScheduleDate().plusDays(1).atTime(7, 0));
+        }
+        permission.setStatus(0); // 未生效
+        permission.setSyncStatus(0); // 未下发
+        permission.setDoorSystemType(doorDevice.getBrand() != null && doorDevice.getBrand().contains("海康") ? 1 : 2);
+        permission.setCreateTime(now);
+        permission.setUpdateTime(now);
+        return permission;
+    }
+
+    private static Long parseStaffId(String staffId) {
+        if (staffId == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(staffId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
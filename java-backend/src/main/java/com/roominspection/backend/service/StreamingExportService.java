@@ -0,0 +1,344 @@
+package com.roominspection.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式导出服务
+ * <p>
+ * 做键集分页，每页查询完即写出、随即丢弃，不用OFFSET翻页，也不在内存中拼装完整结果集，
+ * 百万级数据的导出堆内存占用保持恒定。按时间范围导出的日志类数据以上一页最后一行的（时间, 主键）为游标
+ * （WHERE time > t OR (time = t AND id > i) ORDER BY time, id LIMIT n，配合联合索引），
+ * 台账类数据只按主键翻页（WHERE id > 上一页最后一个id ORDER BY id LIMIT n）。
+ * 每页是一次独立的短查询，不会在客户端下载期间长时间占用数据库连接。
+ * <p>
+ * xlsx使用SXSSF，只在内存中保留固定行数的窗口，其余行刷到压缩的临时文件；
+ * csv直接写入响应流，csv.gz在此基础上做gzip压缩；以 = + - @ 等开头的文本单元格加 ' 前缀并加引号，
+ * 防止在Excel中打开时被当作公式执行（CSV公式注入）。
+ */
+@Slf4j
+@Service
+public class StreamingExportService {
+
+    public static final String FORMAT_XLSX = "xlsx";
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_CSV_GZIP = "csv.gz";
+
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${export.page-size:2000}")
+    private int pageSize;
+
+    @Value("${export.row-window:500}")
+    private int rowWindow;
+
+    @Value("${export.sheet-max-rows:1000000}")
+    private int sheetMaxRows;
+
+    @Value("${export.max-rows:0}")
+    private long maxRows;
+
+    /**
+     * 键集分页查询
+     * <p>
+     * 按时间范围过滤的查询应按（时间, 主键）排序与翻页，并有对应的联合索引，
+     * 只按主键翻页时每页都可能扫描大量不在时间范围内的行。
+     *
+     * @param <T> 行类型
+     * @param <K> 键集类型（主键，或按多列翻页时的整行）
+     */
+    public interface KeysetQuery<T, K> {
+
+        /**
+         * 查询键集大于afterKey的下一页（须按键集升序）
+         *
+         * @param afterKey 上一页最后一行的键集，首页为null
+         * @param limit    每页行数
+         * @return 本页数据
+         */
+        List<T> fetch(K afterKey, int limit);
+    }
+
+    /**
+     * 导出列
+     */
+    public static final class ExportColumn<T> {
+        private final String title;
+        private final Function<T, Object> value;
+
+        private ExportColumn(String title, Function<T, Object> value) {
+            this.title = title;
+            this.value = value;
+        }
+
+        /**
+         * @param title 列标题
+         * @param value 取值
+         */
+        public static <T> ExportColumn<T> of(String title, Function<T, Object> value) {
+            return new ExportColumn<>(title, value);
+        }
+    }
+
+    /**
+     * 流式导出到HTTP响应
+     *
+     * @param response HTTP响应
+     * @param fileName 文件名（不含扩展名）
+     * @param format   导出格式（xlsx/csv/csv.gz）
+     * @param columns  导出列
+     * @param keyOf    主键提取
+     * @param query    键集分页查询
+     * @return 导出行数
+     */
+    public <T, K> long export(HttpServletResponse response, String fileName, String format,
+                              List<ExportColumn<T>> columns, Function<T, K> keyOf,
+                              KeysetQuery<T, K> query) throws IOException {
+        String resolvedFormat = format == null ? FORMAT_XLSX : format.toLowerCase();
+        if (!FORMAT_XLSX.equals(resolvedFormat) && !FORMAT_CSV.equals(resolvedFormat)
+                && !FORMAT_CSV_GZIP.equals(resolvedFormat)) {
+            throw new IllegalArgumentException("不支持的导出格式: " + format);
+        }
+
+        long start = System.currentTimeMillis();
+        String[] titles = new String[columns.size()];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = columns.get(i).title;
+        }
+        prepareResponse(response, fileName + "." + resolvedFormat, resolvedFormat);
+
+        long total = 0;
+        try (RowSink sink = FORMAT_XLSX.equals(resolvedFormat)
+                ? new XlsxSink(response.getOutputStream(), titles)
+                : new CsvSink(response.getOutputStream(), titles, FORMAT_CSV_GZIP.equals(resolvedFormat))) {
+            Object[] values = new Object[columns.size()];
+            K afterKey = null;
+            while (true) {
+                int limit = maxRows > 0 ? (int) Math.min(pageSize, maxRows - total) : pageSize;
+                List<T> page = query.fetch(afterKey, limit);
+                for (T row : page) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = columns.get(i).value.apply(row);
+                    }
+                    sink.write(values);
+                }
+                total += page.size();
+                if (page.size() < limit || (maxRows > 0 && total >= maxRows)) {
+                    break;
+                }
+                afterKey = keyOf.apply(page.get(page.size() - 1));
+                sink.flushPage();
+            }
+        }
+        log.info("流式导出完成: file={}.{}, rows={}, 耗时{}ms",
+                fileName, resolvedFormat, total, System.currentTimeMillis() - start);
+        return total;
+    }
+
+    private void prepareResponse(HttpServletResponse response, String fileName, String format)
+            throws UnsupportedEncodingException {
+        if (FORMAT_XLSX.equals(format)) {
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        } else if (FORMAT_CSV_GZIP.equals(format)) {
+            response.setContentType("application/gzip");
+        } else {
+            response.setContentType("text/csv;charset=UTF-8");
+        }
+        String encoded = URLEncoder.encode(fileName, "UTF-8").replace("+", "%20");
+        response.setHeader("Content-Disposition", "attachment; filename*=UTF-8''" + encoded);
+        response.setHeader("Cache-Control", "no-store");
+    }
+
+    private static String format(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof LocalDateTime) {
+            return DATE_TIME_FORMATTER.format((LocalDateTime) value);
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "是" : "否";
+        }
+        return value.toString();
+    }
+
+    /**
+     * 行输出
+     */
+    private interface RowSink extends Closeable {
+
+        void write(Object[] values) throws IOException;
+
+        /**
+         * 一页写完后调用
+         */
+        void flushPage() throws IOException;
+    }
+
+    /**
+     * SXSSF输出：内存中只保留rowWindow行，超过单sheet行数上限时新建sheet
+     */
+    private final class XlsxSink implements RowSink {
+        private final OutputStream output;
+        private final String[] titles;
+        private final SXSSFWorkbook workbook;
+        private final CellStyle headerStyle;
+        private SXSSFSheet sheet;
+        private int rowIndex;
+        private int sheetCount;
+
+        XlsxSink(OutputStream output, String[] titles) {
+            this.output = output;
+            this.titles = titles;
+            this.workbook = new SXSSFWorkbook(rowWindow);
+            this.workbook.setCompressTempFiles(true);
+            Font font = workbook.createFont();
+            font.setBold(true);
+            this.headerStyle = workbook.createCellStyle();
+            this.headerStyle.setFont(font);
+            newSheet();
+        }
+
+        private void newSheet() {
+            sheetCount++;
+            sheet = workbook.createSheet("Sheet" + sheetCount);
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < titles.length; i++) {
+                Cell cell = header.createCell(i);
+                cell.setCellValue(titles[i]);
+                cell.setCellStyle(headerStyle);
+            }
+            rowIndex = 1;
+        }
+
+        @Override
+        public void write(Object[] values) {
+            if (rowIndex > sheetMaxRows) {
+                newSheet();
+            }
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                if (value == null) {
+                    continue;
+                }
+                Cell cell = row.createCell(i);
+                if (value instanceof Number) {
+                    cell.setCellValue(((Number) value).doubleValue());
+                } else {
+                    cell.setCellValue(format(value));
+                }
+            }
+        }
+
+        @Override
+        public void flushPage() {
+            // 超出窗口的行已由SXSSF自动刷到临时文件
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                workbook.write(output);
+                output.flush();
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+    }
+
+    /**
+     * CSV输出（UTF-8带BOM，Excel可直接打开），可选gzip压缩
+     */
+    private static final class CsvSink implements RowSink {
+        private final Writer writer;
+        private final StringBuilder line = new StringBuilder(256);
+
+        CsvSink(OutputStream output, String[] titles, boolean gzip) throws IOException {
+            OutputStream stream = gzip ? new GZIPOutputStream(output, 64 * 1024, true) : output;
+            this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write('\uFEFF');
+            write(titles);
+        }
+
+        @Override
+        public void write(Object[] values) throws IOException {
+            line.setLength(0);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                Object value = values[i];
+                // 数值本身不会被当作公式，负数保持原样
+                appendEscaped(format(value), !(value instanceof Number));
+            }
+            line.append("\r\n");
+            writer.append(line);
+        }
+
+        private void appendEscaped(String text, boolean guardFormula) {
+            boolean formula = guardFormula && isFormulaLike(text);
+            boolean quote = formula;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                line.append(text);
+                return;
+            }
+            line.append('"');
+            if (formula) {
+                line.append('\'');
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        /**
+         * 以Excel会当作公式解析的字符开头
+         */
+        private static boolean isFormulaLike(String text) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            char first = text.charAt(0);
+            return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+        }
+
+        @Override
+        public void flushPage() throws IOException {
+            // 每页推送给客户端，下载可以边查边传
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
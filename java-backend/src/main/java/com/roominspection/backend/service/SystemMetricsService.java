@@ -1,14 +1,21 @@
 package com.roominspection.backend.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.MetricRollupEngine;
+import com.roominspection.backend.entity.MetricRollup;
 import com.roominspection.backend.entity.SystemMetrics;
 import com.roominspection.backend.mapper.SystemMetricsMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -18,6 +25,9 @@ import java.util.stream.Collectors;
 @Service
 public class SystemMetricsService extends ServiceImpl<SystemMetricsMapper, SystemMetrics> {
 
+    @Autowired
+    private MetricRollupEngine metricRollupEngine;
+
     /**
      * 获取最近的监控指标
      */
@@ -173,34 +183,50 @@ public class SystemMetricsService extends ServiceImpl<SystemMetricsMapper, Syste
     }
 
     /**
-     * 获取CPU使用率趋势
+     * 获取CPU使用率趋势（优先读取降采样汇总，未覆盖的头尾用原始数据补齐）
      */
     public List<Map<String, Object>> getCpuTrend(String serviceName, Integer hours) {
-        List<SystemMetrics> metricsList = getRecentMetrics(serviceName, hours);
-
-        return metricsList.stream()
-                .map(m -> Map.of(
-                        "time", m.getMetricsTime().toString(),
-                        "cpuUsage", m.getCpuUsage()
+        return queryRollup(serviceName, "CPU_USAGE", hours, SystemMetrics::getCpuUsage).stream()
+                .map(r -> Map.<String, Object>of(
+                        "time", r.getBucketTime().toString(),
+                        "cpuUsage", r.getAvgValue()
                 ))
                 .collect(Collectors.toList());
     }
 
     /**
-     * 获取内存使用率趋势
+     * 获取内存使用率趋势（优先读取降采样汇总，未覆盖的头尾用原始数据补齐）
      */
     public List<Map<String, Object>> getMemoryTrend(String serviceName, Integer hours) {
-        List<SystemMetrics> metricsList = getRecentMetrics(serviceName, hours);
+        List<MetricRollup> memoryRollups = queryRollup(serviceName, "MEMORY_USAGE", hours, SystemMetrics::getMemoryUsage);
 
-        return metricsList.stream()
-                .map(m -> Map.of(
-                        "time", m.getMetricsTime().toString(),
-                        "memoryUsage", m.getMemoryUsage(),
-                        "jvmHeapUsage", m.getJvmHeapUsage()
+        Map<LocalDateTime, Double> heapByBucket = new HashMap<>();
+        for (MetricRollup heap : queryRollup(serviceName, "JVM_HEAP_USAGE", hours, SystemMetrics::getJvmHeapUsage)) {
+            heapByBucket.put(heap.getBucketTime(), heap.getAvgValue());
+        }
+        return memoryRollups.stream()
+                .map(r -> Map.<String, Object>of(
+                        "time", r.getBucketTime().toString(),
+                        "memoryUsage", r.getAvgValue(),
+                        "jvmHeapUsage", heapByBucket.getOrDefault(r.getBucketTime(), 0.0)
                 ))
                 .collect(Collectors.toList());
     }
 
+    private List<MetricRollup> queryRollup(String serviceName, String field, Integer hours,
+                                           Function<SystemMetrics, Double> valueOf) {
+        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime startTime = endTime.minusHours(hours != null ? hours : 24);
+        return metricRollupEngine.queryTrend(
+                Collections.singletonList(MetricRollupEngine.systemSeries(serviceName, field)),
+                startTime, endTime, 0,
+                (from, to) -> list(new LambdaQueryWrapper<SystemMetrics>()
+                        .eq(SystemMetrics::getServiceName, serviceName)
+                        .ge(SystemMetrics::getMetricsTime, from)
+                        .lt(SystemMetrics::getMetricsTime, to)),
+                SystemMetrics::getMetricsTime, valueOf);
+    }
+
     /**
      * 清理过期的监控指标
      */
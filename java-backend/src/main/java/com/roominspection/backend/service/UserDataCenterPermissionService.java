@@ -2,6 +2,8 @@ package com.roominspection.backend.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.roominspection.backend.entity.UserDataCenterPermission;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 
 import java.util.List;
 
@@ -40,6 +42,7 @@ public interface UserDataCenterPermissionService {
      * @param permission 权限信息
      * @return 分配是否成功
      */
+    @CacheEvict(value = "dataCenterPermission", allEntries = true)
     boolean grantPermission(UserDataCenterPermission permission);
 
     /**
@@ -47,6 +50,7 @@ public interface UserDataCenterPermissionService {
      * @param permission 权限信息
      * @return 更新是否成功
      */
+    @CacheEvict(value = "dataCenterPermission", allEntries = true)
     boolean updatePermission(UserDataCenterPermission permission);
 
     /**
@@ -54,6 +58,7 @@ public interface UserDataCenterPermissionService {
      * @param id 权限ID
      * @return 撤销是否成功
      */
+    @CacheEvict(value = "dataCenterPermission", allEntries = true)
     boolean revokePermission(Long id);
 
     /**
@@ -63,6 +68,7 @@ public interface UserDataCenterPermissionService {
      * @param permissions 权限列表
      * @return 分配是否成功
      */
+    @CacheEvict(value = "dataCenterPermission", allEntries = true)
     boolean batchGrantPermissions(List<Long> userIds, Long datacenterId, List<String> permissions);
 
     /**
@@ -72,6 +78,7 @@ public interface UserDataCenterPermissionService {
      * @param permission 权限名称
      * @return 是否有权限
      */
+    @Cacheable(value = "dataCenterPermission", key = "#userId + ':' + #datacenterId + ':' + #permission", sync = true)
     boolean hasPermission(Long userId, Long datacenterId, String permission);
 
     /**
@@ -103,5 +110,6 @@ public interface UserDataCenterPermissionService {
      * @param targetUserIds 目标用户ID列表
      * @return 复制是否成功
      */
+    @CacheEvict(value = "dataCenterPermission", allEntries = true)
     boolean copyPermissions(Long sourceUserId, List<Long> targetUserIds);
 }
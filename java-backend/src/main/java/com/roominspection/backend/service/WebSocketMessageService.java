@@ -1,5 +1,10 @@
 package com.roominspection.backend.service;
 
+import com.roominspection.backend.entity.AlarmRecord;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DeviceMetric;
+
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +19,13 @@ public interface WebSocketMessageService {
      */
     void pushAlarm(Object alarmData);
 
+    /**
+     * 按订阅推送告警（每条告警按机房、设备、级别过滤）
+     *
+     * @param alarms 告警列表
+     */
+    void pushAlarms(List<AlarmRecord> alarms);
+
     /**
      * 推送告警统计
      *
@@ -28,6 +40,14 @@ public interface WebSocketMessageService {
      */
     void pushDeviceMetrics(Object metricsData);
 
+    /**
+     * 按订阅推送单台设备本次采集的指标（按指标类型分帧）
+     *
+     * @param device  设备
+     * @param metrics 指标列表
+     */
+    void pushDeviceMetrics(Device device, List<DeviceMetric> metrics);
+
     /**
      * 推送采集任务状态
      *
@@ -2,17 +2,23 @@ package com.roominspection.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.MetricRollupEngine;
 import com.roominspection.backend.entity.AirConditionerData;
+import com.roominspection.backend.entity.MetricRollup;
 import com.roominspection.backend.mapper.AirConditionerDataMapper;
 import com.roominspection.backend.service.AirConditionerDataService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +28,15 @@ import java.util.stream.Collectors;
 public class AirConditionerDataServiceImpl extends ServiceImpl<AirConditionerDataMapper, AirConditionerData>
         implements AirConditionerDataService {
 
+    private static final String FIELD_SET_TEMPERATURE = "SET_TEMPERATURE";
+    private static final String FIELD_RETURN_TEMPERATURE = "RETURN_TEMPERATURE";
+    private static final String FIELD_SUPPLY_TEMPERATURE = "SUPPLY_TEMPERATURE";
+    private static final String FIELD_POWER = "POWER";
+    private static final DateTimeFormatter TREND_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Autowired
+    private MetricRollupEngine metricRollupEngine;
+
     @Override
     public AirConditionerData getLatestByAcId(Long acId) {
         LambdaQueryWrapper<AirConditionerData> wrapper = new LambdaQueryWrapper<>();
@@ -60,63 +75,101 @@ public class AirConditionerDataServiceImpl extends ServiceImpl<AirConditionerDat
         return list(wrapper);
     }
 
+    /**
+     * 保存并记录降采样汇总（覆盖IService.save，所有单条写入路径都会经过）
+     */
+    @Override
+    public boolean save(AirConditionerData entity) {
+        boolean saved = super.save(entity);
+        if (saved) {
+            recordRollup(entity);
+        }
+        return saved;
+    }
+
+    /**
+     * 批量保存并记录降采样汇总（覆盖ServiceImpl.saveBatch，所有批量写入路径都会经过）
+     */
+    @Override
+    public boolean saveBatch(Collection<AirConditionerData> entityList, int batchSize) {
+        boolean saved = super.saveBatch(entityList, batchSize);
+        if (saved) {
+            entityList.forEach(this::recordRollup);
+        }
+        return saved;
+    }
+
     @Override
     public List<Map<String, Object>> getTemperatureTrend(Long acId, LocalDateTime startTime, LocalDateTime endTime) {
-        List<AirConditionerData> dataList = listByAcId(acId, startTime, endTime);
+        LocalDateTime end = endTime != null ? endTime : LocalDateTime.now();
+        LocalDateTime start = startTime != null ? startTime : end.minusDays(1);
 
-        // 按时间分组统计（每小时一个点）
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH");
-        Map<String, List<AirConditionerData>> groupedData = dataList.stream()
-                .collect(Collectors.groupingBy(data -> data.getCollectTime().format(formatter)));
+        // 优先读取降采样汇总，按范围和点数预算自动选择档位，汇总未覆盖的头尾用原始数据补齐
+        List<MetricRollup> setTemps = queryRollup(acId, FIELD_SET_TEMPERATURE, start, end,
+                AirConditionerData::getSetTemperature);
+        Map<LocalDateTime, MetricRollup> returnTemps = toBucketMap(queryRollup(acId, FIELD_RETURN_TEMPERATURE, start, end,
+                AirConditionerData::getReturnTemperature));
+        Map<LocalDateTime, MetricRollup> supplyTemps = toBucketMap(queryRollup(acId, FIELD_SUPPLY_TEMPERATURE, start, end,
+                AirConditionerData::getSupplyTemperature));
 
         List<Map<String, Object>> trend = new ArrayList<>();
-        groupedData.forEach((timeKey, list) -> {
+        for (MetricRollup setTemp : setTemps) {
             Map<String, Object> point = new HashMap<>();
-            point.put("time", timeKey + ":00");
-
-            // 计算平均值
-            double avgSetTemp = list.stream().mapToDouble(AirConditionerData::getSetTemperature).average().orElse(0);
-            double avgReturnTemp = list.stream().mapToDouble(AirConditionerData::getReturnTemperature).average().orElse(0);
-            double avgSupplyTemp = list.stream().mapToDouble(AirConditionerData::getSupplyTemperature).average().orElse(0);
-
-            point.put("setTemperature", Math.round(avgSetTemp * 10) / 10.0);
-            point.put("returnTemperature", Math.round(avgReturnTemp * 10) / 10.0);
-            point.put("supplyTemperature", Math.round(avgSupplyTemp * 10) / 10.0);
-
+            point.put("time", setTemp.getBucketTime().format(TREND_TIME_FORMATTER));
+            point.put("setTemperature", round(setTemp.getAvgValue()));
+            point.put("returnTemperature", round(avgOf(returnTemps.get(setTemp.getBucketTime()))));
+            point.put("supplyTemperature", round(avgOf(supplyTemps.get(setTemp.getBucketTime()))));
             trend.add(point);
-        });
-
-        // 按时间排序
-        trend.sort((a, b) -> ((String) a.get("time")).compareTo((String) b.get("time")));
-
+        }
         return trend;
     }
 
     @Override
     public List<Map<String, Object>> getPowerTrend(Long acId, LocalDateTime startTime, LocalDateTime endTime) {
-        List<AirConditionerData> dataList = listByAcId(acId, startTime, endTime);
+        LocalDateTime end = endTime != null ? endTime : LocalDateTime.now();
+        LocalDateTime start = startTime != null ? startTime : end.minusDays(1);
 
-        // 按时间分组统计（每小时一个点）
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH");
-        Map<String, List<AirConditionerData>> groupedData = dataList.stream()
-                .collect(Collectors.groupingBy(data -> data.getCollectTime().format(formatter)));
+        // 优先读取降采样汇总，按范围和点数预算自动选择档位，汇总未覆盖的头尾用原始数据补齐
+        List<MetricRollup> powers = queryRollup(acId, FIELD_POWER, start, end, AirConditionerData::getCurrentPower);
 
         List<Map<String, Object>> trend = new ArrayList<>();
-        groupedData.forEach((timeKey, list) -> {
+        for (MetricRollup power : powers) {
             Map<String, Object> point = new HashMap<>();
-            point.put("time", timeKey + ":00");
+            point.put("time", power.getBucketTime().format(TREND_TIME_FORMATTER));
+            point.put("power", round(power.getAvgValue()));
+            trend.add(point);
+        }
+        return trend;
+    }
 
-            // 计算平均功率
-            double avgPower = list.stream().mapToDouble(AirConditionerData::getCurrentPower).average().orElse(0);
+    private List<MetricRollup> queryRollup(Long acId, String field, LocalDateTime start, LocalDateTime end,
+                                           Function<AirConditionerData, Double> valueOf) {
+        return metricRollupEngine.queryTrend(
+                Collections.singletonList(MetricRollupEngine.airConditionerSeries(acId, field)), start, end, 0,
+                (from, to) -> listByAcId(acId, from, to), AirConditionerData::getCollectTime, valueOf);
+    }
 
-            point.put("power", Math.round(avgPower * 10) / 10.0);
+    private Map<LocalDateTime, MetricRollup> toBucketMap(List<MetricRollup> rollups) {
+        return rollups.stream().collect(Collectors.toMap(MetricRollup::getBucketTime, r -> r, (x, y) -> x));
+    }
 
-            trend.add(point);
-        });
+    private double avgOf(MetricRollup rollup) {
+        return rollup != null && rollup.getAvgValue() != null ? rollup.getAvgValue() : 0;
+    }
 
-        // 按时间排序
-        trend.sort((a, b) -> ((String) a.get("time")).compareTo((String) b.get("time")));
+    private double round(Double value) {
+        return value != null ? Math.round(value * 10) / 10.0 : 0;
+    }
 
-        return trend;
+    private void recordRollup(AirConditionerData data) {
+        LocalDateTime time = data.getCollectTime();
+        metricRollupEngine.record(MetricRollupEngine.airConditionerSeries(data.getAcId(), FIELD_SET_TEMPERATURE),
+                time, data.getSetTemperature());
+        metricRollupEngine.record(MetricRollupEngine.airConditionerSeries(data.getAcId(), FIELD_RETURN_TEMPERATURE),
+                time, data.getReturnTemperature());
+        metricRollupEngine.record(MetricRollupEngine.airConditionerSeries(data.getAcId(), FIELD_SUPPLY_TEMPERATURE),
+                time, data.getSupplyTemperature());
+        metricRollupEngine.record(MetricRollupEngine.airConditionerSeries(data.getAcId(), FIELD_POWER),
+                time, data.getCurrentPower());
     }
 }
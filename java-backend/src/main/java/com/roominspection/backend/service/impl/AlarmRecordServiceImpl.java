@@ -2,16 +2,23 @@ package com.roominspection.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.AlarmCorrelator;
+import com.roominspection.backend.collector.AlarmNotificationDispatcher;
 import com.roominspection.backend.entity.AlarmRecord;
 import com.roominspection.backend.mapper.AlarmRecordMapper;
 import com.roominspection.backend.service.AlarmRecordService;
 import com.roominspection.backend.service.ApiConfigService;
+import com.roominspection.backend.service.StreamingExportService;
+import com.roominspection.backend.service.StreamingExportService.ExportColumn;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +35,15 @@ public class AlarmRecordServiceImpl extends ServiceImpl<AlarmRecordMapper, Alarm
     @Autowired
     private ApiConfigService apiConfigService;
 
+    @Autowired
+    private AlarmCorrelator alarmCorrelator;
+
+    @Autowired
+    private AlarmNotificationDispatcher alarmNotificationDispatcher;
+
+    @Autowired
+    private StreamingExportService streamingExportService;
+
     @Override
     public List<AlarmRecord> listByTimeRange(LocalDateTime startTime, LocalDateTime endTime) {
         return baseMapper.findByTimeRange(startTime, endTime);
@@ -44,20 +60,48 @@ public class AlarmRecordServiceImpl extends ServiceImpl<AlarmRecordMapper, Alarm
     }
 
     @Override
-    @Transactional
     public boolean createAlarm(AlarmRecord alarmRecord) {
         alarmRecord.setId(UUID.randomUUID().toString().replace("-", ""));
-        alarmRecord.setAlarmCode("ALM-" + System.currentTimeMillis());
-        alarmRecord.setStatus("ACTIVE");
-        alarmRecord.setAlarmTime(LocalDateTime.now());
-        alarmRecord.setCreatedAt(LocalDateTime.now());
-        alarmRecord.setUpdatedAt(LocalDateTime.now());
 
-        boolean result = save(alarmRecord);
+        // 告警关联：重复告警、抖动告警只累加发生次数，不再新建记录和通知
+        AlarmCorrelator.Decision decision = alarmCorrelator.correlate(alarmRecord);
+        if (decision.getOutcome() != AlarmCorrelator.Outcome.NEW) {
+            // 调用方拿到的是实际承载本次告警的记录ID
+            alarmRecord.setId(decision.getAlarmId());
+            log.debug("告警已合并: outcome={}, alarmId={}, fingerprint={}",
+                    decision.getOutcome(), decision.getAlarmId(), alarmRecord.getFingerprint());
+            if (decision.getOutcome() == AlarmCorrelator.Outcome.REOPENED) {
+                return reopenAlarm(alarmRecord);
+            }
+            return true;
+        }
 
-        // 发送告警通知
-        if (result) {
+        // 机房告警风暴：先创建机房父告警，本告警作为子告警
+        if (decision.getParentAlarm() != null) {
+            AlarmRecord parent = decision.getParentAlarm();
+            fillNewAlarm(parent);
+            parent.setOccurrenceCount(0);
+            if (save(parent)) {
+                sendAlarmNotification(parent);
+            }
+        }
+
+        fillNewAlarm(alarmRecord);
+        alarmRecord.setParentAlarmId(decision.getParentAlarmId());
+
+        boolean result;
+        try {
+            result = save(alarmRecord);
+        } catch (RuntimeException e) {
+            alarmCorrelator.discard(alarmRecord);
+            throw e;
+        }
+
+        // 发送告警通知（风暴期间的子告警由父告警统一通知）
+        if (result && decision.isNotify()) {
             sendAlarmNotification(alarmRecord);
+        } else if (!result) {
+            alarmCorrelator.discard(alarmRecord);
         }
 
         return result;
@@ -94,7 +138,11 @@ public class AlarmRecordServiceImpl extends ServiceImpl<AlarmRecordMapper, Alarm
         alarm.setHandledAt(LocalDateTime.now());
         alarm.setUpdatedAt(LocalDateTime.now());
 
-        return updateById(alarm);
+        boolean result = updateById(alarm);
+        if (result) {
+            alarmCorrelator.closed(alarm);
+        }
+        return result;
     }
 
     @Override
@@ -156,25 +204,8 @@ public class AlarmRecordServiceImpl extends ServiceImpl<AlarmRecordMapper, Alarm
     @Override
     public boolean sendAlarmNotification(AlarmRecord alarmRecord) {
         try {
-            // 发送钉钉通知
-            if (!Boolean.TRUE.equals(alarmRecord.getDingTalkSent())) {
-                sendDingTalkNotification(alarmRecord);
-                alarmRecord.setDingTalkSent(true);
-            }
-
-            // 发送短信通知
-            if (!Boolean.TRUE.equals(alarmRecord.getSmsSent()) && "CRITICAL".equals(alarmRecord.getLevel())) {
-                sendSMSNotification(alarmRecord);
-                alarmRecord.setSmsSent(true);
-            }
-
-            // 发送邮件通知
-            if (!Boolean.TRUE.equals(alarmRecord.getEmailSent())) {
-                sendEmailNotification(alarmRecord);
-                alarmRecord.setEmailSent(true);
-            }
-
-            updateById(alarmRecord);
+            // 按渠道入队，由分发器合并为批量通知并回写通知标记
+            alarmNotificationDispatcher.enqueue(alarmRecord);
             return true;
         } catch (Exception e) {
             log.error("发送告警通知失败: alarmId={}, error={}", alarmRecord.getId(), e.getMessage());
@@ -182,23 +213,6 @@ public class AlarmRecordServiceImpl extends ServiceImpl<AlarmRecordMapper, Alarm
         }
     }
 
-    private void sendDingTalkNotification(AlarmRecord alarm) {
-        // 调用钉钉API发送通知
-        // 实际实现需要集成钉钉SDK
-        log.info("发送钉钉告警通知: alarmCode={}, level={}", alarm.getAlarmCode(), alarm.getLevel());
-    }
-
-    private void sendSMSNotification(AlarmRecord alarm) {
-        // 调用短信API发送通知
-        // 实际实现需要集成短信SDK（如阿里云短信）
-        log.info("发送短信告警通知: alarmCode={}, level={}", alarm.getAlarmCode(), alarm.getLevel());
-    }
-
-    private void sendEmailNotification(AlarmRecord alarm) {
-        // 调用邮件API发送通知
-        log.info("发送邮件告警通知: alarmCode={}, level={}", alarm.getAlarmCode(), alarm.getLevel());
-    }
-
     @Override
     @Transactional
     public boolean linkWorkOrder(String alarmId, String workOrderId) {
@@ -212,4 +226,86 @@ public class AlarmRecordServiceImpl extends ServiceImpl<AlarmRecordMapper, Alarm
 
         return updateById(alarm);
     }
+
+    @Override
+    public void exportAlarms(String roomId, String level, String status, LocalDateTime startTime,
+                             LocalDateTime endTime, String format, HttpServletResponse response) throws IOException {
+        List<ExportColumn<AlarmRecord>> columns = Arrays.asList(
+                ExportColumn.of("告警编号", AlarmRecord::getAlarmCode),
+                ExportColumn.of("告警时间", AlarmRecord::getAlarmTime),
+                ExportColumn.of("级别", AlarmRecord::getLevel),
+                ExportColumn.of("类型", AlarmRecord::getType),
+                ExportColumn.of("设备", AlarmRecord::getDeviceName),
+                ExportColumn.of("机房ID", AlarmRecord::getRoomId),
+                ExportColumn.of("标题", AlarmRecord::getTitle),
+                ExportColumn.of("内容", AlarmRecord::getContent),
+                ExportColumn.of("告警值", AlarmRecord::getAlarmValue),
+                ExportColumn.of("阈值", AlarmRecord::getThreshold),
+                ExportColumn.of("状态", AlarmRecord::getStatus),
+                ExportColumn.of("发生次数", AlarmRecord::getOccurrenceCount),
+                ExportColumn.of("确认人", AlarmRecord::getAcknowledgedBy),
+                ExportColumn.of("确认时间", AlarmRecord::getAcknowledgedAt),
+                ExportColumn.of("处理人", AlarmRecord::getHandledBy),
+                ExportColumn.of("处理时间", AlarmRecord::getHandledAt),
+                ExportColumn.of("处理结果", AlarmRecord::getHandleResult));
+
+        // 按（告警时间, ID）翻页，走idx_alarm_time_id索引
+        streamingExportService.export(response, "告警记录", format, columns, row -> row, (after, limit) -> {
+            LambdaQueryWrapper<AlarmRecord> wrapper = new LambdaQueryWrapper<AlarmRecord>()
+                    .eq(roomId != null, AlarmRecord::getRoomId, roomId)
+                    .eq(level != null, AlarmRecord::getLevel, level)
+                    .eq(status != null, AlarmRecord::getStatus, status)
+                    .ge(startTime != null, AlarmRecord::getAlarmTime, startTime)
+                    .le(endTime != null, AlarmRecord::getAlarmTime, endTime);
+            if (after != null) {
+                wrapper.ge(AlarmRecord::getAlarmTime, after.getAlarmTime())
+                        .and(w -> w.gt(AlarmRecord::getAlarmTime, after.getAlarmTime())
+                                .or(o -> o.eq(AlarmRecord::getAlarmTime, after.getAlarmTime())
+                                        .gt(AlarmRecord::getId, after.getId())));
+            }
+            wrapper.orderByAsc(AlarmRecord::getAlarmTime, AlarmRecord::getId)
+                    .last("LIMIT " + limit);
+            return list(wrapper);
+        });
+    }
+
+    /**
+     * 重新打开抖动期间已被解决的告警并通知
+     */
+    private boolean reopenAlarm(AlarmRecord alarmRecord) {
+        AlarmRecord alarm = getById(alarmRecord.getId());
+        if (alarm == null) {
+            alarmCorrelator.closed(alarmRecord);
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        alarm.setStatus("ACTIVE");
+        alarm.setLastOccurredAt(now);
+        alarm.setUpdatedAt(now);
+        boolean result;
+        try {
+            result = updateById(alarm);
+        } catch (RuntimeException e) {
+            alarmCorrelator.closed(alarmRecord);
+            throw e;
+        }
+        if (result) {
+            log.info("抖动告警重新打开: alarmId={}, fingerprint={}", alarm.getId(), alarm.getFingerprint());
+            sendAlarmNotification(alarm);
+        } else {
+            alarmCorrelator.closed(alarmRecord);
+        }
+        return result;
+    }
+
+    private void fillNewAlarm(AlarmRecord alarm) {
+        LocalDateTime now = LocalDateTime.now();
+        alarm.setAlarmCode("ALM-" + System.currentTimeMillis() + "-" + alarm.getId().substring(0, 6));
+        alarm.setStatus("ACTIVE");
+        alarm.setAlarmTime(now);
+        alarm.setOccurrenceCount(1);
+        alarm.setLastOccurredAt(now);
+        alarm.setCreatedAt(now);
+        alarm.setUpdatedAt(now);
+    }
 }
@@ -2,6 +2,7 @@ package com.roominspection.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.AlertRuleEngine;
 import com.roominspection.backend.entity.AlertRule;
 import com.roominspection.backend.entity.Device;
 import com.roominspection.backend.entity.DeviceMetric;
@@ -11,6 +12,8 @@ import com.roominspection.backend.service.DeviceService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,35 +28,30 @@ public class AlertRuleServiceImpl extends ServiceImpl<AlertRuleMapper, AlertRule
     @Autowired(required = false)
     private DeviceService deviceService;
 
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
     @Override
     public List<AlertRule> checkAlert(DeviceMetric metric) {
         List<AlertRule> triggeredRules = new ArrayList<>();
 
         try {
-            // 获取启用的告警规则
-            LambdaQueryWrapper<AlertRule> wrapper = new LambdaQueryWrapper<>();
-            wrapper.eq(AlertRule::getStatus, 1);
-            wrapper.eq(AlertRule::getAlertType, metric.getMetricType());
-
-            // 按设备ID、设备类型、机房ID筛选
-            wrapper.and(w -> w.isNull(AlertRule::getDeviceId)
-                    .or().eq(AlertRule::getDeviceId, metric.getDeviceId()));
-
-            wrapper.and(w -> w.isNull(AlertRule::getDeviceType)
-                    .or().eq(AlertRule::getDeviceType, metric.getDeviceType()));
-
-            wrapper.orderByDesc(AlertRule::getPriority);
-
-            List<AlertRule> rules = list(wrapper);
-
-            // 检查每个规则是否触发
-            for (AlertRule rule : rules) {
-                if (isTriggered(rule, metric)) {
-                    triggeredRules.add(rule);
-                    // 发送告警通知
-                    sendAlert(rule, metric, null);
-                }
-            }
+            // 内存中编译好的规则索引评估，不访问数据库
+            String deviceType = resolveDeviceType(metric.getDeviceId());
+            alertRuleEngine.evaluate(metric.getDeviceId(), deviceType, Collections.singletonList(metric),
+                    new AlertRuleEngine.TriggerHandler() {
+                        @Override
+                        public void onTriggered(AlertRule rule, DeviceMetric m) {
+                            triggeredRules.add(rule);
+                            // 发送告警通知
+                            sendAlert(rule, m, null);
+                        }
+
+                        @Override
+                        public void onCleared(AlertRule rule, DeviceMetric m) {
+                            logRecovery(rule, m);
+                        }
+                    });
 
         } catch (Exception e) {
             log.error("检查告警失败", e);
@@ -62,6 +60,48 @@ public class AlertRuleServiceImpl extends ServiceImpl<AlertRuleMapper, AlertRule
         return triggeredRules;
     }
 
+    @Override
+    public int checkAlerts(Device device, List<DeviceMetric> metrics) {
+        try {
+            return alertRuleEngine.evaluate(device.getId(), device.getType(), metrics,
+                    new AlertRuleEngine.TriggerHandler() {
+                        @Override
+                        public void onTriggered(AlertRule rule, DeviceMetric metric) {
+                            sendAlert(rule, metric, device);
+                        }
+
+                        @Override
+                        public void onCleared(AlertRule rule, DeviceMetric metric) {
+                            logRecovery(rule, metric);
+                        }
+                    });
+        } catch (Exception e) {
+            log.error("批量检查告警失败: deviceId={}", device.getId(), e);
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean save(AlertRule entity) {
+        boolean saved = super.save(entity);
+        alertRuleEngine.invalidate();
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(AlertRule entity) {
+        boolean updated = super.updateById(entity);
+        alertRuleEngine.invalidate();
+        return updated;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        alertRuleEngine.invalidate();
+        return removed;
+    }
+
     @Override
     public List<Map<String, Object>> checkDeviceAlerts(String deviceId) {
         List<Map<String, Object>> alerts = new ArrayList<>();
@@ -100,6 +140,13 @@ public class AlertRuleServiceImpl extends ServiceImpl<AlertRuleMapper, AlertRule
         }
     }
 
+    private void logRecovery(AlertRule alertRule, DeviceMetric metric) {
+        log.info("告警恢复: rule={}, device={}, metric={}",
+                alertRule.getRuleName(),
+                metric.getDeviceName(),
+                metric.getMetricValue());
+    }
+
     @Override
     public List<AlertRule> getActiveAlertRules(String deviceId) {
         LambdaQueryWrapper<AlertRule> wrapper = new LambdaQueryWrapper<>();
@@ -132,37 +179,17 @@ public class AlertRuleServiceImpl extends ServiceImpl<AlertRuleMapper, AlertRule
     }
 
     /**
-     * 判断指标是否触发告警规则
+     * 解析设备类型：优先使用规则引擎记录的类型，未知时查询一次设备并记录
      */
-    private boolean isTriggered(AlertRule rule, DeviceMetric metric) {
-        if (metric.getMetricValue() == null) {
-            return false;
-        }
-
-        double value = metric.getMetricValue();
-        String condition = rule.getCondition();
-        double thresholdUpper = rule.getThresholdUpper() != null ? rule.getThresholdUpper() : 0;
-        double thresholdLower = rule.getThresholdLower() != null ? rule.getThresholdLower() : 0;
-
-        switch (condition) {
-            case "GT": // 大于
-                return value > thresholdUpper;
-            case "LT": // 小于
-                return value < thresholdUpper;
-            case "EQ": // 等于
-                return value == thresholdUpper;
-            case "GE": // 大于等于
-                return value >= thresholdUpper;
-            case "LE": // 小于等于
-                return value <= thresholdUpper;
-            case "NE": // 不等于
-                return value != thresholdUpper;
-            case "BETWEEN": // 在区间内
-                return value >= thresholdLower && value <= thresholdUpper;
-            case "NOT_BETWEEN": // 不在区间内
-                return value < thresholdLower || value > thresholdUpper;
-            default:
-                return false;
+    private String resolveDeviceType(String deviceId) {
+        String deviceType = alertRuleEngine.getKnownDeviceType(deviceId);
+        if (deviceType == null && deviceId != null && deviceService != null) {
+            Device device = deviceService.getById(deviceId);
+            if (device != null) {
+                deviceType = device.getType();
+                alertRuleEngine.rememberDeviceType(deviceId, deviceType);
+            }
         }
+        return deviceType;
     }
 }
@@ -8,11 +8,15 @@ import com.roominspection.backend.entity.ApiConfig;
 import com.roominspection.backend.mapper.ApiConfigMapper;
 import com.roominspection.backend.service.ApiConfigService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +52,7 @@ public class ApiConfigServiceImpl extends ServiceImpl<ApiConfigMapper, ApiConfig
     }
 
     @Override
+    @Cacheable(value = "apiConfig", key = "#configType + ':' + #configKey", sync = true)
     public String getConfigValue(String configType, String configKey) {
         LambdaQueryWrapper<ApiConfig> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(ApiConfig::getConfigType, configType)
@@ -81,6 +86,31 @@ public class ApiConfigServiceImpl extends ServiceImpl<ApiConfigMapper, ApiConfig
     }
 
     @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
+    public boolean save(ApiConfig entity) {
+        return super.save(entity);
+    }
+
+    @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
+    public boolean updateById(ApiConfig entity) {
+        return super.updateById(entity);
+    }
+
+    @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
+    public boolean removeById(Serializable id) {
+        return super.removeById(id);
+    }
+
+    @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
+    public boolean removeByIds(Collection<?> list) {
+        return super.removeByIds(list);
+    }
+
+    @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean updateConfigValue(Long id, String configValue, Long operatorId, String operatorName) {
         ApiConfig config = getById(id);
@@ -104,6 +134,7 @@ public class ApiConfigServiceImpl extends ServiceImpl<ApiConfigMapper, ApiConfig
     }
 
     @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean batchUpdateConfigs(List<ApiConfig> configs, Long operatorId, String operatorName) {
         for (ApiConfig config : configs) {
@@ -188,6 +219,7 @@ public class ApiConfigServiceImpl extends ServiceImpl<ApiConfigMapper, ApiConfig
     }
 
     @Override
+    @CacheEvict(value = "apiConfig", allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public Map<String, Object> importConfigs(List<ApiConfig> configs, Long operatorId, String operatorName) {
         Map<String, Object> result = new HashMap<>();
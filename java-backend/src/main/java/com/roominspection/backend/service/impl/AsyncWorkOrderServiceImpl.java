@@ -1,5 +1,6 @@
 package com.roominspection.backend.service.impl;
 
+import com.roominspection.backend.config.TwoLevelCacheManager;
 import com.roominspection.backend.entity.WorkOrder;
 import com.roominspection.backend.service.AsyncWorkOrderService;
 import com.roominspection.backend.service.WorkOrderService;
@@ -205,6 +206,9 @@ public class AsyncWorkOrderServiceImpl implements AsyncWorkOrderService {
         }
 
         statistics.put("cacheManager", cacheManager.getClass().getSimpleName());
+        if (cacheManager instanceof TwoLevelCacheManager) {
+            statistics.put("caches", ((TwoLevelCacheManager) cacheManager).getStatistics().get("caches"));
+        }
         statistics.put("timestamp", LocalDateTime.now());
 
         return statistics;
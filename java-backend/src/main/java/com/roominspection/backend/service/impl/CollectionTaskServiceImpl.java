@@ -0,0 +1,423 @@
+package com.roominspection.backend.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.roominspection.backend.collector.CollectorShardManager;
+import com.roominspection.backend.entity.CollectionTask;
+import com.roominspection.backend.entity.CollectorNode;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DeviceMetric;
+import com.roominspection.backend.mapper.CollectionTaskMapper;
+import com.roominspection.backend.mapper.CollectorNodeMapper;
+import com.roominspection.backend.mapper.DeviceMapper;
+import com.roominspection.backend.service.CollectionTaskService;
+import com.roominspection.backend.service.ConcurrentMonitorService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 分布式数据采集服务实现
+ * 采集节点按一致性哈希分片领取设备，心跳丢失后由分片管理器重新分配
+ */
+@Slf4j
+@Service
+public class CollectionTaskServiceImpl implements CollectionTaskService {
+
+    @Autowired
+    private CollectionTaskMapper collectionTaskMapper;
+
+    @Autowired
+    private CollectorNodeMapper collectorNodeMapper;
+
+    @Autowired
+    private DeviceMapper deviceMapper;
+
+    @Autowired
+    private ConcurrentMonitorService concurrentMonitorService;
+
+    @Autowired
+    private CollectorShardManager collectorShardManager;
+
+    private static final DateTimeFormatter TASK_NO_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /**
+     * 心跳超过该时间未更新的节点在库中标记为离线（毫秒）
+     */
+    private static final long NODE_OFFLINE_THRESHOLD = 60000L;
+
+    @Override
+    public Page<CollectionTask> listTasks(Integer page, Integer size, String status, String collectorId) {
+        LambdaQueryWrapper<CollectionTask> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(StringUtils.hasText(status), CollectionTask::getStatus, status)
+                .eq(StringUtils.hasText(collectorId), CollectionTask::getCollectorId, collectorId)
+                .orderByDesc(CollectionTask::getCreateTime);
+        return collectionTaskMapper.selectPage(new Page<>(page, size), wrapper);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean createTask(CollectionTask task) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!StringUtils.hasText(task.getTaskNo())) {
+            task.setTaskNo(generateTaskNo());
+        }
+        task.setStatus("PENDING");
+        task.setRetryCount(0);
+        if (task.getMaxRetryCount() == null) {
+            task.setMaxRetryCount(3);
+        }
+        task.setCreateTime(now);
+        task.setUpdateTime(now);
+        return collectionTaskMapper.insert(task) > 0;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean assignTask(Long taskId) {
+        CollectionTask task = collectionTaskMapper.selectById(taskId);
+        if (task == null) {
+            log.warn("采集任务不存在: taskId={}", taskId);
+            return false;
+        }
+
+        // 设备任务优先交给持有该设备分片的节点，其余按负载选择
+        String collectorId = null;
+        if (task.getDeviceId() != null) {
+            collectorId = collectorShardManager.getOwner(String.valueOf(task.getDeviceId()));
+        }
+        if (collectorId == null) {
+            collectorId = getBestCollector();
+        }
+        if (collectorId == null) {
+            log.warn("没有可用的采集节点: taskId={}", taskId);
+            return false;
+        }
+
+        CollectorNode node = findNode(collectorId);
+        task.setCollectorId(collectorId);
+        task.setCollectorName(node != null ? node.getNodeName() : null);
+        task.setStatus("ASSIGNED");
+        task.setUpdateTime(LocalDateTime.now());
+        return collectionTaskMapper.updateById(task) > 0;
+    }
+
+    @Override
+    public Map<String, Object> executeTask(Long taskId) {
+        Map<String, Object> result = new HashMap<>();
+        CollectionTask task = collectionTaskMapper.selectById(taskId);
+        if (task == null) {
+            result.put("success", false);
+            result.put("message", "采集任务不存在");
+            return result;
+        }
+
+        Device device = task.getDeviceId() != null ? deviceMapper.selectById(String.valueOf(task.getDeviceId())) : null;
+        if (device == null) {
+            result.put("success", false);
+            result.put("message", "采集设备不存在");
+            return result;
+        }
+
+        LocalDateTime startAt = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        task.setStatus("RUNNING");
+        task.setStartTime(startAt);
+        collectionTaskMapper.updateById(task);
+
+        List<DeviceMetric> metrics = concurrentMonitorService.collectSingleDevice(device);
+        boolean success = !metrics.isEmpty();
+
+        task.setEndTime(LocalDateTime.now());
+        task.setDuration(System.currentTimeMillis() - start);
+        task.setStatus(success ? "SUCCESS" : "FAILED");
+        task.setResultJson(success ? JSON.toJSONString(metrics) : null);
+        task.setErrorMessage(success ? null : "未采集到指标");
+        task.setUpdateTime(LocalDateTime.now());
+        collectionTaskMapper.updateById(task);
+
+        result.put("success", success);
+        result.put("taskId", taskId);
+        result.put("metricCount", metrics.size());
+        result.put("duration", task.getDuration());
+        return result;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean cancelTask(Long taskId) {
+        CollectionTask task = collectionTaskMapper.selectById(taskId);
+        if (task == null || "SUCCESS".equals(task.getStatus()) || "CANCELLED".equals(task.getStatus())) {
+            return false;
+        }
+        task.setStatus("CANCELLED");
+        task.setUpdateTime(LocalDateTime.now());
+        return collectionTaskMapper.updateById(task) > 0;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean retryTask(Long taskId) {
+        CollectionTask task = collectionTaskMapper.selectById(taskId);
+        if (task == null || !"FAILED".equals(task.getStatus())) {
+            return false;
+        }
+        int retryCount = task.getRetryCount() == null ? 0 : task.getRetryCount();
+        if (task.getMaxRetryCount() != null && retryCount >= task.getMaxRetryCount()) {
+            log.warn("采集任务已达最大重试次数: taskId={}, retryCount={}", taskId, retryCount);
+            return false;
+        }
+        task.setRetryCount(retryCount + 1);
+        task.setStatus("PENDING");
+        task.setErrorMessage(null);
+        task.setUpdateTime(LocalDateTime.now());
+        return collectionTaskMapper.updateById(task) > 0;
+    }
+
+    @Override
+    public Map<String, Object> getTaskStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", collectionTaskMapper.selectCount(null));
+        for (String status : Arrays.asList("PENDING", "ASSIGNED", "RUNNING", "SUCCESS", "FAILED", "CANCELLED")) {
+            stats.put(status.toLowerCase(), collectionTaskMapper.selectCount(
+                    new LambdaQueryWrapper<CollectionTask>().eq(CollectionTask::getStatus, status)));
+        }
+        stats.put("onlineNodes", collectorNodeMapper.selectCount(
+                new LambdaQueryWrapper<CollectorNode>().eq(CollectorNode::getStatus, "ONLINE")));
+        stats.put("shard", collectorShardManager.getStatistics());
+        return stats;
+    }
+
+    @Override
+    public List<CollectorNode> getCollectorNodes() {
+        return collectorNodeMapper.selectList(new LambdaQueryWrapper<CollectorNode>()
+                .orderByAsc(CollectorNode::getNodeCode));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean registerNode(CollectorNode node) {
+        if (!StringUtils.hasText(node.getNodeCode())) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        CollectorNode existing = findNode(node.getNodeCode());
+        node.setStatus("ONLINE");
+        node.setLastHeartbeatTime(now);
+        node.setUpdateTime(now);
+
+        boolean success;
+        if (existing != null) {
+            node.setId(existing.getId());
+            success = collectorNodeMapper.updateById(node) > 0;
+        } else {
+            node.setCurrentTasks(0);
+            node.setTotalCollections(0L);
+            node.setFailedCollections(0L);
+            node.setCreateTime(now);
+            success = collectorNodeMapper.insert(node) > 0;
+        }
+        if (success) {
+            collectorShardManager.onNodeHeartbeat(node);
+            log.info("采集节点注册: nodeCode={}, ipAddress={}", node.getNodeCode(), node.getIpAddress());
+        }
+        return success;
+    }
+
+    @Override
+    public boolean nodeHeartbeat(String nodeId) {
+        CollectorNode node = findNode(nodeId);
+        if (node == null) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        collectorNodeMapper.update(null, new LambdaUpdateWrapper<CollectorNode>()
+                .eq(CollectorNode::getId, node.getId())
+                .set(CollectorNode::getStatus, "ONLINE")
+                .set(CollectorNode::getLastHeartbeatTime, now)
+                .set(CollectorNode::getUpdateTime, now));
+        collectorShardManager.onNodeHeartbeat(node);
+        return true;
+    }
+
+    @Override
+    public boolean reportLoad(String nodeId, Map<String, Object> loadInfo) {
+        CollectorNode node = findNode(nodeId);
+        if (node == null) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        node.setCpuUsage(toDouble(loadInfo.get("cpuUsage")));
+        node.setMemoryUsage(toDouble(loadInfo.get("memoryUsage")));
+        node.setNetworkUsage(toDouble(loadInfo.get("networkUsage")));
+        node.setDiskUsage(toDouble(loadInfo.get("diskUsage")));
+        Double currentTasks = toDouble(loadInfo.get("currentTasks"));
+        if (currentTasks != null) {
+            node.setCurrentTasks(currentTasks.intValue());
+        }
+        node.setStatus("ONLINE");
+        node.setLastHeartbeatTime(now);
+        node.setUpdateTime(now);
+        collectorShardManager.onNodeHeartbeat(node);
+        return collectorNodeMapper.updateById(node) > 0;
+    }
+
+    @Override
+    public String getBestCollector() {
+        LocalDateTime since = LocalDateTime.now().minusNanos(NODE_OFFLINE_THRESHOLD * 1_000_000L);
+        List<CollectorNode> nodes = collectorNodeMapper.selectList(new LambdaQueryWrapper<CollectorNode>()
+                .eq(CollectorNode::getStatus, "ONLINE")
+                .ge(CollectorNode::getLastHeartbeatTime, since));
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        // 两次随机选择取负载较低者，避免所有任务同时涌向同一个“最空闲”节点
+        CollectorNode first = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+        CollectorNode second = nodes.get(ThreadLocalRandom.current().nextInt(nodes.size()));
+        return (loadOf(first) <= loadOf(second) ? first : second).getNodeCode();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean createScheduledTask(CollectionTask task) {
+        if (!StringUtils.hasText(task.getCronExpression()) && task.getFrequency() == null) {
+            return false;
+        }
+        task.setTaskType("SCHEDULED");
+        return createTask(task);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean deleteScheduledTask(Long taskId) {
+        return collectionTaskMapper.delete(new LambdaQueryWrapper<CollectionTask>()
+                .eq(CollectionTask::getId, taskId)
+                .eq(CollectionTask::getTaskType, "SCHEDULED")) > 0;
+    }
+
+    @Override
+    public Map<String, Object> leaseShard(String nodeId) {
+        CollectorShardManager.Lease lease = collectorShardManager.lease(nodeId);
+        if (lease == null) {
+            return null;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("nodeId", lease.getNodeCode());
+        result.put("epoch", lease.getEpoch());
+        result.put("leaseExpiresAt", lease.getExpiresAt());
+        result.put("deviceIds", lease.getDeviceIds());
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> reportResults(String nodeId, Long epoch, List<DeviceMetric> metrics) {
+        // 只接收当前仍分配给该节点的设备，迁走的设备以新归属节点（或本地兜底）的结果为准
+        Map<String, List<DeviceMetric>> byDevice = new LinkedHashMap<>();
+        int rejected = 0;
+        for (DeviceMetric metric : metrics) {
+            if (metric.getDeviceId() != null && collectorShardManager.isAssignedTo(metric.getDeviceId(), nodeId)) {
+                byDevice.computeIfAbsent(metric.getDeviceId(), k -> new ArrayList<>()).add(metric);
+            } else {
+                rejected++;
+            }
+        }
+
+        int accepted = 0;
+        int failed = 0;
+        if (!byDevice.isEmpty()) {
+            List<Device> devices = deviceMapper.selectBatchIds(byDevice.keySet());
+            for (Device device : devices) {
+                List<DeviceMetric> deviceMetrics = byDevice.get(device.getId());
+                if ("SUCCESS".equals(concurrentMonitorService.ingestMetrics(device, deviceMetrics).getTaskStatus())) {
+                    accepted += deviceMetrics.size();
+                } else {
+                    failed += deviceMetrics.size();
+                }
+            }
+        }
+
+        if (accepted > 0 || failed > 0) {
+            CollectorNode node = findNode(nodeId);
+            if (node != null) {
+                collectorNodeMapper.update(null, new LambdaUpdateWrapper<CollectorNode>()
+                        .eq(CollectorNode::getId, node.getId())
+                        .setSql("total_collections = IFNULL(total_collections, 0) + " + (accepted + failed))
+                        .setSql("failed_collections = IFNULL(failed_collections, 0) + " + failed));
+            }
+        }
+
+        long currentEpoch = collectorShardManager.getEpoch();
+        Map<String, Object> result = new HashMap<>();
+        result.put("accepted", accepted);
+        result.put("failed", failed);
+        result.put("rejected", rejected);
+        result.put("epoch", currentEpoch);
+        result.put("leaseRenewRequired", epoch == null || epoch != currentEpoch);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getShardAssignment() {
+        return collectorShardManager.getStatistics();
+    }
+
+    /**
+     * 定时将心跳超时的节点标记为离线
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void markOfflineNodes() {
+        LocalDateTime threshold = LocalDateTime.now().minusNanos(NODE_OFFLINE_THRESHOLD * 1_000_000L);
+        List<CollectorNode> stale = collectorNodeMapper.selectList(new LambdaQueryWrapper<CollectorNode>()
+                .eq(CollectorNode::getStatus, "ONLINE")
+                .lt(CollectorNode::getLastHeartbeatTime, threshold));
+        for (CollectorNode node : stale) {
+            collectorNodeMapper.update(null, new LambdaUpdateWrapper<CollectorNode>()
+                    .eq(CollectorNode::getId, node.getId())
+                    .set(CollectorNode::getStatus, "OFFLINE"));
+            collectorShardManager.onNodeRemoved(node.getNodeCode());
+            log.warn("采集节点心跳超时，标记为离线: nodeCode={}", node.getNodeCode());
+        }
+    }
+
+    private CollectorNode findNode(String nodeCode) {
+        return collectorNodeMapper.selectOne(new LambdaQueryWrapper<CollectorNode>()
+                .eq(CollectorNode::getNodeCode, nodeCode)
+                .last("LIMIT 1"));
+    }
+
+    private double loadOf(CollectorNode node) {
+        int max = node.getMaxConcurrentTasks() == null || node.getMaxConcurrentTasks() <= 0 ? 1 : node.getMaxConcurrentTasks();
+        int current = node.getCurrentTasks() == null ? 0 : node.getCurrentTasks();
+        double cpu = node.getCpuUsage() == null ? 0 : node.getCpuUsage() / 100.0;
+        return Math.max((double) current / max, cpu);
+    }
+
+    private Double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String && StringUtils.hasText((String) value)) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private String generateTaskNo() {
+        return "CT" + LocalDateTime.now().format(TASK_NO_FORMATTER)
+                + String.format("%04d", ThreadLocalRandom.current().nextInt(10000));
+    }
+}
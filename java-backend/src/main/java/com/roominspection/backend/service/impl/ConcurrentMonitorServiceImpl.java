@@ -1,17 +1,34 @@
 package com.roominspection.backend.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.roominspection.backend.collector.AdaptiveCollectionExecutor;
+import com.roominspection.backend.collector.AlertRuleEngine;
+import com.roominspection.backend.collector.CollectionScheduler;
+import com.roominspection.backend.collector.CollectorShardManager;
+import com.roominspection.backend.collector.DeviceCircuitBreaker;
+import com.roominspection.backend.collector.LatestMetricStore;
+import com.roominspection.backend.collector.MetricWriteBehindPipeline;
+import com.roominspection.backend.collector.ModbusCollectionEngine;
+import com.roominspection.backend.collector.SnmpDeviceCollector;
 import com.roominspection.backend.entity.Device;
 import com.roominspection.backend.entity.DeviceMetric;
+import com.roominspection.backend.entity.EnvironmentData;
 import com.roominspection.backend.entity.MonitorConfig;
 import com.roominspection.backend.entity.MonitorTask;
 import com.roominspection.backend.mapper.DeviceMapper;
+import com.roominspection.backend.protocol.DeviceProtocol;
+import com.roominspection.backend.protocol.DeviceProtocolFactory;
 import com.roominspection.backend.service.*;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
@@ -37,23 +54,64 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
     private MonitorConfigService monitorConfigService;
 
     @Autowired
-    private MonitorTaskService monitorTaskService;
+    private CollectionScheduler collectionScheduler;
 
     @Autowired
-    private DeviceMetricService deviceMetricService;
+    private MetricWriteBehindPipeline metricWriteBehindPipeline;
 
-    // 线程池配置
-    private static final int CORE_POOL_SIZE = 20;
-    private static final int MAX_POOL_SIZE = 50;
-    private static final int QUEUE_CAPACITY = 200;
-    private static final long KEEP_ALIVE_TIME = 60L;
+    @Autowired
+    private LatestMetricStore latestMetricStore;
+
+    @Autowired
+    private AlertRuleService alertRuleService;
+
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    @Autowired
+    private ModbusCollectionEngine modbusCollectionEngine;
+
+    @Autowired
+    private WebSocketMessageService webSocketMessageService;
+
+    @Autowired
+    private CollectorShardManager collectorShardManager;
+
+    @Autowired
+    private AdaptiveCollectionExecutor adaptiveCollectionExecutor;
+
+    @Autowired
+    private SnmpDeviceCollector snmpDeviceCollector;
+
+    @Autowired
+    private DeviceCircuitBreaker deviceCircuitBreaker;
+
+    @Autowired
+    private DeviceProtocolFactory deviceProtocolFactory;
+
+    // 调度刷新间隔（毫秒）及全量对齐频率（每N次刷新做一次全量对齐）
+    private static final long SCHEDULE_REFRESH_INTERVAL = 30000L;
+    private static final int FULL_RECONCILE_EVERY = 10;
+
+    // 采集模式：pooled-线程通道阻塞采集，async-SNMP设备非阻塞采集
+    private static final String MODE_POOLED = "pooled";
+    private static final String MODE_ASYNC = "async";
+    private static final Set<String> SNMP_DEVICE_TYPES = new HashSet<>(Arrays.asList(
+            "SERVER", "SWITCH", "ROUTER", "FIREWALL", "UPS", "PDU", "AIR_CONDITIONER"));
+
+    @Value("${monitor.collect.mode:pooled}")
+    private String collectMode;
 
-    // 采集线程池
-    private ThreadPoolExecutor collectionExecutor;
+    @Value("${monitor.collect.benchmark-max-devices:2000}")
+    private int benchmarkMaxDevices;
 
     // 是否启动定时任务
     private volatile boolean scheduledTasksStarted = false;
 
+    // 调度刷新计数及上次设备增量同步时间
+    private final AtomicLong scheduleRefreshCount = new AtomicLong(0);
+    private volatile LocalDateTime lastDeviceSyncTime = LocalDateTime.now();
+
     // 性能统计
     private final AtomicLong totalCollected = new AtomicLong(0);
     private final AtomicLong totalFailed = new AtomicLong(0);
@@ -63,53 +121,18 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
     // 当前运行任务数
     private final AtomicInteger runningTaskCount = new AtomicInteger(0);
 
-    /**
-     * 初始化线程池
-     */
-    private void initExecutor() {
-        if (collectionExecutor == null) {
-            synchronized (this) {
-                if (collectionExecutor == null) {
-                    collectionExecutor = new ThreadPoolExecutor(
-                            CORE_POOL_SIZE,
-                            MAX_POOL_SIZE,
-                            KEEP_ALIVE_TIME,
-                            TimeUnit.SECONDS,
-                            new LinkedBlockingQueue<>(QUEUE_CAPACITY),
-                            new ThreadFactory() {
-                                private final AtomicInteger threadNumber = new AtomicInteger(1);
-
-                                @Override
-                                public Thread newThread(Runnable r) {
-                                    Thread t = new Thread(r, "monitor-collect-" + threadNumber.getAndIncrement());
-                                    t.setDaemon(true);
-                                    return t;
-                                }
-                            },
-                            new ThreadPoolExecutor.CallerRunsPolicy()
-                    );
-                    log.info("监控采集线程池初始化完成: corePoolSize={}, maxPoolSize={}, queueCapacity={}",
-                            CORE_POOL_SIZE, MAX_POOL_SIZE, QUEUE_CAPACITY);
-                }
-            }
-        }
-    }
-
     /**
      * 并发采集指定设备的监控数据
+     * 并发度由自适应执行器按设备类型、机房配额与观测到的延迟控制
      */
     @Override
     public List<CompletableFuture<MonitorTask>> collectDeviceMetrics(List<Device> devices) {
-        initExecutor();
-
         log.info("开始并发采集设备指标: deviceCount={}", devices.size());
         runningTaskCount.addAndGet(devices.size());
 
-        List<CompletableFuture<MonitorTask>> futures = devices.stream()
-                .map(device -> CompletableFuture.supplyAsync(() -> collectDevice(device), collectionExecutor))
+        return devices.stream()
+                .map(device -> collectDevice(device, null))
                 .collect(Collectors.toList());
-
-        return futures;
     }
 
     /**
@@ -117,73 +140,88 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
      */
     @Override
     public List<DeviceMetric> collectSingleDevice(Device device) {
-        MonitorTask task = collectDevice(device);
+        // 指标为异步落库，直接返回本次采集结果而不是回查数据库
+        runningTaskCount.incrementAndGet();
+        List<DeviceMetric> collected = new ArrayList<>();
+        MonitorTask task = collectDevice(device, collected).join();
         if ("SUCCESS".equals(task.getTaskStatus())) {
-            return deviceMetricService.getLatestMetricsByDeviceId(device.getId());
+            return collected;
         }
         return Collections.emptyList();
     }
 
     /**
-     * 采集单个设备（核心方法）
+     * 采集单个设备（核心方法），并将采集到的指标追加到collected（可为null）
+     * 采集线程只做设备I/O，指标与任务记录交给落库管道异步批量写入
      */
-    private MonitorTask collectDevice(Device device) {
+    private CompletableFuture<MonitorTask> collectDevice(Device device, List<DeviceMetric> collected) {
         long startTime = System.currentTimeMillis();
-        String taskId = UUID.randomUUID().toString();
+        LocalDateTime startAt = LocalDateTime.now();
+        return submitFetch(adaptiveCollectionExecutor, device, collectMode)
+                .handle((metrics, error) -> completeCollection(device, startAt, startTime, metrics, error, collected));
+    }
+
+    /**
+     * 按采集模式提交设备I/O
+     * async模式下SNMP设备走非阻塞读取，等待响应期间不占用线程；Modbus等阻塞协议以及
+     * 需要厂商适配器同步读取状态的设备仍走线程通道
+     */
+    private CompletableFuture<List<DeviceMetric>> submitFetch(AdaptiveCollectionExecutor executor, Device device,
+                                                              String mode) {
+        if (MODE_ASYNC.equalsIgnoreCase(mode) && SNMP_DEVICE_TYPES.contains(device.getType())
+                && !deviceProtocolFactory.isSharedSnmp(device.getBrand())) {
+            return executor.submitAsync(device, () -> snmpDeviceCollector.collect(device));
+        }
+        return executor.submit(device, () -> fetchMetrics(device));
+    }
+
+    /**
+     * 按设备类型采集数据（设备I/O）
+     */
+    private List<DeviceMetric> fetchMetrics(Device device) throws Exception {
+        switch (device.getType()) {
+            case "SERVER":
+            case "SWITCH":
+            case "ROUTER":
+            case "FIREWALL":
+                return snmpMonitorService.collectMetrics(device);
+            case "UPS":
+            case "PDU":
+            case "AIR_CONDITIONER":
+                return collectPowerMetrics(device);
+            case "SENSOR":
+                // 传感器数据采集（Modbus引擎合并读取）
+                return collectSensorMetrics(device);
+            default:
+                log.warn("不支持的设备类型: deviceType={}", device.getType());
+                return new ArrayList<>();
+        }
+    }
 
-        // 创建监控任务
+    /**
+     * 采集结束后的处理：更新统计、后续处理并提交落库
+     */
+    private MonitorTask completeCollection(Device device, LocalDateTime startAt, long startTime,
+                                           List<DeviceMetric> fetched, Throwable error, List<DeviceMetric> collected) {
+        // 创建监控任务（仅在内存中维护状态，结束后一次性落库）
         MonitorTask task = new MonitorTask();
-        task.setTaskId(taskId);
+        task.setTaskId(UUID.randomUUID().toString());
         task.setDeviceId(device.getId());
-        task.setDeviceName(device.getDeviceName());
-        task.setDeviceType(device.getDeviceType());
+        task.setDeviceName(device.getName());
+        task.setDeviceType(device.getType());
         task.setRoomId(device.getRoomId());
         task.setTaskType("COLLECTION");
-        task.setTaskStatus("PENDING");
-        monitorTaskService.createTask(task);
+        task.setStartTime(startAt);
+        task.setRetryCount(0);
+        task.setCreatedAt(startAt);
 
+        List<DeviceMetric> metrics = fetched != null ? fetched : Collections.emptyList();
         try {
-            // 标记任务开始
-            monitorTaskService.markTaskStart(taskId);
-
-            // 获取监控配置
-            MonitorConfig config = monitorConfigService.getConfigByDeviceType(device.getDeviceType());
-
-            // 根据设备类型采集数据
-            List<DeviceMetric> metrics = new ArrayList<>();
-
-            switch (device.getDeviceType()) {
-                case "SERVER":
-                case "SWITCH":
-                case "ROUTER":
-                case "FIREWALL":
-                    metrics = snmpMonitorService.collectMetrics(device);
-                    break;
-                case "UPS":
-                case "PDU":
-                case "AIR_CONDITIONER":
-                    metrics = snmpMonitorService.collectMetrics(device);
-                    break;
-                case "SENSOR":
-                    // 传感器数据采集（假设有专门的服务）
-                    metrics = collectSensorMetrics(device);
-                    break;
-                default:
-                    log.warn("不支持的设备类型: deviceType={}", device.getDeviceType());
-            }
-
-            // 保存指标数据
-            if (!metrics.isEmpty()) {
-                // 批量保存，提高性能
-                metrics.forEach(m -> {
-                    m.setCreatedAt(LocalDateTime.now());
-                    m.setCollectionTime(LocalDateTime.now());
-                });
-                deviceMetricService.saveBatchMetrics(metrics);
+            if (error != null) {
+                throw error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
             }
 
-            // 标记任务完成
-            monitorTaskService.markTaskComplete(taskId, metrics.size(), true);
+            processMetrics(device, metrics, LocalDateTime.now());
 
             // 更新统计
             totalCollected.incrementAndGet();
@@ -196,31 +234,191 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
 
             task.setTaskStatus("SUCCESS");
             task.setDataCount(metrics.size());
-            task.setDuration(duration);
+            deviceCircuitBreaker.onSuccess(device.getId());
+        } catch (TimeoutException e) {
+            log.warn("设备采集超时: deviceId={}, error={}", device.getId(), e.getMessage());
+            deviceCircuitBreaker.onFailure(device.getId(), e.getMessage());
 
-        } catch (Exception e) {
+            totalFailed.incrementAndGet();
+            metrics = Collections.emptyList();
+            task.setTaskStatus("TIMEOUT");
+            task.setDataCount(0);
+            task.setErrorMessage(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // 上一轮未结束或等待队列已满，本轮跳过，不计入失败
+            log.debug("设备采集未执行: deviceId={}, reason={}", device.getId(), e.getMessage());
+            deviceCircuitBreaker.onSkipped(device.getId());
+
+            metrics = Collections.emptyList();
+            task.setTaskStatus("SKIPPED");
+            task.setDataCount(0);
+            task.setErrorMessage(e.getMessage());
+        } catch (Throwable e) {
             log.error("设备采集失败: deviceId={}, error={}", device.getId(), e.getMessage(), e);
-
-            // 标记任务失败
-            monitorTaskService.markTaskComplete(taskId, 0, false);
+            deviceCircuitBreaker.onFailure(device.getId(), e.getMessage());
 
             totalFailed.incrementAndGet();
+            metrics = Collections.emptyList();
             task.setTaskStatus("FAILED");
+            task.setDataCount(0);
             task.setErrorMessage(e.getMessage());
         } finally {
             runningTaskCount.decrementAndGet();
+            collectionScheduler.markCompleted(device.getId());
+        }
+
+        LocalDateTime endAt = LocalDateTime.now();
+        task.setEndTime(endAt);
+        task.setUpdatedAt(endAt);
+        task.setDuration(System.currentTimeMillis() - startTime);
+
+        if (collected != null) {
+            collected.addAll(metrics);
+        }
+
+        // 异步批量落库（跳过的采集不产生任务记录）
+        if (!"SKIPPED".equals(task.getTaskStatus())) {
+            metricWriteBehindPipeline.submit(task, metrics);
+        }
+
+        return task;
+    }
+
+    /**
+     * 接收采集节点回传的指标，与本地采集走相同的后续处理
+     */
+    @Override
+    public MonitorTask ingestMetrics(Device device, List<DeviceMetric> metrics) {
+        LocalDateTime now = LocalDateTime.now();
+        MonitorTask task = new MonitorTask();
+        task.setTaskId(UUID.randomUUID().toString());
+        task.setDeviceId(device.getId());
+        task.setDeviceName(device.getName());
+        task.setDeviceType(device.getType());
+        task.setRoomId(device.getRoomId());
+        task.setTaskType("REMOTE_COLLECTION");
+        task.setRetryCount(0);
+        task.setStartTime(now);
+        task.setEndTime(now);
+        task.setDuration(0L);
+        task.setCreatedAt(now);
+        task.setUpdatedAt(now);
+
+        try {
+            // 保留节点上报的采集时间，缺失时以接收时间为准
+            for (DeviceMetric metric : metrics) {
+                if (metric.getCollectionTime() == null) {
+                    metric.setCollectionTime(now);
+                }
+                metric.setCreatedAt(now);
+            }
+            processMetrics(device, metrics, null);
+            deviceCircuitBreaker.onSuccess(device.getId());
+            totalCollected.incrementAndGet();
+            task.setTaskStatus("SUCCESS");
+            task.setDataCount(metrics.size());
+        } catch (Exception e) {
+            log.error("节点回传指标处理失败: deviceId={}, error={}", device.getId(), e.getMessage(), e);
+            totalFailed.incrementAndGet();
+            task.setTaskStatus("FAILED");
+            task.setDataCount(0);
+            task.setErrorMessage(e.getMessage());
         }
 
+        metricWriteBehindPipeline.submit(task, metrics);
         return task;
     }
 
+    /**
+     * 指标后续处理：最新值索引、告警评估与大屏推送
+     *
+     * @param collectedAt 统一的采集时间，为null时使用各指标自带的采集时间
+     */
+    private void processMetrics(Device device, List<DeviceMetric> metrics, LocalDateTime collectedAt) {
+        if (collectedAt != null) {
+            metrics.forEach(m -> {
+                m.setCreatedAt(collectedAt);
+                m.setCollectionTime(collectedAt);
+            });
+        }
+
+        // 更新最新指标内存索引，仪表盘查询不再回查历史表
+        latestMetricStore.update(device, metrics);
+
+        // 内存规则引擎评估告警，不回查规则表
+        alertRuleService.checkAlerts(device, metrics);
+
+        // 推送给订阅了该设备的大屏（只入队，序列化与发送在WebSocket推送线程中完成）
+        webSocketMessageService.pushDeviceMetrics(device, metrics);
+    }
+
+    /**
+     * 采集动力设备指标
+     * 通用SNMP指标之外，APC/艾默生等厂商设备再经厂商适配器读取一次设备状态（按设备型号共享读取规划）
+     */
+    private List<DeviceMetric> collectPowerMetrics(Device device) {
+        List<DeviceMetric> metrics = new ArrayList<>(snmpMonitorService.collectMetrics(device));
+        if (!deviceProtocolFactory.isSharedSnmp(device.getBrand())) {
+            return metrics;
+        }
+        DeviceProtocol protocol = null;
+        try {
+            protocol = deviceProtocolFactory.createProtocol(device);
+            Map<String, Object> status = protocol.readDeviceStatus();
+            boolean online = "ONLINE".equals(status.get("status"));
+
+            DeviceMetric metric = new DeviceMetric();
+            metric.setDeviceId(device.getId());
+            metric.setDeviceCode(device.getCode());
+            metric.setDeviceName(device.getName());
+            metric.setMetricType("DEVICE_STATUS");
+            metric.setMetricName("设备状态");
+            metric.setMetricValue(online ? 1.0 : 0.0);
+            metric.setStatus(online ? "NORMAL" : "WARNING");
+            metric.setCustomKey("uptime");
+            metric.setCustomValue(status.get("uptime") != null ? status.get("uptime").toString() : null);
+            metric.setCollectionMethod(protocol.getProtocolName());
+            metrics.add(metric);
+        } catch (Exception e) {
+            // 厂商状态读取失败不影响通用指标
+            log.debug("读取厂商设备状态失败: deviceId={}, brand={}, error={}", device.getId(), device.getBrand(), e.getMessage());
+        } finally {
+            if (protocol != null) {
+                protocol.disconnect();
+            }
+        }
+        return metrics;
+    }
+
     /**
      * 采集传感器指标
+     * 通过Modbus引擎合并读取设备下挂载的环境传感器，环境数据交给落库管道异步写入，同时作为设备指标返回
      */
-    private List<DeviceMetric> collectSensorMetrics(Device device) {
-        List<DeviceMetric> metrics = new ArrayList<>();
-        // 这里可以集成Modbus或其他协议采集传感器数据
-        // 暂时返回空列表，实际需要根据传感器类型实现
+    private List<DeviceMetric> collectSensorMetrics(Device device) throws Exception {
+        List<EnvironmentData> dataList = modbusCollectionEngine.collectSensors(device);
+        if (dataList.isEmpty()) {
+            return new ArrayList<>();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        dataList.forEach(data -> data.setCreateTime(now));
+        metricWriteBehindPipeline.submitEnvironmentData(device.getId(), dataList);
+
+        List<DeviceMetric> metrics = new ArrayList<>(dataList.size());
+        for (EnvironmentData data : dataList) {
+            DeviceMetric metric = new DeviceMetric();
+            metric.setDeviceId(device.getId());
+            metric.setDeviceCode(device.getCode());
+            metric.setDeviceName(device.getName());
+            metric.setMetricType(data.getDataType());
+            metric.setMetricName(data.getDataType());
+            metric.setMetricValue(data.getValue());
+            metric.setUnit(data.getUnit());
+            metric.setStatus(Integer.valueOf(1).equals(data.getIsAlarm()) ? "WARNING" : "NORMAL");
+            metric.setCustomKey("sensorId");
+            metric.setCustomValue(String.valueOf(data.getSensorId()));
+            metric.setCollectionMethod("MODBUS");
+            metrics.add(metric);
+        }
         return metrics;
     }
 
@@ -344,6 +542,10 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
             log.warn("定时监控任务已启动");
             return;
         }
+        List<MonitorConfig> configs = monitorConfigService.getAllEnabledConfigs();
+        collectionScheduler.refreshConfigs(configs);
+        adaptiveCollectionExecutor.updateConfigs(configs);
+        reconcileSchedule();
         scheduledTasksStarted = true;
         log.info("定时监控任务已启动");
     }
@@ -358,24 +560,31 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
     }
 
     /**
-     * 定时采集任务（根据配置的频率）
+     * 定时采集任务（每秒从调度器中取出已到期的设备）
      */
-    @Scheduled(fixedDelay = 1000) // 每秒检查一次是否需要采集
+    @Scheduled(fixedDelay = 1000)
     public void scheduledCollect() {
         if (!scheduledTasksStarted) {
             return;
         }
 
         try {
-            // 获取所有启用的监控配置
-            List<MonitorConfig> configs = monitorConfigService.getAllEnabledConfigs();
-
-            for (MonitorConfig config : configs) {
-                // 检查是否需要采集（这里应该根据上次采集时间和配置的频率来判断）
-                // 简化实现：每次都采集，实际应该记录上次采集时间
-                if (shouldCollect(config.getDeviceType(), config.getCollectionInterval())) {
-                    collectByDeviceType(config.getDeviceType());
+            List<Device> dueDevices = collectionScheduler.pollDue(System.currentTimeMillis());
+            if (collectorShardManager.isEnabled() && !dueDevices.isEmpty()) {
+                // 已由采集节点持租约负责的设备不在本地采集
+                List<Device> local = new ArrayList<>(dueDevices.size());
+                for (Device device : dueDevices) {
+                    if (collectorShardManager.isLocal(device.getId())) {
+                        local.add(device);
+                    } else {
+                        collectionScheduler.markCompleted(device.getId());
+                    }
                 }
+                dueDevices = local;
+            }
+            dueDevices = applyCircuitBreakers(dueDevices);
+            if (!dueDevices.isEmpty()) {
+                collectDeviceMetrics(dueDevices);
             }
         } catch (Exception e) {
             log.error("定时采集任务执行失败", e);
@@ -383,25 +592,114 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
     }
 
     /**
-     * 判断是否需要采集
+     * 跳过熔断中的设备，其余按健康分从高到低派发（健康设备优先取得并发配额）
+     */
+    private List<Device> applyCircuitBreakers(List<Device> dueDevices) {
+        if (dueDevices.isEmpty()) {
+            return dueDevices;
+        }
+        List<Device> allowed = new ArrayList<>(dueDevices.size());
+        for (Device device : dueDevices) {
+            if (deviceCircuitBreaker.allowRequest(device.getId())) {
+                allowed.add(device);
+            } else {
+                collectionScheduler.markCompleted(device.getId());
+            }
+        }
+        allowed.sort(Comparator.comparingDouble((Device d) -> deviceCircuitBreaker.getHealthScore(d.getId())).reversed());
+        return allowed;
+    }
+
+    /**
+     * 定时刷新采集调度（监控配置与设备变更增量同步，周期性全量对齐以感知设备删除）
      */
-    private boolean shouldCollect(String deviceType, Integer interval) {
-        // 简化实现：总是返回true，实际应该基于上次采集时间判断
-        return true;
+    @Scheduled(fixedDelay = SCHEDULE_REFRESH_INTERVAL)
+    public void refreshSchedule() {
+        if (!scheduledTasksStarted) {
+            return;
+        }
+
+        try {
+            List<MonitorConfig> configs = monitorConfigService.getAllEnabledConfigs();
+            collectionScheduler.refreshConfigs(configs);
+            adaptiveCollectionExecutor.updateConfigs(configs);
+
+            if (scheduleRefreshCount.incrementAndGet() % FULL_RECONCILE_EVERY == 0) {
+                reconcileSchedule();
+                return;
+            }
+
+            LocalDateTime since = lastDeviceSyncTime;
+            lastDeviceSyncTime = LocalDateTime.now();
+            LambdaQueryWrapper<Device> wrapper = scheduledDeviceWrapper();
+            if (wrapper == null) {
+                return;
+            }
+            wrapper.ge(Device::getUpdatedAt, since);
+            List<Device> changed = deviceMapper.selectList(wrapper);
+            changed.forEach(collectionScheduler::upsertDevice);
+            if (!changed.isEmpty()) {
+                log.info("采集调度增量同步设备: count={}", changed.size());
+            }
+        } catch (Exception e) {
+            log.error("刷新采集调度失败", e);
+        }
     }
 
     /**
-     * 按设备类型采集
+     * 全量对齐调度器中的设备，并清理已删除设备的内存状态
      */
-    private void collectByDeviceType(String deviceType) {
-        List<Device> devices = deviceMapper.selectList(
-                com.baomidou.mybatisplus.core.conditions.query.QueryWrapper.lambdaQuery()
-                        .eq(Device::getDeviceType, deviceType)
-        );
+    private void reconcileSchedule() {
+        lastDeviceSyncTime = LocalDateTime.now();
+        LambdaQueryWrapper<Device> wrapper = scheduledDeviceWrapper();
+        List<Device> devices = wrapper != null ? deviceMapper.selectList(wrapper) : Collections.emptyList();
+        collectionScheduler.reconcile(devices);
+        log.info("采集调度全量对齐完成: deviceCount={}", devices.size());
+
+        Set<String> existing = new HashSet<>();
+        for (Device device : deviceMapper.selectList(new LambdaQueryWrapper<Device>().select(Device::getId))) {
+            existing.add(device.getId());
+        }
+        // 采集一直失败的设备可能没有最新指标，但仍占用SNMP目标，各处的设备一并核对
+        Set<String> tracked = new HashSet<>(latestMetricStore.getDeviceIds());
+        tracked.addAll(snmpDeviceCollector.getDeviceIds());
+        tracked.addAll(deviceProtocolFactory.getDeviceIds());
+        int removed = 0;
+        for (String deviceId : tracked) {
+            if (!existing.contains(deviceId)) {
+                releaseDevice(deviceId);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("清理已删除设备的采集状态: count={}", removed);
+        }
+    }
 
-        if (!devices.isEmpty()) {
-            collectDeviceMetrics(devices);
+    /**
+     * 释放已删除设备占用的内存状态
+     */
+    private void releaseDevice(String deviceId) {
+        collectionScheduler.removeDevice(deviceId);
+        latestMetricStore.removeDevice(deviceId);
+        alertRuleEngine.removeDevice(deviceId);
+        snmpDeviceCollector.removeDevice(deviceId);
+        deviceProtocolFactory.removeDevice(deviceId);
+    }
+
+    /**
+     * 构造需要调度的设备查询条件，没有任何启用配置时返回null
+     */
+    private LambdaQueryWrapper<Device> scheduledDeviceWrapper() {
+        Set<String> deviceTypes = collectionScheduler.getScheduledDeviceTypes();
+        LambdaQueryWrapper<Device> wrapper = new LambdaQueryWrapper<>();
+        if (deviceTypes != null) {
+            if (deviceTypes.isEmpty()) {
+                return null;
+            }
+            wrapper.in(Device::getType, deviceTypes);
         }
+        return wrapper;
     }
 
     /**
@@ -422,10 +720,10 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
                 String.format("%.2f%%", (double) total / (total + failed) * 100) : "0%");
         stats.put("avgDuration", avgDuration);
 
-        // 线程池统计
-        stats.put("activeThreads", collectionExecutor != null ? collectionExecutor.getActiveCount() : 0);
-        stats.put("poolSize", collectionExecutor != null ? collectionExecutor.getPoolSize() : 0);
-        stats.put("queueSize", collectionExecutor != null ? collectionExecutor.getQueue().size() : 0);
+        // 采集执行器统计（各通道并发上限、在途与等待数、隔离设备数）
+        stats.put("collectMode", collectMode);
+        stats.put("circuitBreaker", deviceCircuitBreaker.getStatistics());
+        stats.put("executor", adaptiveCollectionExecutor.getStatistics());
 
         // 设备采集耗时Top10
         List<Map.Entry<String, Long>> topDevices = deviceCollectTimes.entrySet().stream()
@@ -435,9 +733,105 @@ public class ConcurrentMonitorServiceImpl implements ConcurrentMonitorService {
 
         stats.put("topSlowDevices", topDevices);
 
+        // 调度器统计
+        stats.put("scheduler", collectionScheduler.getStatistics());
+
+        // 落库管道统计（队列深度、刷盘耗时、丢弃数）
+        stats.put("writeBehind", metricWriteBehindPipeline.getStatistics());
+
+        // 最新指标索引统计
+        stats.put("latestStore", latestMetricStore.getStatistics());
+
         return stats;
     }
 
+    /**
+     * 获取设备熔断状态
+     */
+    @Override
+    public List<Map<String, Object>> getCircuitBreakerStates(boolean trippedOnly) {
+        return deviceCircuitBreaker.getStates(trippedOnly);
+    }
+
+    /**
+     * 复位设备熔断器，设备在下一个周期恢复采集
+     */
+    @Override
+    public boolean resetCircuitBreaker(String deviceId) {
+        return deviceCircuitBreaker.reset(deviceId);
+    }
+
+    /**
+     * 采集模式压测对比
+     * 只执行设备I/O（不做告警、推送与落库），统计吞吐、延迟分位、线程与在途峰值
+     */
+    @Override
+    public Map<String, Object> benchmarkCollection(String mode, int deviceLimit) {
+        String benchMode = MODE_ASYNC.equalsIgnoreCase(mode) ? MODE_ASYNC : MODE_POOLED;
+        int limit = Math.max(1, Math.min(deviceLimit, benchmarkMaxDevices));
+        List<Device> devices = deviceMapper.selectList(new LambdaQueryWrapper<Device>()
+                .in(Device::getType, SNMP_DEVICE_TYPES)
+                .last("LIMIT " + limit));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        int baseThreads = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        // 压测使用独立的执行器实例：线程、配额、AIMD上限与设备隔离状态都不影响生产采集
+        AdaptiveCollectionExecutor executor = adaptiveCollectionExecutor.newIsolatedInstance("monitor-benchmark");
+        long start = System.nanoTime();
+        long elapsedMs;
+        List<CompletableFuture<Long>> futures = new ArrayList<>(devices.size());
+        Map<String, Object> executorStats;
+        try {
+            for (Device device : devices) {
+                long submitted = System.nanoTime();
+                futures.add(submitFetch(executor, device, benchMode)
+                        .handle((metrics, error) -> error == null ? System.nanoTime() - submitted : -1L));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            executorStats = executor.getStatistics();
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Long> latencies = new ArrayList<>(futures.size());
+        for (CompletableFuture<Long> future : futures) {
+            long latency = future.join();
+            if (latency >= 0) {
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(latency));
+            }
+        }
+        Collections.sort(latencies);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("mode", benchMode);
+        result.put("devices", devices.size());
+        result.put("success", latencies.size());
+        result.put("failed", devices.size() - latencies.size());
+        result.put("elapsedMs", elapsedMs);
+        result.put("throughput", String.format("%.2f devices/sec", devices.size() * 1000.0 / elapsedMs));
+        result.put("p50LatencyMs", percentile(latencies, 0.50));
+        result.put("p95LatencyMs", percentile(latencies, 0.95));
+        result.put("p99LatencyMs", percentile(latencies, 0.99));
+        result.put("extraPeakThreads", threads.getPeakThreadCount() - baseThreads);
+        result.put("heapGrowthBytes", memory.getHeapMemoryUsage().getUsed() - heapBefore);
+        result.put("executor", executorStats);
+        log.info("采集模式压测完成: mode={}, devices={}, elapsed={}ms, extraPeakThreads={}",
+                benchMode, devices.size(), elapsedMs, result.get("extraPeakThreads"));
+        return result;
+    }
+
+    private long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+
     /**
      * 获取当前运行的采集任务数
      */
@@ -4,18 +4,34 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.dto.DeviceImportDTO;
 import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.Room;
 import com.roominspection.backend.mapper.DeviceMapper;
+import com.roominspection.backend.mapper.RoomMapper;
 import com.roominspection.backend.service.DeviceAssetService;
+import com.roominspection.backend.service.ImportJobService;
+import com.roominspection.backend.service.ImportJobService.ChunkProcessor;
+import com.roominspection.backend.service.ImportJobService.ChunkResult;
+import com.roominspection.backend.service.ImportJobService.ImportJob;
+import com.roominspection.backend.service.ImportJobService.ImportRow;
+import com.roominspection.backend.service.StreamingExportService;
+import com.roominspection.backend.service.StreamingExportService.ExportColumn;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +41,18 @@ import java.util.stream.Collectors;
 @Service
 public class DeviceAssetServiceImpl extends ServiceImpl<DeviceMapper, Device> implements DeviceAssetService {
 
+    private static final Pattern IP_PATTERN = Pattern.compile(
+            "^((25[0-5]|2[0-4]\\d|1?\\d?\\d)\\.){3}(25[0-5]|2[0-4]\\d|1?\\d?\\d)$");
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private RoomMapper roomMapper;
+
+    @Autowired
+    private StreamingExportService streamingExportService;
+
     @Override
     public IPage<Device> queryDevicePage(Page<Device> page, String roomId, String type, String subType, String status, String deviceName, String ipAddress) {
         LambdaQueryWrapper<Device> wrapper = new LambdaQueryWrapper<>();
@@ -54,23 +82,15 @@ public class DeviceAssetServiceImpl extends ServiceImpl<DeviceMapper, Device> im
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public Map<String, Object> importDevices(MultipartFile file, Long operatorId, String operatorName) {
         Map<String, Object> result = new HashMap<>();
-        int successCount = 0;
-        int failCount = 0;
 
         try {
-            // TODO: 使用EasyExcel解析Excel/CSV文件
-            // 示例代码：
-            // List<DeviceImportDTO> devices = EasyExcel.read(file.getInputStream()).head(DeviceImportDTO.class).sheet().doReadSync();
-
-            // 临时返回模拟数据
-            result.put("successCount", successCount);
-            result.put("failCount", failCount);
-            result.put("totalCount", 0);
-            result.put("message", "设备导入功能待实现");
-
+            ImportJob job = importJobService.submit("DEVICE", file, operatorName, DeviceImportDTO.class,
+                    importJob -> prepareDeviceImport(operatorId, operatorName));
+            result.put("jobId", job.getJobId());
+            result.put("status", job.getStatus());
+            result.put("message", "导入任务已提交，请通过任务ID查询进度");
         } catch (Exception e) {
             log.error("导入设备失败", e);
             result.put("message", "导入失败: " + e.getMessage());
@@ -79,33 +99,138 @@ public class DeviceAssetServiceImpl extends ServiceImpl<DeviceMapper, Device> im
         return result;
     }
 
-    @Override
-    public List<Map<String, Object>> exportDevices(String deviceType, String roomId) {
-        LambdaQueryWrapper<Device> wrapper = new LambdaQueryWrapper<>();
+    /**
+     * 预加载机房与已有设备编码，返回分块导入处理器
+     */
+    private ChunkProcessor<DeviceImportDTO> prepareDeviceImport(Long operatorId, String operatorName) {
+        Map<String, Room> rooms = new HashMap<>();
+        for (Room room : roomMapper.selectList(new LambdaQueryWrapper<Room>().select(Room::getId, Room::getName))) {
+            rooms.put(room.getName(), room);
+        }
+        Set<String> existingCodes = ConcurrentHashMap.newKeySet();
+        for (Device device : list(new LambdaQueryWrapper<Device>().select(Device::getCode))) {
+            existingCodes.add(device.getCode());
+        }
+        log.info("设备导入字典加载完成: rooms={}, existingDevices={}", rooms.size(), existingCodes.size());
+
+        return rows -> {
+            ChunkResult result = new ChunkResult();
+            List<Device> devices = new ArrayList<>(rows.size());
+            Set<String> chunkCodes = new HashSet<>();
+            LocalDateTime now = LocalDateTime.now();
+
+            for (ImportRow<DeviceImportDTO> row : rows) {
+                DeviceImportDTO dto = row.getData();
+                String error = validateDeviceRow(dto, rooms, existingCodes, chunkCodes);
+                if (error != null) {
+                    result.addError(row.getRowNumber(), error);
+                    continue;
+                }
+                chunkCodes.add(dto.getCode().trim());
+                devices.add(toDevice(dto, rooms.get(dto.getRoomName()), operatorId, operatorName, now));
+            }
+
+            if (!devices.isEmpty()) {
+                saveBatch(devices, devices.size());
+            }
+            result.setSuccessCount(devices.size());
 
-        if (StringUtils.hasText(deviceType)) {
-            wrapper.eq(Device::getType, deviceType);
+            // 提交成功后才计入已有编码，块回滚重试时不会误判重复
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    existingCodes.addAll(chunkCodes);
+                }
+            });
+            return result;
+        };
+    }
+
+    private String validateDeviceRow(DeviceImportDTO dto, Map<String, Room> rooms,
+                                     Set<String> existingCodes, Set<String> chunkCodes) {
+        if (!StringUtils.hasText(dto.getCode())) {
+            return "设备编码为空";
         }
-        if (StringUtils.hasText(roomId)) {
-            wrapper.eq(Device::getRoomId, roomId);
+        String code = dto.getCode().trim();
+        if (existingCodes.contains(code) || chunkCodes.contains(code)) {
+            return "设备编码" + code + "已存在";
+        }
+        if (!StringUtils.hasText(dto.getName())) {
+            return "设备名称为空";
+        }
+        if (!StringUtils.hasText(dto.getType())) {
+            return "设备类型为空";
+        }
+        if (StringUtils.hasText(dto.getRoomName()) && !rooms.containsKey(dto.getRoomName())) {
+            return "机房" + dto.getRoomName() + "不存在";
+        }
+        if (StringUtils.hasText(dto.getIpAddress()) && !IP_PATTERN.matcher(dto.getIpAddress().trim()).matches()) {
+            return "IP地址格式错误: " + dto.getIpAddress();
         }
+        return null;
+    }
+
+    private Device toDevice(DeviceImportDTO dto, Room room, Long operatorId, String operatorName, LocalDateTime now) {
+        Device device = new Device();
+        device.setCode(dto.getCode().trim());
+        device.setName(dto.getName().trim());
+        device.setType(dto.getType().trim());
+        device.setSubType(dto.getSubType());
+        device.setBrand(dto.getBrand());
+        device.setModel(dto.getModel());
+        device.setSerialNumber(dto.getSerialNumber());
+        if (room != null) {
+            device.setRoomId(room.getId());
+            device.setRoomName(room.getName());
+        }
+        device.setRackCode(dto.getRackCode());
+        device.setUPosition(dto.getUPosition());
+        device.setIpAddress(StringUtils.hasText(dto.getIpAddress()) ? dto.getIpAddress().trim() : null);
+        device.setSnmpVersion(dto.getSnmpVersion());
+        device.setSnmpCommunity(dto.getSnmpCommunity());
+        device.setIsKeyDevice("是".equals(dto.getKeyDevice()) ? 1 : 0);
+        device.setStatus("OFFLINE");
+        device.setCreatedBy(operatorId);
+        device.setCreatedByName(operatorName);
+        device.setCreatedAt(now);
+        device.setUpdatedBy(operatorId);
+        device.setUpdatedByName(operatorName);
+        device.setUpdatedAt(now);
+        return device;
+    }
 
-        List<Device> devices = list(wrapper);
-        return devices.stream().map(device -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("code", device.getCode());
-            map.put("name", device.getName());
-            map.put("type", device.getType());
-            map.put("subType", device.getSubType());
-            map.put("brand", device.getBrand());
-            map.put("model", device.getModel());
-            map.put("roomName", device.getRoomName());
-            map.put("rackCode", device.getRackCode());
-            map.put("uPosition", device.getUPosition());
-            map.put("ipAddress", device.getIpAddress());
-            map.put("status", device.getStatus());
-            return map;
-        }).collect(Collectors.toList());
+    @Override
+    public void exportDevices(String deviceType, String roomId, String format,
+                              HttpServletResponse response) throws IOException {
+        List<ExportColumn<Device>> columns = Arrays.asList(
+                ExportColumn.of("设备编码", Device::getCode),
+                ExportColumn.of("设备名称", Device::getName),
+                ExportColumn.of("设备类型", Device::getType),
+                ExportColumn.of("设备子类型", Device::getSubType),
+                ExportColumn.of("品牌", Device::getBrand),
+                ExportColumn.of("型号", Device::getModel),
+                ExportColumn.of("机房名称", Device::getRoomName),
+                ExportColumn.of("机柜编号", Device::getRackCode),
+                ExportColumn.of("U位", Device::getUPosition),
+                ExportColumn.of("IP地址", Device::getIpAddress),
+                ExportColumn.of("状态", Device::getStatus));
+
+        streamingExportService.export(response, "设备台账", format, columns, Device::getId, (afterId, limit) -> {
+            LambdaQueryWrapper<Device> wrapper = new LambdaQueryWrapper<Device>()
+                    .select(Device::getId, Device::getCode, Device::getName, Device::getType, Device::getSubType,
+                            Device::getBrand, Device::getModel, Device::getRoomName, Device::getRackCode,
+                            Device::getUPosition, Device::getIpAddress, Device::getStatus);
+            if (StringUtils.hasText(deviceType)) {
+                wrapper.eq(Device::getType, deviceType);
+            }
+            if (StringUtils.hasText(roomId)) {
+                wrapper.eq(Device::getRoomId, roomId);
+            }
+            wrapper.gt(afterId != null, Device::getId, afterId)
+                    .orderByAsc(Device::getId)
+                    .last("LIMIT " + limit);
+            return list(wrapper);
+        });
     }
 
     @Override
@@ -1,6 +1,8 @@
 package com.roominspection.backend.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.LatestMetricStore;
+import com.roominspection.backend.collector.MetricPartitionManager;
 import com.roominspection.backend.entity.DeviceMetric;
 import com.roominspection.backend.mapper.DeviceMetricMapper;
 import com.roominspection.backend.service.DeviceMetricService;
@@ -23,6 +25,17 @@ public class DeviceMetricServiceImpl extends ServiceImpl<DeviceMetricMapper, Dev
     @Autowired
     private DeviceMetricMapper deviceMetricMapper;
 
+    @Autowired
+    private LatestMetricStore latestMetricStore;
+
+    @Autowired
+    private MetricPartitionManager metricPartitionManager;
+
+    /**
+     * 未分区表分批清理时每批删除的行数
+     */
+    private static final int CLEAN_BATCH_SIZE = 5000;
+
     /**
      * 批量保存指标
      */
@@ -39,18 +52,24 @@ public class DeviceMetricServiceImpl extends ServiceImpl<DeviceMetricMapper, Dev
     }
 
     /**
-     * 获取设备最新指标
+     * 获取设备最新指标（优先读取内存索引，未预热时回落到数据库）
      */
     @Override
     public List<DeviceMetric> getLatestMetricsByDeviceId(String deviceId) {
+        if (latestMetricStore.isWarmed()) {
+            return latestMetricStore.getLatestByDeviceId(deviceId);
+        }
         return deviceMetricMapper.selectLatestByDeviceId(deviceId);
     }
 
     /**
-     * 获取机房所有最新指标
+     * 获取机房所有最新指标（优先读取内存索引，未预热时回落到数据库）
      */
     @Override
     public List<DeviceMetric> getLatestMetricsByRoomId(String roomId) {
+        if (latestMetricStore.isWarmed()) {
+            return latestMetricStore.getLatestByRoomId(roomId);
+        }
         return deviceMetricMapper.selectLatestByRoomId(roomId);
     }
 
@@ -64,12 +83,23 @@ public class DeviceMetricServiceImpl extends ServiceImpl<DeviceMetricMapper, Dev
 
     /**
      * 清理历史指标数据
+     * 分区表直接删除过期分区；未分区时按批次删除，每批独立提交，避免长事务锁表
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int cleanHistoryMetrics(int days) {
         LocalDateTime beforeTime = LocalDateTime.now().minusDays(days);
-        int count = deviceMetricMapper.deleteBeforeTime(beforeTime);
+        long dropped = metricPartitionManager.dropPartitionsBefore("device_metric", beforeTime);
+        if (dropped >= 0) {
+            log.info("清理历史指标数据（分区删除）: days={}, estimatedCount={}", days, dropped);
+            return (int) Math.min(dropped, Integer.MAX_VALUE);
+        }
+
+        int count = 0;
+        int deleted;
+        do {
+            deleted = deviceMetricMapper.deleteBeforeTime(beforeTime, CLEAN_BATCH_SIZE);
+            count += deleted;
+        } while (deleted >= CLEAN_BATCH_SIZE);
         log.info("清理历史指标数据: days={}, count={}", days, count);
         return count;
     }
@@ -3,19 +3,21 @@ package com.roominspection.backend.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.roominspection.backend.entity.DoorAccessLog;
 import com.roominspection.backend.mapper.DoorAccessLogMapper;
 import com.roominspection.backend.service.DoorAccessLogService;
+import com.roominspection.backend.service.DoorAccessSyncService;
+import com.roominspection.backend.service.StreamingExportService;
+import com.roominspection.backend.service.StreamingExportService.ExportColumn;
+import com.roominspection.backend.util.InspectionAccessRules;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -29,12 +31,10 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
         implements DoorAccessLogService {
 
     @Autowired
-    private RestTemplate restTemplate;
+    private DoorAccessSyncService doorAccessSyncService;
 
     @Autowired
-    private ObjectMapper objectMapper;
-
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private StreamingExportService streamingExportService;
 
     @Override
     public Page<DoorAccessLog> queryPage(Long roomId, Long staffId, String direction,
@@ -64,90 +64,57 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
+    public void exportLogs(Long roomId, Long staffId, String direction, LocalDateTime startTime,
+                           LocalDateTime endTime, String format, HttpServletResponse response) throws IOException {
+        List<ExportColumn<DoorAccessLog>> columns = Arrays.asList(
+                ExportColumn.of("通行时间", DoorAccessLog::getAccessTime),
+                ExportColumn.of("门禁系统", DoorAccessLog::getSystemType),
+                ExportColumn.of("门禁设备", DoorAccessLog::getDeviceName),
+                ExportColumn.of("机房ID", DoorAccessLog::getRoomId),
+                ExportColumn.of("人员工号", DoorAccessLog::getStaffCode),
+                ExportColumn.of("人员姓名", DoorAccessLog::getStaffName),
+                ExportColumn.of("方向", DoorAccessLog::getDirection),
+                ExportColumn.of("通行方式", DoorAccessLog::getAccessMethod),
+                ExportColumn.of("结果", DoorAccessLog::getStatus),
+                ExportColumn.of("拒绝原因", DoorAccessLog::getRejectReason),
+                ExportColumn.of("巡检任务ID", DoorAccessLog::getInspectionTaskId),
+                ExportColumn.of("数据来源", DoorAccessLog::getDataSource));
+
+        // 按（通行时间, ID）翻页，走idx_access_time_id索引
+        streamingExportService.export(response, "门禁日志", format, columns, row -> row, (after, limit) -> {
+            LambdaQueryWrapper<DoorAccessLog> wrapper = new LambdaQueryWrapper<DoorAccessLog>()
+                    .select(DoorAccessLog::getId, DoorAccessLog::getAccessTime, DoorAccessLog::getSystemType,
+                            DoorAccessLog::getDeviceName, DoorAccessLog::getRoomId, DoorAccessLog::getStaffCode,
+                            DoorAccessLog::getStaffName, DoorAccessLog::getDirection, DoorAccessLog::getAccessMethod,
+                            DoorAccessLog::getStatus, DoorAccessLog::getRejectReason,
+                            DoorAccessLog::getInspectionTaskId, DoorAccessLog::getDataSource)
+                    .eq(roomId != null, DoorAccessLog::getRoomId, roomId)
+                    .eq(staffId != null, DoorAccessLog::getStaffId, staffId)
+                    .eq(direction != null, DoorAccessLog::getDirection, direction)
+                    .ge(startTime != null, DoorAccessLog::getAccessTime, startTime)
+                    .le(endTime != null, DoorAccessLog::getAccessTime, endTime);
+            if (after != null) {
+                wrapper.ge(DoorAccessLog::getAccessTime, after.getAccessTime())
+                        .and(w -> w.gt(DoorAccessLog::getAccessTime, after.getAccessTime())
+                                .or(o -> o.eq(DoorAccessLog::getAccessTime, after.getAccessTime())
+                                        .gt(DoorAccessLog::getId, after.getId())));
+            }
+            wrapper.orderByAsc(DoorAccessLog::getAccessTime, DoorAccessLog::getId)
+                    .last("LIMIT " + limit);
+            return list(wrapper);
+        });
+    }
+
+    @Override
     public int syncFromHikvision(LocalDateTime startTime, LocalDateTime endTime) {
         log.info("开始从海康门禁系统同步门禁日志，时间范围：{} - {}", startTime, endTime);
-        
-        try {
-            // 1. 获取海康API配置（从配置表）
-            String apiUrl = getHikvisionApiUrl();
-            String appKey = getHikvisionAppKey();
-            String appSecret = getHikvisionAppSecret();
-            
-            // 2. 构建请求参数
-            Map<String, Object> params = new HashMap<>();
-            params.put("startTime", startTime.format(DATE_FORMATTER));
-            params.put("endTime", endTime.format(DATE_FORMATTER));
-            params.put("pageNo", 1);
-            params.put("pageSize", 1000);
-            
-            // 3. 调用海康API
-            // 注意：这里需要根据实际的海康API接口文档调整
-            String response = restTemplate.postForObject(apiUrl, params, String.class);
-            
-            // 4. 解析响应数据
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode dataList = root.path("data").path("list");
-            
-            int syncCount = 0;
-            for (JsonNode item : dataList) {
-                DoorAccessLog log = convertFromHikvision(item);
-                if (log != null) {
-                    this.save(log);
-                    syncCount++;
-                }
-            }
-            
-            log.info("海康门禁日志同步完成，共同步{}条记录", syncCount);
-            return syncCount;
-            
-        } catch (Exception e) {
-            log.error("同步海康门禁日志失败", e);
-            throw new RuntimeException("同步海康门禁日志失败：" + e.getMessage());
-        }
+        return doorAccessSyncService.syncRange(DoorAccessSyncService.HIKVISION, startTime, endTime);
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int syncFromDahua(LocalDateTime startTime, LocalDateTime endTime) {
         log.info("开始从大华门禁系统同步门禁日志，时间范围：{} - {}", startTime, endTime);
-        
-        try {
-            // 1. 获取大华API配置
-            String apiUrl = getDahuaApiUrl();
-            String username = getDahuaUsername();
-            String password = getDahuaPassword();
-            
-            // 2. 构建请求参数
-            Map<String, Object> params = new HashMap<>();
-            params.put("startTime", startTime.format(DATE_FORMATTER));
-            params.put("endTime", endTime.format(DATE_FORMATTER));
-            params.put("pageNum", 1);
-            params.put("pageSize", 1000);
-            
-            // 3. 调用大华API
-            String response = restTemplate.postForObject(apiUrl, params, String.class);
-            
-            // 4. 解析响应数据
-            JsonNode root = objectMapper.readTree(response);
-            JsonNode dataList = root.path("data").path("records");
-            
-            int syncCount = 0;
-            for (JsonNode item : dataList) {
-                DoorAccessLog log = convertFromDahua(item);
-                if (log != null) {
-                    this.save(log);
-                    syncCount++;
-                }
-            }
-            
-            log.info("大华门禁日志同步完成，共同步{}条记录", syncCount);
-            return syncCount;
-            
-        } catch (Exception e) {
-            log.error("同步大华门禁日志失败", e);
-            throw new RuntimeException("同步大华门禁日志失败：" + e.getMessage());
-        }
+        return doorAccessSyncService.syncRange(DoorAccessSyncService.DAHUA, startTime, endTime);
     }
 
     @Override
@@ -157,8 +124,8 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
                 inspectionTaskId, staffId, roomId, plannedStartTime);
         
         // 查询计划开始时间前30分钟到后30分钟内的进入记录
-        LocalDateTime startTime = plannedStartTime.minusMinutes(30);
-        LocalDateTime endTime = plannedStartTime.plusMinutes(30);
+        LocalDateTime startTime = InspectionAccessRules.entryWindowStart(plannedStartTime);
+        LocalDateTime endTime = InspectionAccessRules.entryWindowEnd(plannedStartTime);
         
         List<DoorAccessLog> entryRecords = baseMapper.findEntryRecords(staffId, startTime, endTime);
         
@@ -197,8 +164,8 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
                 inspectionTaskId, staffId, roomId, plannedEndTime);
         
         // 查询计划结束时间前30分钟到后60分钟内的离开记录
-        LocalDateTime startTime = plannedEndTime.minusMinutes(30);
-        LocalDateTime endTime = plannedEndTime.plusMinutes(60);
+        LocalDateTime startTime = InspectionAccessRules.exitWindowStart(plannedEndTime);
+        LocalDateTime endTime = InspectionAccessRules.exitWindowEnd(plannedEndTime);
         
         List<DoorAccessLog> exitRecords = baseMapper.findExitRecords(staffId, startTime, endTime);
         
@@ -290,7 +257,7 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
         
         // 3. 计算停留时长
         if (entryLog != null && exitLog != null) {
-            long stayMinutes = java.time.Duration.between(entryLog.getAccessTime(), exitLog.getAccessTime()).toMinutes();
+            long stayMinutes = InspectionAccessRules.stayMinutes(entryLog.getAccessTime(), exitLog.getAccessTime());
             analysis.put("stayDuration", stayMinutes);
             
             // 判断停留时长是否合理（一般巡检不少于15分钟）
@@ -299,8 +266,8 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
         
         // 4. 检查是否有快速通过异常（进入后短时间内离开）
         if (entryLog != null && exitLog != null) {
-            long stayMinutes = java.time.Duration.between(entryLog.getAccessTime(), exitLog.getAccessTime()).toMinutes();
-            analysis.put("fastPassDetected", stayMinutes < 5);
+            long stayMinutes = InspectionAccessRules.stayMinutes(entryLog.getAccessTime(), exitLog.getAccessTime());
+            analysis.put("fastPassDetected", InspectionAccessRules.isFastPass(stayMinutes));
         }
         
         // 5. 查询该时间段内的所有进出记录
@@ -334,118 +301,4 @@ public class DoorAccessLogServiceImpl extends ServiceImpl<DoorAccessLogMapper, D
         doorAccessLog.setCreateTime(LocalDateTime.now());
         return this.save(doorAccessLog);
     }
-
-    // ==================== 私有辅助方法 ====================
-
-    /**
-     * 将海康API返回的数据转换为DoorAccessLog对象
-     */
-    private DoorAccessLog convertFromHikvision(JsonNode item) {
-        try {
-            DoorAccessLog log = new DoorAccessLog();
-            log.setSystemType("hikvision");
-            
-            // 根据海康API的实际返回字段映射
-            log.setDeviceId(item.path("deviceIndexCode").asText());
-            log.setDeviceName(item.path("deviceName").asText());
-            log.setStaffId(item.path("personId").asLong());
-            log.setStaffName(item.path("personName").asText());
-            log.setStaffCode(item.path("cardNo").asText());
-            
-            String direction = item.path("direction").asText();
-            log.setDirection("in".equals(direction) ? "in" : "out");
-            
-            String accessTimeStr = item.path("time").asText();
-            log.setAccessTime(LocalDateTime.parse(accessTimeStr, DATE_FORMATTER));
-            
-            String accessMethod = item.path("method").asText();
-            log.setAccessMethod(accessMethod);
-            
-            String status = item.path("status").asText();
-            log.setStatus("success".equals(status) ? "success" : "failed");
-            
-            log.setPhotoUrl(item.path("picUri").asText());
-            log.setDataSource("sync");
-            log.setVerified(false);
-            log.setCreateTime(LocalDateTime.now());
-            
-            return log;
-            
-        } catch (Exception e) {
-            log.error("转换海康门禁数据失败", e);
-            return null;
-        }
-    }
-
-    /**
-     * 将大华API返回的数据转换为DoorAccessLog对象
-     */
-    private DoorAccessLog convertFromDahua(JsonNode item) {
-        try {
-            DoorAccessLog log = new DoorAccessLog();
-            log.setSystemType("dahua");
-            
-            // 根据大华API的实际返回字段映射
-            log.setDeviceId(item.path("deviceId").asText());
-            log.setDeviceName(item.path("deviceName").asText());
-            log.setStaffId(item.path("userId").asLong());
-            log.setStaffName(item.path("userName").asText());
-            log.setStaffCode(item.path("cardNo").asText());
-            
-            String direction = item.path("direction").asText();
-            log.setDirection("entry".equals(direction) ? "in" : "out");
-            
-            String accessTimeStr = item.path("accessTime").asText();
-            log.setAccessTime(LocalDateTime.parse(accessTimeStr, DATE_FORMATTER));
-            
-            String accessMethod = item.path("verifyType").asText();
-            log.setAccessMethod(accessMethod);
-            
-            String status = item.path("result").asText();
-            log.setStatus("success".equals(status) ? "success" : "failed");
-            
-            log.setPhotoUrl(item.path("imageUrl").asText());
-            log.setDataSource("sync");
-            log.setVerified(false);
-            log.setCreateTime(LocalDateTime.now());
-            
-            return log;
-            
-        } catch (Exception e) {
-            log.error("转换大华门禁数据失败", e);
-            return null;
-        }
-    }
-
-    // ==================== 配置获取方法 ====================
-    
-    private String getHikvisionApiUrl() {
-        // 从配置表或配置文件获取
-        return "http://hikvision-api-url";
-    }
-
-    private String getHikvisionAppKey() {
-        // 从配置表或配置文件获取
-        return "your-app-key";
-    }
-
-    private String getHikvisionAppSecret() {
-        // 从配置表或配置文件获取
-        return "your-app-secret";
-    }
-
-    private String getDahuaApiUrl() {
-        // 从配置表或配置文件获取
-        return "http://dahua-api-url";
-    }
-
-    private String getDahuaUsername() {
-        // 从配置表或配置文件获取
-        return "admin";
-    }
-
-    private String getDahuaPassword() {
-        // 从配置表或配置文件获取
-        return "password";
-    }
 }
@@ -2,9 +2,12 @@ package com.roominspection.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.MetricPartitionManager;
+import com.roominspection.backend.collector.MetricRollupEngine;
 import com.roominspection.backend.entity.EnvironmentData;
 import com.roominspection.backend.entity.EnvironmentSensor;
 import com.roominspection.backend.entity.HeatmapData;
+import com.roominspection.backend.entity.MetricRollup;
 import com.roominspection.backend.mapper.EnvironmentDataMapper;
 import com.roominspection.backend.service.EnvironmentDataService;
 import com.roominspection.backend.service.EnvironmentSensorService;
@@ -27,6 +30,46 @@ public class EnvironmentDataServiceImpl extends ServiceImpl<EnvironmentDataMappe
     @Autowired
     private EnvironmentSensorService environmentSensorService;
 
+    @Autowired
+    private MetricPartitionManager metricPartitionManager;
+
+    @Autowired
+    private MetricRollupEngine metricRollupEngine;
+
+    /**
+     * 未分区表分批清理时每批删除的行数
+     */
+    private static final int CLEAN_BATCH_SIZE = 5000;
+
+    /**
+     * 保存并记录降采样汇总（覆盖IService.save，所有单条写入路径都会经过）
+     */
+    @Override
+    public boolean save(EnvironmentData entity) {
+        boolean saved = super.save(entity);
+        if (saved) {
+            recordRollup(entity);
+        }
+        return saved;
+    }
+
+    /**
+     * 批量保存并记录降采样汇总（覆盖ServiceImpl.saveBatch，所有批量写入路径都会经过）
+     */
+    @Override
+    public boolean saveBatch(Collection<EnvironmentData> entityList, int batchSize) {
+        boolean saved = super.saveBatch(entityList, batchSize);
+        if (saved) {
+            entityList.forEach(this::recordRollup);
+        }
+        return saved;
+    }
+
+    private void recordRollup(EnvironmentData data) {
+        metricRollupEngine.record(MetricRollupEngine.environmentSeries(data.getRoomId(), data.getDataType()),
+            data.getCollectTime(), data.getValue());
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean saveEnvironmentData(EnvironmentData data) {
@@ -91,42 +134,31 @@ public class EnvironmentDataServiceImpl extends ServiceImpl<EnvironmentDataMappe
     public List<Map<String, Object>> getDataTrend(Long roomId, String dataType, Integer hours) {
         LocalDateTime endTime = LocalDateTime.now();
         LocalDateTime startTime = endTime.minusHours(hours);
-        
-        List<EnvironmentData> dataList = getDataByType(roomId, dataType, startTime, endTime);
-        
-        // 按小时聚合数据
-        Map<Integer, List<EnvironmentData>> groupedData = dataList.stream()
-            .collect(Collectors.groupingBy(data -> data.getCollectTime().getHour()));
-        
+
+        // 优先读取降采样汇总，按范围和点数预算自动选择1分钟/5分钟/1小时档位，汇总未覆盖的头尾用原始数据补齐
+        int resolution = metricRollupEngine.selectTier(startTime, endTime, 0).getSeconds();
+        List<MetricRollup> rollups = metricRollupEngine.queryTrend(
+            Collections.singletonList(MetricRollupEngine.environmentSeries(roomId, dataType)), startTime, endTime, 0,
+            (from, to) -> getDataByType(roomId, dataType, from, to),
+            EnvironmentData::getCollectTime, EnvironmentData::getValue);
+
+        Map<LocalDateTime, MetricRollup> byBucket = rollups.stream()
+            .collect(Collectors.toMap(MetricRollup::getBucketTime, r -> r, (x, y) -> x));
+
         List<Map<String, Object>> trendData = new ArrayList<>();
-        for (int i = 0; i < hours; i++) {
-            LocalDateTime hourTime = startTime.plusHours(i);
-            int hour = hourTime.getHour();
-            
-            List<EnvironmentData> hourData = groupedData.get(hour);
+        for (LocalDateTime bucket = metricRollupEngine.truncate(startTime, resolution);
+             bucket.isBefore(endTime); bucket = bucket.plusSeconds(resolution)) {
+            MetricRollup rollup = byBucket.get(bucket);
             Map<String, Object> dataPoint = new HashMap<>();
-            dataPoint.put("time", hourTime);
-            dataPoint.put("hour", hour);
-            
-            if (hourData != null && !hourData.isEmpty()) {
-                double avgValue = hourData.stream().mapToDouble(EnvironmentData::getValue).average().orElse(0.0);
-                double maxValue = hourData.stream().mapToDouble(EnvironmentData::getValue).max().orElse(0.0);
-                double minValue = hourData.stream().mapToDouble(EnvironmentData::getValue).min().orElse(0.0);
-                
-                dataPoint.put("avgValue", avgValue);
-                dataPoint.put("maxValue", maxValue);
-                dataPoint.put("minValue", minValue);
-                dataPoint.put("count", hourData.size());
-            } else {
-                dataPoint.put("avgValue", 0.0);
-                dataPoint.put("maxValue", 0.0);
-                dataPoint.put("minValue", 0.0);
-                dataPoint.put("count", 0);
-            }
-            
+            dataPoint.put("time", bucket);
+            dataPoint.put("hour", bucket.getHour());
+            dataPoint.put("avgValue", rollup != null ? rollup.getAvgValue() : 0.0);
+            dataPoint.put("maxValue", rollup != null ? rollup.getMaxValue() : 0.0);
+            dataPoint.put("minValue", rollup != null ? rollup.getMinValue() : 0.0);
+            dataPoint.put("count", rollup != null ? rollup.getSampleCount() : 0);
             trendData.add(dataPoint);
         }
-        
+
         return trendData;
     }
 
@@ -236,11 +268,24 @@ public class EnvironmentDataServiceImpl extends ServiceImpl<EnvironmentDataMappe
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int cleanHistoryData(LocalDateTime beforeTime) {
-        LambdaQueryWrapper<EnvironmentData> wrapper = new LambdaQueryWrapper<>();
-        wrapper.lt(EnvironmentData::getCollectTime, beforeTime);
-        return baseMapper.delete(wrapper);
+        // 分区表直接删除过期分区
+        long dropped = metricPartitionManager.dropPartitionsBefore("environment_data", beforeTime);
+        if (dropped >= 0) {
+            return (int) Math.min(dropped, Integer.MAX_VALUE);
+        }
+
+        // 未分区时分批删除，每批独立提交
+        int count = 0;
+        int deleted;
+        do {
+            LambdaQueryWrapper<EnvironmentData> wrapper = new LambdaQueryWrapper<>();
+            wrapper.lt(EnvironmentData::getCollectTime, beforeTime)
+                .last("LIMIT " + CLEAN_BATCH_SIZE);
+            deleted = baseMapper.delete(wrapper);
+            count += deleted;
+        } while (deleted >= CLEAN_BATCH_SIZE);
+        return count;
     }
 
     @Override
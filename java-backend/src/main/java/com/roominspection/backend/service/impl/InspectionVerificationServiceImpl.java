@@ -11,6 +11,7 @@ import com.roominspection.backend.mapper.InspectionVerificationMapper;
 import com.roominspection.backend.service.DoorAccessLogService;
 import com.roominspection.backend.service.InspectionVerificationService;
 import com.roominspection.backend.service.PhotoVerificationService;
+import com.roominspection.backend.util.InspectionAccessRules;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -111,39 +112,25 @@ public class InspectionVerificationServiceImpl extends ServiceImpl<InspectionVer
             );
             
             verification.setAccessVerified(true);
-            verification.setEnterLogId((Long) ((DoorAccessLog) accessAnalysis.get("entryLog")).getId());
-            verification.setExitLogId((Long) ((DoorAccessLog) accessAnalysis.get("exitLog")).getId());
             
             DoorAccessLog entryLog = (DoorAccessLog) accessAnalysis.get("entryLog");
             DoorAccessLog exitLog = (DoorAccessLog) accessAnalysis.get("exitLog");
             
+            // 判断是否按时进入
             if (entryLog != null) {
-                verification.setActualStartTime(entryLog.getAccessTime());
-                
-                // 判断是否按时进入
-                long entryDelay = java.time.Duration.between(plannedStartTime, entryLog.getAccessTime()).toMinutes();
-                verification.setOnTimeEntry(Math.abs(entryDelay) <= 10);
-                verification.setEntryDelay((int) entryDelay);
+                verification.setEnterLogId(entryLog.getId());
+                InspectionAccessRules.applyEntry(verification, entryLog.getAccessTime());
             }
             
+            // 判断是否按时完成，有进入记录时同时计算停留时长
             if (exitLog != null) {
-                verification.setActualEndTime(exitLog.getAccessTime());
-                
-                // 判断是否按时完成
-                long completionDelay = java.time.Duration.between(plannedEndTime, exitLog.getAccessTime()).toMinutes();
-                verification.setOnTimeCompletion(Math.abs(completionDelay) <= 30);
-                verification.setCompletionDelay((int) completionDelay);
+                verification.setExitLogId(exitLog.getId());
+                InspectionAccessRules.applyExit(verification, exitLog.getAccessTime());
             }
             
-            // 计算停留时长
-            if (entryLog != null && exitLog != null) {
-                long stayMinutes = java.time.Duration.between(entryLog.getAccessTime(), exitLog.getAccessTime()).toMinutes();
-                verification.setStayDuration((int) stayMinutes);
-                
-                // 检测快速通过异常
-                if (stayMinutes < 5) {
-                    abnormalBehaviors.add("fast_pass");
-                }
+            // 检测快速通过异常
+            if (entryLog != null && exitLog != null && InspectionAccessRules.isFastPass(verification.getStayDuration())) {
+                abnormalBehaviors.add("fast_pass");
             }
         }
         
@@ -359,6 +346,99 @@ public class InspectionVerificationServiceImpl extends ServiceImpl<InspectionVer
         return dateTime != null ? dateTime.format(DATE_FORMATTER) : "未记录";
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int matchAccessLogs(List<DoorAccessLog> logs) {
+        List<DoorAccessLog> candidates = new ArrayList<>();
+        Set<Long> staffIds = new HashSet<>();
+        for (DoorAccessLog accessLog : logs) {
+            if ("success".equals(accessLog.getStatus()) && accessLog.getStaffId() != null
+                    && accessLog.getRoomId() != null && accessLog.getAccessTime() != null) {
+                candidates.add(accessLog);
+                staffIds.add(accessLog.getStaffId());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        List<InspectionVerification> verifications = this.list(new LambdaQueryWrapper<InspectionVerification>()
+                .eq(InspectionVerification::getVerificationStatus, "processing")
+                .in(InspectionVerification::getInspectorId, staffIds));
+        if (verifications.isEmpty()) {
+            return 0;
+        }
+        // 同一批内先进后出
+        candidates.sort(Comparator.comparing(DoorAccessLog::getAccessTime));
+
+        int matched = 0;
+        for (InspectionVerification verification : verifications) {
+            boolean changed = false;
+            for (DoorAccessLog accessLog : candidates) {
+                if (!accessLog.getStaffId().equals(verification.getInspectorId())
+                        || !accessLog.getRoomId().equals(verification.getRoomId())) {
+                    continue;
+                }
+                LocalDateTime accessTime = accessLog.getAccessTime();
+                if ("in".equals(accessLog.getDirection()) && verification.getEnterLogId() == null
+                        && InspectionAccessRules.isInEntryWindow(verification, accessTime)) {
+                    Long logId = resolveLogId(accessLog);
+                    if (logId == null) {
+                        continue;
+                    }
+                    verification.setEnterLogId(logId);
+                    InspectionAccessRules.applyEntry(verification, accessTime);
+                    markAccessLogMatched(logId, verification.getInspectionTaskId());
+                    changed = true;
+                    matched++;
+                } else if ("out".equals(accessLog.getDirection()) && verification.getEnterLogId() != null
+                        && verification.getExitLogId() == null && verification.getActualStartTime() != null
+                        && accessTime.isAfter(verification.getActualStartTime())
+                        && InspectionAccessRules.isInExitWindow(verification, accessTime)) {
+                    Long logId = resolveLogId(accessLog);
+                    if (logId == null) {
+                        continue;
+                    }
+                    verification.setExitLogId(logId);
+                    InspectionAccessRules.applyExit(verification, accessTime);
+                    verification.setAccessVerified(true);
+                    markAccessLogMatched(logId, verification.getInspectionTaskId());
+                    changed = true;
+                    matched++;
+                }
+            }
+            if (changed) {
+                this.updateById(verification);
+                log.info("门禁实时匹配巡检核验{}：进入记录{}，离开记录{}",
+                        verification.getId(), verification.getEnterLogId(), verification.getExitLogId());
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 推送写入的门禁记录没有回填主键，按门禁系统+事件ID查询
+     */
+    private Long resolveLogId(DoorAccessLog accessLog) {
+        if (accessLog.getId() != null) {
+            return accessLog.getId();
+        }
+        DoorAccessLog stored = doorAccessLogService.getOne(new LambdaQueryWrapper<DoorAccessLog>()
+                .select(DoorAccessLog::getId)
+                .eq(DoorAccessLog::getSystemType, accessLog.getSystemType())
+                .eq(DoorAccessLog::getEventId, accessLog.getEventId()), false);
+        return stored != null ? stored.getId() : null;
+    }
+
+    private void markAccessLogMatched(Long logId, Long inspectionTaskId) {
+        DoorAccessLog update = new DoorAccessLog();
+        update.setId(logId);
+        update.setInspectionTaskId(inspectionTaskId);
+        update.setVerified(true);
+        update.setVerificationResult("match");
+        doorAccessLogService.updateById(update);
+    }
+
     private String determineGradeLevel(Integer score) {
         if (score == null) return "unknown";
         if (score >= 90) return "excellent";
@@ -11,6 +11,7 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -31,7 +32,7 @@ public class MonitorConfigServiceImpl extends ServiceImpl<MonitorConfigMapper, M
      * 根据设备类型获取监控配置
      */
     @Override
-    @Cacheable(value = "monitorConfig", key = "#deviceType")
+    @Cacheable(value = "monitorConfig", key = "#deviceType", sync = true)
     public MonitorConfig getConfigByDeviceType(String deviceType) {
         List<MonitorConfig> configs = monitorConfigMapper.selectByDeviceType(deviceType);
         return configs.isEmpty() ? null : configs.get(0);
@@ -41,7 +42,7 @@ public class MonitorConfigServiceImpl extends ServiceImpl<MonitorConfigMapper, M
      * 获取采集频率
      */
     @Override
-    @Cacheable(value = "collectionInterval", key = "#deviceType")
+    @Cacheable(value = "collectionInterval", key = "#deviceType", sync = true)
     public Integer getCollectionInterval(String deviceType) {
         MonitorConfig config = getConfigByDeviceType(deviceType);
         return config != null ? config.getCollectionInterval() : 60; // 默认60秒
@@ -51,7 +52,7 @@ public class MonitorConfigServiceImpl extends ServiceImpl<MonitorConfigMapper, M
      * 设置采集频率
      */
     @Override
-    @CacheEvict(value = {"monitorConfig", "collectionInterval"}, key = "#configId")
+    @CacheEvict(value = {"monitorConfig", "collectionInterval", "concurrencyLimit"}, allEntries = true)
     @Transactional(rollbackFor = Exception.class)
     public boolean setCollectionInterval(Long configId, Integer interval, Long updatedBy, String updatedByName) {
         // 验证采集频率范围（1-86400秒）
@@ -78,11 +79,29 @@ public class MonitorConfigServiceImpl extends ServiceImpl<MonitorConfigMapper, M
         return result;
     }
 
+    @Override
+    @CacheEvict(value = {"monitorConfig", "collectionInterval", "concurrencyLimit"}, allEntries = true)
+    public boolean save(MonitorConfig entity) {
+        return super.save(entity);
+    }
+
+    @Override
+    @CacheEvict(value = {"monitorConfig", "collectionInterval", "concurrencyLimit"}, allEntries = true)
+    public boolean updateById(MonitorConfig entity) {
+        return super.updateById(entity);
+    }
+
+    @Override
+    @CacheEvict(value = {"monitorConfig", "collectionInterval", "concurrencyLimit"}, allEntries = true)
+    public boolean removeById(Serializable id) {
+        return super.removeById(id);
+    }
+
     /**
      * 获取并发数限制
      */
     @Override
-    @Cacheable(value = "concurrencyLimit", key = "#deviceType")
+    @Cacheable(value = "concurrencyLimit", key = "#deviceType", sync = true)
     public Integer getConcurrencyLimit(String deviceType) {
         MonitorConfig config = getConfigByDeviceType(deviceType);
         return config != null ? config.getConcurrencyLimit() : 50; // 默认50并发
@@ -2,6 +2,7 @@ package com.roominspection.backend.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.roominspection.backend.collector.MetricPartitionManager;
 import com.roominspection.backend.entity.MonitorTask;
 import com.roominspection.backend.mapper.MonitorTaskMapper;
 import com.roominspection.backend.service.MonitorTaskService;
@@ -26,6 +27,14 @@ public class MonitorTaskServiceImpl extends ServiceImpl<MonitorTaskMapper, Monit
     @Autowired
     private MonitorTaskMapper monitorTaskMapper;
 
+    @Autowired
+    private MetricPartitionManager metricPartitionManager;
+
+    /**
+     * 未分区表分批清理时每批删除的行数
+     */
+    private static final int CLEAN_BATCH_SIZE = 5000;
+
     /**
      * 创建监控任务
      */
@@ -147,12 +156,23 @@ public class MonitorTaskServiceImpl extends ServiceImpl<MonitorTaskMapper, Monit
 
     /**
      * 清理历史任务
+     * 分区表直接删除过期分区；未分区时按批次删除，每批独立提交，避免长事务锁表
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int cleanHistoryTasks(int days) {
         LocalDateTime beforeTime = LocalDateTime.now().minusDays(days);
-        int count = monitorTaskMapper.deleteBeforeTime(beforeTime);
+        long dropped = metricPartitionManager.dropPartitionsBefore("monitor_task", beforeTime);
+        if (dropped >= 0) {
+            log.info("清理历史任务记录（分区删除）: days={}, estimatedCount={}", days, dropped);
+            return (int) Math.min(dropped, Integer.MAX_VALUE);
+        }
+
+        int count = 0;
+        int deleted;
+        do {
+            deleted = monitorTaskMapper.deleteBeforeTime(beforeTime, CLEAN_BATCH_SIZE);
+            count += deleted;
+        } while (deleted >= CLEAN_BATCH_SIZE);
         log.info("清理历史任务记录: days={}, count={}", days, count);
         return count;
     }
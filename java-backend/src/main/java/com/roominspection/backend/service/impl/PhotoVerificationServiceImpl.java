@@ -9,6 +9,8 @@ import com.roominspection.backend.entity.PhotoVerification;
 import com.roominspection.backend.mapper.PhotoVerificationMapper;
 import com.roominspection.backend.service.DoorAccessLogService;
 import com.roominspection.backend.service.PhotoVerificationService;
+import com.roominspection.backend.util.ImageQualityAnalyzer;
+import com.roominspection.backend.util.ImageQualityAnalyzer.ImageAnalysis;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,6 +25,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 照片核验服务实现类
@@ -38,7 +41,10 @@ public class PhotoVerificationServiceImpl extends ServiceImpl<PhotoVerificationM
     @Autowired
     private ObjectMapper objectMapper;
 
-    @Value("${photo.quality.clarity.threshold:60}")
+    @Autowired
+    private ImageQualityAnalyzer imageQualityAnalyzer;
+
+    @Value("${photo.quality.clarity.threshold:67}")
     private int clarityThreshold;
 
     @Value("${photo.quality.brightness.min:30}")
@@ -85,18 +91,13 @@ public class PhotoVerificationServiceImpl extends ServiceImpl<PhotoVerificationM
         verification.setVerificationStatus("pending");
         
         try {
-            // 1. 读取照片信息
-            File photoFile = new File(photoPath);
-            BufferedImage image = ImageIO.read(photoFile);
-            
-            verification.setResolution(image.getWidth() + "x" + image.getHeight());
-            verification.setFileSize(photoFile.length());
+            // 1. 读取照片信息并检查质量（只解码一次）
+            ImageAnalysis analysis = imageQualityAnalyzer.analyze(new File(photoPath));
+            verification.setResolution(analysis.getWidth() + "x" + analysis.getHeight());
+            verification.setFileSize(analysis.getFileSize());
             
             // 2. 质量检查
-            Map<String, Object> qualityCheck = checkPhotoQuality(photoPath);
-            verification.setClarityScore((Integer) qualityCheck.get("clarityScore"));
-            verification.setBrightnessScore((Integer) qualityCheck.get("brightnessScore"));
-            verification.setBlurStatus((String) qualityCheck.get("blurStatus"));
+            applyQuality(verification, analysis);
             
             // 3. OCR识别设备标签
             Map<String, Object> ocrResult = ocrDeviceLabel(photoPath);
@@ -130,40 +131,11 @@ public class PhotoVerificationServiceImpl extends ServiceImpl<PhotoVerificationM
 
     @Override
     public Map<String, Object> checkPhotoQuality(String photoPath) {
-        Map<String, Object> result = new HashMap<>();
-        
         try {
-            File photoFile = new File(photoPath);
-            BufferedImage image = ImageIO.read(photoFile);
-            
-            // 1. 计算清晰度（基于拉普拉斯方差）
-            int clarityScore = calculateClarityScore(image);
-            result.put("clarityScore", clarityScore);
-            
-            // 2. 计算亮度
-            int brightnessScore = calculateBrightnessScore(image);
-            result.put("brightnessScore", brightnessScore);
-            
-            // 3. 判断模糊度
-            String blurStatus = "normal";
-            List<String> abnormalities = new ArrayList<>();
-            
-            if (clarityScore < clarityThreshold) {
-                blurStatus = clarityScore < clarityThreshold / 2 ? "very_blurry" : "blurry";
-                abnormalities.add("blur");
-            }
-            
-            if (brightnessScore < brightnessMin || brightnessScore > brightnessMax) {
-                abnormalities.add(brightnessScore < brightnessMin ? "dark" : "too_bright");
-            }
-            
-            result.put("blurStatus", blurStatus);
-            result.put("abnormalities", abnormalities);
-            
-            return result;
-            
+            return toQualityResult(imageQualityAnalyzer.analyze(new File(photoPath)));
         } catch (Exception e) {
             log.error("照片质量检查失败：{}", photoPath, e);
+            Map<String, Object> result = new HashMap<>();
             result.put("clarityScore", 0);
             result.put("brightnessScore", 0);
             result.put("blurStatus", "error");
@@ -321,17 +293,29 @@ public class PhotoVerificationServiceImpl extends ServiceImpl<PhotoVerificationM
         // 查询所有待核验的照片
         List<PhotoVerification> photos = baseMapper.findByInspectionTaskId(inspectionTaskId);
         
+        // 并行重新分析照片质量（同时解码数由分析器限制）
+        Map<Long, CompletableFuture<ImageAnalysis>> analyses = new HashMap<>();
+        for (PhotoVerification photo : photos) {
+            if (photo.getPhotoPath() != null && new File(photo.getPhotoPath()).isFile()) {
+                analyses.put(photo.getId(), imageQualityAnalyzer.analyzeAsync(new File(photo.getPhotoPath())));
+            }
+        }
+        
         int passedCount = 0;
         int failedCount = 0;
         int manualCount = 0;
+        List<PhotoVerification> updated = new ArrayList<>(photos.size());
         
         for (PhotoVerification photo : photos) {
             try {
-                // 重新执行核验
-                // TODO: 这里可以添加更多的核验逻辑
+                CompletableFuture<ImageAnalysis> analysis = analyses.get(photo.getId());
+                if (analysis != null) {
+                    applyQuality(photo, analysis.join());
+                }
                 String status = determineVerificationStatus(photo);
                 photo.setVerificationStatus(status);
-                this.updateById(photo);
+                photo.setVerificationSummary(generateVerificationSummary(photo));
+                updated.add(photo);
                 
                 switch (status) {
                     case "passed":
@@ -350,6 +334,10 @@ public class PhotoVerificationServiceImpl extends ServiceImpl<PhotoVerificationM
             }
         }
         
+        if (!updated.isEmpty()) {
+            this.updateBatchById(updated);
+        }
+        
         result.put("totalCount", photos.size());
         result.put("passedCount", passedCount);
         result.put("failedCount", failedCount);
@@ -396,58 +384,43 @@ public class PhotoVerificationServiceImpl extends ServiceImpl<PhotoVerificationM
     // ==================== 私有辅助方法 ====================
 
     /**
-     * 计算清晰度评分（基于拉普拉斯方差）
+     * 将质量分析结果写入核验记录
      */
-    private int calculateClarityScore(BufferedImage image) {
-        // TODO: 实现更精确的清晰度计算算法
-        // 这里提供简化实现
-        
-        int width = image.getWidth();
-        int height = image.getHeight();
-        
-        // 简单的边缘检测来评估清晰度
-        int edgeCount = 0;
-        for (int y = 1; y < height - 1; y++) {
-            for (int x = 1; x < width - 1; x++) {
-                int center = image.getRGB(x, y) & 0xFF;
-                int top = image.getRGB(x, y - 1) & 0xFF;
-                int bottom = image.getRGB(x, y + 1) & 0xFF;
-                int left = image.getRGB(x - 1, y) & 0xFF;
-                int right = image.getRGB(x + 1, y) & 0xFF;
-                
-                int diff = Math.abs(center - top) + Math.abs(center - bottom) +
-                          Math.abs(center - left) + Math.abs(center - right);
-                
-                if (diff > 50) {
-                    edgeCount++;
-                }
-            }
-        }
-        
-        // 归一化到0-100分
-        int score = (int) (edgeCount * 100.0 / (width * height) * 4);
-        return Math.min(100, score);
+    private void applyQuality(PhotoVerification verification, ImageAnalysis analysis) {
+        Map<String, Object> quality = toQualityResult(analysis);
+        verification.setClarityScore((Integer) quality.get("clarityScore"));
+        verification.setBrightnessScore((Integer) quality.get("brightnessScore"));
+        verification.setBlurStatus((String) quality.get("blurStatus"));
     }
 
     /**
-     * 计算亮度评分
+     * 按阈值评估质量分析结果
      */
-    private int calculateBrightnessScore(BufferedImage image) {
-        long totalBrightness = 0;
-        int pixelCount = image.getWidth() * image.getHeight();
-        
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-                totalBrightness += (r + g + b) / 3;
-            }
+    private Map<String, Object> toQualityResult(ImageAnalysis analysis) {
+        Map<String, Object> result = new HashMap<>();
+        int clarityScore = analysis.getClarityScore();
+        int brightnessScore = analysis.getBrightness();
+        result.put("clarityScore", clarityScore);
+        result.put("brightnessScore", brightnessScore);
+        result.put("laplacianVariance", Math.round(analysis.getLaplacianVariance() * 100) / 100.0);
+        result.put("edgeRatio", Math.round(analysis.getEdgeRatio() * 10000) / 10000.0);
+        
+        // 判断模糊度
+        String blurStatus = "normal";
+        List<String> abnormalities = new ArrayList<>();
+        
+        if (clarityScore < clarityThreshold) {
+            blurStatus = clarityScore < clarityThreshold / 2 ? "very_blurry" : "blurry";
+            abnormalities.add("blur");
+        }
+        
+        if (brightnessScore < brightnessMin || brightnessScore > brightnessMax) {
+            abnormalities.add(brightnessScore < brightnessMin ? "dark" : "too_bright");
         }
         
-        int avgBrightness = (int) (totalBrightness / pixelCount);
-        return avgBrightness;
+        result.put("blurStatus", blurStatus);
+        result.put("abnormalities", abnormalities);
+        return result;
     }
 
     /**
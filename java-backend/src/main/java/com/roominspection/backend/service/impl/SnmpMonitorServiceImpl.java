@@ -1,5 +1,6 @@
 package com.roominspection.backend.service.impl;
 
+import com.roominspection.backend.collector.SnmpDeviceCollector;
 import com.roominspection.backend.entity.Device;
 import com.roominspection.backend.entity.DeviceMetric;
 import com.roominspection.backend.mapper.DeviceMetricMapper;
@@ -7,8 +8,8 @@ import com.roominspection.backend.service.SnmpMonitorService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 /**
  * SNMP监控服务实现类
@@ -20,52 +21,24 @@ public class SnmpMonitorServiceImpl implements SnmpMonitorService {
     @Autowired(required = false)
     private DeviceMetricMapper deviceMetricMapper;
 
+    @Autowired
+    private SnmpDeviceCollector snmpDeviceCollector;
+
+    /**
+     * 同步采集：在共享会话的异步读取上等待，期间占用调用线程
+     * 设备无响应时抛出异常，由采集执行器计入失败并决定是否重试或隔离
+     */
     @Override
     public List<DeviceMetric> collectMetrics(Device device) {
-        List<DeviceMetric> metrics = new ArrayList<>();
-
         try {
-            // TODO: 使用SNMP4J采集设备指标
-            // 示例代码：
-            // Snmp snmp = new Snmp(new DefaultUdpTransportMapping());
-            // snmp.listen();
-            // ...
-            // snmp.close();
-
-            // 临时返回模拟数据
-            DeviceMetric cpuMetric = new DeviceMetric();
-            cpuMetric.setDeviceId(device.getId());
-            cpuMetric.setDeviceCode(device.getCode());
-            cpuMetric.setDeviceName(device.getName());
-            cpuMetric.setMetricType("CPU_USAGE");
-            cpuMetric.setMetricName("CPU使用率");
-            cpuMetric.setMetricValue(45.5);
-            cpuMetric.setUnit("%");
-            cpuMetric.setStatus("NORMAL");
-            cpuMetric.setCollectionMethod("SNMP");
-            cpuMetric.setCollectionTime(LocalDateTime.now());
-            cpuMetric.setCreatedAt(LocalDateTime.now());
-            metrics.add(cpuMetric);
-
-            DeviceMetric memoryMetric = new DeviceMetric();
-            memoryMetric.setDeviceId(device.getId());
-            memoryMetric.setDeviceCode(device.getCode());
-            memoryMetric.setDeviceName(device.getName());
-            memoryMetric.setMetricType("MEMORY_USAGE");
-            memoryMetric.setMetricName("内存使用率");
-            memoryMetric.setMetricValue(62.3);
-            memoryMetric.setUnit("%");
-            memoryMetric.setStatus("NORMAL");
-            memoryMetric.setCollectionMethod("SNMP");
-            memoryMetric.setCollectionTime(LocalDateTime.now());
-            memoryMetric.setCreatedAt(LocalDateTime.now());
-            metrics.add(memoryMetric);
-
-        } catch (Exception e) {
-            log.error("SNMP采集失败: deviceId={}", device.getId(), e);
+            return snmpDeviceCollector.collect(device).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("SNMP采集被中断: deviceId=" + device.getId(), e);
+        } catch (ExecutionException e) {
+            log.debug("SNMP采集失败: deviceId={}, error={}", device.getId(), e.getCause().getMessage());
+            throw new IllegalStateException("SNMP采集失败: " + e.getCause().getMessage(), e.getCause());
         }
-
-        return metrics;
     }
 
     @Override
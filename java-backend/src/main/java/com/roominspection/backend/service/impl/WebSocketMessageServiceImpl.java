@@ -2,11 +2,17 @@ package com.roominspection.backend.service.impl;
 
 import com.roominspection.backend.config.AlarmsWebSocketHandler;
 import com.roominspection.backend.config.MonitorDataWebSocketHandler;
+import com.roominspection.backend.entity.AlarmRecord;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DeviceMetric;
 import com.roominspection.backend.service.WebSocketMessageService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,6 +43,21 @@ public class WebSocketMessageServiceImpl implements WebSocketMessageService {
         }
     }
 
+    /**
+     * 按订阅推送告警
+     */
+    @Override
+    public void pushAlarms(List<AlarmRecord> alarms) {
+        try {
+            if (alarmsWebSocketHandler.getConnectionCount() > 0 && !alarms.isEmpty()) {
+                alarmsWebSocketHandler.broadcastAlarms(alarms);
+                log.debug("推送告警消息成功: count={}", alarms.size());
+            }
+        } catch (Exception e) {
+            log.error("推送告警消息失败", e);
+        }
+    }
+
     /**
      * 推送告警统计
      */
@@ -67,6 +88,26 @@ public class WebSocketMessageServiceImpl implements WebSocketMessageService {
         }
     }
 
+    /**
+     * 按订阅推送单台设备的指标（按指标类型分帧，每帧只序列化一次）
+     */
+    @Override
+    public void pushDeviceMetrics(Device device, List<DeviceMetric> metrics) {
+        try {
+            if (monitorDataWebSocketHandler.getConnectionCount() == 0 || metrics.isEmpty()) {
+                return;
+            }
+            Map<String, List<DeviceMetric>> byType = new LinkedHashMap<>();
+            for (DeviceMetric metric : metrics) {
+                byType.computeIfAbsent(metric.getMetricType(), k -> new ArrayList<>()).add(metric);
+            }
+            byType.forEach((metricType, typedMetrics) -> monitorDataWebSocketHandler.broadcastDeviceMetrics(
+                    device.getRoomId(), device.getId(), metricType, typedMetrics));
+        } catch (Exception e) {
+            log.error("推送设备指标数据失败: deviceId={}", device.getId(), e);
+        }
+    }
+
     /**
      * 推送采集任务状态
      */
@@ -0,0 +1,383 @@
+package com.roominspection.backend.util;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.*;
+
+/**
+ * 照片质量分析器
+ * <p>
+ * 每张照片只解码一次：长边超过分析尺寸时通过 {@link ImageReadParam} 在解码阶段按整数倍抽样，
+ * 直接得到缩小后的图像；随后从栅格数据批量转换为亮度数组（BT.601），不再逐像素调用getRGB。
+ * 抽样时解码步长取抽样倍数的一半，再对亮度做2x2均值缩小，相当于先低通再抽样，
+ * 避免直接隔点取样的混叠抬高拉普拉斯方差。
+ * 亮度均值、拉普拉斯方差（清晰度）与边缘比例在一次遍历中算出，按行分块在ForkJoin池中并行。
+ * <p>
+ * 清晰度评分 = 100 × ln(1 + 方差) / ln(1 + 满分方差)，与早期按边缘像素比例计算的评分不是同一刻度，
+ * 合格分（photo.quality.clarity.threshold）按新刻度标定，见配置文件说明。
+ * <p>
+ * 同时解码的照片数受信号量限制，批量核验时内存占用有上限；批量线程比许可少一个，
+ * 单张上传核验始终有可用许可，等待许可超时即失败返回，不会无限阻塞请求线程。
+ */
+@Slf4j
+@Component
+public class ImageQualityAnalyzer {
+
+    /**
+     * 拉普拉斯响应超过该值计为边缘像素
+     */
+    private static final int EDGE_RESPONSE = 40;
+
+    @Value("${photo.analysis.max-dimension:1600}")
+    private int maxDimension;
+
+    @Value("${photo.analysis.parallelism:0}")
+    private int parallelism;
+
+    @Value("${photo.analysis.tile-rows:64}")
+    private int tileRows;
+
+    @Value("${photo.analysis.max-concurrent-decodes:4}")
+    private int maxConcurrentDecodes;
+
+    @Value("${photo.analysis.decode-wait-ms:10000}")
+    private long decodeWaitMs;
+
+    @Value("${photo.analysis.clarity-full-score-variance:1000}")
+    private double clarityFullScoreVariance;
+
+    private ForkJoinPool pool;
+
+    private ExecutorService batchExecutor;
+
+    private Semaphore decodePermits;
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+        decodePermits = new Semaphore(maxConcurrentDecodes);
+        // 批量核验最多占用 许可数-1 个许可，给单张上传核验留一个
+        batchExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentDecodes - 1), r -> {
+            Thread thread = new Thread(r, "photo-analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("照片质量分析器启动: parallelism={}, maxDimension={}, maxConcurrentDecodes={}",
+                threads, maxDimension, maxConcurrentDecodes);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        batchExecutor.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * 分析照片质量
+     *
+     * @param file 照片文件
+     * @return 分析结果
+     */
+    public ImageAnalysis analyze(File file) throws IOException {
+        try {
+            if (!decodePermits.tryAcquire(decodeWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("照片分析繁忙，等待" + decodeWaitMs + "ms未获得解码许可: " + file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("照片分析被中断: " + file, e);
+        }
+        try {
+            long start = System.nanoTime();
+            ImageAnalysis analysis = new ImageAnalysis();
+            analysis.setFileSize(file.length());
+
+            BufferedImage image = decode(file, analysis);
+            int width = image.getWidth();
+            int height = image.getHeight();
+            byte[] luma = toLuminance(image);
+            if (analysis.getSubsampling() > 1 && width >= 2 && height >= 2) {
+                luma = halve(luma, width, height);
+                width /= 2;
+                height /= 2;
+            }
+
+            Stats stats = pool.invoke(new StatsTask(luma, width, height, 0, height));
+            long pixels = (long) width * height;
+            long inner = (long) Math.max(0, width - 2) * Math.max(0, height - 2);
+
+            analysis.setBrightness((int) (stats.lumaSum / pixels));
+            if (inner > 0) {
+                double mean = (double) stats.lapSum / inner;
+                double variance = (double) stats.lapSquareSum / inner - mean * mean;
+                analysis.setLaplacianVariance(variance);
+                analysis.setEdgeRatio((double) stats.edgeCount / inner);
+                analysis.setClarityScore(clarityScore(variance));
+            }
+            analysis.setAnalysisMillis((System.nanoTime() - start) / 1_000_000);
+            return analysis;
+        } finally {
+            decodePermits.release();
+        }
+    }
+
+    /**
+     * 异步分析照片质量（在有界线程池中执行，批量核验用）
+     *
+     * @param file 照片文件
+     * @return 分析结果
+     */
+    public CompletableFuture<ImageAnalysis> analyzeAsync(File file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return analyze(file);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, batchExecutor);
+    }
+
+    /**
+     * 解码照片，长边超过分析尺寸时在解码阶段抽样（步长为抽样倍数的一半，剩余的2倍由均值缩小完成）
+     */
+    private BufferedImage decode(File file, ImageAnalysis analysis) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException("无法读取照片文件: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("不支持的图片格式: " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, (Math.max(width, height) + maxDimension - 1) / maxDimension);
+                int step = (subsampling + 1) / 2;
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                analysis.setWidth(width);
+                analysis.setHeight(height);
+                analysis.setSubsampling(subsampling > 1 ? step * 2 : 1);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 从栅格数据批量转换为亮度数组（0-255，无符号字节）
+     */
+    private byte[] toLuminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] luma = new byte[width * height];
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+
+        if (buffer instanceof DataBufferByte && sampleModel instanceof PixelInterleavedSampleModel
+                && raster.getParent() == null) {
+            PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) sampleModel;
+            byte[] data = ((DataBufferByte) buffer).getData();
+            int[] bandOffsets = model.getBandOffsets();
+            int pixelStride = model.getPixelStride();
+            int scanlineStride = model.getScanlineStride();
+            int base = buffer.getOffset();
+
+            if (bandOffsets.length == 1) {
+                // 灰度图
+                for (int y = 0; y < height; y++) {
+                    int src = base + y * scanlineStride + bandOffsets[0];
+                    int dst = y * width;
+                    for (int x = 0; x < width; x++, src += pixelStride) {
+                        luma[dst + x] = data[src];
+                    }
+                }
+                return luma;
+            }
+            if (bandOffsets.length >= 3 && image.getColorModel().getColorSpace().isCS_sRGB()) {
+                int rOffset = bandOffsets[0];
+                int gOffset = bandOffsets[1];
+                int bOffset = bandOffsets[2];
+                for (int y = 0; y < height; y++) {
+                    int src = base + y * scanlineStride;
+                    int dst = y * width;
+                    for (int x = 0; x < width; x++, src += pixelStride) {
+                        luma[dst + x] = (byte) luminance(data[src + rOffset] & 0xFF,
+                                data[src + gOffset] & 0xFF, data[src + bOffset] & 0xFF);
+                    }
+                }
+                return luma;
+            }
+        }
+
+        // 其他像素格式按行批量取RGB
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int dst = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                luma[dst + x] = (byte) luminance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            }
+        }
+        return luma;
+    }
+
+    /**
+     * 2x2均值缩小（奇数的最后一行/列舍弃）
+     */
+    private static byte[] halve(byte[] luma, int width, int height) {
+        int halfWidth = width / 2;
+        int halfHeight = height / 2;
+        byte[] result = new byte[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            int top = 2 * y * width;
+            int bottom = top + width;
+            int dst = y * halfWidth;
+            for (int x = 0; x < halfWidth; x++) {
+                int src = 2 * x;
+                int sum = (luma[top + src] & 0xFF) + (luma[top + src + 1] & 0xFF)
+                        + (luma[bottom + src] & 0xFF) + (luma[bottom + src + 1] & 0xFF);
+                result[dst + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+        return result;
+    }
+
+    private static int luminance(int r, int g, int b) {
+        return (77 * r + 150 * g + 29 * b) >> 8;
+    }
+
+    /**
+     * 拉普拉斯方差按对数映射到0-100分（方差达到满分方差即100分）
+     */
+    private int clarityScore(double variance) {
+        if (variance <= 0) {
+            return 0;
+        }
+        double score = 100 * Math.log1p(variance) / Math.log1p(clarityFullScoreVariance);
+        return (int) Math.min(100, Math.round(score));
+    }
+
+    /**
+     * 按行分块统计：亮度和、拉普拉斯响应的和与平方和、边缘像素数
+     */
+    private final class StatsTask extends RecursiveTask<Stats> {
+        private final byte[] luma;
+        private final int width;
+        private final int height;
+        private final int fromRow;
+        private final int toRow;
+
+        StatsTask(byte[] luma, int width, int height, int fromRow, int toRow) {
+            this.luma = luma;
+            this.width = width;
+            this.height = height;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (toRow - fromRow > tileRows) {
+                int middle = (fromRow + toRow) >>> 1;
+                StatsTask upper = new StatsTask(luma, width, height, fromRow, middle);
+                upper.fork();
+                Stats lower = new StatsTask(luma, width, height, middle, toRow).compute();
+                return lower.merge(upper.join());
+            }
+
+            Stats stats = new Stats();
+            for (int y = fromRow; y < toRow; y++) {
+                int rowStart = y * width;
+                boolean innerRow = y > 0 && y < height - 1;
+                for (int x = 0; x < width; x++) {
+                    int index = rowStart + x;
+                    int center = luma[index] & 0xFF;
+                    stats.lumaSum += center;
+                    if (innerRow && x > 0 && x < width - 1) {
+                        int laplacian = (luma[index - width] & 0xFF) + (luma[index + width] & 0xFF)
+                                + (luma[index - 1] & 0xFF) + (luma[index + 1] & 0xFF) - 4 * center;
+                        stats.lapSum += laplacian;
+                        stats.lapSquareSum += (long) laplacian * laplacian;
+                        if (laplacian > EDGE_RESPONSE || laplacian < -EDGE_RESPONSE) {
+                            stats.edgeCount++;
+                        }
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+
+    private static final class Stats {
+        private long lumaSum;
+        private long lapSum;
+        private long lapSquareSum;
+        private long edgeCount;
+
+        Stats merge(Stats other) {
+            lumaSum += other.lumaSum;
+            lapSum += other.lapSum;
+            lapSquareSum += other.lapSquareSum;
+            edgeCount += other.edgeCount;
+            return this;
+        }
+    }
+
+    /**
+     * 照片分析结果
+     */
+    @Data
+    public static class ImageAnalysis {
+        /**
+         * 原图宽高
+         */
+        private int width;
+        private int height;
+        private long fileSize;
+        /**
+         * 相对原图的缩小倍数（1表示原图）
+         */
+        private int subsampling;
+        /**
+         * 平均亮度（0-255）
+         */
+        private int brightness;
+        /**
+         * 拉普拉斯方差
+         */
+        private double laplacianVariance;
+        /**
+         * 清晰度评分（0-100）
+         */
+        private int clarityScore;
+        /**
+         * 边缘像素比例
+         */
+        private double edgeRatio;
+        private long analysisMillis;
+    }
+}
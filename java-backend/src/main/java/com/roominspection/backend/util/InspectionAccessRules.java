@@ -0,0 +1,123 @@
+package com.roominspection.backend.util;
+
+import com.roominspection.backend.entity.InspectionVerification;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 巡检进出核验规则
+ * <p>
+ * 进出时间窗口、按时判定和停留时长的计算集中在这里，巡检完整性分析、门禁记录核验
+ * 和门禁事件实时匹配使用同一套规则。
+ */
+public final class InspectionAccessRules {
+
+    /**
+     * 进入时间窗口：计划开始时间前后（分钟）
+     */
+    public static final int ENTRY_WINDOW_MINUTES = 30;
+
+    /**
+     * 离开时间窗口：计划结束时间之前（分钟）
+     */
+    public static final int EXIT_WINDOW_BEFORE_MINUTES = 30;
+
+    /**
+     * 离开时间窗口：计划结束时间之后（分钟）
+     */
+    public static final int EXIT_WINDOW_AFTER_MINUTES = 60;
+
+    /**
+     * 按时进入允许的偏差（分钟）
+     */
+    public static final int ON_TIME_ENTRY_MINUTES = 10;
+
+    /**
+     * 按时完成允许的偏差（分钟）
+     */
+    public static final int ON_TIME_COMPLETION_MINUTES = 30;
+
+    /**
+     * 停留时长低于该值视为快速通过（分钟）
+     */
+    public static final int FAST_PASS_MINUTES = 5;
+
+    private InspectionAccessRules() {
+    }
+
+    public static LocalDateTime entryWindowStart(LocalDateTime plannedStartTime) {
+        return plannedStartTime.minusMinutes(ENTRY_WINDOW_MINUTES);
+    }
+
+    public static LocalDateTime entryWindowEnd(LocalDateTime plannedStartTime) {
+        return plannedStartTime.plusMinutes(ENTRY_WINDOW_MINUTES);
+    }
+
+    public static LocalDateTime exitWindowStart(LocalDateTime plannedEndTime) {
+        return plannedEndTime.minusMinutes(EXIT_WINDOW_BEFORE_MINUTES);
+    }
+
+    public static LocalDateTime exitWindowEnd(LocalDateTime plannedEndTime) {
+        return plannedEndTime.plusMinutes(EXIT_WINDOW_AFTER_MINUTES);
+    }
+
+    /**
+     * 是否在进入时间窗口内，未设置计划开始时间时为核验创建之后
+     */
+    public static boolean isInEntryWindow(InspectionVerification verification, LocalDateTime accessTime) {
+        LocalDateTime plannedStartTime = verification.getPlannedStartTime();
+        if (plannedStartTime == null) {
+            return verification.getCreateTime() == null || !accessTime.isBefore(verification.getCreateTime());
+        }
+        return !accessTime.isBefore(entryWindowStart(plannedStartTime))
+                && !accessTime.isAfter(entryWindowEnd(plannedStartTime));
+    }
+
+    /**
+     * 是否在离开时间窗口内，未设置计划结束时间时不限
+     */
+    public static boolean isInExitWindow(InspectionVerification verification, LocalDateTime accessTime) {
+        LocalDateTime plannedEndTime = verification.getPlannedEndTime();
+        if (plannedEndTime == null) {
+            return true;
+        }
+        return !accessTime.isBefore(exitWindowStart(plannedEndTime))
+                && !accessTime.isAfter(exitWindowEnd(plannedEndTime));
+    }
+
+    /**
+     * 记录实际进入时间，并按计划开始时间计算进入延迟和是否按时
+     */
+    public static void applyEntry(InspectionVerification verification, LocalDateTime accessTime) {
+        verification.setActualStartTime(accessTime);
+        if (verification.getPlannedStartTime() != null) {
+            long entryDelay = Duration.between(verification.getPlannedStartTime(), accessTime).toMinutes();
+            verification.setOnTimeEntry(Math.abs(entryDelay) <= ON_TIME_ENTRY_MINUTES);
+            verification.setEntryDelay((int) entryDelay);
+        }
+    }
+
+    /**
+     * 记录实际离开时间，按计划结束时间计算完成延迟和是否按时，已有进入时间时计算停留时长
+     */
+    public static void applyExit(InspectionVerification verification, LocalDateTime accessTime) {
+        verification.setActualEndTime(accessTime);
+        if (verification.getPlannedEndTime() != null) {
+            long completionDelay = Duration.between(verification.getPlannedEndTime(), accessTime).toMinutes();
+            verification.setOnTimeCompletion(Math.abs(completionDelay) <= ON_TIME_COMPLETION_MINUTES);
+            verification.setCompletionDelay((int) completionDelay);
+        }
+        if (verification.getActualStartTime() != null) {
+            verification.setStayDuration((int) stayMinutes(verification.getActualStartTime(), accessTime));
+        }
+    }
+
+    public static long stayMinutes(LocalDateTime entryTime, LocalDateTime exitTime) {
+        return Duration.between(entryTime, exitTime).toMinutes();
+    }
+
+    public static boolean isFastPass(long stayMinutes) {
+        return stayMinutes < FAST_PASS_MINUTES;
+    }
+}
@@ -0,0 +1,12 @@
+-- ============================================================
+-- 机房巡检系统 - 告警关联（去重 / 抖动抑制 / 风暴归并）
+-- 由 AlarmCorrelator 维护发生次数与父子告警关系
+-- ============================================================
+
+ALTER TABLE `alarm_records`
+  ADD COLUMN `fingerprint` varchar(200) DEFAULT NULL COMMENT '告警指纹（设备+类型+级别）' AFTER `remark`,
+  ADD COLUMN `occurrence_count` int NOT NULL DEFAULT '1' COMMENT '发生次数' AFTER `fingerprint`,
+  ADD COLUMN `last_occurred_at` datetime DEFAULT NULL COMMENT '最近一次发生时间' AFTER `occurrence_count`,
+  ADD COLUMN `parent_alarm_id` varchar(36) DEFAULT NULL COMMENT '父告警ID（机房告警风暴）' AFTER `last_occurred_at`,
+  ADD KEY `idx_fingerprint` (`fingerprint`),
+  ADD KEY `idx_parent_alarm_id` (`parent_alarm_id`);
@@ -0,0 +1,7 @@
+-- ============================================================
+-- 机房巡检系统 - 告警规则引擎
+-- 为告警规则增加连续采样次数条件（如"连续3次采样大于阈值才告警"）
+-- ============================================================
+
+ALTER TABLE `alert_rule`
+  ADD COLUMN `consecutive_samples` int(11) DEFAULT NULL COMMENT '连续满足条件的采样次数（null或1表示单次满足即触发）' AFTER `duration`;
@@ -0,0 +1,20 @@
+-- ============================================================
+-- 机房巡检系统 - 门禁日志增量同步
+-- 厂商事件ID唯一约束（重复同步按事件ID覆盖），各门禁系统的同步水位
+-- ============================================================
+
+ALTER TABLE `door_access_log`
+  ADD COLUMN `event_id` varchar(64) DEFAULT NULL COMMENT '门禁系统事件ID' AFTER `system_type`,
+  ADD UNIQUE KEY `uk_system_event` (`system_type`, `event_id`);
+
+CREATE TABLE IF NOT EXISTS `door_access_sync_state` (
+  `system_type` varchar(20) NOT NULL COMMENT '门禁系统类型（hikvision/dahua）',
+  `high_water_mark` datetime DEFAULT NULL COMMENT '已完整同步到的时间点',
+  `last_event_time` datetime DEFAULT NULL COMMENT '最近一条事件的通行时间',
+  `last_sync_time` datetime DEFAULT NULL COMMENT '最近一次同步时间',
+  `last_sync_count` int NOT NULL DEFAULT '0' COMMENT '最近一次同步的事件数',
+  `last_status` varchar(20) DEFAULT NULL COMMENT '最近一次同步结果（SUCCESS/FAILED）',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次失败原因',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`system_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='门禁日志同步水位';
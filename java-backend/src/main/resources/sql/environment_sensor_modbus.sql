@@ -0,0 +1,10 @@
+-- ============================================================
+-- 机房巡检系统 - 环境传感器Modbus采集
+-- 为环境传感器增加Modbus从站地址与寄存器区，供ModbusCollectionEngine合并读取
+-- ============================================================
+
+ALTER TABLE `environment_sensor`
+  ADD COLUMN `slave_id` int(11) DEFAULT NULL COMMENT 'Modbus从站地址（缺省为1）' AFTER `register_address`,
+  ADD COLUMN `register_area` varchar(20) DEFAULT NULL COMMENT 'Modbus寄存器区（HOLDING/INPUT，缺省为HOLDING）' AFTER `slave_id`;
+
+CREATE INDEX `idx_device_protocol` ON `environment_sensor` (`device_id`, `protocol_type`);
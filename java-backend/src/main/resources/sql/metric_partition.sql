@@ -0,0 +1,60 @@
+-- ============================================================
+-- 机房巡检系统 - 时序数据表分区改造
+-- device_metric / environment_data / monitor_task 按天分区，power_metric 按月分区
+-- 分区键必须包含在所有主键/唯一键中，因此主键改为 (id, 时间列)
+-- p_history 的上界在执行时计算（按天分区为次日零点，按月分区为下月1日零点），
+-- 之后的分区由 MetricPartitionManager 自动预建与删除
+-- ============================================================
+
+SET @day_bound = DATE_FORMAT(CURDATE() + INTERVAL 1 DAY, '%Y-%m-%d 00:00:00');
+SET @month_bound = DATE_FORMAT(LAST_DAY(CURDATE()) + INTERVAL 1 DAY, '%Y-%m-%d 00:00:00');
+
+-- 1. 设备监控指标表（按 collection_time 按天分区）
+ALTER TABLE `device_metric`
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (`id`, `collection_time`);
+
+SET @sql = CONCAT('ALTER TABLE `device_metric` PARTITION BY RANGE COLUMNS(`collection_time`) (',
+  'PARTITION p_history VALUES LESS THAN (''', @day_bound, '''), ',
+  'PARTITION p_max VALUES LESS THAN (MAXVALUE))');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 2. 环境数据表（按 collect_time 按天分区）
+ALTER TABLE `environment_data`
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (`id`, `collect_time`);
+
+SET @sql = CONCAT('ALTER TABLE `environment_data` PARTITION BY RANGE COLUMNS(`collect_time`) (',
+  'PARTITION p_history VALUES LESS THAN (''', @day_bound, '''), ',
+  'PARTITION p_max VALUES LESS THAN (MAXVALUE))');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 3. 电力指标表（按 collect_time 按月分区）
+ALTER TABLE `power_metric`
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (`id`, `collect_time`);
+
+SET @sql = CONCAT('ALTER TABLE `power_metric` PARTITION BY RANGE COLUMNS(`collect_time`) (',
+  'PARTITION p_history VALUES LESS THAN (''', @month_bound, '''), ',
+  'PARTITION p_max VALUES LESS THAN (MAXVALUE))');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 4. 监控任务表（按 created_at 按天分区，task_id 唯一键随之包含分区键）
+ALTER TABLE `monitor_task`
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (`id`, `created_at`),
+  DROP INDEX `uk_task_id`,
+  ADD UNIQUE KEY `uk_task_id` (`task_id`, `created_at`);
+
+SET @sql = CONCAT('ALTER TABLE `monitor_task` PARTITION BY RANGE COLUMNS(`created_at`) (',
+  'PARTITION p_history VALUES LESS THAN (''', @day_bound, '''), ',
+  'PARTITION p_max VALUES LESS THAN (MAXVALUE))');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
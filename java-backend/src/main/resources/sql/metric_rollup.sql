@@ -0,0 +1,20 @@
+-- ============================================================
+-- 机房巡检系统 - 指标降采样汇总表
+-- 由 MetricRollupEngine 在数据写入时增量维护 1分钟/5分钟/1小时 三档汇总
+-- ============================================================
+
+CREATE TABLE IF NOT EXISTS `metric_rollup` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `series_key` varchar(200) NOT NULL COMMENT '序列键（如 ENV:{roomId}:TEMPERATURE、AC:{acId}:POWER）',
+  `resolution` int(11) NOT NULL COMMENT '汇总粒度（秒）：60/300/3600',
+  `bucket_time` datetime NOT NULL COMMENT '时间桶起始时间',
+  `min_value` double DEFAULT NULL COMMENT '最小值',
+  `max_value` double DEFAULT NULL COMMENT '最大值',
+  `sum_value` double DEFAULT NULL COMMENT '累计值',
+  `sample_count` bigint(20) NOT NULL DEFAULT '0' COMMENT '样本数',
+  `last_value` double DEFAULT NULL COMMENT '最后一个样本值',
+  `last_time` datetime DEFAULT NULL COMMENT '最后一个样本时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_series_resolution_bucket` (`series_key`, `resolution`, `bucket_time`),
+  KEY `idx_resolution_bucket_time` (`resolution`, `bucket_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='指标降采样汇总表';
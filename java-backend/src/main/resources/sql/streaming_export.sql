@@ -0,0 +1,11 @@
+-- ============================================================
+-- 机房巡检系统 - 流式导出
+-- 告警记录、门禁日志按（时间, ID）键集翻页导出，每页是一次索引范围扫描
+-- ============================================================
+
+ALTER TABLE `alarm_records`
+  DROP KEY `idx_alarm_time`,
+  ADD KEY `idx_alarm_time_id` (`alarm_time`, `id`);
+
+ALTER TABLE `door_access_log`
+  ADD KEY `idx_access_time_id` (`access_time`, `id`);
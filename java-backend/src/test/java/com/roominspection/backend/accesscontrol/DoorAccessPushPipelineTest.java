@@ -0,0 +1,243 @@
+package com.roominspection.backend.accesscontrol;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.roominspection.backend.controller.DoorAccessEventController;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.entity.DoorAccessLog;
+import com.roominspection.backend.entity.InspectionVerification;
+import com.roominspection.backend.mapper.DeviceMapper;
+import com.roominspection.backend.mapper.DoorAccessLogMapper;
+import com.roominspection.backend.mapper.InspectionVerificationMapper;
+import com.roominspection.backend.service.DoorAccessLogService;
+import com.roominspection.backend.service.impl.InspectionVerificationServiceImpl;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 门禁事件推送链路测试：本地替身服务推送 → 事件总线写入 → 巡检核验进出匹配
+ */
+class DoorAccessPushPipelineTest {
+
+    private static final String TOKEN = "push-secret";
+
+    private static final String DOOR_ID = "door-101";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<DoorAccessLog> persisted = new CopyOnWriteArrayList<>();
+
+    private DoorAccessLogMapper doorAccessLogMapper;
+
+    private RoomOccupancyIndex occupancyIndex;
+
+    private DoorAccessLogService doorAccessLogService;
+
+    private DoorAccessEventBus eventBus;
+
+    private DoorAccessPushReceiver pushReceiver;
+
+    private StandInDoorEventServer server;
+
+    private InspectionVerification verification;
+
+    @BeforeAll
+    static void initTableInfo() {
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, Device.class);
+        TableInfoHelper.initTableInfo(assistant, DoorAccessLog.class);
+        TableInfoHelper.initTableInfo(assistant, InspectionVerification.class);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        verification = new InspectionVerification();
+        verification.setId(7L);
+        verification.setInspectionTaskId(70L);
+        verification.setRoomId(12L);
+        verification.setInspectorId(1001L);
+        verification.setVerificationStatus("processing");
+        verification.setPlannedStartTime(LocalDateTime.of(2026, 10, 18, 8, 30));
+        verification.setPlannedEndTime(LocalDateTime.of(2026, 10, 18, 9, 30));
+
+        doorAccessLogMapper = mock(DoorAccessLogMapper.class);
+        when(doorAccessLogMapper.upsertBatch(any())).thenAnswer(this::persist);
+
+        Device door = new Device();
+        door.setAccessControlDeviceId(DOOR_ID);
+        door.setRoomId("12");
+        door.setName("A栋机房门");
+        DeviceMapper deviceMapper = mock(DeviceMapper.class);
+        when(deviceMapper.selectList(any())).thenReturn(Collections.singletonList(door));
+
+        InspectionVerificationMapper verificationMapper = mock(InspectionVerificationMapper.class);
+        when(verificationMapper.selectList(any())).thenReturn(Collections.singletonList(verification));
+        when(verificationMapper.updateById(any())).thenReturn(1);
+
+        // 按写入顺序模拟自增主键
+        doorAccessLogService = mock(DoorAccessLogService.class);
+        when(doorAccessLogService.getOne(any(), anyBoolean())).thenAnswer(invocation -> {
+            DoorAccessLog stored = new DoorAccessLog();
+            stored.setId((long) persisted.size());
+            return stored;
+        });
+        when(doorAccessLogService.updateById(any())).thenReturn(true);
+
+        InspectionVerificationServiceImpl verificationService = new InspectionVerificationServiceImpl();
+        ReflectionTestUtils.setField(verificationService, "baseMapper", verificationMapper);
+        ReflectionTestUtils.setField(verificationService, "doorAccessLogService", doorAccessLogService);
+
+        occupancyIndex = mock(RoomOccupancyIndex.class);
+
+        eventBus = new DoorAccessEventBus();
+        ReflectionTestUtils.setField(eventBus, "doorAccessLogMapper", doorAccessLogMapper);
+        ReflectionTestUtils.setField(eventBus, "deviceMapper", deviceMapper);
+        ReflectionTestUtils.setField(eventBus, "occupancyIndex", occupancyIndex);
+        ReflectionTestUtils.setField(eventBus, "inspectionVerificationService", verificationService);
+        ReflectionTestUtils.setField(eventBus, "queueCapacity", 100);
+        ReflectionTestUtils.setField(eventBus, "batchSize", 50);
+        ReflectionTestUtils.setField(eventBus, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(eventBus, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(eventBus, "maxRetryBackoffMs", 50L);
+        eventBus.init();
+
+        pushReceiver = new DoorAccessPushReceiver();
+        ReflectionTestUtils.setField(pushReceiver, "eventBus", eventBus);
+        ReflectionTestUtils.setField(pushReceiver, "pushToken", TOKEN);
+        ReflectionTestUtils.setField(pushReceiver, "hikvisionGrantedTypes", new HashSet<>(Arrays.asList("198914")));
+        ReflectionTestUtils.setField(pushReceiver, "hikvisionDeniedTypes", new HashSet<>(Arrays.asList("197634")));
+
+        server = new StandInDoorEventServer(new DoorAccessEventController(pushReceiver, eventBus, occupancyIndex));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+        eventBus.destroy();
+    }
+
+    @Test
+    void pushedEntryAndExitArePersistedAndMatchedToTheInspection() throws Exception {
+        JsonNode response = server.push("hikvision", TOKEN,
+                hikvisionPush(1, LocalDateTime.of(2026, 10, 18, 8, 32, 10, 250_000_000)));
+        assertEquals(200, response.path("code").asInt());
+        assertEquals(1, response.path("data").asInt());
+        awaitCondition(() -> verification.getEnterLogId() != null);
+
+        server.push("hikvision", TOKEN, hikvisionPush(0, LocalDateTime.of(2026, 10, 18, 9, 40, 5)));
+        awaitCondition(() -> verification.getExitLogId() != null);
+
+        assertEquals(2, persisted.size());
+        DoorAccessLog entry = persisted.get(0);
+        assertEquals(Long.valueOf(12L), entry.getRoomId());
+        assertEquals(Long.valueOf(1001L), entry.getStaffId());
+        assertEquals("in", entry.getDirection());
+        assertEquals("push", entry.getDataSource());
+        assertEquals("out", persisted.get(1).getDirection());
+
+        assertEquals(Long.valueOf(1L), verification.getEnterLogId());
+        assertEquals(Long.valueOf(2L), verification.getExitLogId());
+        assertEquals(Boolean.TRUE, verification.getOnTimeEntry());
+        assertEquals(Integer.valueOf(2), verification.getEntryDelay());
+        assertEquals(Boolean.TRUE, verification.getOnTimeCompletion());
+        assertEquals(Integer.valueOf(10), verification.getCompletionDelay());
+        assertEquals(Integer.valueOf(67), verification.getStayDuration());
+        assertEquals(Boolean.TRUE, verification.getAccessVerified());
+        verify(occupancyIndex, times(2)).apply(any());
+        verify(doorAccessLogService, times(2)).updateById(any());
+    }
+
+    @Test
+    void failedWriteIsRetriedUntilPersisted() throws Exception {
+        when(doorAccessLogMapper.upsertBatch(any()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenThrow(new RuntimeException("db down"))
+                .thenAnswer(this::persist);
+
+        server.push("hikvision", TOKEN, hikvisionPush(1, LocalDateTime.of(2026, 10, 18, 8, 32, 10)));
+        awaitCondition(() -> verification.getEnterLogId() != null);
+
+        assertEquals(1, persisted.size());
+        assertEquals(2L, eventBus.getStatistics().get("retries"));
+        verify(doorAccessLogMapper, times(3)).upsertBatch(any());
+    }
+
+    @Test
+    void rejectsPushWithWrongTokenOrWhenNoTokenIsConfigured() throws Exception {
+        JsonNode body = hikvisionPush(1, LocalDateTime.of(2026, 10, 18, 8, 32, 10));
+
+        assertEquals(401, server.push("hikvision", "forged", body).path("code").asInt());
+        assertEquals(401, server.push("hikvision", null, body).path("code").asInt());
+
+        ReflectionTestUtils.setField(pushReceiver, "pushToken", "");
+        assertEquals(401, server.push("hikvision", "", body).path("code").asInt());
+
+        assertEquals(0L, eventBus.getStatistics().get("published"));
+        assertTrue(persisted.isEmpty());
+        verify(occupancyIndex, never()).apply(any());
+    }
+
+    private int persist(InvocationOnMock invocation) {
+        List<DoorAccessLog> logs = invocation.getArgument(0);
+        persisted.addAll(logs);
+        return logs.size();
+    }
+
+    /**
+     * 海康综合安防平台事件推送格式
+     *
+     * @param inOut 进出方向（1-进 0-出）
+     */
+    private JsonNode hikvisionPush(int inOut, LocalDateTime happenTime) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("method", "OnEventNotify");
+        ObjectNode event = body.putObject("params").putArray("events").addObject();
+        event.put("srcIndex", DOOR_ID);
+        event.put("eventType", "198914");
+        event.put("happenTime", happenTime.atZone(ZoneId.systemDefault()).toOffsetDateTime().toString());
+        ObjectNode data = event.putObject("data");
+        data.put("ExtEventCardNo", "C0001");
+        data.put("ExtEventInOut", inOut);
+        data.put("ExtEventPersonNo", "1001");
+        data.put("ExtEventPersonName", "张三");
+        return body;
+    }
+
+    /**
+     * 轮询等待条件成立
+     */
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.roominspection.backend.accesscontrol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roominspection.backend.common.Result;
+import com.roominspection.backend.controller.DoorAccessEventController;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 本地门禁事件推送替身服务
+ * <p>
+ * 代替门禁平台的事件订阅联调：在本机随机端口挂载与生产相同的回调路径 /api/door/events/push/{systemType}，
+ * 请求交给 {@link DoorAccessEventController} 处理；{@link #push} 按门禁平台的方式经HTTP投递推送内容。
+ */
+final class StandInDoorEventServer implements AutoCloseable {
+
+    private static final String PUSH_PATH = "/api/door/events/push/";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final DoorAccessEventController controller;
+
+    private final HttpServer server;
+
+    StandInDoorEventServer(DoorAccessEventController controller) throws IOException {
+        this.controller = controller;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PUSH_PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * 按门禁平台的方式投递一次推送
+     *
+     * @return 回调接口的响应
+     */
+    JsonNode push(String systemType, String token, JsonNode body) throws IOException {
+        URL url = new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(),
+                PUSH_PATH + systemType);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+            if (token != null) {
+                connection.setRequestProperty("X-Push-Token", token);
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                objectMapper.writeValue(out, body);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return objectMapper.readTree(in);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String systemType = exchange.getRequestURI().getPath().substring(PUSH_PATH.length());
+            JsonNode body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = objectMapper.readTree(in);
+            }
+            Result<Integer> result = controller.push(systemType,
+                    exchange.getRequestHeaders().getFirst("X-Push-Token"), body);
+            byte[] response = objectMapper.writeValueAsBytes(result);
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (RuntimeException e) {
+            byte[] response = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.AlarmRecord;
+import com.roominspection.backend.mapper.AlarmRecordMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 告警关联器测试
+ */
+class AlarmCorrelatorTest {
+
+    private AlarmCorrelator correlator;
+
+    @BeforeEach
+    void setUp() {
+        correlator = new AlarmCorrelator();
+        ReflectionTestUtils.setField(correlator, "dedupWindowSeconds", 300L);
+        ReflectionTestUtils.setField(correlator, "flapWindowSeconds", 600L);
+        ReflectionTestUtils.setField(correlator, "flapThreshold", 3);
+        ReflectionTestUtils.setField(correlator, "stormWindowSeconds", 60L);
+        ReflectionTestUtils.setField(correlator, "stormThreshold", 100);
+    }
+
+    @Test
+    void duplicateWithinWindowFoldsIntoExistingAlarm() {
+        AlarmCorrelator.Decision first = correlator.correlate(alarm("a1"));
+        AlarmCorrelator.Decision second = correlator.correlate(alarm("a2"));
+
+        assertEquals(AlarmCorrelator.Outcome.NEW, first.getOutcome());
+        assertTrue(first.isNotify());
+        assertEquals(AlarmCorrelator.Outcome.DUPLICATE, second.getOutcome());
+        assertEquals("a1", second.getAlarmId());
+        assertFalse(second.isNotify());
+    }
+
+    @Test
+    void flappingAfterResolveReopensLastAlarm() {
+        AlarmRecord first = alarm("a1");
+        correlator.correlate(first);
+        correlator.closed(first);
+
+        AlarmRecord second = alarm("a2");
+        assertEquals(AlarmCorrelator.Outcome.NEW, correlator.correlate(second).getOutcome());
+        correlator.closed(second);
+
+        AlarmCorrelator.Decision third = correlator.correlate(alarm("a3"));
+        assertEquals(AlarmCorrelator.Outcome.REOPENED, third.getOutcome());
+        assertEquals("a2", third.getAlarmId());
+        assertTrue(third.isNotify());
+
+        // 重新打开后再次出现只累加到该告警
+        AlarmCorrelator.Decision fourth = correlator.correlate(alarm("a4"));
+        assertEquals(AlarmCorrelator.Outcome.DUPLICATE, fourth.getOutcome());
+        assertEquals("a2", fourth.getAlarmId());
+    }
+
+    @Test
+    void expiredWindowFoldsIntoAlarmThatIsStillOpen() {
+        AlarmRecordMapper mapper = mock(AlarmRecordMapper.class);
+        when(mapper.findOpenAlarmIdByFingerprint(anyString())).thenReturn("a1");
+        ReflectionTestUtils.setField(correlator, "alarmRecordMapper", mapper);
+        ReflectionTestUtils.setField(correlator, "dedupWindowSeconds", -1L);
+
+        assertEquals(AlarmCorrelator.Outcome.NEW, correlator.correlate(alarm("a1")).getOutcome());
+
+        AlarmCorrelator.Decision second = correlator.correlate(alarm("a2"));
+        assertEquals(AlarmCorrelator.Outcome.DUPLICATE, second.getOutcome());
+        assertEquals("a1", second.getAlarmId());
+        assertFalse(second.isNotify());
+    }
+
+    @Test
+    void expiredWindowFallsBackToMemoryWhenLookupFails() {
+        ReflectionTestUtils.setField(correlator, "dedupWindowSeconds", -1L);
+
+        correlator.correlate(alarm("a1"));
+
+        AlarmCorrelator.Decision second = correlator.correlate(alarm("a2"));
+        assertEquals(AlarmCorrelator.Outcome.DUPLICATE, second.getOutcome());
+        assertEquals("a1", second.getAlarmId());
+    }
+
+    @Test
+    void failedFlushKeepsOccurrencesForNextFlush() {
+        AlarmRecordMapper mapper = mock(AlarmRecordMapper.class);
+        when(mapper.incrementOccurrences(any())).thenThrow(new RuntimeException("db down")).thenReturn(1);
+        ReflectionTestUtils.setField(correlator, "alarmRecordMapper", mapper);
+
+        correlator.correlate(alarm("a1"));
+        correlator.correlate(alarm("a2"));
+        correlator.flush();
+        correlator.correlate(alarm("a3"));
+        correlator.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AlarmRecord>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(2)).incrementOccurrences(captor.capture());
+        List<AlarmRecord> retried = captor.getAllValues().get(1);
+        assertEquals(1, retried.size());
+        assertEquals("a1", retried.get(0).getId());
+        assertEquals(Integer.valueOf(2), retried.get(0).getOccurrenceCount());
+    }
+
+    @Test
+    void flappingWhileActiveFoldsWithoutNotification() {
+        // 上一条告警已在其他途径解决（库中无未解决告警），内存状态未收到关闭通知
+        AlarmRecordMapper mapper = mock(AlarmRecordMapper.class);
+        ReflectionTestUtils.setField(correlator, "alarmRecordMapper", mapper);
+        ReflectionTestUtils.setField(correlator, "dedupWindowSeconds", -1L);
+
+        assertEquals(AlarmCorrelator.Outcome.NEW, correlator.correlate(alarm("a1")).getOutcome());
+        assertEquals(AlarmCorrelator.Outcome.NEW, correlator.correlate(alarm("a2")).getOutcome());
+
+        AlarmCorrelator.Decision third = correlator.correlate(alarm("a3"));
+        assertEquals(AlarmCorrelator.Outcome.FLAPPING, third.getOutcome());
+        assertEquals("a2", third.getAlarmId());
+        assertFalse(third.isNotify());
+    }
+
+    @Test
+    void failedReopenRestoresResolvedState() {
+        AlarmRecord first = alarm("a1");
+        correlator.correlate(first);
+        correlator.closed(first);
+        AlarmRecord second = alarm("a2");
+        correlator.correlate(second);
+        correlator.closed(second);
+
+        AlarmRecord reopened = alarm("a3");
+        AlarmCorrelator.Decision decision = correlator.correlate(reopened);
+        assertEquals(AlarmCorrelator.Outcome.REOPENED, decision.getOutcome());
+
+        // 调用方重新打开失败时以被重新打开的告警ID回退
+        reopened.setId(decision.getAlarmId());
+        correlator.closed(reopened);
+
+        AlarmCorrelator.Decision retry = correlator.correlate(alarm("a4"));
+        assertEquals(AlarmCorrelator.Outcome.REOPENED, retry.getOutcome());
+        assertEquals("a2", retry.getAlarmId());
+    }
+
+    @Test
+    void discardedNewAlarmIsNotReused() {
+        AlarmRecord first = alarm("a1");
+        correlator.correlate(first);
+        correlator.discard(first);
+
+        AlarmCorrelator.Decision next = correlator.correlate(alarm("a2"));
+        assertEquals(AlarmCorrelator.Outcome.NEW, next.getOutcome());
+        assertEquals("a2", next.getAlarmId());
+    }
+
+    private AlarmRecord alarm(String id) {
+        AlarmRecord alarm = new AlarmRecord();
+        alarm.setId(id);
+        alarm.setDeviceId("device-1");
+        alarm.setType("TEMPERATURE");
+        alarm.setLevel("MAJOR");
+        return alarm;
+    }
+}
@@ -0,0 +1,107 @@
+package com.roominspection.backend.collector;
+
+import com.roominspection.backend.entity.CollectorNode;
+import com.roominspection.backend.entity.Device;
+import com.roominspection.backend.mapper.DeviceMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 采集节点分片管理器租约测试
+ */
+class CollectorShardManagerTest {
+
+    private CollectorShardManager manager;
+
+    @BeforeEach
+    void setUp() {
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Device device = new Device();
+            device.setId("device-" + i);
+            devices.add(device);
+        }
+        DeviceMapper deviceMapper = mock(DeviceMapper.class);
+        when(deviceMapper.selectList(any())).thenReturn(devices);
+
+        manager = new CollectorShardManager();
+        ReflectionTestUtils.setField(manager, "deviceMapper", deviceMapper);
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "virtualNodes", 160);
+        ReflectionTestUtils.setField(manager, "loadFactor", 1.25);
+        ReflectionTestUtils.setField(manager, "heartbeatTimeoutMs", 30000L);
+        ReflectionTestUtils.setField(manager, "leaseTtlMs", 60000L);
+        ReflectionTestUtils.setField(manager, "deviceRefreshIntervalMs", 300000L);
+    }
+
+    @Test
+    void unchangedOwnersKeepTheirLeaseAcrossRebalance() {
+        manager.onNodeHeartbeat(node("node-a"));
+        manager.onNodeHeartbeat(node("node-b"));
+        List<String> ownedByA = manager.lease("node-a").getDeviceIds();
+        manager.lease("node-b");
+        long epoch = manager.getEpoch();
+        for (String deviceId : ownedByA) {
+            assertFalse(manager.isLocal(deviceId));
+        }
+
+        // 新节点加入触发重新分配，node-a尚未续约
+        manager.onNodeHeartbeat(node("node-c"));
+        manager.lease("node-c");
+        assertNotEquals(epoch, manager.getEpoch());
+
+        int kept = 0;
+        for (String deviceId : ownedByA) {
+            if (manager.isAssignedTo(deviceId, "node-a")) {
+                kept++;
+                assertFalse(manager.isLocal(deviceId), "归属未变的设备不应回落到本地: " + deviceId);
+            }
+        }
+        assertTrue(kept > 0);
+    }
+
+    @Test
+    void movedDevicesStayLocalUntilNewOwnerConfirms() {
+        manager.onNodeHeartbeat(node("node-a"));
+        manager.lease("node-a");
+
+        manager.onNodeHeartbeat(node("node-b"));
+        // node-a续约触发重新分配，部分设备迁往尚未领取租约的node-b
+        manager.lease("node-a");
+        List<String> movedToB = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String deviceId = "device-" + i;
+            if (manager.isAssignedTo(deviceId, "node-b")) {
+                movedToB.add(deviceId);
+                assertTrue(manager.isLocal(deviceId), "新归属节点确认前应由本地兜底: " + deviceId);
+            } else {
+                assertFalse(manager.isLocal(deviceId));
+            }
+        }
+        assertFalse(movedToB.isEmpty());
+
+        assertEquals(new HashSet<>(movedToB), new HashSet<>(manager.lease("node-b").getDeviceIds()));
+        for (String deviceId : movedToB) {
+            assertFalse(manager.isLocal(deviceId));
+        }
+    }
+
+    private static CollectorNode node(String nodeCode) {
+        CollectorNode node = new CollectorNode();
+        node.setNodeCode(nodeCode);
+        return node;
+    }
+}
@@ -0,0 +1,135 @@
+package com.roominspection.backend.collector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 设备熔断器状态机测试
+ */
+class DeviceCircuitBreakerTest {
+
+    private static final String DEVICE = "device-1";
+
+    private DeviceCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new DeviceCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 3);
+        ReflectionTestUtils.setField(breaker, "baseBackoffMs", 1000L);
+        ReflectionTestUtils.setField(breaker, "maxBackoffMs", 3000L);
+        ReflectionTestUtils.setField(breaker, "halfOpenTimeoutMs", 60000L);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        breaker.onFailure(DEVICE, "timeout");
+        breaker.onFailure(DEVICE, "timeout");
+        assertTrue(breaker.allowRequest(DEVICE));
+        assertEquals(DeviceCircuitBreaker.CLOSED, state());
+
+        breaker.onFailure(DEVICE, "timeout");
+        assertEquals(DeviceCircuitBreaker.OPEN, state());
+        assertFalse(breaker.allowRequest(DEVICE));
+        assertEquals(1L, breaker.getStatistics().get("trips"));
+        assertEquals(1L, breaker.getStatistics().get("shortCircuits"));
+    }
+
+    @Test
+    void halfOpenAllowsSingleProbeAndClosesOnSuccess() {
+        trip();
+        probeDue();
+
+        assertTrue(breaker.allowRequest(DEVICE));
+        assertEquals(DeviceCircuitBreaker.HALF_OPEN, state());
+        assertFalse(breaker.allowRequest(DEVICE), "半开状态只允许一次探测");
+
+        breaker.onSuccess(DEVICE);
+        assertEquals(DeviceCircuitBreaker.CLOSED, state());
+        assertTrue(breaker.allowRequest(DEVICE));
+    }
+
+    @Test
+    void failedProbeReopensWithDoubledBackoffUpToMax() {
+        trip();
+        assertEquals(1000L, backoffMs());
+
+        probeDue();
+        assertTrue(breaker.allowRequest(DEVICE));
+        breaker.onFailure(DEVICE, "timeout");
+        assertEquals(DeviceCircuitBreaker.OPEN, state());
+        assertEquals(2000L, backoffMs());
+        assertFalse(breaker.allowRequest(DEVICE));
+
+        probeDue();
+        assertTrue(breaker.allowRequest(DEVICE));
+        breaker.onFailure(DEVICE, "timeout");
+        assertEquals(3000L, backoffMs());
+    }
+
+    @Test
+    void skippedProbeReturnsTheProbeSlot() {
+        trip();
+        probeDue();
+        assertTrue(breaker.allowRequest(DEVICE));
+
+        breaker.onSkipped(DEVICE);
+        assertEquals(DeviceCircuitBreaker.OPEN, state());
+        assertTrue(breaker.allowRequest(DEVICE));
+    }
+
+    @Test
+    void healthScoreHalvesOnFailureAndRecoversOnSuccess() {
+        breaker.onFailure(DEVICE, "timeout");
+        assertEquals(50.0, breaker.getHealthScore(DEVICE), 0.001);
+
+        breaker.onSuccess(DEVICE);
+        assertEquals(60.0, breaker.getHealthScore(DEVICE), 0.001);
+    }
+
+    @Test
+    void disabledBreakerAllowsEverything() {
+        ReflectionTestUtils.setField(breaker, "enabled", false);
+        trip();
+        assertTrue(breaker.allowRequest(DEVICE));
+    }
+
+    private void trip() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure(DEVICE, "timeout");
+        }
+    }
+
+    /**
+     * 把探测时间拨到当前，模拟退避时间已过
+     */
+    @SuppressWarnings("unchecked")
+    private void probeDue() {
+        Map<String, Object> breakers = (Map<String, Object>) ReflectionTestUtils.getField(breaker, "breakers");
+        ReflectionTestUtils.setField(breakers.get(DEVICE), "nextProbeAt", 0L);
+    }
+
+    private String state() {
+        Map<String, Object> item = single();
+        return (String) item.get("state");
+    }
+
+    private long backoffMs() {
+        return (Long) single().get("backoffMs");
+    }
+
+    private Map<String, Object> single() {
+        List<Map<String, Object>> states = breaker.getStates(false);
+        assertEquals(1, states.size());
+        return states.get(0);
+    }
+}
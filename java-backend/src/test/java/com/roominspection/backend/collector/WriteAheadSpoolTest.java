@@ -0,0 +1,156 @@
+package com.roominspection.backend.collector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地预写缓冲回放、损坏跳过与死信测试
+ */
+class WriteAheadSpoolTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAppendedRecordsInOrder() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        WriteAheadSpool spool = WriteAheadSpool.open("test", dir, SEGMENT_SIZE, SEGMENT_SIZE * 4L);
+        try {
+            spool.append(bytes("a"));
+            spool.append(bytes("b"));
+            spool.append(bytes("c"));
+            assertEquals(3, spool.getPendingRecords());
+
+            spool.startReplay(records -> {
+                records.forEach(record -> received.add(text(record)));
+                return records.size();
+            }, 10, 0, 50);
+
+            awaitCondition(() -> spool.getPendingRecords() == 0);
+            assertEquals(Arrays.asList("a", "b", "c"), received);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    void skipsCorruptedRecordAfterRestart() throws Exception {
+        WriteAheadSpool spool = WriteAheadSpool.open("test", dir, SEGMENT_SIZE, SEGMENT_SIZE * 4L);
+        spool.append(bytes("first"));
+        spool.append(bytes("second"));
+        spool.append(bytes("third"));
+        spool.force();
+        spool.close();
+
+        // 篡改第二条记录的内容，CRC不再匹配
+        Path segment = dir.resolve("segment-000000000000.dat");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long payloadOffset = 8 + "first".length() + 8;
+            file.seek(payloadOffset);
+            file.write('X');
+        }
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        WriteAheadSpool reopened = WriteAheadSpool.open("test", dir, SEGMENT_SIZE, SEGMENT_SIZE * 4L);
+        try {
+            assertEquals(1, reopened.getPendingRecords());
+            reopened.startReplay(records -> {
+                records.forEach(record -> received.add(text(record)));
+                return records.size();
+            }, 10, 0, 50);
+
+            awaitCondition(() -> reopened.getPendingRecords() == 0);
+            assertEquals(Arrays.asList("first"), received);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void poisonRecordGoesToDeadLetterAndLaterRecordsProceed() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        WriteAheadSpool spool = WriteAheadSpool.open("test", dir, SEGMENT_SIZE, SEGMENT_SIZE * 4L, 2);
+        try {
+            spool.append(bytes("a"));
+            spool.append(bytes("bad"));
+            spool.append(bytes("c"));
+
+            spool.startReplay(records -> {
+                for (byte[] record : records) {
+                    if ("bad".equals(text(record))) {
+                        throw new IOException("constraint violation");
+                    }
+                }
+                records.forEach(record -> received.add(text(record)));
+                return records.size();
+            }, 10, 0, 50);
+
+            awaitCondition(() -> spool.getPendingRecords() == 0);
+            assertEquals(Arrays.asList("a", "c"), received);
+            assertEquals(1, spool.getDeadLetterRecords());
+            assertTrue(Files.size(dir.resolve("dead-letter.dat")) > 0);
+
+            spool.append(bytes("d"));
+            awaitCondition(() -> received.contains("d"));
+            assertEquals(0, spool.getPendingRecords());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    void keepsBatchWhenEveryRecordFailsAndDownstreamIsUnhealthy() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        WriteAheadSpool spool = WriteAheadSpool.open("test", dir, SEGMENT_SIZE, SEGMENT_SIZE * 4L, 1);
+        try {
+            for (String value : new String[]{"a", "b", "c", "d"}) {
+                spool.append(bytes(value));
+            }
+            spool.startReplay(records -> {
+                batchSizes.add(records.size());
+                throw new IOException("connection refused");
+            }, 10, 0, 50);
+
+            awaitCondition(() -> batchSizes.size() >= 4 && spool.isDownstreamFailing());
+            assertEquals(4, spool.getPendingRecords());
+            assertEquals(0, spool.getDeadLetterRecords());
+            assertTrue(spool.isDownstreamFailing());
+        } finally {
+            spool.close();
+        }
+    }
+
+    /**
+     * 轮询等待条件成立
+     */
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(20);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] record) {
+        return new String(record, StandardCharsets.UTF_8);
+    }
+}
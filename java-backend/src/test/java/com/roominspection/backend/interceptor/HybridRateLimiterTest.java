@@ -0,0 +1,89 @@
+package com.roominspection.backend.interceptor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 混合限流器（GCRA本地令牌桶）测试
+ */
+class HybridRateLimiterTest {
+
+    private HybridRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new HybridRateLimiter();
+        ReflectionTestUtils.setField(limiter, "maxBuckets", 100000);
+        ReflectionTestUtils.setField(limiter, "slowThresholdMs", 200L);
+        ReflectionTestUtils.setField(limiter, "degradeCooldownMs", 30000L);
+    }
+
+    @Test
+    void allowsExactlyTheConfiguredBurst() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("ip:1.1.1.1", 10), "第" + (i + 1) + "个请求应放行");
+        }
+        assertFalse(limiter.tryAcquire("ip:1.1.1.1", 10));
+
+        assertEquals(10L, limiter.getStatistics().get("allowed"));
+        assertEquals(1L, limiter.getStatistics().get("rejected"));
+    }
+
+    @Test
+    void bucketsAreIndependentPerKey() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("ip:1.1.1.1", 3));
+        }
+        assertFalse(limiter.tryAcquire("ip:1.1.1.1", 3));
+        assertTrue(limiter.tryAcquire("ip:2.2.2.2", 3));
+    }
+
+    @Test
+    void slidingWindowFallsBackToLocalBucketWithoutRedis() {
+        assertTrue(limiter.tryAcquireSliding("user:1", 2));
+        assertTrue(limiter.tryAcquireSliding("user:1", 2));
+        assertFalse(limiter.tryAcquireSliding("user:1", 2));
+    }
+
+    @Test
+    void synchronizeDebitsConsumptionOfOtherNodes() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(limiter, "stringRedisTemplate", redis);
+        // 本节点消耗2个，集群累计10个：其余8个由其他节点消耗，整桶已用完
+        when(redis.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(10L, true));
+
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", 10));
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", 10));
+        limiter.synchronize();
+
+        assertFalse(limiter.tryAcquire("ip:1.1.1.1", 10));
+    }
+
+    @Test
+    void redisFailureDegradesToLocalBuckets() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(limiter, "stringRedisTemplate", redis);
+        when(redis.executePipelined(any(RedisCallback.class))).thenThrow(new IllegalStateException("down"));
+
+        assertTrue(limiter.tryAcquire("ip:1.1.1.1", 10));
+        limiter.synchronize();
+
+        assertEquals(true, limiter.getStatistics().get("degraded"));
+        assertEquals(1L, limiter.getStatistics().get("syncFailures"));
+        // 降级期内敏感接口也走本地令牌桶
+        assertTrue(limiter.tryAcquireSliding("user:1", 1));
+        assertFalse(limiter.tryAcquireSliding("user:1", 1));
+    }
+}
@@ -0,0 +1,150 @@
+package com.roominspection.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.roominspection.backend.accesscontrol.DoorAccessEventBus;
+import com.roominspection.backend.accesscontrol.DoorAccessEventListener.DoorAccessEvent;
+import com.roominspection.backend.accesscontrol.DoorAccessPushReceiver;
+import com.roominspection.backend.entity.DoorAccessLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 门禁日志同步事件ID幂等性（含推送与轮询一致）与事件查询地址测试
+ */
+class DoorAccessSyncServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final DoorAccessSyncService service = new DoorAccessSyncService();
+
+    @Test
+    void sameEventWithoutVendorIdGetsSameEventIdOnEverySync() {
+        ObjectNode item = hikvisionItem();
+
+        DoorAccessLog first = convertFromHikvision(item);
+        DoorAccessLog second = convertFromHikvision(item.deepCopy());
+
+        assertEquals(32, first.getEventId().length());
+        assertEquals(first.getEventId(), second.getEventId());
+    }
+
+    @Test
+    void differentEventsGetDifferentEventIds() {
+        ObjectNode item = hikvisionItem();
+        ObjectNode later = hikvisionItem();
+        later.put("time", "2026-10-18 08:30:16");
+
+        assertNotEquals(convertFromHikvision(item).getEventId(), convertFromHikvision(later).getEventId());
+    }
+
+    @Test
+    void vendorEventIdIsUsedAsIs() {
+        ObjectNode item = hikvisionItem();
+        item.put("eventId", "evt-20261018-0001");
+
+        assertEquals("evt-20261018-0001", convertFromHikvision(item).getEventId());
+    }
+
+    @Test
+    void overlongVendorEventIdFallsBackToDigest() {
+        ObjectNode item = hikvisionItem();
+        StringBuilder longId = new StringBuilder();
+        for (int i = 0; i < 65; i++) {
+            longId.append('x');
+        }
+        item.put("eventId", longId.toString());
+
+        assertEquals(convertFromHikvision(hikvisionItem()).getEventId(), convertFromHikvision(item).getEventId());
+    }
+
+    @Test
+    void pushedAndPolledHikvisionEventGetSameEventId() {
+        // 推送的happenTime带毫秒和时区，轮询的time只到秒；推送用srcIndex，轮询用doorIndexCode
+        String happenTime = LocalDateTime.of(2026, 10, 18, 8, 30, 15, 123_000_000)
+                .atZone(ZoneId.systemDefault()).toOffsetDateTime().toString();
+        ObjectNode pushed = objectMapper.createObjectNode();
+        pushed.put("srcIndex", "door-101");
+        pushed.put("eventType", "198914");
+        pushed.put("happenTime", happenTime);
+        ObjectNode data = pushed.putObject("data");
+        data.put("ExtEventCardNo", "C0001");
+        data.put("ExtEventInOut", 0);
+        data.put("ExtEventPersonNo", "1001");
+        data.put("ExtEventPersonName", "张三");
+
+        ObjectNode polled = hikvisionItem();
+        polled.remove("deviceIndexCode");
+        polled.remove("direction");
+        polled.put("doorIndexCode", "door-101");
+        polled.put("inAndOutType", 0);
+
+        DoorAccessLog fromPush = pushToAccessLog(pushed);
+        DoorAccessLog fromPoll = convertFromHikvision(polled);
+
+        assertEquals("out", fromPush.getDirection());
+        assertEquals("out", fromPoll.getDirection());
+        assertEquals(fromPoll.getAccessTime(), fromPush.getAccessTime());
+        assertEquals(fromPoll.getEventId(), fromPush.getEventId());
+    }
+
+    @Test
+    void directionMappingIsExplicit() {
+        assertEquals("in", DoorAccessSyncService.direction("1"));
+        assertEquals("in", DoorAccessSyncService.direction("entry"));
+        assertEquals("out", DoorAccessSyncService.direction("0"));
+        assertEquals("out", DoorAccessSyncService.direction("EXIT"));
+        assertEquals("in", DoorAccessSyncService.direction(null));
+    }
+
+    @Test
+    void eventsUrlRequiresBothBaseAndPath() {
+        assertEquals("http://hik/api/acs/v1/door/events", eventsUrl("http://hik/api/", "/acs/v1/door/events"));
+        assertEquals("http://hik/api/acs/v1/door/events", eventsUrl("http://hik/api", "acs/v1/door/events"));
+        assertNull(eventsUrl("http://hik/api", ""));
+        assertNull(eventsUrl("", "/acs/v1/door/events"));
+    }
+
+    private ObjectNode hikvisionItem() {
+        ObjectNode item = objectMapper.createObjectNode();
+        item.put("deviceIndexCode", "door-101");
+        item.put("deviceName", "A栋机房门");
+        item.put("personId", 1001);
+        item.put("personName", "张三");
+        item.put("cardNo", "C0001");
+        item.put("direction", "in");
+        item.put("time", "2026-10-18 08:30:15");
+        item.put("method", "card");
+        item.put("status", "success");
+        return item;
+    }
+
+    /**
+     * 按推送路径转换：推送接收解析海康事件，事件总线转换为门禁日志
+     */
+    private DoorAccessLog pushToAccessLog(JsonNode item) {
+        DoorAccessPushReceiver receiver = new DoorAccessPushReceiver();
+        ReflectionTestUtils.setField(receiver, "hikvisionGrantedTypes", new HashSet<>(Arrays.asList("198914")));
+        ReflectionTestUtils.setField(receiver, "hikvisionDeniedTypes", new HashSet<>(Arrays.asList("197634")));
+        DoorAccessEvent event = ReflectionTestUtils.invokeMethod(receiver, "fromHikvision", item);
+        return ReflectionTestUtils.invokeMethod(new DoorAccessEventBus(), "toAccessLog", "hikvision", event);
+    }
+
+    private DoorAccessLog convertFromHikvision(JsonNode item) {
+        return ReflectionTestUtils.invokeMethod(service, "convertFromHikvision", item);
+    }
+
+    private static String eventsUrl(String apiUrl, String eventsPath) {
+        return ReflectionTestUtils.invokeMethod(DoorAccessSyncService.class, "eventsUrl", apiUrl, eventsPath);
+    }
+}
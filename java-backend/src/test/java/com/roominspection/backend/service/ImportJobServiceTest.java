@@ -0,0 +1,121 @@
+package com.roominspection.backend.service;
+
+import com.roominspection.backend.service.ImportJobService.ChunkProcessor;
+import com.roominspection.backend.service.ImportJobService.ChunkResult;
+import com.roominspection.backend.service.ImportJobService.ImportJob;
+import com.roominspection.backend.service.ImportJobService.ImportRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 导入任务分块提交与拆分重试测试
+ */
+class ImportJobServiceTest {
+
+    private ImportJobService service;
+
+    private ImportJob job;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        service = new ImportJobService();
+        ReflectionTestUtils.setField(service, "transactionTemplate", transactionTemplate);
+        job = new ImportJob();
+        job.setJobId("job-1");
+    }
+
+    @Test
+    void bisectsFailedChunkDownToTheBadRows() {
+        Set<Integer> badRows = new HashSet<>(Arrays.asList(4, 7));
+        AtomicInteger calls = new AtomicInteger();
+        ChunkProcessor<String> processor = chunk -> {
+            calls.incrementAndGet();
+            for (ImportRow<String> row : chunk) {
+                if (badRows.contains(row.getRowNumber())) {
+                    throw new DataIntegrityViolationException("Duplicate entry for row " + row.getRowNumber());
+                }
+            }
+            ChunkResult result = new ChunkResult();
+            result.setSuccessCount(chunk.size());
+            return result;
+        };
+
+        commitChunk(processor, rows(2, 9));
+
+        assertEquals(6, job.getSuccessCount());
+        assertEquals(2, job.getFailCount());
+        assertEquals(2, job.getErrors().size());
+        assertTrue(job.getErrors().get(0).startsWith("第4行"));
+        assertTrue(job.getErrors().get(1).startsWith("第7行"));
+        assertTrue(calls.get() < 2 * 8, "拆分次数应远少于逐行提交");
+    }
+
+    @Test
+    void rowErrorsFromProcessorDoNotTriggerBisection() {
+        AtomicInteger calls = new AtomicInteger();
+        ChunkProcessor<String> processor = chunk -> {
+            calls.incrementAndGet();
+            ChunkResult result = new ChunkResult();
+            result.addError(3, "机房不存在");
+            result.setSuccessCount(chunk.size() - 1);
+            return result;
+        };
+
+        commitChunk(processor, rows(2, 6));
+
+        assertEquals(1, calls.get());
+        assertEquals(4, job.getSuccessCount());
+        assertEquals(1, job.getFailCount());
+    }
+
+    @Test
+    void abortsWithoutBisectingOnNonDataError() {
+        AtomicInteger calls = new AtomicInteger();
+        ChunkProcessor<String> processor = chunk -> {
+            calls.incrementAndGet();
+            throw new DataAccessResourceFailureException("Communications link failure");
+        };
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> commitChunk(processor, rows(2, 101)));
+
+        assertEquals(1, calls.get());
+        assertEquals(0, job.getFailCount());
+        assertTrue(e.getMessage().contains("导入中止"));
+        assertTrue(job.getMessage().startsWith("第2行起"));
+    }
+
+    private void commitChunk(ChunkProcessor<String> processor, List<ImportRow<String>> rows) {
+        ReflectionTestUtils.invokeMethod(service, "commitChunk", job, processor, rows);
+    }
+
+    private static List<ImportRow<String>> rows(int fromRow, int toRow) {
+        List<ImportRow<String>> rows = new ArrayList<>();
+        for (int rowNumber = fromRow; rowNumber <= toRow; rowNumber++) {
+            rows.add(new ImportRow<>(rowNumber, "row-" + rowNumber));
+        }
+        return rows;
+    }
+}